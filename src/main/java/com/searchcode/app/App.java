@@ -13,6 +13,7 @@ package com.searchcode.app;
 import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Api;
 import com.searchcode.app.dao.Data;
+import com.searchcode.app.dao.OwnerCache;
 import com.searchcode.app.dao.Repo;
 import com.searchcode.app.model.RepoResult;
 import com.searchcode.app.service.*;
@@ -139,6 +140,17 @@ public class App {
         }, new JsonTransformer());
 
 
+        get("/api/codesearch/grep/", (request, response) -> {
+            addJsonHeaders(response);
+            SearchRouteService searchRouteService = new SearchRouteService();
+            return searchRouteService.GrepSearch(request, response);
+        }, new JsonTransformer());
+
+        get("/api/codesearch/export/", (request, response) -> {
+            SearchRouteService searchRouteService = new SearchRouteService();
+            return searchRouteService.CodeExport(request, response);
+        });
+
         get("/api/timecodesearch/", (request, response) -> {
             addJsonHeaders(response);
             TimeSearchRouteService ars = new TimeSearchRouteService();
@@ -467,11 +479,13 @@ public class App {
         Data data = Singleton.getData();
         Repo repo = Singleton.getRepo();
         Api api = Singleton.getApi();
+        OwnerCache ownerCache = Singleton.getOwnerCache();
 
         data.createTableIfMissing(); // Added data key/value table
         repo.addSourceToTable(); // Added source to repo
         repo.addBranchToTable(); // Add branch to repo
         api.createTableIfMissing();
+        ownerCache.createTableIfMissing();
     }
 
     private static void addJsonHeaders(Response response) {
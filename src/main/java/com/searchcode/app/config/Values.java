@@ -88,6 +88,53 @@ public class Values {
     public static String DEFAULT_TRASH_LOCATION = "./trash/";
     public static String LOG_PATH = "log_path";
     public static String DEFAULT_LOG_PATH = "./logs/";
+    public static String INDEX_COMMIT_DOCUMENTS = "index_commit_documents";
+    public static String DEFAULT_INDEX_COMMIT_DOCUMENTS = "1000";
+    public static String INDEX_COMMIT_SECONDS = "index_commit_seconds";
+    public static String DEFAULT_INDEX_COMMIT_SECONDS = "60";
+    public static String INDEX_COMMIT_IDLE = "index_commit_idle";
+    public static String DEFAULT_INDEX_COMMIT_IDLE = "true";
+    public static String INDEX_REFRESH_SECONDS = "index_refresh_seconds";
+    public static String DEFAULT_INDEX_REFRESH_SECONDS = "1";
+    public static String RESULT_CACHE_BYTES = "result_cache_bytes";
+    public static String DEFAULT_RESULT_CACHE_BYTES = "52428800";
+    public static String SNIPPET_MODE = "snippet_mode";
+    public static String DEFAULT_SNIPPET_MODE = "file";
+    public static String SNIPPET_MODE_INDEX = "index";
+    public static String HYDRATION_WORKERS = "hydration_workers";
+    public static String DEFAULT_HYDRATION_WORKERS = "8";
+    public static String HYDRATION_QUEUE_DEPTH = "hydration_queue_depth";
+    public static String DEFAULT_HYDRATION_QUEUE_DEPTH = "200";
+    public static String HYDRATION_TIMEOUT_MILLIS = "hydration_timeout_millis";
+    public static String DEFAULT_HYDRATION_TIMEOUT_MILLIS = "5000";
+    public static String TRIGRAM_INDEX = "trigram_index";
+    public static String DEFAULT_TRIGRAM_INDEX = "false";
+    public static String GREP_MAX_CANDIDATES = "grep_max_candidates";
+    public static String DEFAULT_GREP_MAX_CANDIDATES = "20000";
+    public static String MAX_FILE_BYTES = "max_file_bytes";
+    public static String DEFAULT_MAX_FILE_BYTES = "10485760";
+    public static String FILE_SAMPLE_BYTES = "file_sample_bytes";
+    public static String DEFAULT_FILE_SAMPLE_BYTES = "65536";
+    public static String INDEX_PARSER_THREADS = "index_parser_threads";
+    public static String DEFAULT_INDEX_PARSER_THREADS = "4";
+    public static String INDEX_OWNER_THREADS = "index_owner_threads";
+    public static String DEFAULT_INDEX_OWNER_THREADS = "4";
+    public static String INDEX_PIPELINE_QUEUE_DEPTH = "index_pipeline_queue_depth";
+    public static String DEFAULT_INDEX_PIPELINE_QUEUE_DEPTH = "1000";
+    public static String OWNER_HISTORY_DEPTH = "owner_history_depth";
+    public static String DEFAULT_OWNER_HISTORY_DEPTH = "0";
+    public static String OWNER_CACHE_MAX_ENTRIES = "owner_cache_max_entries";
+    public static String DEFAULT_OWNER_CACHE_MAX_ENTRIES = "200000";
+    public static String OWNER_ENRICHMENT = "owner_enrichment";
+    public static String DEFAULT_OWNER_ENRICHMENT = "false";
+    public static String OWNER_ENRICHMENT_BATCH_SIZE = "owner_enrichment_batch_size";
+    public static String DEFAULT_OWNER_ENRICHMENT_BATCH_SIZE = "200";
+    public static String GIT_REPOSITORY_IDLE_SECONDS = "git_repository_idle_seconds";
+    public static String DEFAULT_GIT_REPOSITORY_IDLE_SECONDS = "600";
+    public static String GIT_CACHE_MEMORY_MB = "git_cache_memory_mb";
+    public static String DEFAULT_GIT_CACHE_MEMORY_MB = "64";
+    public static String GIT_CACHE_WINDOW_KB = "git_cache_window_kb";
+    public static String DEFAULT_GIT_CACHE_WINDOW_KB = "8";
 
     // Lucene stored values for indexing / searching
     public static String CONTENTS = "contents";
@@ -109,10 +156,13 @@ public class Values {
     public static String MESSAGE = "message"; // Contains git commit message
     public static String DELETED = "deleted";
     public static String CODEID = "codeid";
+    public static String LINEOFFSETS = "lineoffsets"; // Stored only, see LineOffsets
+    public static String TRIGRAMS = "trigrams"; // Indexed only, see TrigramAnalyzer
 
     // Random
     public static String USERSESSIONID = "admin_user";
     public static String EMPTYSTRING = "";
+    public static String PENDINGCODEOWNER = "pending";
 
     // Cache lookup values
     public static String CACHE_TOTAL_SEARCH = "statsservice-totalsearch";
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.dao;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.searchcode.app.config.IDatabaseConfig;
+import com.searchcode.app.dto.CodeOwner;
+import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.Helpers;
+import com.searchcode.app.util.LoggerWrapper;
+
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the owners worked out for a file so they survive restarts and re-indexes. Entries are keyed by repository
+ * and path and hold the git blob id the owners were worked out for. A file whose contents have not changed keeps its
+ * blob id, so its owners are reused, while a changed file replaces its entry once it has been blamed again. The HEAD
+ * commit each entry was worked out at is kept alongside it.
+ *
+ * A repository is loaded with one query through getEntries and looked up and added to in memory by however many
+ * threads are working out owners for it. Everything added is written back by save in a single transaction once the
+ * repository is done with.
+ *
+ * The table is bounded to a number of entries. Once over, the least recently used are removed.
+ */
+public class OwnerCache implements IOwnerCache {
+
+    private static final LoggerWrapper LOGGER = Singleton.getLogger();
+
+    // How often to check the size of the table, in saves, as counting every time is slow for large tables
+    private static final int EVICTCHECKINTERVAL = 1000;
+
+    // Only record a hit as a use if the last was longer ago than this, to avoid writing on every read
+    private static final long TOUCHINTERVALSECONDS = 3600;
+
+    private final IDatabaseConfig dbConfig;
+    private final int maxEntries;
+    private final Gson gson = new Gson();
+    private final Type ownersType = new TypeToken<List<CodeOwner>>(){}.getType();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private long evictions = 0;
+    private int savesSinceEvictCheck = 0;
+
+    /**
+     * A max entries of zero or less disables the cache
+     */
+    public OwnerCache(IDatabaseConfig dbConfig, int maxEntries) {
+        this.dbConfig = dbConfig;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Loads every cached file in the repository in one query. Nothing is loaded if the cache is disabled.
+     */
+    public Entries getEntries(String repoName) {
+        Map<String, Entry> entries = new HashMap<>();
+
+        if (!this.isEnabled()) {
+            return new Entries(repoName, entries);
+        }
+
+        synchronized (this) {
+            Connection conn = null;
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                conn = this.dbConfig.getConnection();
+                stmt = conn.prepareStatement("select path,blobid,owners,lastused from \"ownercache\" where repo = ?;");
+                stmt.setString(1, repoName);
+
+                rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    entries.put(rs.getString("path"), new Entry(rs.getString("blobid"), rs.getString("owners"), rs.getLong("lastused")));
+                }
+            }
+            catch(SQLException ex) {
+                LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage() + " while trying to get owners for " + repoName);
+            }
+            finally {
+                Helpers.closeQuietly(rs);
+                Helpers.closeQuietly(stmt);
+                Helpers.closeQuietly(conn);
+            }
+        }
+
+        return new Entries(repoName, entries);
+    }
+
+    /**
+     * Writes back everything added to the entries and records the use of those found, all in one transaction
+     */
+    public void save(Entries entries) {
+        if (!this.isEnabled() || entries == null) {
+            return;
+        }
+
+        List<Save> saves = new ArrayList<>(entries.saves);
+        List<String> touched = new ArrayList<>(entries.touched);
+        entries.saves.clear();
+        entries.touched.clear();
+
+        if (saves.isEmpty() && touched.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+
+        synchronized (this) {
+            Connection conn = null;
+            PreparedStatement stmt = null;
+
+            try {
+                conn = this.dbConfig.getConnection();
+                conn.setAutoCommit(false);
+
+                stmt = conn.prepareStatement("INSERT OR REPLACE INTO ownercache(\"repo\",\"path\",\"blobid\",\"headcommit\",\"owners\",\"lastused\") VALUES (?,?,?,?,?,?)");
+                for (Save save : saves) {
+                    stmt.setString(1, entries.repoName);
+                    stmt.setString(2, save.path);
+                    stmt.setString(3, save.blobId);
+                    stmt.setString(4, save.headCommit);
+                    stmt.setString(5, save.owners);
+                    stmt.setLong(6, now);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                Helpers.closeQuietly(stmt);
+                stmt = conn.prepareStatement("UPDATE \"ownercache\" SET \"lastused\" = ? WHERE repo = ? and path = ?");
+                for (String path : touched) {
+                    stmt.setLong(1, now);
+                    stmt.setString(2, entries.repoName);
+                    stmt.setString(3, path);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                conn.commit();
+            }
+            catch(SQLException ex) {
+                LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage() + " while trying to save owners for " + entries.repoName);
+                this.rollbackQuietly(conn);
+            }
+            finally {
+                Helpers.closeQuietly(stmt);
+                this.autoCommitQuietly(conn);
+                Helpers.closeQuietly(conn);
+            }
+
+            this.savesSinceEvictCheck += saves.size();
+            if (this.savesSinceEvictCheck >= EVICTCHECKINTERVAL) {
+                this.evict();
+            }
+        }
+    }
+
+    public synchronized void deleteRepo(String repoName) {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try {
+            conn = this.dbConfig.getConnection();
+            stmt = conn.prepareStatement("delete from \"ownercache\" where repo = ?;");
+            stmt.setString(1, repoName);
+            stmt.execute();
+        }
+        catch(SQLException ex) {
+            LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            Helpers.closeQuietly(stmt);
+            Helpers.closeQuietly(conn);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries over the maximum
+     */
+    public synchronized void evict() {
+        this.savesSinceEvictCheck = 0;
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.dbConfig.getConnection();
+            stmt = conn.prepareStatement("select count(*) as size from \"ownercache\";");
+            rs = stmt.executeQuery();
+
+            int over = 0;
+            while (rs.next()) {
+                over = rs.getInt("size") - this.maxEntries;
+            }
+
+            if (over > 0) {
+                Helpers.closeQuietly(stmt);
+                stmt = conn.prepareStatement("delete from \"ownercache\" where rowid in (select rowid from \"ownercache\" order by lastused asc limit ?);");
+                stmt.setInt(1, over);
+                stmt.execute();
+                this.evictions += over;
+            }
+        }
+        catch(SQLException ex) {
+            LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            Helpers.closeQuietly(rs);
+            Helpers.closeQuietly(stmt);
+            Helpers.closeQuietly(conn);
+        }
+    }
+
+    // Avoid migrations by creating if its missing
+    public synchronized void createTableIfMissing() {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = this.dbConfig.getConnection();
+            stmt = conn.prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name='ownercache';");
+
+            rs = stmt.executeQuery();
+            String value = "";
+            while (rs.next()) {
+                value = rs.getString("name");
+            }
+
+            if (value.equals("")) {
+                Helpers.closeQuietly(stmt);
+                stmt = conn.prepareStatement("CREATE TABLE \"ownercache\" (\"repo\" VARCHAR NOT NULL, \"path\" VARCHAR NOT NULL, \"blobid\" VARCHAR NOT NULL, \"headcommit\" VARCHAR, \"owners\" VARCHAR, \"lastused\" INTEGER, PRIMARY KEY (\"repo\", \"path\"));");
+                stmt.execute();
+                Helpers.closeQuietly(stmt);
+                stmt = conn.prepareStatement("CREATE INDEX \"ownercache_lastused\" ON \"ownercache\" (\"lastused\");");
+                stmt.execute();
+            }
+        }
+        catch(SQLException ex) {
+            LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            Helpers.closeQuietly(rs);
+            Helpers.closeQuietly(stmt);
+            Helpers.closeQuietly(conn);
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.maxEntries > 0;
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public double getHitRatio() {
+        long hits = this.hits.get();
+        long total = hits + this.misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    private void rollbackQuietly(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.rollback();
+            }
+        }
+        catch (SQLException ex) {}
+    }
+
+    private void autoCommitQuietly(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.setAutoCommit(true);
+            }
+        }
+        catch (SQLException ex) {}
+    }
+
+    /**
+     * The cached files of a repository as loaded by getEntries. Safe for any number of threads to look up and add
+     * owners at once. Additions are only written when the entries are passed to save.
+     */
+    public class Entries {
+        private final String repoName;
+        private final Map<String, Entry> entries;
+        private final Queue<Save> saves = new ConcurrentLinkedQueue<>();
+        private final Set<String> touched = ConcurrentHashMap.newKeySet();
+
+        private Entries(String repoName, Map<String, Entry> entries) {
+            this.repoName = repoName;
+            this.entries = entries;
+        }
+
+        /**
+         * Returns the cached owners of the file or null if there are none for this blob id
+         */
+        public List<CodeOwner> getOwners(String path, String blobId) {
+            Entry entry = this.entries.get(path);
+            List<CodeOwner> codeOwners = null;
+
+            if (entry != null && entry.blobId.equals(blobId)) {
+                try {
+                    codeOwners = gson.fromJson(entry.owners, ownersType);
+                }
+                catch (JsonParseException ex) {
+                    LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage() + " while trying to get owners for " + this.repoName + " " + path);
+                }
+            }
+
+            if (codeOwners == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            hits.incrementAndGet();
+            if (System.currentTimeMillis() / 1000 - entry.lastUsed > TOUCHINTERVALSECONDS) {
+                this.touched.add(path);
+            }
+
+            return codeOwners;
+        }
+
+        /**
+         * The blob id of every cached file in the repository by path
+         */
+        public Map<String, String> getBlobIds() {
+            Map<String, String> blobIds = new HashMap<>();
+            for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                blobIds.put(entry.getKey(), entry.getValue().blobId);
+            }
+            return blobIds;
+        }
+
+        public void saveOwners(String path, String blobId, String headCommit, List<CodeOwner> codeOwners) {
+            if (!isEnabled() || codeOwners == null || codeOwners.isEmpty()) {
+                return;
+            }
+
+            this.saves.add(new Save(path, blobId, headCommit, gson.toJson(codeOwners, ownersType)));
+        }
+
+        public int size() {
+            return this.entries.size();
+        }
+    }
+
+    private static class Entry {
+        private final String blobId;
+        private final String owners;
+        private final long lastUsed;
+
+        private Entry(String blobId, String owners, long lastUsed) {
+            this.blobId = blobId;
+            this.owners = owners;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static class Save {
+        private final String path;
+        private final String blobId;
+        private final String headCommit;
+        private final String owners;
+
+        private Save(String path, String blobId, String headCommit, String owners) {
+            this.path = path;
+            this.blobId = blobId;
+            this.headCommit = headCommit;
+            this.owners = owners;
+        }
+    }
+}
@@ -10,6 +10,7 @@
 
 package com.searchcode.app.dto;
 
+import com.searchcode.app.util.LineOffsets;
 import org.apache.commons.codec.digest.DigestUtils;
 
 public class CodeIndexDocument {
@@ -30,6 +31,7 @@ public class CodeIndexDocument {
     private String year;
     private String message;
     private String deleted; // Used for time filter to know when this entry was removed
+    private LineOffsets lineOffsets; // Built when the file was read so the indexer does not read it again
 
     public CodeIndexDocument() {}
 
@@ -189,4 +191,12 @@ public class CodeIndexDocument {
     public void setYear(String year) {
         this.year = year;
     }
+
+    public LineOffsets getLineOffsets() {
+        return lineOffsets;
+    }
+
+    public void setLineOffsets(LineOffsets lineOffsets) {
+        this.lineOffsets = lineOffsets;
+    }
 }
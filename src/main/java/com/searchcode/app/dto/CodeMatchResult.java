@@ -18,6 +18,7 @@ public class CodeMatchResult {
     public boolean addBreak = false;
     public int lineMatches = 0;
     public int lineNumber = 0;
+    public int[][] matchOffsets = null; // Start and end of each match when the line is not highlighted
 
     public CodeMatchResult(String line, boolean matching, boolean addBreak, int lineMatches, int lineNumber){
         this.setLine(line);
@@ -66,4 +67,12 @@ public class CodeMatchResult {
     public void setLineNumber(int lineNumber) {
         this.lineNumber = lineNumber;
     }
+
+    public int[][] getMatchOffsets() {
+        return matchOffsets;
+    }
+
+    public void setMatchOffsets(int[][] matchOffsets) {
+        this.matchOffsets = matchOffsets;
+    }
 }
@@ -20,6 +20,7 @@ public class SearchResult {
     private List<String> altQuery = new ArrayList<>();
     private List<CodeResult> codeResultList = new ArrayList<>();
     private List<Integer> pages = new ArrayList<>();
+    private String cursor = null;
     private List<CodeFacetLanguage> languageFacetResults = new ArrayList<>();
     private List<CodeFacetRepo> repoFacetResults = new ArrayList<>();
     private List<CodeFacetOwner> repoOwnerResults = new ArrayList<>();
@@ -74,6 +75,17 @@ public class SearchResult {
         this.codeResultList = codeResultList;
     }
 
+    /**
+     * Opaque value which when passed back returns the next page of results, null when there are no more
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public List<Integer> getPages() {
         return pages;
     }
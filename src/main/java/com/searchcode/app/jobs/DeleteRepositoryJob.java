@@ -63,10 +63,13 @@ public class DeleteRepositoryJob implements Job {
 
             // remove the directory
             String repoLocations = Properties.getProperties().getProperty(Values.REPOSITORYLOCATION, Values.DEFAULTREPOSITORYLOCATION);
+            Singleton.getGitRepositoryCache().invalidate(new File(repoLocations + rr.getName() + "/.git"));
             FileUtils.deleteDirectory(new File(repoLocations + rr.getName() + "/"));
 
             // Remove from the database
             repo.deleteRepoByName(rr.getName());
+            Singleton.getOwnerCache().deleteRepo(rr.getName());
+            Singleton.getOwnerEnricher().remove(rr.getName());
         }
         catch (Exception ex) {
             if (rr != null) {
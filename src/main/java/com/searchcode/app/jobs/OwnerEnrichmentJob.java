@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.jobs.repository.IndexBaseRepoJob;
+import com.searchcode.app.jobs.repository.IndexGitRepoJob;
+import com.searchcode.app.jobs.repository.IndexSvnRepoJob;
+import com.searchcode.app.model.RepoResult;
+import com.searchcode.app.service.CodeIndexer;
+import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.OwnerEnricher;
+import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.Helpers;
+import com.searchcode.app.util.Properties;
+import org.apache.commons.io.FilenameUtils;
+import org.quartz.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backfills the owners of documents which were indexed with a pending owner. Runs at a lower priority than
+ * indexing and only while there is nothing waiting to be indexed, so new files always become searchable first.
+ *
+ * What is waiting is only held in memory, so the first run after starting queues again every document the index
+ * still has as pending.
+ */
+@PersistJobDataAfterExecution
+@DisallowConcurrentExecution
+public class OwnerEnrichmentJob implements Job {
+
+    private static final AtomicBoolean requeued = new AtomicBoolean(false);
+
+    public int BATCHSIZE = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.OWNER_ENRICHMENT_BATCH_SIZE, Values.DEFAULT_OWNER_ENRICHMENT_BATCH_SIZE), Values.DEFAULT_OWNER_ENRICHMENT_BATCH_SIZE);
+    public String REPOLOCATIONS = Properties.getProperties().getProperty(Values.REPOSITORYLOCATION, Values.DEFAULTREPOSITORYLOCATION);
+    public boolean LOWMEMORY = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.LOWMEMORY, Values.DEFAULTLOWMEMORY));
+
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        if (Singleton.getBackgroundJobsEnabled() == false) {
+            return;
+        }
+
+        try {
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+            OwnerEnricher ownerEnricher = Singleton.getOwnerEnricher();
+
+            if (requeued.compareAndSet(false, true)) {
+                int count = this.requeuePending();
+                Singleton.getLogger().info("OwnerEnrichmentJob queued " + count + " pending documents from the index");
+            }
+
+            while (ownerEnricher.getPending() != 0 && Singleton.getCodeIndexQueue().isEmpty() && !CodeIndexer.shouldPauseAdding()) {
+                int enriched = ownerEnricher.enrichBatch(Math.max(1, this.BATCHSIZE));
+                Singleton.getLogger().info("OwnerEnrichmentJob enriched " + enriched + " with " + ownerEnricher.getPending() + " pending");
+            }
+        } catch (Exception ex) {
+            // Continue at all costs
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Queues every document in the index with a pending owner through the job for its repository, skipping any
+     * whose repository has since been deleted. Returns how many were queued.
+     */
+    public int requeuePending() {
+        Map<String, IndexBaseRepoJob> jobs = new HashMap<>();
+        String fileRepoLocations = FilenameUtils.separatorsToUnix(this.REPOLOCATIONS);
+        int count = 0;
+
+        for (CodeIndexDocument codeIndexDocument : new CodeSearcher().getPendingOwnerDocuments()) {
+            IndexBaseRepoJob job = jobs.computeIfAbsent(codeIndexDocument.getRepoName(), this::getJob);
+            if (job == null) {
+                continue;
+            }
+
+            Singleton.getOwnerEnricher().add(new OwnerEnricher.Pending(job, codeIndexDocument, job.getBlameFilePath(codeIndexDocument.getFileLocationFilename()), this.REPOLOCATIONS, fileRepoLocations, job.MAXFILELINEDEPTH, this.LOWMEMORY));
+            count++;
+        }
+
+        return count;
+    }
+
+    private IndexBaseRepoJob getJob(String repoName) {
+        RepoResult repoResult = Singleton.getRepo().getRepoByName(repoName);
+        if (repoResult == null) {
+            return null;
+        }
+
+        switch (repoResult.getScm().toLowerCase()) {
+            case "git":
+                return new IndexGitRepoJob();
+            case "svn":
+                return new IndexSvnRepoJob();
+            default:
+                return null;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.searchcode.app.dto.RepositoryChanged;
 import com.searchcode.app.model.RepoResult;
 import com.searchcode.app.service.CodeIndexer;
 import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.OwnerEnricher;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.util.*;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -38,13 +39,20 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public abstract class IndexBaseRepoJob implements Job {
 
     protected boolean LOWMEMORY = true;
     protected int SLEEPTIME = 5000;
     public int MAXFILELINEDEPTH = Helpers.tryParseInt(com.searchcode.app.util.Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH);
-    public boolean LOGINDEXED = Boolean.parseBoolean(com.searchcode.app.util.Properties.getProperties().getProperty("only_localhost", "false")); // TODO make this configurable
+    public int INDEXPARSERTHREADS = Helpers.tryParseInt(com.searchcode.app.util.Properties.getProperties().getProperty(Values.INDEX_PARSER_THREADS, Values.DEFAULT_INDEX_PARSER_THREADS), Values.DEFAULT_INDEX_PARSER_THREADS);
+    public int INDEXOWNERTHREADS = Helpers.tryParseInt(com.searchcode.app.util.Properties.getProperties().getProperty(Values.INDEX_OWNER_THREADS, Values.DEFAULT_INDEX_OWNER_THREADS), Values.DEFAULT_INDEX_OWNER_THREADS);
+    public int INDEXPIPELINEQUEUEDEPTH = Helpers.tryParseInt(com.searchcode.app.util.Properties.getProperties().getProperty(Values.INDEX_PIPELINE_QUEUE_DEPTH, Values.DEFAULT_INDEX_PIPELINE_QUEUE_DEPTH), Values.DEFAULT_INDEX_PIPELINE_QUEUE_DEPTH);
+    public boolean LOGINDEXED = Boolean.parseBoolean(com.searchcode.app.util.Properties.getProperties().getProperty(Values.LOG_INDEXED, Values.DEFAULT_LOG_INDEXED));
+    public boolean OWNERENRICHMENT = Boolean.parseBoolean(com.searchcode.app.util.Properties.getProperties().getProperty(Values.OWNER_ENRICHMENT, Values.DEFAULT_OWNER_ENRICHMENT));
 
     /**
      * This method to be implemented by the extending class
@@ -74,6 +82,26 @@ public abstract class IndexBaseRepoJob implements Job {
         return null;
     }
 
+    /**
+     * Returns the owners of many files from the same repository in the same order, used to backfill owners.
+     * This can be implemented by the extending class where working out owners together is cheaper than one at a time
+     */
+    public List<String> getCodeOwners(List<List<String>> codeLines, List<String> newStrings, String repoName, String repoLocations, String fileRepoLocations, SearchcodeLib scl) {
+        List<String> codeOwners = new ArrayList<>(newStrings.size());
+        for (int i = 0; i < newStrings.size(); i++) {
+            codeOwners.add(this.getCodeOwner(codeLines.get(i), newStrings.get(i), repoName, fileRepoLocations, scl));
+        }
+        return codeOwners;
+    }
+
+    /**
+     * If true files are indexed with a pending owner and their owners are backfilled afterwards. This can be
+     * implemented by the extending class to turn it off where the owner is never expensive to work out
+     */
+    public boolean shouldEnrichOwners() {
+        return this.OWNERENRICHMENT;
+    }
+
     /**
      * This method to be implemented by the extending class
      */
@@ -140,6 +168,7 @@ public abstract class IndexBaseRepoJob implements Job {
                 if (cloneSucess == false) {
                     // Delete the folder and delete from the index
                     try {
+                        Singleton.getGitRepositoryCache().invalidate(new File(repoLocations + "/" + repoName + "/.git"));
                         FileUtils.deleteDirectory(new File(repoLocations + "/" + repoName + "/"));
                         CodeIndexer.deleteByReponame(repoName);
                     } catch (IOException ex) {
@@ -211,6 +240,7 @@ public abstract class IndexBaseRepoJob implements Job {
      */
     public void indexDocsByDelta(Path path, String repoName, String repoLocations, String repoRemoteLocation, RepositoryChanged repositoryChanged) {
         SearchcodeLib scl = Singleton.getSearchCodeLib(); // Should have data object by this point
+        PreReadFilter preReadFilter = Singleton.getPreReadFilter();
         Queue<CodeIndexDocument> codeIndexDocumentQueue = Singleton.getCodeIndexQueue();
         String fileRepoLocations = FilenameUtils.separatorsToUnix(repoLocations);
 
@@ -227,34 +257,49 @@ public abstract class IndexBaseRepoJob implements Job {
             changedFile = fileRepoLocations + "/" + repoName + "/" + changedFile;
             changedFile = changedFile.replace("//", "/");
 
-            String md5Hash = Values.EMPTYSTRING;
-            List<String> codeLines = null;
+            String rejectReason = preReadFilter.getRejectReason(changedFile, fileName, new File(changedFile).length(), scl);
+            if (rejectReason != null) {
+                Singleton.getLogger().info("Rejected before reading will not index " + rejectReason + " " + changedFile);
+                reportList.add(new String[]{changedFile, "excluded", rejectReason});
+                continue;
+            }
+
+            FileContent fileContent;
 
             try {
-                codeLines = Helpers.readFileLinesGuessEncoding(changedFile, this.MAXFILELINEDEPTH);
+                fileContent = FileContent.read(changedFile, this.MAXFILELINEDEPTH, preReadFilter.getReadLimit());
             } catch (IOException ex) {
                 Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
                 reportList.add(new String[]{changedFile, "excluded", "unable to guess guess file encoding"});
-                break;
+                continue;
+            }
+
+            if (fileContent.isTruncated()) {
+                preReadFilter.rejectedAfterRead();
+                Singleton.getLogger().info("Grew past max_file_bytes while reading will not index " + changedFile);
+                reportList.add(new String[]{changedFile, "excluded", "larger than max_file_bytes"});
+                continue;
             }
 
-            if (scl.isMinified(codeLines, fileName)) {
+            List<String> codeLines = fileContent.getLines();
+
+            if (scl.isMinified(fileContent, fileName)) {
                 Singleton.getLogger().info("Appears to be minified will not index  " + changedFile);
                 reportList.add(new String[]{changedFile, "excluded", "appears to be minified"});
-                break;
+                continue;
             }
 
             if (codeLines.isEmpty()) {
                 Singleton.getLogger().info("Unable to guess encoding type or file is empty " + changedFile);
                 reportList.add(new String[]{changedFile, "excluded", "empty file"});
-                break;
+                continue;
             }
 
-            if (this.determineBinary(changedFile, fileName, codeLines, reportList)) {
-                break;
+            if (this.determineBinary(changedFile, fileName, fileContent, reportList)) {
+                continue;
             }
 
-            md5Hash = this.getFileMd5(changedFile);
+            String md5Hash = fileContent.getMd5Hash();
 
             String languageName = scl.languageGuesser(changedFile, codeLines);
 
@@ -267,17 +312,18 @@ public abstract class IndexBaseRepoJob implements Job {
 
             reportList.add(new String[]{changedFile, "included", ""});
 
-            if (codeLines != null) {
-                if (this.LOWMEMORY) {
-                    try {
-                        CodeIndexer.indexDocument(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLines.size(), StringUtils.join(codeLines, " "), repoRemoteLocation, codeOwner));
-                    } catch (IOException ex) {
-                        Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
-                    }
-                } else {
-                    Singleton.incrementCodeIndexLinesCount(codeLines.size());
-                    codeIndexDocumentQueue.add(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLines.size(), StringUtils.join(codeLines, " "), repoRemoteLocation, codeOwner));
+            CodeIndexDocument codeIndexDocument = new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLines.size(), StringUtils.join(codeLines, " "), repoRemoteLocation, codeOwner);
+            codeIndexDocument.setLineOffsets(fileContent.getLineOffsets());
+
+            if (this.LOWMEMORY) {
+                try {
+                    CodeIndexer.indexDocument(codeIndexDocument);
+                } catch (IOException ex) {
+                    Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
                 }
+            } else {
+                Singleton.incrementCodeIndexLinesCount(codeLines.size());
+                codeIndexDocumentQueue.add(codeIndexDocument);
             }
         }
 
@@ -304,18 +350,124 @@ public abstract class IndexBaseRepoJob implements Job {
      */
     public void indexDocsByPath(Path path, String repoName, String repoLocations, String repoRemoteLocation, boolean existingRepo) {
         SearchcodeLib scl = Singleton.getSearchCodeLib();
+        PreReadFilter preReadFilter = Singleton.getPreReadFilter();
         CodeSearcher codeSearcher = new CodeSearcher();
-        
-        Map<String, String> fileLocationsMap = new HashMap<>();
+
+        // Shared between the walker and the pipeline threads so both need to be safe for concurrent use
+        Map<String, String> fileLocationsMap = new ConcurrentHashMap<>();
 
         Queue<CodeIndexDocument> codeIndexDocumentQueue = Singleton.getCodeIndexQueue();
 
         // Convert once outside the main loop
         String fileRepoLocations = FilenameUtils.separatorsToUnix(repoLocations);
         boolean lowMemory = this.LOWMEMORY;
+        boolean enrichOwners = this.shouldEnrichOwners();
 
         // Used to hold the reports of what was indexed
-        List<String[]> reportList = new ArrayList<>();
+        List<String[]> reportList = Collections.synchronizedList(new ArrayList<>());
+
+        // Reads and classifies each file, returning null for anything which should not be indexed
+        Function<WalkedFile, ParsedFile> parser = walkedFile -> {
+            String fileToString = walkedFile.fileToString;
+            String fileName = walkedFile.fileName;
+
+            String rejectReason = preReadFilter.getRejectReason(fileToString, fileName, walkedFile.size, scl);
+            if (rejectReason != null) {
+                Singleton.getLogger().info("Rejected before reading will not index " + rejectReason + " " + fileToString);
+                if (LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "excluded", rejectReason});
+                }
+                fileLocationsMap.remove(fileToString);
+                return null;
+            }
+
+            FileContent fileContent;
+            try {
+                fileContent = FileContent.read(fileToString, MAXFILELINEDEPTH, preReadFilter.getReadLimit());
+            } catch (IOException ex) {
+                Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath parser\n with message: " + ex.getMessage() + " for file " + fileToString + " in path " + path +" in repo " + repoName);
+                if (LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "excluded", "unable to guess guess file encoding"});
+                }
+                fileLocationsMap.remove(fileToString);
+                return null;
+            }
+
+            if (fileContent.isTruncated()) {
+                preReadFilter.rejectedAfterRead();
+                Singleton.getLogger().info("Grew past max_file_bytes while reading will not index " + fileToString);
+                if (LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "excluded", "larger than max_file_bytes"});
+                }
+                fileLocationsMap.remove(fileToString);
+                return null;
+            }
+
+            if (scl.isMinified(fileContent, fileName)) {
+                Singleton.getLogger().info("Appears to be minified will not index " + fileToString);
+                if (LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "excluded", "appears to be minified"});
+                }
+                fileLocationsMap.remove(fileToString);
+                return null;
+            }
+
+            if (fileContent.getLines().isEmpty()) {
+                Singleton.getLogger().info("Unable to guess encoding type or file is empty " + fileToString);
+                if (LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "excluded", "empty file"});
+                }
+                fileLocationsMap.remove(fileToString);
+                return null;
+            }
+
+            if (determineBinary(fileToString, fileName, fileContent, reportList)) {
+                fileLocationsMap.remove(fileToString);
+                return null;
+            }
+
+            return new ParsedFile(fileToString, fileName, fileContent, scl.languageGuesser(fileName, fileContent.getLines()));
+        };
+
+        // Resolves the owner and hands the document on to be indexed
+        Consumer<ParsedFile> owner = parsedFile -> {
+            String fileToString = parsedFile.fileToString;
+            List<String> codeLines = parsedFile.fileContent.getLines();
+
+            String fileLocation = getRelativeToProjectPath(path.toString(), fileToString);
+            String fileLocationFilename = getFileLocationFilename(fileToString, fileRepoLocations);
+
+            String newString = getBlameFilePath(fileLocationFilename);
+            String codeOwner = enrichOwners ? Values.PENDINGCODEOWNER : getCodeOwner(codeLines, newString, repoName, fileRepoLocations, scl);
+
+            CodeIndexDocument codeIndexDocument = new CodeIndexDocument(fileToString, repoName, parsedFile.fileName, fileLocation, fileLocationFilename, parsedFile.fileContent.getMd5Hash(), parsedFile.languageName, codeLines.size(), StringUtils.join(codeLines, " "), repoRemoteLocation, codeOwner);
+            codeIndexDocument.setLineOffsets(parsedFile.fileContent.getLineOffsets());
+
+            // Queued after the document so the owner is always indexed after the pending one
+            OwnerEnricher.Pending pending = enrichOwners ? new OwnerEnricher.Pending(this, codeIndexDocument, newString, repoLocations, fileRepoLocations, this.MAXFILELINEDEPTH, lowMemory) : null;
+
+            if (lowMemory) { // TODO this should be inside the indexer class not in here
+                try {
+                    CodeIndexer.indexDocument(codeIndexDocument);
+                } catch (IOException ex) {
+                    Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath owner\n with message: " + ex.getMessage() + " for file " + fileToString + " in repo " + repoName);
+                }
+            } else {
+                Singleton.incrementCodeIndexLinesCount(codeLines.size());
+                codeIndexDocumentQueue.add(codeIndexDocument);
+            }
+
+            if (pending != null) {
+                Singleton.getOwnerEnricher().add(pending);
+            }
+
+            if (LOGINDEXED) {
+                reportList.add(new String[]{fileToString, "included", Values.EMPTYSTRING});
+            }
+        };
+
+        IndexPipeline<WalkedFile, ParsedFile> pipeline = new IndexPipeline<>(repoName, this.INDEXPARSERTHREADS, this.INDEXOWNERTHREADS, this.INDEXPIPELINEQUEUEDEPTH, parser, owner, this::shouldJobPauseOrTerminate);
+        pipeline.start();
 
         try {
             Files.walkFileTree(path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
@@ -330,69 +482,16 @@ public abstract class IndexBaseRepoJob implements Job {
                         String fileParent = FilenameUtils.separatorsToUnix(file.getParent().toString());
                         String fileToString = FilenameUtils.separatorsToUnix(file.toString());
                         String fileName = file.getFileName().toString();
-                        String repoLocationRepoNameLocationFilename = fileToString;
 
                         if (ignoreFile(fileParent)) {
                             return FileVisitResult.CONTINUE;
                         }
 
                         // This needs to be the primary key of the file
-                        fileLocationsMap.put(repoLocationRepoNameLocationFilename, null);
-
-                        List<String> codeLines;
-                        try {
-                            codeLines = Helpers.readFileLinesGuessEncoding(fileToString, MAXFILELINEDEPTH);
-                        } catch (IOException ex) {
-                            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath walkFileTree\n with message: " + ex.getMessage() + " for file " + file.toString() + " in path " + path +" in repo " + repoName);
-                            if (LOGINDEXED) {
-                                reportList.add(new String[]{fileToString, "excluded", "unable to guess guess file encoding"});
-                            }
-                            fileLocationsMap.remove(repoLocationRepoNameLocationFilename);
-                            return FileVisitResult.CONTINUE;
-                        }
+                        fileLocationsMap.put(fileToString, Values.EMPTYSTRING);
 
-                        if (scl.isMinified(codeLines, fileName)) {
-                            Singleton.getLogger().info("Appears to be minified will not index " + fileToString);
-                            if (LOGINDEXED) {
-                                reportList.add(new String[]{fileToString, "excluded", "appears to be minified"});
-                            }
-                            fileLocationsMap.remove(repoLocationRepoNameLocationFilename);
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        if (codeLines.isEmpty()) {
-                            Singleton.getLogger().info("Unable to guess encoding type or file is empty " + fileToString);
-                            if (LOGINDEXED) {
-                                reportList.add(new String[]{fileToString, "excluded", "empty file"});
-                            }
-                            fileLocationsMap.remove(repoLocationRepoNameLocationFilename);
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        if (determineBinary(fileToString, fileName, codeLines, reportList)) {
-                            fileLocationsMap.remove(repoLocationRepoNameLocationFilename);
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        String md5Hash = getFileMd5(fileToString);
-                        String languageName = scl.languageGuesser(fileName, codeLines);
-
-
-                        String fileLocation = getRelativeToProjectPath(path.toString(), fileToString);
-                        String fileLocationFilename = getFileLocationFilename(fileToString, fileRepoLocations);
-
-                        String newString = getBlameFilePath(fileLocationFilename);
-                        String codeOwner = getCodeOwner(codeLines, newString, repoName, fileRepoLocations, scl);
-
-                        if (lowMemory) { // TODO this should be inside the indexer class not in here
-                            CodeIndexer.indexDocument(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLines.size(), StringUtils.join(codeLines, " "), repoRemoteLocation, codeOwner));
-                        } else {
-                            Singleton.incrementCodeIndexLinesCount(codeLines.size());
-                            codeIndexDocumentQueue.add(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLines.size(), StringUtils.join(codeLines, " "), repoRemoteLocation, codeOwner));
-                        }
-
-                        if (LOGINDEXED) {
-                            reportList.add(new String[]{fileToString, "included", Values.EMPTYSTRING});
+                        if (!pipeline.submit(new WalkedFile(fileToString, fileName, attrs.size()))) {
+                            return FileVisitResult.TERMINATE;
                         }
                     }
                     catch(Exception ex) {
@@ -406,6 +505,11 @@ public abstract class IndexBaseRepoJob implements Job {
         } catch (IOException ex) {
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  " indexDocsByPath walkFileTree\n with message: " + ex.getMessage());
         }
+        finally {
+            pipeline.finish();
+        }
+
+        Singleton.getLogger().info("indexDocsByPath " + repoName + " " + pipeline.getSummary());
 
         if (this.LOGINDEXED) {
             logIndexed(repoName, reportList);
@@ -465,7 +569,7 @@ public abstract class IndexBaseRepoJob implements Job {
      * the file is believed to be binary
      */
     public boolean determineBinary(String fileLocation, String fileName, List<String> codeLines, List<String[]> reportList) {
-        SearchcodeLib scl = new SearchcodeLib();
+        SearchcodeLib scl = Singleton.getSearchCodeLib();
         BinaryFinding binaryFinding = scl.isBinary(codeLines, fileName);
 
         if (binaryFinding.isBinary()) {
@@ -477,6 +581,22 @@ public abstract class IndexBaseRepoJob implements Job {
         return false;
     }
 
+    /**
+     * Same as determineBinary using what was gathered when the file was read
+     */
+    public boolean determineBinary(String fileLocation, String fileName, FileContent fileContent, List<String[]> reportList) {
+        SearchcodeLib scl = Singleton.getSearchCodeLib();
+        BinaryFinding binaryFinding = scl.isBinary(fileContent, fileName);
+
+        if (binaryFinding.isBinary()) {
+            Singleton.getLogger().info("Appears to be binary will not index " + binaryFinding.getReason() + " " + fileLocation);
+            reportList.add(new String[]{ fileLocation, "excluded", binaryFinding.getReason() });
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * Attempts to get MD5 for file on disk
      */
@@ -585,4 +705,36 @@ public abstract class IndexBaseRepoJob implements Job {
 
         file.delete();
     }
+
+    /**
+     * A file found by the walker waiting to be read
+     */
+    private static class WalkedFile {
+        private final String fileToString;
+        private final String fileName;
+        private final long size;
+
+        private WalkedFile(String fileToString, String fileName, long size) {
+            this.fileToString = fileToString;
+            this.fileName = fileName;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A file which has been read and classified waiting for its owner
+     */
+    private static class ParsedFile {
+        private final String fileToString;
+        private final String fileName;
+        private final FileContent fileContent;
+        private final String languageName;
+
+        private ParsedFile(String fileToString, String fileName, FileContent fileContent, String languageName) {
+            this.fileToString = fileToString;
+            this.fileName = fileName;
+            this.fileContent = fileContent;
+            this.languageName = languageName;
+        }
+    }
 }
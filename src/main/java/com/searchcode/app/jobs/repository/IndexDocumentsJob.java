@@ -41,6 +41,14 @@ public class IndexDocumentsJob implements Job {
                 Singleton.getLogger().info("Memory Usage: " + statsService.getMemoryUsage(", "));
                 CodeIndexer.indexDocuments(Singleton.getCodeIndexQueue());
             }
+            else {
+                // Nothing left to index so let the writers apply their time and idle commit policy
+                Singleton.getCodeIndexWriter().maybeCommit(true);
+                Singleton.getTimeIndexWriter().maybeCommit(true);
+            }
+
+            Singleton.getCodeIndexWriter().maybeRefresh();
+            Singleton.getTimeIndexWriter().maybeRefresh();
         } catch (Exception ex) {
             // Continue at all costs
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
@@ -103,6 +103,11 @@ public class IndexFileRepoJob extends IndexBaseRepoJob {
         return "File System";
     }
 
+    @Override
+    public boolean shouldEnrichOwners() {
+        return false;
+    }
+
     @Override
     public boolean isEnabled() {
         return true;
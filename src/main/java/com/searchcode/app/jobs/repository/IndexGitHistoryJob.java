@@ -17,7 +17,6 @@ import com.searchcode.app.util.Helpers;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
@@ -61,8 +60,17 @@ public class IndexGitHistoryJob implements Job {
 
     public void getGitChangeSets() throws IOException, GitAPIException {
         //Repository localRepository = new FileRepository(new File("./repo/server/.git"));
-        Repository localRepository = new FileRepository(new File("./repo/thumbor/.git"));
+        Repository localRepository = Singleton.getGitRepositoryCache().acquire(new File("./repo/thumbor/.git"));
 
+        try {
+            this.getGitChangeSets(localRepository);
+        }
+        finally {
+            Singleton.getGitRepositoryCache().release(localRepository);
+        }
+    }
+
+    public void getGitChangeSets(Repository localRepository) throws IOException, GitAPIException {
         Git git = new Git(localRepository);
         Iterable<RevCommit> logs = git.log().call();
 
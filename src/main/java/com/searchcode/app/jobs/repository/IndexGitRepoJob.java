@@ -14,6 +14,7 @@ package com.searchcode.app.jobs.repository;
 // http://stackoverflow.com/questions/1685228/how-to-cat-a-file-in-jgit
 
 import com.searchcode.app.config.Values;
+import com.searchcode.app.dao.OwnerCache;
 import com.searchcode.app.dto.CodeOwner;
 import com.searchcode.app.dto.RepositoryChanged;
 import com.searchcode.app.service.Singleton;
@@ -29,7 +30,6 @@ import org.eclipse.jgit.api.PullCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
@@ -39,13 +39,18 @@ import org.quartz.PersistJobDataAfterExecution;
 
 import java.io.*;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This job is responsible for pulling and indexing git repositories
@@ -58,6 +63,17 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
 
     private String GITBINARYPATH;
     private boolean USESYSTEMGIT;
+    public int OWNERHISTORYDEPTH = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.OWNER_HISTORY_DEPTH, Values.DEFAULT_OWNER_HISTORY_DEPTH), Values.DEFAULT_OWNER_HISTORY_DEPTH);
+
+    // Blob ids of every file and the owners of those not already cached, worked out while a repository is being indexed
+    private volatile RepositoryOwnership repositoryOwnership = null;
+
+    // Cached owners of the repository being indexed, loaded before and saved after
+    private volatile OwnerCache.Entries ownerCacheEntries = null;
+
+    // Owners for the files waiting on the owner enricher, worked out once per repository and HEAD commit
+    private final Map<String, RepositoryOwnership> enrichmentOwnership = new ConcurrentHashMap<>();
+    private final Map<String, OwnerCache.Entries> enrichmentOwnerCacheEntries = new ConcurrentHashMap<>();
 
     public IndexGitRepoJob() {
         this.GITBINARYPATH = Properties.getProperties().getProperty(Values.GITBINARYPATH, Values.DEFAULTGITBINARYPATH);
@@ -86,13 +102,148 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
         return Singleton.getUniqueGitRepoQueue();
     }
 
+    /**
+     * Works out the owners of every file not already in the owner cache before indexing so that each file is a
+     * lookup rather than a blame of its own. Not done when using the git binary as that is what blame is meant to
+     * come from, though the cache is still used.
+     */
+    @Override
+    public void indexDocsByPath(Path path, String repoName, String repoLocations, String repoRemoteLocation, boolean existingRepo) {
+        if (this.shouldEnrichOwners()) {
+            // Owners are backfilled in batches through getCodeOwners so do not hold up indexing
+            super.indexDocsByPath(path, repoName, repoLocations, repoRemoteLocation, existingRepo);
+            return;
+        }
+
+        this.ownerCacheEntries = Singleton.getOwnerCache().getEntries(repoName);
+        this.repositoryOwnership = this.getRepositoryOwnership(repoName, repoLocations, null, this.ownerCacheEntries);
+
+        try {
+            super.indexDocsByPath(path, repoName, repoLocations, repoRemoteLocation, existingRepo);
+        }
+        finally {
+            Singleton.getOwnerCache().save(this.ownerCacheEntries);
+            this.repositoryOwnership = null;
+            this.ownerCacheEntries = null;
+        }
+    }
+
+    /**
+     * As above but only for the files which changed
+     */
+    @Override
+    public void indexDocsByDelta(Path path, String repoName, String repoLocations, String repoRemoteLocation, RepositoryChanged repositoryChanged) {
+        this.ownerCacheEntries = Singleton.getOwnerCache().getEntries(repoName);
+        this.repositoryOwnership = this.getRepositoryOwnership(repoName, repoLocations, new HashSet<>(repositoryChanged.getChangedFiles()), this.ownerCacheEntries);
+
+        try {
+            super.indexDocsByDelta(path, repoName, repoLocations, repoRemoteLocation, repositoryChanged);
+        }
+        finally {
+            Singleton.getOwnerCache().save(this.ownerCacheEntries);
+            this.repositoryOwnership = null;
+            this.ownerCacheEntries = null;
+        }
+    }
+
     @Override
     public String getCodeOwner(List<String> codeLines, String newString, String repoName, String fileRepoLocations, SearchcodeLib scl) {
-        List<CodeOwner> owners;
-        if (this.USESYSTEMGIT) {
-            owners = this.getBlameInfoExternal(codeLines.size(), repoName, fileRepoLocations, newString);
-        } else {
-            owners = this.getBlameInfo(codeLines.size(), repoName, fileRepoLocations, newString);
+        return this.getCodeOwner(codeLines, newString, repoName, fileRepoLocations, scl, this.repositoryOwnership, this.ownerCacheEntries);
+    }
+
+    /**
+     * Walks the history once for every file in the repository which is not already cached and keeps the result for
+     * the following batches until HEAD moves or nothing more is waiting for the repository, at which point the
+     * owners worked out are saved to the cache
+     */
+    @Override
+    public List<String> getCodeOwners(List<List<String>> codeLines, List<String> newStrings, String repoName, String repoLocations, String fileRepoLocations, SearchcodeLib scl) {
+        RepositoryOwnership ownership = this.enrichmentOwnership.get(repoName);
+        OwnerCache.Entries entries = this.enrichmentOwnerCacheEntries.get(repoName);
+        ObjectId head = this.getHeadId(repoName, repoLocations);
+
+        if (ownership == null || entries == null || head == null || !head.equals(ownership.getHead())) {
+            Singleton.getOwnerCache().save(entries);
+            entries = Singleton.getOwnerCache().getEntries(repoName);
+            ownership = this.getRepositoryOwnership(repoName, repoLocations, null, entries);
+            if (ownership != null) {
+                this.enrichmentOwnership.put(repoName, ownership);
+                this.enrichmentOwnerCacheEntries.put(repoName, entries);
+            } else {
+                this.enrichmentOwnership.remove(repoName);
+                this.enrichmentOwnerCacheEntries.remove(repoName);
+            }
+        }
+
+        try {
+            List<String> codeOwners = new ArrayList<>(newStrings.size());
+            for (int i = 0; i < newStrings.size(); i++) {
+                codeOwners.add(this.getCodeOwner(codeLines.get(i), newStrings.get(i), repoName, fileRepoLocations, scl, ownership, entries));
+            }
+            return codeOwners;
+        }
+        finally {
+            if (Singleton.getOwnerEnricher().getPending(repoName) == 0) {
+                this.enrichmentOwnership.remove(repoName);
+                this.enrichmentOwnerCacheEntries.remove(repoName);
+                Singleton.getOwnerCache().save(entries);
+            }
+        }
+    }
+
+    /**
+     * Returns the commit HEAD points to or null if there is none or it cannot be read
+     */
+    private ObjectId getHeadId(String repoName, String repoLocations) {
+        Repository localRepository = null;
+
+        try {
+            localRepository = Singleton.getGitRepositoryCache().acquire(new File(repoLocations + "/" + repoName + "/.git"));
+            return localRepository.resolve(Constants.HEAD);
+        } catch (IOException | RuntimeException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " getHeadId for " + repoName + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            Singleton.getGitRepositoryCache().release(localRepository);
+        }
+
+        return null;
+    }
+
+    private String getCodeOwner(List<String> codeLines, String newString, String repoName, String fileRepoLocations, SearchcodeLib scl, RepositoryOwnership ownership, OwnerCache.Entries entries) {
+        List<CodeOwner> owners = null;
+        String path = newString;
+        ObjectId blobId = null;
+
+        if (ownership != null) {
+            // Same as the blame fallback for paths which have picked up a leading directory
+            String[] split = newString.split("/");
+            if (ownership.getBlobId(path) == null && split.length != 1) {
+                path = String.join("/", Arrays.asList(split).subList(1, split.length));
+            }
+
+            blobId = ownership.getBlobId(path);
+        }
+
+        if (blobId != null && entries != null) {
+            owners = entries.getOwners(path, blobId.name());
+            if (owners != null) {
+                return scl.codeOwner(owners);
+            }
+
+            owners = ownership.getOwners(path);
+        }
+
+        if (owners == null) {
+            if (this.USESYSTEMGIT) {
+                owners = this.getBlameInfoExternal(codeLines.size(), repoName, fileRepoLocations, newString);
+            } else {
+                owners = this.getBlameInfo(codeLines.size(), repoName, fileRepoLocations, newString);
+            }
+        }
+
+        if (blobId != null && entries != null) {
+            entries.saveOwners(path, blobId.name(), ownership.getHead().name(), owners);
         }
 
         return scl.codeOwner(owners);
@@ -112,6 +263,34 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
         return false;
     }
 
+    /**
+     * Walks the history of the repository once to find the owners of its files which are not already in the given
+     * cached entries, limited to the given paths if not null. Returns null if it cannot be done in which case each file is
+     * blamed on its own without the cache.
+     */
+    public RepositoryOwnership getRepositoryOwnership(String repoName, String repoLocations, Set<String> paths, OwnerCache.Entries entries) {
+        Repository localRepository = null;
+
+        try {
+            long start = System.nanoTime();
+            localRepository = Singleton.getGitRepositoryCache().acquire(new File(repoLocations + "/" + repoName + "/.git"));
+
+            Map<String, String> cached = entries.getBlobIds();
+            RepositoryOwnership ownership = RepositoryOwnership.build(localRepository, this.OWNERHISTORYDEPTH, this.MAXFILELINEDEPTH, (path, blobId) ->
+                !this.USESYSTEMGIT && (paths == null || paths.contains(path)) && !blobId.name().equals(cached.get(path)));
+
+            Singleton.getLogger().info("getRepositoryOwnership " + repoName + " " + ownership.getFileCount() + " files (" + cached.size() + " cached) from " + ownership.getCommitsWalked() + " commits in " + (System.nanoTime() - start) / 1000000 + "ms");
+            return ownership;
+        } catch (IOException | RuntimeException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " getRepositoryOwnership for " + repoName + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            Singleton.getGitRepositoryCache().release(localRepository);
+        }
+
+        return null;
+    }
+
     /**
      * Only works if we have path to GIT
      */
@@ -195,17 +374,17 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
 
     /**
      * Uses the inbuilt git
-     * TODO this method appears to leak memory like crazy... need to investigate
      * TODO lots of hairy bits in here need tests to capture issues
      */
     public List<CodeOwner> getBlameInfo(int codeLinesSize, String repoName, String repoLocations, String fileName) {
         List<CodeOwner> codeOwners = new ArrayList<>(codeLinesSize);
+        Repository localRepository = null;
         try {
             // The / part is required due to centos bug for version 1.1.1
             // This appears to be correct
             String repoLoc = repoLocations + "/" + repoName + "/.git";
 
-            Repository localRepository = new FileRepository(new File(repoLoc));
+            localRepository = Singleton.getGitRepositoryCache().acquire(new File(repoLoc));
             BlameCommand blamer = new BlameCommand(localRepository);
 
             ObjectId commitID = localRepository.resolve("HEAD");
@@ -285,8 +464,11 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
         } catch (IllegalArgumentException ex) {
             Singleton.getLogger().info("IllegalArgumentException getBlameInfo when trying to get blame for " + repoName + " " + fileName + " " + ex.toString());
         }
+        finally {
+            // Kept open for the next blame of this repository until idle rather than loading its packs again
+            Singleton.getGitRepositoryCache().release(localRepository);
+        }
 
-        System.gc(); // Try to clean up
         return codeOwners;
     }
 
@@ -304,7 +486,7 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
         Git git = null;
 
         try {
-            localRepository = new FileRepository(new File(repoLocations + "/" + repoName + "/.git"));
+            localRepository = Singleton.getGitRepositoryCache().acquire(new File(repoLocations + "/" + repoName + "/.git"));
 
             Ref head = localRepository.getRef("HEAD");
             git = new Git(localRepository);
@@ -342,6 +524,7 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
                                             .setNewTree(newTreeIter)
                                             .setOldTree(oldTreeIter)
                                             .call();
+                reader.close();
 
 
                 for( DiffEntry entry : entries ) {
@@ -359,8 +542,8 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  " updateGitRepository for " + repoName + "\n with message: " + ex.getMessage());
         }
         finally {
-            Helpers.closeQuietly(localRepository);
             Helpers.closeQuietly(git);
+            Singleton.getGitRepositoryCache().release(localRepository);
         }
 
         return new RepositoryChanged(changed, changedFiles, deletedFiles);
@@ -375,6 +558,7 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
         Singleton.getLogger().info("Attempting to clone " + repoRemoteLocation);
 
         Git call = null;
+        Singleton.getGitRepositoryCache().invalidate(new File(repoLocations + "/" + repoName + "/.git"));
 
         try {
             CloneCommand cloneCommand = Git.cloneRepository();
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.jobs.repository;
+
+import com.searchcode.app.service.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the per file work of indexing a repository as stages joined by bounded queues so that reading and
+ * classifying files and resolving their owners happen on pools of threads while the caller walks the directory.
+ *
+ * walker (calling thread) -> parsers -> owners
+ *
+ * Each queue holds at most queueDepth items so a slow stage blocks the one before it rather than letting work
+ * pile up in memory. A parser returning null drops the item. Once the stop check returns true every stage discards
+ * what is left in its queue, and submit returns false so the walker can stop.
+ */
+public class IndexPipeline<I, P> {
+
+    private static final Object DONE = new Object();
+
+    private final String name;
+    private final int parserCount;
+    private final int ownerCount;
+    private final Function<I, P> parser;
+    private final Consumer<P> owner;
+    private final BooleanSupplier shouldStop;
+
+    private final BlockingQueue<Object> parseQueue;
+    private final BlockingQueue<Object> ownerQueue;
+    private final List<Thread> parserThreads = new ArrayList<>();
+    private final List<Thread> ownerThreads = new ArrayList<>();
+
+    private final Stage walkStage = new Stage("walk");
+    private final Stage parseStage = new Stage("parse");
+    private final Stage ownerStage = new Stage("owner");
+
+    private volatile boolean stopped = false;
+
+    /**
+     * Worker counts less than one are treated as one
+     */
+    public IndexPipeline(String name, int parsers, int owners, int queueDepth, Function<I, P> parser, Consumer<P> owner, BooleanSupplier shouldStop) {
+        this.name = name;
+        this.parserCount = Math.max(1, parsers);
+        this.ownerCount = Math.max(1, owners);
+        this.parser = parser;
+        this.owner = owner;
+        this.shouldStop = shouldStop;
+        this.parseQueue = new ArrayBlockingQueue<>(Math.max(1, queueDepth));
+        this.ownerQueue = new ArrayBlockingQueue<>(Math.max(1, queueDepth));
+    }
+
+    public void start() {
+        this.walkStage.start();
+        this.parseStage.start();
+        this.ownerStage.start();
+
+        for (int i = 0; i < this.parserCount; i++) {
+            Thread thread = new Thread(() -> this.<I>work(this.parseQueue, this.parseStage, item -> {
+                P parsed = this.parser.apply(item);
+                if (parsed != null) {
+                    this.put(this.ownerQueue, parsed);
+                }
+            }), "searchcode-index-parser-" + this.name + "-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            this.parserThreads.add(thread);
+        }
+
+        for (int i = 0; i < this.ownerCount; i++) {
+            Thread thread = new Thread(() -> this.<P>work(this.ownerQueue, this.ownerStage, this.owner), "searchcode-index-owner-" + this.name + "-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            this.ownerThreads.add(thread);
+        }
+    }
+
+    /**
+     * Hands an item to the parsers, blocking while their queue is full. Returns false if the pipeline has stopped
+     * and no more items should be submitted.
+     */
+    public boolean submit(I item) {
+        if (this.stopped) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        boolean submitted = this.put(this.parseQueue, item);
+        this.walkStage.processed(System.nanoTime() - start);
+        return submitted && !this.stopped;
+    }
+
+    /**
+     * Waits for everything submitted to pass through every stage
+     */
+    public void finish() {
+        this.walkStage.finish();
+
+        this.sendDone(this.parseQueue, this.parserThreads);
+        this.join(this.parserThreads);
+        this.parseStage.finish();
+
+        this.sendDone(this.ownerQueue, this.ownerThreads);
+        this.join(this.ownerThreads);
+        this.ownerStage.finish();
+    }
+
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    public Stage getWalkStage() {
+        return this.walkStage;
+    }
+
+    public Stage getParseStage() {
+        return this.parseStage;
+    }
+
+    public Stage getOwnerStage() {
+        return this.ownerStage;
+    }
+
+    /**
+     * One line describing the throughput of each stage, for the logs
+     */
+    public String getSummary() {
+        return this.walkStage + " " + this.parseStage + " parsers=" + this.parserCount + " " + this.ownerStage + " owners=" + this.ownerCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void work(BlockingQueue<Object> queue, Stage stage, Consumer<T> task) {
+        while (true) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException ex) {
+                this.stopped = true;
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (item == DONE) {
+                return;
+            }
+
+            if (this.stopped || this.shouldStop.getAsBoolean()) {
+                this.stopped = true;
+                stage.skipped();
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.accept((T) item);
+            }
+            catch (RuntimeException ex) {
+                Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in IndexPipeline " + stage.getName() + " for " + this.name + "\n with message: " + ex.getMessage());
+            }
+            stage.processed(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Blocks until there is room in the queue, giving up if the pipeline stops in the meantime
+     */
+    private boolean put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (this.stopped) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            this.stopped = true;
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Sends one marker per thread. Any thread can take any marker so it keeps trying while any thread is alive
+     * rather than waiting on a particular one, which could already have exited on an earlier marker.
+     */
+    private void sendDone(BlockingQueue<Object> queue, List<Thread> threads) {
+        for (int i = 0; i < threads.size(); i++) {
+            boolean sent = false;
+            while (!sent && threads.stream().anyMatch(Thread::isAlive)) {
+                try {
+                    sent = queue.offer(DONE, 100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    this.stopped = true;
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void join(List<Thread> threads) {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                this.stopped = true;
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counts for a single stage where busy is the time summed across all of its threads
+     */
+    public static class Stage {
+        private final String name;
+        private final AtomicLong items = new AtomicLong(0);
+        private final AtomicLong skipped = new AtomicLong(0);
+        private final AtomicLong busyNanos = new AtomicLong(0);
+        private volatile long startNanos = 0;
+        private volatile long finishNanos = 0;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void start() {
+            this.startNanos = System.nanoTime();
+        }
+
+        void finish() {
+            this.finishNanos = System.nanoTime();
+        }
+
+        void processed(long nanos) {
+            this.items.incrementAndGet();
+            this.busyNanos.addAndGet(nanos);
+        }
+
+        void skipped() {
+            this.skipped.incrementAndGet();
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getItems() {
+            return this.items.get();
+        }
+
+        public long getSkipped() {
+            return this.skipped.get();
+        }
+
+        public long getBusyMillis() {
+            return this.busyNanos.get() / 1000000;
+        }
+
+        public long getElapsedMillis() {
+            long end = this.finishNanos == 0 ? System.nanoTime() : this.finishNanos;
+            return (end - this.startNanos) / 1000000;
+        }
+
+        /**
+         * Items per second over the time the stage was running
+         */
+        public double getThroughput() {
+            return this.getItems() * 1000.0 / Math.max(1, this.getElapsedMillis());
+        }
+
+        @Override
+        public String toString() {
+            return this.name + " " + this.getItems() + " in " + this.getElapsedMillis() + "ms (" + String.format("%.1f", this.getThroughput()) + "/s busy " + this.getBusyMillis() + "ms skipped " + this.getSkipped() + ")";
+        }
+    }
+}
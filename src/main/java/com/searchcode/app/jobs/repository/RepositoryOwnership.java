@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.jobs.repository;
+
+import com.searchcode.app.dto.CodeOwner;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Works out who owns the lines of every file in a repository with one walk of its history rather than running
+ * BlameCommand once per file, which opens the repository and walks the history again for each file.
+ *
+ * Starting from the lines of every file at HEAD the commits are visited newest first, with a commit only visited
+ * once all of its children have been. Each commit is diffed against its parents and the lines it added are
+ * attributed to its author, while lines which are the same in a parent are passed on to that parent to be attributed
+ * there. For merges the lines go to the first parent they are unchanged in, the same as blame. Renames are followed.
+ *
+ * The walk can be limited to a number of commits, in which case any lines not yet attributed are given to the
+ * commits the walk stopped at, the same as blame does for the boundary of a range.
+ *
+ * Files can be left out of the walk, such as those whose owners are already known, and once no lines are left to
+ * attribute the walk stops without going further back in the history.
+ */
+public class RepositoryOwnership {
+
+    private final Map<String, Map<String, CodeOwner>> owners;
+    private final Map<String, ObjectId> blobIds;
+    private final int commitsWalked;
+    private final ObjectId head;
+
+    private RepositoryOwnership(Map<String, Map<String, CodeOwner>> owners, Map<String, ObjectId> blobIds, int commitsWalked, ObjectId head) {
+        this.owners = owners;
+        this.blobIds = blobIds;
+        this.commitsWalked = commitsWalked;
+        this.head = head;
+    }
+
+    /**
+     * Walks the history of HEAD visiting at most maxCommits commits, or all of them if maxCommits is zero or less.
+     * Only the first maxLines lines of each file are counted, matching the lines the indexer keeps, or all of them
+     * if maxLines is zero or less.
+     */
+    public static RepositoryOwnership build(Repository repository, int maxCommits, int maxLines) throws IOException {
+        return build(repository, maxCommits, maxLines, (path, blobId) -> true);
+    }
+
+    /**
+     * As above but only walking for the files at HEAD the include check accepts, given the path and blob id of each.
+     * The blob id of every file at HEAD is available afterwards whether it was included or not.
+     */
+    public static RepositoryOwnership build(Repository repository, int maxCommits, int maxLines, BiPredicate<String, ObjectId> include) throws IOException {
+        Map<String, Map<String, CodeOwner>> owners = new HashMap<>();
+        Map<String, ObjectId> blobIds = new HashMap<>();
+        ObjectId headId = repository.resolve(Constants.HEAD);
+
+        if (headId == null) {
+            return new RepositoryOwnership(owners, blobIds, 0, null);
+        }
+
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+
+            diffFormatter.setReader(reader, repository.getConfig());
+            diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+            diffFormatter.setDetectRenames(true);
+
+            revWalk.sort(RevSort.TOPO);
+            revWalk.sort(RevSort.COMMIT_TIME_DESC, true);
+
+            RevCommit head = revWalk.parseCommit(headId);
+            revWalk.markStart(head);
+
+            // Lines still to be attributed, by commit then path at that commit then path at HEAD
+            Map<RevCommit, Map<String, Map<String, Regions>>> pending = new HashMap<>();
+            Map<String, Map<String, Regions>> headPaths = headLines(reader, head, maxLines, include, blobIds);
+            if (!headPaths.isEmpty()) {
+                pending.put(head, headPaths);
+            }
+
+            int commitsWalked = 0;
+            RevCommit commit;
+
+            while (!pending.isEmpty() && (commit = revWalk.next()) != null) {
+                Map<String, Map<String, Regions>> paths = pending.remove(commit);
+                if (paths == null) {
+                    continue;
+                }
+
+                if (maxCommits > 0 && commitsWalked >= maxCommits) {
+                    attributeAll(owners, commit, paths);
+                    continue;
+                }
+                commitsWalked++;
+
+                RevCommit[] parents = commit.getParents();
+                for (RevCommit parent : parents) {
+                    revWalk.parseHeaders(parent);
+
+                    Map<String, DiffEntry> changes = new HashMap<>();
+                    for (DiffEntry entry : diffFormatter.scan(parent.getTree(), commit.getTree())) {
+                        if (entry.getChangeType() != DiffEntry.ChangeType.DELETE && paths.containsKey(entry.getNewPath())) {
+                            changes.put(entry.getNewPath(), entry);
+                        }
+                    }
+
+                    Map<String, Map<String, Regions>> parentPaths = pending.computeIfAbsent(parent, x -> new HashMap<>());
+
+                    for (Map.Entry<String, Map<String, Regions>> path : paths.entrySet()) {
+                        DiffEntry entry = changes.get(path.getKey());
+
+                        if (entry == null) {
+                            // Identical in this parent so everything left is passed on as is
+                            for (Map.Entry<String, Regions> headPath : path.getValue().entrySet()) {
+                                addPending(parentPaths, path.getKey(), headPath.getKey(), headPath.getValue());
+                            }
+                            path.getValue().clear();
+                            continue;
+                        }
+
+                        if (entry.getChangeType() == DiffEntry.ChangeType.ADD) {
+                            continue;
+                        }
+
+                        FileHeader fileHeader = diffFormatter.toFileHeader(entry);
+                        if (fileHeader.getPatchType() != FileHeader.PatchType.UNIFIED) {
+                            continue;
+                        }
+
+                        EditList edits = fileHeader.toEditList();
+                        for (Map.Entry<String, Regions> headPath : path.getValue().entrySet()) {
+                            Regions changed = new Regions();
+                            Regions unchanged = new Regions();
+                            headPath.getValue().split(edits, changed, unchanged);
+                            headPath.setValue(changed);
+                            addPending(parentPaths, entry.getOldPath(), headPath.getKey(), unchanged);
+                        }
+                    }
+
+                    if (parentPaths.isEmpty()) {
+                        pending.remove(parent);
+                    }
+                }
+
+                // Whatever no parent has is new in this commit, which is everything for a root commit
+                attributeAll(owners, commit, paths);
+            }
+
+            // Stopped before reaching these commits so they take the rest as the boundary of the walk
+            for (Map.Entry<RevCommit, Map<String, Map<String, Regions>>> boundary : pending.entrySet()) {
+                revWalk.parseHeaders(boundary.getKey());
+                attributeAll(owners, boundary.getKey(), boundary.getValue());
+            }
+
+            return new RepositoryOwnership(owners, blobIds, commitsWalked, headId.copy());
+        }
+    }
+
+    /**
+     * The owners of the file at the path relative to the root of the repository, or null if the walk did not
+     * include the file such as when it is binary
+     */
+    public List<CodeOwner> getOwners(String path) {
+        Map<String, CodeOwner> fileOwners = this.owners.get(path);
+        if (fileOwners == null) {
+            return null;
+        }
+
+        return new ArrayList<>(fileOwners.values());
+    }
+
+    /**
+     * The blob id of the file at the path at HEAD, or null if there is no such file
+     */
+    public ObjectId getBlobId(String path) {
+        return this.blobIds.get(path);
+    }
+
+    public int getFileCount() {
+        return this.owners.size();
+    }
+
+    public int getCommitsWalked() {
+        return this.commitsWalked;
+    }
+
+    /**
+     * The commit the ownership was worked out from, or null for an empty repository
+     */
+    public ObjectId getHead() {
+        return this.head;
+    }
+
+    private static Map<String, Map<String, Regions>> headLines(ObjectReader reader, RevCommit head, int maxLines, BiPredicate<String, ObjectId> include, Map<String, ObjectId> blobIds) throws IOException {
+        Map<String, Map<String, Regions>> paths = new HashMap<>();
+
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(head.getTree());
+            treeWalk.setRecursive(true);
+
+            while (treeWalk.next()) {
+                if (treeWalk.getFileMode(0).getObjectType() != Constants.OBJ_BLOB || treeWalk.getFileMode(0) == FileMode.GITLINK) {
+                    continue;
+                }
+
+                String path = treeWalk.getPathString();
+                ObjectId blobId = treeWalk.getObjectId(0);
+                blobIds.put(path, blobId);
+
+                if (!include.test(path, blobId)) {
+                    continue;
+                }
+
+                ObjectLoader loader = reader.open(blobId);
+                if (loader.isLarge()) {
+                    continue;
+                }
+
+                byte[] bytes = loader.getCachedBytes();
+                if (RawText.isBinary(bytes)) {
+                    continue;
+                }
+
+                int lines = new RawText(bytes).size();
+                if (maxLines > 0) {
+                    lines = Math.min(lines, maxLines);
+                }
+
+                Regions regions = new Regions();
+                regions.add(0, lines);
+                addPending(paths, path, path, regions);
+            }
+        }
+
+        return paths;
+    }
+
+    private static void addPending(Map<String, Map<String, Regions>> paths, String path, String headPath, Regions regions) {
+        if (regions.isEmpty()) {
+            return;
+        }
+
+        Map<String, Regions> headPaths = paths.computeIfAbsent(path, x -> new HashMap<>());
+        Regions existing = headPaths.get(headPath);
+        headPaths.put(headPath, existing == null ? regions : existing.union(regions));
+    }
+
+    private static void attributeAll(Map<String, Map<String, CodeOwner>> owners, RevCommit commit, Map<String, Map<String, Regions>> paths) {
+        PersonIdent authorIdent = commit.getAuthorIdent();
+
+        for (Map<String, Regions> headPaths : paths.values()) {
+            for (Map.Entry<String, Regions> headPath : headPaths.entrySet()) {
+                int lines = headPath.getValue().count();
+                if (lines == 0) {
+                    continue;
+                }
+
+                Map<String, CodeOwner> fileOwners = owners.computeIfAbsent(headPath.getKey(), x -> new HashMap<>());
+                CodeOwner codeOwner = fileOwners.get(authorIdent.getName());
+
+                if (codeOwner == null) {
+                    fileOwners.put(authorIdent.getName(), new CodeOwner(authorIdent.getName(), lines, commit.getCommitTime()));
+                }
+                else {
+                    codeOwner.setNoLines(codeOwner.getNoLines() + lines);
+                    if (commit.getCommitTime() > codeOwner.getMostRecentUnixCommitTimestamp()) {
+                        codeOwner.setMostRecentUnixCommitTimestamp(commit.getCommitTime());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorted non overlapping ranges of line numbers, each stored as a start and an exclusive end
+     */
+    static class Regions {
+        private int[] bounds = new int[4];
+        private int size = 0;
+
+        void add(int start, int end) {
+            if (start >= end) {
+                return;
+            }
+
+            // Ranges are added in order so only the last one can be joined
+            if (this.size > 0 && this.bounds[this.size - 1] == start) {
+                this.bounds[this.size - 1] = end;
+                return;
+            }
+
+            if (this.size == this.bounds.length) {
+                this.bounds = Arrays.copyOf(this.bounds, this.size * 2);
+            }
+            this.bounds[this.size++] = start;
+            this.bounds[this.size++] = end;
+        }
+
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        int count() {
+            int count = 0;
+            for (int i = 0; i < this.size; i += 2) {
+                count += this.bounds[i + 1] - this.bounds[i];
+            }
+            return count;
+        }
+
+        Regions union(Regions other) {
+            List<int[]> ranges = new ArrayList<>();
+            for (int i = 0; i < this.size; i += 2) {
+                ranges.add(new int[] { this.bounds[i], this.bounds[i + 1] });
+            }
+            for (int i = 0; i < other.size; i += 2) {
+                ranges.add(new int[] { other.bounds[i], other.bounds[i + 1] });
+            }
+            Collections.sort(ranges, (a, b) -> Integer.compare(a[0], b[0]));
+
+            Regions union = new Regions();
+            for (int[] range : ranges) {
+                if (union.size > 0 && range[0] <= union.bounds[union.size - 1]) {
+                    union.bounds[union.size - 1] = Math.max(union.bounds[union.size - 1], range[1]);
+                }
+                else {
+                    union.add(range[0], range[1]);
+                }
+            }
+            return union;
+        }
+
+        /**
+         * Splits these lines of the newer side of the edits into the lines the edits changed, in the same
+         * numbering, and the lines they did not, renumbered to where they are on the older side
+         */
+        void split(EditList edits, Regions changed, Regions unchanged) {
+            int edit = 0;
+            int offset = 0; // Older minus newer line number for lines between edits
+
+            for (int i = 0; i < this.size; i += 2) {
+                int start = this.bounds[i];
+                int end = this.bounds[i + 1];
+
+                while (start < end) {
+                    // Edits ending at or before this line, including lines only deleted here, move it in the older side
+                    while (edit < edits.size() && edits.get(edit).getEndB() <= start) {
+                        offset = edits.get(edit).getEndA() - edits.get(edit).getEndB();
+                        edit++;
+                    }
+
+                    if (edit == edits.size()) {
+                        unchanged.add(start + offset, end + offset);
+                        start = end;
+                    }
+                    else if (start < edits.get(edit).getBeginB()) {
+                        int gapEnd = Math.min(end, edits.get(edit).getBeginB());
+                        unchanged.add(start + offset, gapEnd + offset);
+                        start = gapEnd;
+                    }
+                    else {
+                        int changedEnd = Math.min(end, edits.get(edit).getEndB());
+                        changed.add(start, changedEnd);
+                        start = changedEnd;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -14,37 +14,48 @@ import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Data;
 import com.searchcode.app.dto.CodeIndexDocument;
 import com.searchcode.app.util.CodeAnalyzer;
+import com.searchcode.app.util.CodeContentAnalyzer;
 import com.searchcode.app.util.Helpers;
+import com.searchcode.app.util.LineOffsets;
 import com.searchcode.app.util.Properties;
 import com.searchcode.app.util.SearchcodeLib;
-import org.apache.lucene.analysis.Analyzer;
+import com.searchcode.app.util.TrigramAnalyzer;
 import org.apache.lucene.document.*;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
-import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.Date;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Responsible for dealing with any updates to the index be they inserts updates or deletes.
- * The main reason for this single entry point is that all methods are synchronized and static
+ * All writes go through the long lived shared writers held by the Singleton so that the write lock is only
+ * acquired once and commits happen according to the configured commit policy rather than per batch.
  */
 public class CodeIndexer {
 
     private static int MAXINDEXSIZE = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUESIZE, Values.DEFAULTMAXDOCUMENTQUEUESIZE), Values.DEFAULTMAXDOCUMENTQUEUESIZE);
     private static int MAXLINESINDEXSIZE = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUELINESIZE, Values.DEFAULTMAXDOCUMENTQUEUELINESIZE), Values.DEFAULTMAXDOCUMENTQUEUELINESIZE);
+    private static int MAXFILELINEDEPTH = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH);
+    private static boolean INDEXLINEOFFSETS = Values.SNIPPET_MODE_INDEX.equals(Properties.getProperties().getProperty(Values.SNIPPET_MODE, Values.DEFAULT_SNIPPET_MODE));
+    public static boolean INDEXTRIGRAMS = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.TRIGRAM_INDEX, Values.DEFAULT_TRIGRAM_INDEX));
+
+    // Trigrams are only ever used to find candidates so frequencies, positions and norms would be wasted space
+    private static final FieldType TRIGRAMFIELDTYPE = new FieldType();
+    static {
+        TRIGRAMFIELDTYPE.setIndexOptions(IndexOptions.DOCS);
+        TRIGRAMFIELDTYPE.setTokenized(true);
+        TRIGRAMFIELDTYPE.setOmitNorms(true);
+        TRIGRAMFIELDTYPE.freeze();
+    }
 
     /**
      * Returns true if indexing should be paused, false otherwise
@@ -100,74 +111,66 @@ public class CodeIndexer {
     }
 
     /**
-     * Deletes all files that belong to a repository.
+     * Deletes all files that belong to a repository. The delete is committed with the next batch of indexed
+     * documents or when the indexer goes idle rather than straight away.
      * TODO I don't think this clears anything from the facets, which it should
      */
-    public static synchronized void deleteByReponame(String repoName) throws IOException {
-        Directory dir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION)));
-
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-
-        IndexWriter writer = new IndexWriter(dir, iwc);
+    public static void deleteByReponame(String repoName) throws IOException {
+        SharedIndexWriter sharedIndexWriter = Singleton.getCodeIndexWriter();
+        IndexWriter writer = sharedIndexWriter.getIndexWriter();
 
         writer.deleteDocuments(new Term(Values.REPONAME, repoName));
-        writer.close();
+        sharedIndexWriter.changed(1);
+        sharedIndexWriter.maybeCommit(false);
     }
 
     /**
      * Deletes a file from the index using the code id which seems to be
-     * the most reliable way of doing it
+     * the most reliable way of doing it. As with deleteByReponame it is committed along with everything else
      * TODO Update the record and set the facets to a value we can ignore
      */
-    public static synchronized void deleteByCodeId(String codeId) throws IOException {
-        Directory dir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION)));
-
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-
-        IndexWriter writer = new IndexWriter(dir, iwc);
+    public static void deleteByCodeId(String codeId) throws IOException {
+        SharedIndexWriter sharedIndexWriter = Singleton.getCodeIndexWriter();
+        IndexWriter writer = sharedIndexWriter.getIndexWriter();
 
         try {
-            QueryParser parser = new QueryParser(Values.CONTENTS, analyzer);
+            QueryParser parser = new QueryParser(Values.CONTENTS, new CodeAnalyzer());
             Query query = parser.parse(Values.CODEID + ":" + QueryParser.escape(codeId));
             writer.deleteDocuments(query);
+            sharedIndexWriter.changed(1);
         }
         catch(Exception ex) {
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in CodeIndexer\n with message: " + ex.getMessage());
         }
         finally {
-            writer.close();
+            sharedIndexWriter.maybeCommit(false);
         }
     }
 
     /**
      * Given a queue of documents to index, index them by popping the queue limited to 1000 items.
-     * This method must be synchronized as we have not added any logic to deal with multiple threads writing to the
-     * index.
-     * TODO investigate how Lucene deals with multiple writes
+     * Uses the shared writer which is thread safe so this no longer needs to be synchronized. Changes are committed
+     * according to the commit policy of the writer, and always if this call drained the queue and commit on idle is set.
      * TODO make the 1000 limit configurable
      */
-    public static synchronized void indexDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
-        // Index all documents and commit at the end for performance gains
-        Directory indexDirectory = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION)));
-        Directory facetDirectory = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.FACETSLOCATION, Values.DEFAULTFACETSLOCATION)));
-
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
-        FacetsConfig facetsConfig;
+    public static void indexDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
+        SharedIndexWriter sharedIndexWriter = Singleton.getCodeIndexWriter();
+        IndexWriter writer = sharedIndexWriter.getIndexWriter();
+        TaxonomyWriter taxonomyWriter = sharedIndexWriter.getTaxonomyWriter();
+
         SearchcodeLib searchcodeLib = new SearchcodeLib();
+        CodeContentAnalyzer codeContentAnalyzer = new CodeContentAnalyzer();
+        TrigramAnalyzer trigramAnalyzer = new TrigramAnalyzer();
 
-        indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        FacetsConfig facetsConfig = new FacetsConfig();
+        facetsConfig.setIndexFieldName(Values.LANGUAGENAME, Values.LANGUAGENAME);
+        facetsConfig.setIndexFieldName(Values.REPONAME, Values.REPONAME);
+        facetsConfig.setIndexFieldName(Values.CODEOWNER, Values.CODEOWNER);
 
-        IndexWriter writer = new IndexWriter(indexDirectory, indexWriterConfig);
-        TaxonomyWriter taxonomyWriter = new DirectoryTaxonomyWriter(facetDirectory);
+        int count = 0;
 
         try {
             CodeIndexDocument codeIndexDocument = codeIndexDocumentQueue.poll();
-            int count = 0;
 
             while (codeIndexDocument != null) {
                 Singleton.getLogger().info("Indexing file " + codeIndexDocument.getRepoLocationRepoNameLocationFilename());
@@ -180,11 +183,6 @@ public class CodeIndexer {
                 doc.add(pathField);
 
                 // Add in facets
-                facetsConfig = new FacetsConfig();
-                facetsConfig.setIndexFieldName(Values.LANGUAGENAME, Values.LANGUAGENAME);
-                facetsConfig.setIndexFieldName(Values.REPONAME, Values.REPONAME);
-                facetsConfig.setIndexFieldName(Values.CODEOWNER, Values.CODEOWNER);
-
                 if (Helpers.isNullEmptyOrWhitespace(codeIndexDocument.getLanguageName()) == false) {
                     doc.add(new SortedSetDocValuesFacetField(Values.LANGUAGENAME, codeIndexDocument.getLanguageName()));
                 }
@@ -198,16 +196,10 @@ public class CodeIndexer {
                 // TODO Is this even required anymore?
                 searchcodeLib.addToSpellingCorrector(codeIndexDocument.getContents()); // Store in spelling corrector
 
-                StringBuilder indexContents = new StringBuilder();
-
-                indexContents.append(codeIndexDocument.getFileName()).append(" ");
-                indexContents.append(codeIndexDocument.getFileLocationFilename()).append(" ");
-                indexContents.append(codeIndexDocument.getFileLocation());
-                indexContents.append(searchcodeLib.splitKeywords(codeIndexDocument.getContents()));
-                indexContents.append(searchcodeLib.codeCleanPipeline(codeIndexDocument.getContents()));
-                indexContents.append(searchcodeLib.findInterestingKeywords(codeIndexDocument.getContents()));
-                indexContents.append(searchcodeLib.findInterestingCharacters(codeIndexDocument.getContents()));
-                String toIndex = indexContents.toString().toLowerCase();
+                // File names are indexed as is, the contents are expanded into every searchable variant as they
+                // are analysed rather than building up copies of the file, see CodeContentAnalyzer
+                String fileNames = (codeIndexDocument.getFileName() + " " + codeIndexDocument.getFileLocationFilename() + " " + codeIndexDocument.getFileLocation()).toLowerCase();
+                String contents = codeIndexDocument.getContents() == null ? Values.EMPTYSTRING : codeIndexDocument.getContents();
 
                 doc.add(new TextField(Values.REPONAME,             codeIndexDocument.getRepoName(), Field.Store.YES));
                 doc.add(new TextField(Values.FILENAME,             codeIndexDocument.getFileName(), Field.Store.YES));
@@ -216,11 +208,28 @@ public class CodeIndexer {
                 doc.add(new TextField(Values.MD5HASH,              codeIndexDocument.getMd5hash(), Field.Store.YES));
                 doc.add(new TextField(Values.LANGUAGENAME,         codeIndexDocument.getLanguageName(), Field.Store.YES));
                 doc.add(new  IntField(Values.CODELINES,            codeIndexDocument.getCodeLines(), Field.Store.YES));
-                doc.add(new TextField(Values.CONTENTS,             toIndex, Field.Store.NO));
+                doc.add(new TextField(Values.CONTENTS,             fileNames, Field.Store.NO));
+                doc.add(new     Field(Values.CONTENTS,             codeContentAnalyzer.tokenStream(Values.CONTENTS, contents), TextField.TYPE_NOT_STORED));
                 doc.add(new TextField(Values.REPOLOCATION,         codeIndexDocument.getRepoRemoteLocation(), Field.Store.YES));
                 doc.add(new TextField(Values.CODEOWNER,            codeIndexDocument.getCodeOwner(), Field.Store.YES));
                 doc.add(new TextField(Values.CODEID,               codeIndexDocument.getHash(), Field.Store.YES));
 
+                // Line offsets let search results read only the lines they need rather than the whole file
+                if (INDEXLINEOFFSETS) {
+                    LineOffsets lineOffsets = codeIndexDocument.getLineOffsets();
+                    if (lineOffsets == null) {
+                        lineOffsets = LineOffsets.build(codeIndexDocument.getRepoLocationRepoNameLocationFilename(), MAXFILELINEDEPTH);
+                    }
+                    if (lineOffsets != null) {
+                        doc.add(new StoredField(Values.LINEOFFSETS, lineOffsets.encode()));
+                    }
+                }
+
+                // Every substring of the contents can be narrowed down to candidates through its trigrams
+                if (INDEXTRIGRAMS && codeIndexDocument.getContents() != null) {
+                    doc.add(new Field(Values.TRIGRAMS, trigramAnalyzer.tokenStream(Values.TRIGRAMS, codeIndexDocument.getContents()), TRIGRAMFIELDTYPE));
+                }
+
                 // Extra metadata in this case when it was last indexed
                 doc.add(new LongField(Values.MODIFIED, new Date().getTime(), Field.Store.YES));
 
@@ -236,43 +245,38 @@ public class CodeIndexer {
             }
         }
         finally {
-            try {
-                writer.close();
-            }
-            finally {
-                taxonomyWriter.close();
-            }
-            Singleton.getLogger().info("Closing writers");
+            sharedIndexWriter.changed(count);
+            sharedIndexWriter.maybeCommit(codeIndexDocumentQueue.isEmpty());
         }
     }
 
     /**
      * Given a queue of documents to index, index them by popping the queue limited to 1000 items.
-     * This method must be synchronized as we have not added any logic to deal with multiple threads writing to the
-     * index.
-     * TODO investigate how Lucene deals with multiple writes
+     * Uses the shared time index writer and its commit policy, see indexDocuments.
      * TODO make the 1000 limit configurable
      * TODO there appears to be something in here causing some serious slowdowns
      */
-    public static synchronized void indexTimeDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
-        // Index all documents and commit at the end for performance gains
-        Directory dir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.TIMEINDEXLOCATION, Values.DEFAULTTIMEINDEXLOCATION)));
-        Directory facetsdir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.TIMEINDEXFACETLOCATION, Values.DEFAULTTIMEINDEXFACETLOCATION)));
-
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        FacetsConfig facetsConfig;
-        SearchcodeLib scl = new SearchcodeLib();
+    public static void indexTimeDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
+        SharedIndexWriter sharedIndexWriter = Singleton.getTimeIndexWriter();
+        IndexWriter writer = sharedIndexWriter.getIndexWriter();
+        TaxonomyWriter taxoWriter = sharedIndexWriter.getTaxonomyWriter();
 
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        SearchcodeLib scl = new SearchcodeLib();
 
-        IndexWriter writer = new IndexWriter(dir, iwc);
-        TaxonomyWriter taxoWriter = new DirectoryTaxonomyWriter(facetsdir);
+        FacetsConfig facetsConfig = new FacetsConfig();
+        facetsConfig.setIndexFieldName(Values.LANGUAGENAME, Values.LANGUAGENAME);
+        facetsConfig.setIndexFieldName(Values.REPONAME, Values.REPONAME);
+        facetsConfig.setIndexFieldName(Values.CODEOWNER, Values.CODEOWNER);
+        facetsConfig.setIndexFieldName(Values.DATEYEARMONTHDAY, Values.DATEYEARMONTHDAY);
+        facetsConfig.setIndexFieldName(Values.DATEYEARMONTH, Values.DATEYEARMONTH);
+        facetsConfig.setIndexFieldName(Values.DATEYEAR, Values.DATEYEAR);
+        facetsConfig.setIndexFieldName(Values.REVISION, Values.REVISION);
+        facetsConfig.setIndexFieldName(Values.DELETED, Values.DELETED);
 
+        int count = 0;
 
         try {
             CodeIndexDocument codeIndexDocument = codeIndexDocumentQueue.poll();
-            int count = 0;
 
             while (codeIndexDocument != null) {
                 Singleton.getLogger().info("Indexing time file " + codeIndexDocument.getRepoLocationRepoNameLocationFilename());
@@ -285,16 +289,6 @@ public class CodeIndexer {
                 doc.add(pathField);
 
                 // Add in facets
-                facetsConfig = new FacetsConfig();
-                facetsConfig.setIndexFieldName(Values.LANGUAGENAME, Values.LANGUAGENAME);
-                facetsConfig.setIndexFieldName(Values.REPONAME, Values.REPONAME);
-                facetsConfig.setIndexFieldName(Values.CODEOWNER, Values.CODEOWNER);
-                facetsConfig.setIndexFieldName(Values.DATEYEARMONTHDAY, Values.DATEYEARMONTHDAY);
-                facetsConfig.setIndexFieldName(Values.DATEYEARMONTH, Values.DATEYEARMONTH);
-                facetsConfig.setIndexFieldName(Values.DATEYEAR, Values.DATEYEAR);
-                facetsConfig.setIndexFieldName(Values.REVISION, Values.REVISION);
-                facetsConfig.setIndexFieldName(Values.DELETED, Values.DELETED);
-
                 if (Helpers.isNullEmptyOrWhitespace(codeIndexDocument.getLanguageName()) == false) {
                     doc.add(new SortedSetDocValuesFacetField(Values.LANGUAGENAME, codeIndexDocument.getLanguageName()));
                 }
@@ -361,9 +355,8 @@ public class CodeIndexer {
             }
         }
         finally {
-            Singleton.getLogger().info("Closing writers");
-            writer.close();
-            taxoWriter.close();
+            sharedIndexWriter.changed(count);
+            sharedIndexWriter.maybeCommit(codeIndexDocumentQueue.isEmpty());
         }
     }
 
@@ -371,7 +364,7 @@ public class CodeIndexer {
      * Possibly better in ultra low memory environments? Reuses the above method by creating a queue with one
      * element and passes it in.
      */
-    public static synchronized void indexDocument(CodeIndexDocument codeIndexDocument) throws IOException {
+    public static void indexDocument(CodeIndexDocument codeIndexDocument) throws IOException {
         Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
         queue.add(codeIndexDocument);
         indexDocuments(queue);
@@ -382,7 +375,7 @@ public class CodeIndexer {
      * Possibly better in ultra low memory environments? Reuses the above method by creating a queue with one
      * element and passes it in.
      */
-    public static synchronized void indexTimeDocument(CodeIndexDocument codeIndexDocument) throws IOException {
+    public static void indexTimeDocument(CodeIndexDocument codeIndexDocument) throws IOException {
         Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<CodeIndexDocument>();
         queue.add(codeIndexDocument);
         indexTimeDocuments(queue);
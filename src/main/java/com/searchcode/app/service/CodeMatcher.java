@@ -16,10 +16,10 @@ import com.searchcode.app.dto.CodeMatchResult;
 import com.searchcode.app.dto.CodeResult;
 import com.searchcode.app.util.Helpers;
 import org.apache.commons.lang3.StringEscapeUtils;
-import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Responsible for formatting the code results so they appear nicely with relevant lines. Changes to anything in
@@ -30,6 +30,7 @@ public class CodeMatcher {
 
     public int MATCHLINES = Integer.parseInt(Values.DEFAULTMATCHLINES);
     public int MAXLINEDEPTH = Integer.parseInt(Values.DEFAULTMAXLINEDEPTH);
+    public boolean MATCHOFFSETS = false; // Return lines as is with match offsets rather than escaped or highlighted
 
     public CodeMatcher()  {}
 
@@ -39,17 +40,24 @@ public class CodeMatcher {
     }
 
     /**
-     * Entry point for matching lines
+     * Entry point for matching lines. Each result is matched concurrently using the hit hydrator as the lines
+     * may still need to be read from disk, the order of the results is kept.
      */
     public List<CodeResult> formatResults(List<CodeResult> codeResult, String matchTerms, boolean highlightLine) {
         List<String> lstMatchTerms = splitTerms(matchTerms);
 
+        List<List<CodeMatchResult>> matched = Singleton.getHitHydrator().hydrate(
+                codeResult,
+                (code) -> matchResults(code.getCode(), lstMatchTerms, highlightLine),
+                (code) -> null);
+
         List<CodeResult> results = new ArrayList<>();
 
-        for(CodeResult code: codeResult) {
-            List<CodeMatchResult> result = matchResults(code.getCode(), lstMatchTerms, highlightLine);
+        for(int i = 0; i < codeResult.size(); i++) {
+            List<CodeMatchResult> result = matched.get(i);
 
             if (result != null) {
+                CodeResult code = codeResult.get(i);
                 code.setMatchingResults(result);
                 results.add(code);
             }
@@ -59,32 +67,65 @@ public class CodeMatcher {
     }
 
     /**
-     * Actually does the matching for a single code result given the match terms
+     * Actually does the matching for a single code result given the match terms. Lines are taken in order of how
+     * many terms they match along with the lines either side of them until there are enough for a snippet.
+     *
+     * Line numbers are made one based as each line is taken, and the lines either side are looked up using the
+     * numbers as they are at that point. Rather than scanning the lines for every lookup the lines are indexed by
+     * number which keeps this linear in the number of matching lines while selecting exactly the same lines.
      */
     public List<CodeMatchResult> matchResults(List<String> code, List<String> matchTerms, boolean highlightLine) {
-        List<CodeMatchResult> resultLines = findMatchingLines(code, matchTerms, highlightLine);
-        List<CodeMatchResult> newResultLines = new ArrayList<>();
+        List<CodeMatchResult> resultLines = this.rankByMatches(findMatchingLines(code, matchTerms, highlightLine));
+        int size = resultLines.size();
+
+        // Lines which have not been taken yet are found through their original line number in rank order
+        int[] original = new int[size];
+        int[] nextSameLine = new int[size];
+        IntIntMap firstUntaken = new IntIntMap(size);
+        for (int i = size - 1; i >= 0; i--) {
+            original[i] = resultLines.get(i).getLineNumber();
+            nextSameLine[i] = firstUntaken.get(original[i]);
+            firstUntaken.put(original[i], i);
+        }
 
-        // get the top matching lines for this result
-        resultLines.sort((p1, p2) -> new Integer(p2.getLineMatches()).compareTo(p1.getLineMatches()));
+        IntIntMap firstTaken = new IntIntMap(size); // First taken line with a given one based line number
+        IntIntMap snippetLineCount = new IntIntMap(size); // How many snippet lines currently have a given number
+        boolean[] inSnippet = new boolean[size];
+        List<CodeMatchResult> newResultLines = new ArrayList<>();
 
         // gets the best snippets based on number of matches
-        for(int i = 0; i < resultLines.size(); i++) {
+        for (int i = 0; i < size; i++) {
+            int lineNumber = original[i] + 1;
             CodeMatchResult match = resultLines.get(i);
-            match.setLineNumber(match.getLineNumber() + 1);
+            match.setLineNumber(lineNumber);
 
-            if (!resultExists(newResultLines, match.getLineNumber())) {
+            firstUntaken.put(original[i], nextSameLine[i]);
+            if (firstTaken.get(lineNumber) == IntIntMap.MISSING) {
+                firstTaken.put(lineNumber, i);
+            }
+            if (inSnippet[i]) {
+                snippetLineCount.add(original[i], -1);
+                snippetLineCount.add(lineNumber, 1);
+            }
+
+            if (snippetLineCount.get(lineNumber) <= 0) {
+                inSnippet[i] = true;
+                snippetLineCount.add(lineNumber, 1);
                 newResultLines.add(match);
             }
 
-            CodeMatchResult resultBefore = getResultByLineNumber(resultLines, match.getLineNumber() - 1);
-            CodeMatchResult resultAfter  = getResultByLineNumber(resultLines, match.getLineNumber() + 1);
+            int before = this.findLine(firstTaken, firstUntaken, lineNumber - 1);
+            int after = this.findLine(firstTaken, firstUntaken, lineNumber + 1);
 
-            if (resultBefore != null && !resultExists(newResultLines, match.getLineNumber() - 1)) {
-                newResultLines.add(resultBefore);
+            if (before != IntIntMap.MISSING && snippetLineCount.get(lineNumber - 1) <= 0) {
+                inSnippet[before] = true;
+                snippetLineCount.add(lineNumber - 1, 1);
+                newResultLines.add(resultLines.get(before));
             }
-            if (resultAfter != null && !resultExists(newResultLines, match.getLineNumber() + 1)) {
-                newResultLines.add(resultAfter);
+            if (after != IntIntMap.MISSING && snippetLineCount.get(lineNumber + 1) <= 0) {
+                inSnippet[after] = true;
+                snippetLineCount.add(lineNumber + 1, 1);
+                newResultLines.add(resultLines.get(after));
             }
 
             if (newResultLines.size() >= MATCHLINES) {
@@ -92,7 +133,7 @@ public class CodeMatcher {
             }
         }
 
-        newResultLines.sort((p1, p2) -> new Integer(p1.getLineNumber()).compareTo(p2.getLineNumber()));
+        newResultLines.sort(Comparator.comparingInt(CodeMatchResult::getLineNumber));
 
         if (!newResultLines.isEmpty()) {
             newResultLines.get(0).addBreak = false;
@@ -105,29 +146,26 @@ public class CodeMatcher {
     /**
      * If changing anything in here be wary of performance issues as it is the slowest method by a long shot.
      * Be especially careful of branch prediction issues which is why this method has been re-written several times
-     * just to avoid those issues even though the result was a LONGER method
-     * TODO wring more performance out of this method where possible
+     * just to avoid those issues even though the result was a LONGER method. Lines are matched using an automaton
+     * built from the terms so each line is scanned once without any copies, see MultiTermMatcher.
      */
     public List<CodeMatchResult> findMatchingLines(List<String> code, List<String> matchTerms, boolean highlightLine) {
-        List<CodeMatchResult> resultLines = new LinkedList<>();
+        List<CodeMatchResult> resultLines = new ArrayList<>();
+        BitSet matchingLines = new BitSet();
+
+        MultiTermMatcher multiTermMatcher = new MultiTermMatcher(matchTerms);
 
         int codesize = code.size();
         int searchThrough = codesize > this.MAXLINEDEPTH ? this.MAXLINEDEPTH : codesize;
         int matching = 0;
 
-        // Go through each line finding matching lines
+        // Go through each line finding matching lines, every term is checked in a single pass over the line
         for(int i = 0; i < searchThrough; i++) {
-            String matchRes = code.get(i).toLowerCase().replaceAll("\\s+", " ");
-            matching = 0;
-
-            for (String matchTerm: matchTerms) {
-                if (matchRes.contains(matchTerm.replace("*", ""))) {
-                    matching++;
-                }
-            }
+            matching = multiTermMatcher.countMatches(code.get(i));
 
             if (matching != 0) {
                 resultLines.add(new CodeMatchResult(code.get(i), true, false, matching, i));
+                matchingLines.set(i);
             }
 
             if (resultLines.size() >= MATCHLINES) {
@@ -136,17 +174,17 @@ public class CodeMatcher {
         }
 
         // Get the adjacent lines
-        List<CodeMatchResult> adajacentLines = new LinkedList<>();
+        List<CodeMatchResult> adajacentLines = new ArrayList<>();
         for(CodeMatchResult cmr: resultLines) {
             int linenumber = cmr.getLineNumber();
             int previouslinenumber = linenumber - 1;
             int nextlinenumber = linenumber + 1;
 
-            if (previouslinenumber >= 0 && !this.resultExists(resultLines, previouslinenumber)) {
+            if (previouslinenumber >= 0 && !matchingLines.get(previouslinenumber)) {
                 adajacentLines.add(new CodeMatchResult(code.get(previouslinenumber), false, false, 0, previouslinenumber));
             }
 
-            if (nextlinenumber < codesize && !this.resultExists(resultLines, nextlinenumber)) {
+            if (nextlinenumber < codesize && !matchingLines.get(nextlinenumber)) {
                 adajacentLines.add(new CodeMatchResult(code.get(nextlinenumber), false, false, 0, nextlinenumber));
             }
         }
@@ -162,11 +200,26 @@ public class CodeMatcher {
             }
         }
 
+        // Clients asking for offsets get the lines untouched and do their own highlighting
+        if (this.MATCHOFFSETS) {
+            LineHighlighter lineHighlighter = new LineHighlighter(matchTerms);
+
+            for(CodeMatchResult cmr: resultLines) {
+                if (cmr.isMatching()) {
+                    cmr.setMatchOffsets(lineHighlighter.getMatchOffsets(cmr.getLine()));
+                }
+            }
+
+            return resultLines;
+        }
+
         // Highlight the lines if required but always escape everything
         if (highlightLine) {
+            LineHighlighter lineHighlighter = new LineHighlighter(matchTerms);
+
             for(CodeMatchResult cmr: resultLines) {
                 if (cmr.isMatching()) {
-                    cmr.setLine( this.highlightLine(cmr.getLine(), matchTerms));
+                    cmr.setLine(lineHighlighter.highlight(cmr.getLine()));
                 } else {
                     cmr.setLine( StringEscapeUtils.escapeHtml4(cmr.getLine()) );
                 }
@@ -180,6 +233,39 @@ public class CodeMatcher {
         return resultLines;
     }
 
+    /**
+     * Finds the lines matching the pattern for literal and regular expression searches returning up to MATCHLINES
+     * of them as is with the offsets of every match. Line numbers are one based the same as matchResults. An empty
+     * list means nothing in the file matched.
+     */
+    public List<CodeMatchResult> grepLines(List<String> code, Pattern pattern) {
+        List<CodeMatchResult> resultLines = new ArrayList<>();
+        Matcher matcher = pattern.matcher(Values.EMPTYSTRING);
+
+        for(int i = 0; i < code.size() && resultLines.size() < MATCHLINES; i++) {
+            String line = code.get(i);
+            matcher.reset(line);
+
+            boolean found = false;
+            List<int[]> offsets = new ArrayList<>();
+
+            while (matcher.find()) {
+                found = true;
+                if (matcher.end() > matcher.start()) {
+                    offsets.add(new int[] { matcher.start(), matcher.end() });
+                }
+            }
+
+            if (found) {
+                CodeMatchResult codeMatchResult = new CodeMatchResult(line, true, false, offsets.size(), i + 1);
+                codeMatchResult.setMatchOffsets(offsets.toArray(new int[0][]));
+                resultLines.add(codeMatchResult);
+            }
+        }
+
+        return resultLines;
+    }
+
     // TODO Investigate issues such as "List<String> test = *p;"
     // which produces string> and <string which is not what
     // we want although they are cleared later so not a huge issue
@@ -233,97 +319,125 @@ public class CodeMatcher {
         // Remove duplicates
         List<String> depdupeTerms = new ArrayList<>(new LinkedHashSet<>(newTerms));
         // Sort largest to smallest to produce largest matching results
-        depdupeTerms.sort((p1, p2) -> new Integer(p2.length()).compareTo(p1.length()));
+        depdupeTerms.sort((p1, p2) -> Integer.compare(p2.length(), p1.length()));
         return depdupeTerms;
     }
 
     /**
      * Given a string and the terms we want to highlight attempts to parse it apart and surround the matching
-     * terms with <strong> tags.
-     * TODO a bug exists here, see test cases for details
+     * terms with <strong> tags. When highlighting many lines for the same terms use a single LineHighlighter.
      */
     public String highlightLine(String line, List<String> matchTerms) {
+        return new LineHighlighter(matchTerms).highlight(line);
+    }
 
-        List<String> terms = matchTerms.stream()
-                .filter(s -> !"AND".equals(s) && !"OR".equals(s) && !"NOT".equals(s))
-                .map(s -> s.toLowerCase())
-                .collect(Collectors.toList());
+    /**
+     * Stable sort of the lines with the most matching terms first. Counts are small so this is a counting sort.
+     */
+    private List<CodeMatchResult> rankByMatches(List<CodeMatchResult> resultLines) {
+        int maxMatches = 0;
+        for (CodeMatchResult cmr : resultLines) {
+            maxMatches = Math.max(maxMatches, cmr.getLineMatches());
+        }
 
-        List<String> tokens = Arrays.asList(line.split(" "));
-        List<String> returnList = new ArrayList<>();
+        int[] starts = new int[maxMatches + 2];
+        for (CodeMatchResult cmr : resultLines) {
+            starts[maxMatches - cmr.getLineMatches() + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
 
-        for(String token: tokens) {
+        CodeMatchResult[] ranked = new CodeMatchResult[resultLines.size()];
+        for (CodeMatchResult cmr : resultLines) {
+            ranked[starts[maxMatches - cmr.getLineMatches()]++] = cmr;
+        }
 
-            String longestTerm = "";
+        return Arrays.asList(ranked);
+    }
 
-            for(String term: terms) {
-                // Find the longest matching
-                if (term.replace(")", "").endsWith("*")) {
-                    if (token.toLowerCase().contains(term.replace(")", "").replace("*", ""))) {
-                        if (term.length() > longestTerm.length()) {
-                            longestTerm = term;
-                        }
-                    }
-                }
-                else {
-                    if (token.toLowerCase().contains(term)) {
-                        if (term.length() > longestTerm.length()) {
-                            longestTerm = term;
-                        }
-                    }
-                }
-            }
+    /**
+     * Returns the index of the first line in rank order which currently has the line number. Taken lines always
+     * come before untaken ones as lines are taken in rank order.
+     */
+    private int findLine(IntIntMap firstTaken, IntIntMap firstUntaken, int lineNumber) {
+        int taken = firstTaken.get(lineNumber);
+        return taken != IntIntMap.MISSING ? taken : firstUntaken.get(lineNumber);
+    }
 
-            if (!"".equals(longestTerm)) {
-                if (longestTerm.replace(")", "").endsWith("*")) {
-                    int loc = token.toLowerCase().indexOf(longestTerm.replace(")", "").replace("*", ""));
+    /**
+     * Minimal open addressing map of int to int so line numbers can be looked up without boxing
+     */
+    private static class IntIntMap {
+        public static final int MISSING = -1;
+
+        private int[] keys;
+        private int[] values;
+        private boolean[] used;
+        private int count = 0;
+
+        IntIntMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2) - 1) << 1;
+            this.keys = new int[capacity];
+            this.values = new int[capacity];
+            this.used = new boolean[capacity];
+        }
 
-                    returnList.add(StringEscapeUtils.escapeHtml4(
-                            token.substring(0, loc)) +
-                            "<strong>" +
-                            StringEscapeUtils.escapeHtml4(token.substring(loc, token.length())) +
-                            "</strong>");
-                }
-                else {
-                    int loc = token.toLowerCase().indexOf(longestTerm);
-
-                    returnList.add(StringEscapeUtils.escapeHtml4(
-                            token.substring(0, loc)) +
-                            "<strong>" +
-                            StringEscapeUtils.escapeHtml4(token.substring(loc, loc + longestTerm.length())) +
-                            "</strong>" +
-                            this.highlightLine(token.substring(loc + longestTerm.length(), token.length()), matchTerms));
-                }
+        public int get(int key) {
+            int slot = this.slot(key);
+            return this.used[slot] ? this.values[slot] : MISSING;
+        }
+
+        public void put(int key, int value) {
+            int slot = this.slot(key);
+
+            if (!this.used[slot]) {
+                this.used[slot] = true;
+                this.keys[slot] = key;
+                this.count++;
             }
-            else {
-                returnList.add(StringEscapeUtils.escapeHtml4(token));
+
+            this.values[slot] = value;
+
+            if (this.count * 2 > this.keys.length) {
+                this.grow();
             }
         }
 
-        return StringUtils.join(returnList, " ");
-    }
+        /**
+         * Adds to the value for the key treating missing as zero
+         */
+        public void add(int key, int value) {
+            int current = this.get(key);
+            this.put(key, (current == MISSING ? 0 : current) + value);
+        }
 
-    /**
-     * Helper to check if result exists in the collection based on line number
-     */
-    private boolean resultExists(List<CodeMatchResult> lst, int value) {
-        for(CodeMatchResult s: lst){
-            if (s.getLineNumber() == value) {
-                return true;
+        private int slot(int key) {
+            int mask = this.keys.length - 1;
+            int slot = (key * 0x9E3779B9) & mask;
+
+            while (this.used[slot] && this.keys[slot] != key) {
+                slot = (slot + 1) & mask;
             }
+
+            return slot;
         }
-        return false;
-    }
 
-    /**
-     * Helper to pull value out of the list based on line number
-     */
-    private CodeMatchResult getResultByLineNumber(List<CodeMatchResult> lst, int value) {
-        for(CodeMatchResult s: lst){
-            if (s.getLineNumber() == value) {
-                return s;
+        private void grow() {
+            int[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            boolean[] oldUsed = this.used;
+
+            this.keys = new int[oldKeys.length * 2];
+            this.values = new int[oldKeys.length * 2];
+            this.used = new boolean[oldKeys.length * 2];
+            this.count = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    this.put(oldKeys[i], oldValues[i]);
+                }
             }
         }
-        return null;
     }
 }
\ No newline at end of file
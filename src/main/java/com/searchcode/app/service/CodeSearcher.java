@@ -19,51 +19,80 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Does all of the queries which happen against the Lucene index, including search queries and working out
- * how many documents have been indexed.
+ * how many documents have been indexed. Searchers are borrowed from the shared index and must always be released.
  */
 public class CodeSearcher implements ICodeSearcher {
 
-    public String INDEXPATH = Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION);
     public String CODEFIELD = Values.CONTENTS;
     public int PAGELIMIT = 20;
+    public int MAXFILELINEDEPTH = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH);
+    public String SNIPPETMODE = Properties.getProperties().getProperty(Values.SNIPPET_MODE, Values.DEFAULT_SNIPPET_MODE);
+    public int GREPMAXCANDIDATES = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.GREP_MAX_CANDIDATES, Values.DEFAULT_GREP_MAX_CANDIDATES), Values.DEFAULT_GREP_MAX_CANDIDATES);
+
+    /**
+     * Every facet dimension which can be counted for a search, used when the caller does not ask for specific ones
+     */
+    public static final List<String> FACETDIMENSIONS = Collections.unmodifiableList(Arrays.asList(Values.LANGUAGENAME, Values.REPONAME, Values.CODEOWNER));
 
     private static final LoggerWrapper LOGGER = Singleton.getLogger();
 
     private StatsService statsService = new StatsService();
+    private SharedIndexWriter sharedIndexWriter;
+
+    public CodeSearcher() {
+        this(Singleton.getCodeIndexWriter());
+    }
+
+    public CodeSearcher(SharedIndexWriter sharedIndexWriter) {
+        this.sharedIndexWriter = sharedIndexWriter;
+    }
 
     /**
      * Returns the total number of documents that are present in the index at this time
      */
     public int getTotalNumberDocumentsIndexed() {
         int numDocs = 0;
-        try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
+        IndexSearcher searcher = null;
 
-            numDocs = reader.numDocs();
-            reader.close();
+        try {
+            searcher = this.sharedIndexWriter.acquireSearcher();
+            numDocs = searcher.getIndexReader().numDocs();
         }
         catch(Exception ex) {
             LOGGER.info(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return numDocs;
     }
@@ -72,32 +101,221 @@ public class CodeSearcher implements ICodeSearcher {
      * Given a query and what page of results we are on return the matching results for that search
      */
     public SearchResult search(String queryString, int page) {
+        return this.search(queryString, page, FACETDIMENSIONS);
+    }
+
+    /**
+     * Given a query and what page of results we are on return the matching results for that search counting only
+     * the facet dimensions asked for. Dimensions not asked for are returned as empty lists.
+     */
+    public SearchResult search(String queryString, int page, List<String> facetDimensions) {
+        return this.search(queryString, new HashMap<>(), page, facetDimensions);
+    }
+
+    /**
+     * Given a query, filters keyed by facet dimension and what page of results we are on return the matching
+     * results for that search. Filters are applied as non scoring clauses rather than being added to the query text.
+     */
+    public SearchResult search(String queryString, Map<String, String[]> filters, int page, List<String> facetDimensions) {
+        return this.search(queryString, filters, page, null, facetDimensions);
+    }
+
+    /**
+     * Returns the page of results following the cursor from a previous search. Only a single page of documents is
+     * collected no matter how deep the cursor is so callers can walk every result. An invalid cursor returns
+     * the first page. A cursor from a reader other than the one searched points at document ids which may now
+     * belong to other documents so the page it was for is collected by offset instead, the same as passing p.
+     * As the reader changes whenever anything is indexed or deleted a walk while indexing pays for offset paging.
+     */
+    public SearchResult searchAfter(String queryString, Map<String, String[]> filters, String cursor, List<String> facetDimensions) {
+        SearchCursor searchCursor = SearchCursor.decode(cursor);
+
+        if (searchCursor == null) {
+            return this.search(queryString, filters, 0, null, facetDimensions);
+        }
+
+        return this.search(queryString, filters, searchCursor.getPage(), searchCursor, facetDimensions);
+    }
+
+    /**
+     * The deepest page which can be asked for without the number of documents to collect overflowing. Anything
+     * deeper is past every hit in any case.
+     */
+    public int getMaxPage() {
+        return Integer.MAX_VALUE / this.PAGELIMIT - 1;
+    }
+
+    /**
+     * Version of the reader which changes whenever documents are added or deleted so a cursor can tell if the
+     * document ids it holds still belong to the same documents. Readers which cannot say return -1.
+     */
+    private long getReaderVersion(IndexReader reader) {
+        return reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1;
+    }
+
+    private SearchResult search(String queryString, Map<String, String[]> filters, int page, SearchCursor searchCursor, List<String> facetDimensions) {
         SearchResult searchResult = new SearchResult();
         statsService.incrementSearchCount();
-
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
+            IndexReader reader = searcher.getIndexReader();
 
             Analyzer analyzer = new CodeAnalyzer();
 
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
-            Query query = parser.parse(queryString);
+            Query query = SearchFilters.addFilters(parser.parse(queryString), filters);
             LOGGER.info("Searching for: " + query.toString(CODEFIELD));
             LOGGER.searchLog(query.toString(CODEFIELD) + " " + page);
 
-            searchResult = this.doPagingSearch(reader, searcher, query, page);
-            reader.close();
+            // Compared against the reader actually being searched so a refresh cannot slip in between
+            ScoreDoc after = null;
+            if (searchCursor != null && searchCursor.getVersion() >= 0 && searchCursor.getVersion() == this.getReaderVersion(reader)) {
+                after = searchCursor.getScoreDoc();
+            }
+
+            searchResult = this.doPagingSearch(reader, searcher, query, page, after, facetDimensions);
         }
         catch(Exception ex) {
             LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return searchResult;
     }
 
+    /**
+     * Walks every hit for the query handing each to the consumer as soon as it is found rather than collecting them
+     * first, so memory use does not grow with the number of hits. Hits are in index order as they are not scored.
+     * The file is only read for each hit if readCode is true and the walk stops as soon as the consumer returns
+     * false. Returns how many hits were handed to the consumer.
+     */
+    public int export(String queryString, Map<String, String[]> filters, boolean readCode, Predicate<CodeResult> consumer) {
+        statsService.incrementSearchCount();
+        IndexSearcher searcher = null;
+        ExportCollector exportCollector = null;
+
+        try {
+            searcher = this.sharedIndexWriter.acquireSearcher();
+
+            QueryParser parser = new QueryParser(CODEFIELD, new CodeAnalyzer());
+            Query query = SearchFilters.addFilters(parser.parse(queryString), filters);
+            LOGGER.info("Exporting for: " + query.toString(CODEFIELD));
+            LOGGER.searchLog(query.toString(CODEFIELD) + " export");
+
+            exportCollector = new ExportCollector(searcher, readCode, consumer);
+            searcher.search(query, exportCollector);
+        }
+        catch(Exception ex) {
+            LOGGER.warning("ERROR - caught a " + ex.getClass() + " in CodeSearcher export\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
+
+        return exportCollector == null ? 0 : exportCollector.getCount();
+    }
+
+    /**
+     * Finds files containing a literal or a match for a regular expression, both case sensitive. Candidates come
+     * from the trigram index, so only files indexed with trigram_index enabled are found, and are checked line by line against the file concurrently using the hit hydrator,
+     * in batches, only until the page is filled. As not every candidate is checked the total is how many matches
+     * were found which is a lower bound unless every candidate was checked. Results are in index order.
+     * Throws PatternSyntaxException for an invalid regular expression.
+     */
+    public SearchResult grep(String search, boolean isRegex, Map<String, String[]> filters, int page) {
+        Pattern pattern = isRegex ? Pattern.compile(search) : Pattern.compile(search, Pattern.LITERAL);
+        Query candidateQuery = isRegex ? TrigramQueryPlanner.planRegex(search) : TrigramQueryPlanner.planLiteral(search);
+        CodeMatcher codeMatcher = new CodeMatcher(Singleton.getData());
+
+        statsService.incrementSearchCount();
+        SearchResult searchResult = new SearchResult();
+        IndexSearcher searcher = null;
+
+        try {
+            searcher = this.sharedIndexWriter.acquireSearcher();
+            IndexSearcher indexSearcher = searcher;
+
+            Query query = SearchFilters.addFilters(candidateQuery, filters);
+            LOGGER.info("Grep for: " + search + " using " + query.toString());
+            LOGGER.searchLog(search + " grep " + page);
+
+            DocIdCollector docIdCollector = new DocIdCollector();
+            searcher.search(query, docIdCollector);
+            int[] candidates = docIdCollector.getDocIds();
+
+            page = Math.min(Math.max(0, page), this.getMaxPage());
+            int skip = this.PAGELIMIT * page;
+            int batchSize = Math.max(this.PAGELIMIT, Singleton.getHitHydrator().getWorkers() * 4);
+            int limit = Math.min(candidates.length, this.GREPMAXCANDIDATES);
+            int checked = 0;
+            int matched = 0;
+            List<CodeResult> codeResults = new ArrayList<>();
+
+            // One more than the page is found so it is known if there is another page
+            while (checked < limit && matched <= skip + this.PAGELIMIT) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = checked; i < Math.min(limit, checked + batchSize); i++) {
+                    batch.add(candidates[i]);
+                }
+                checked += batch.size();
+
+                List<CodeResult> verified = Singleton.getHitHydrator().hydrate(
+                        batch,
+                        (doc) -> this.getGrepResult(indexSearcher, doc, pattern, codeMatcher),
+                        (doc) -> null);
+
+                for (CodeResult codeResult : verified) {
+                    if (codeResult != null) {
+                        if (matched >= skip && matched < skip + this.PAGELIMIT) {
+                            codeResults.add(codeResult);
+                        }
+                        matched++;
+                    }
+                }
+            }
+
+            if (checked < candidates.length && checked == this.GREPMAXCANDIDATES) {
+                LOGGER.info("Grep for: " + search + " stopped after checking " + checked + " of " + candidates.length + " candidates");
+            }
+
+            searchResult = new SearchResult(matched, page, search, codeResults, this.calculatePages(matched, matched / this.PAGELIMIT), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        catch(Exception ex) {
+            LOGGER.warning("ERROR - caught a " + ex.getClass() + " in CodeSearcher grep\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
+
+        return searchResult;
+    }
+
+    /**
+     * Reads the file for a candidate returning it with its matching lines or null if nothing in it matches
+     */
+    private CodeResult getGrepResult(IndexSearcher searcher, int doc, Pattern pattern, CodeMatcher codeMatcher) {
+        CodeResult codeResult = this.getCodeResult(searcher, new ScoreDoc(doc, 0), true);
+
+        if (codeResult == null) {
+            return null;
+        }
+
+        List<CodeMatchResult> matchingLines = codeMatcher.grepLines(codeResult.getCode(), pattern);
+
+        if (matchingLines.isEmpty()) {
+            return null;
+        }
+
+        codeResult.setMatchingResults(matchingLines);
+        codeResult.setCode(null);
+        return codeResult;
+    }
+
     /**
      * Only used as fallback if getByRepoFileName fails for some reason due to what appears to be a lucene index bug
      * this should always work as the path used is sha1 and should be unique for anything the current codebase can
@@ -105,10 +323,10 @@ public class CodeSearcher implements ICodeSearcher {
      */
     public CodeResult getByCodeId(String codeId) {
         CodeResult codeResult = null;
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
@@ -143,12 +361,13 @@ public class CodeSearcher implements ICodeSearcher {
                 codeResult.setCodeOwner(doc.get(Values.CODEOWNER));
                 codeResult.setCodeId(doc.get(Values.CODEID));
             }
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return codeResult;
     }
@@ -160,16 +379,17 @@ public class CodeSearcher implements ICodeSearcher {
         List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
         List<CodeFacetOwner> repoFacetOwners = new ArrayList<>();
         SearchcodeLib searchcodeLib = Singleton.getSearchCodeLib();
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
 
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
             Query query = parser.parse(Values.REPONAME + ":" + repoName);
 
-            TopDocs results = searcher.search(query, Integer.MAX_VALUE);
+            FacetsCollector facetsCollector = new FacetsCollector();
+            TopDocs results = FacetsCollector.search(searcher, query, Integer.MAX_VALUE, facetsCollector);
             ScoreDoc[] hits = results.scoreDocs;
 
             for (int i = 0; i < results.totalHits; i++) {
@@ -181,14 +401,15 @@ public class CodeSearcher implements ICodeSearcher {
             }
 
             totalFiles = results.totalHits;
-            codeFacetLanguages = this.getLanguageFacetResults(searcher, reader, query);
-            repoFacetOwners = this.getOwnerFacetResults(searcher, reader, query);
-
-            reader.close();
+            codeFacetLanguages = this.getLanguageFacetResults(searcher, facetsCollector);
+            repoFacetOwners = this.getOwnerFacetResults(searcher, facetsCollector);
         }
         catch(Exception ex) {
             LOGGER.severe("CodeSearcher getProjectStats caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return new ProjectStats(totalCodeLines, totalFiles, codeFacetLanguages, repoFacetOwners);
     }
@@ -202,10 +423,10 @@ public class CodeSearcher implements ICodeSearcher {
         int REPOPAGELIMIT = 1000;
         List<String> fileLocations = new ArrayList<>(REPOPAGELIMIT);
         int start = REPOPAGELIMIT * page;
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
 
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
@@ -219,79 +440,210 @@ public class CodeSearcher implements ICodeSearcher {
                 Document doc = searcher.doc(hits[i].doc);
                 fileLocations.add(doc.get(Values.PATH));
             }
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.severe("CodeSearcher getRepoDocuments caught a " + ex.getClass() + " on page " + page + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return fileLocations;
     }
 
+    /**
+     * Returns every document still waiting for its owner to be backfilled, without contents, so the work can be
+     * queued again after a restart
+     */
+    public List<CodeIndexDocument> getPendingOwnerDocuments() {
+        List<CodeIndexDocument> codeIndexDocuments = new ArrayList<>();
+        IndexSearcher searcher = null;
+
+        try {
+            searcher = this.sharedIndexWriter.acquireSearcher();
+
+            DocIdCollector collector = new DocIdCollector();
+            searcher.search(new TermQuery(new Term(Values.CODEOWNER, Values.PENDINGCODEOWNER)), collector);
+
+            for (int docId : collector.getDocIds()) {
+                Document doc = searcher.doc(docId);
+
+                // The owner is analysed so an owner with pending somewhere in their name also matches
+                if (!Values.PENDINGCODEOWNER.equals(doc.get(Values.CODEOWNER))) {
+                    continue;
+                }
+
+                codeIndexDocuments.add(new CodeIndexDocument(doc.get(Values.PATH), doc.get(Values.REPONAME), doc.get(Values.FILENAME), doc.get(Values.FILELOCATION), doc.get(Values.FILELOCATIONFILENAME), doc.get(Values.MD5HASH), doc.get(Values.LANGUAGENAME), Helpers.tryParseInt(doc.get(Values.CODELINES), "0"), null, doc.get(Values.REPOLOCATION), doc.get(Values.CODEOWNER)));
+            }
+        }
+        catch (Exception ex) {
+            LOGGER.severe("CodeSearcher getPendingOwnerDocuments caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
+
+        return codeIndexDocuments;
+    }
+
     /**
      * Only really used internally but does the heavy lifting of actually converting the index document on disk to the
      * format used internally including reading the file from disk.
      */
     public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page) throws IOException {
-        TopDocs results = searcher.search(query, 20 * this.PAGELIMIT); // 20 pages worth of documents
+        return this.doPagingSearch(reader, searcher, query, page, FACETDIMENSIONS);
+    }
+
+    /**
+     * Collects the top documents and the hits for every requested facet dimension in a single pass over the index
+     * so that adding facets does not mean running the query again for each of them.
+     */
+    public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page, List<String> facetDimensions) throws IOException {
+        return this.doPagingSearch(reader, searcher, query, page, null, facetDimensions);
+    }
+
+    /**
+     * When after is supplied only the page following it is collected using searchAfter, otherwise every document up
+     * to the end of the requested page is collected. Either way a cursor for the next page is set on the result
+     * if there are more results.
+     */
+    public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page, ScoreDoc after, List<String> facetDimensions) throws IOException {
+        FacetsCollector facetsCollector = null;
+        TopDocs results;
+
+        page = Math.min(Math.max(0, page), this.getMaxPage());
+
+        if (after != null && after.doc >= reader.maxDoc()) {
+            // Cursor cannot be from this reader so collect its page by offset instead
+            after = null;
+        }
+
+        int collect = after == null ? this.PAGELIMIT * (page + 1) : this.PAGELIMIT;
+
+        if (facetDimensions.isEmpty()) {
+            results = after == null ? searcher.search(query, collect) : searcher.searchAfter(after, query, collect);
+        }
+        else {
+            facetsCollector = new FacetsCollector();
+            results = FacetsCollector.searchAfter(searcher, after, query, collect, facetsCollector);
+        }
+
         ScoreDoc[] hits = results.scoreDocs;
 
         int numTotalHits = results.totalHits;
-        int start = this.PAGELIMIT * page;
-        int end = Math.min(numTotalHits, (this.PAGELIMIT * (page + 1)));
+        int start = after == null ? Math.min(this.PAGELIMIT * page, hits.length) : 0;
+        int end = Math.min(hits.length, start + this.PAGELIMIT);
         int noPages = numTotalHits / this.PAGELIMIT;
 
-        if (noPages > 20) {
-            noPages = 19;
+        List<Integer> pages = this.calculatePages(numTotalHits, noPages);
+
+        String cursor = null;
+        if (end > start && this.PAGELIMIT * (page + 1) < numTotalHits) {
+            cursor = SearchCursor.after(this.getReaderVersion(reader), page, hits[end - 1]).encode();
         }
 
-        List<Integer> pages = this.calculatePages(numTotalHits, noPages);
+        // Stored fields and files for each hit are loaded concurrently but come back in rank order
+        List<CodeResult> codeResults = Singleton.getHitHydrator().hydrate(
+                Arrays.asList(hits).subList(start, end),
+                (scoreDoc) -> this.getCodeResult(searcher, scoreDoc, true),
+                (scoreDoc) -> this.getCodeResult(searcher, scoreDoc, false))
+                .stream()
+                .filter(x -> x != null)
+                .collect(Collectors.toList());
 
-        List<CodeResult> codeResults = new ArrayList<>();
+        List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
+        List<CodeFacetRepo> repoFacetLanguages = new ArrayList<>();
+        List<CodeFacetOwner> repoFacetOwner = new ArrayList<>();
 
-        for (int i = start; i < end; i++) {
-            Document doc = searcher.doc(hits[i].doc);
+        if (facetDimensions.contains(Values.LANGUAGENAME)) {
+            codeFacetLanguages = this.getLanguageFacetResults(searcher, facetsCollector);
+        }
 
-            String filepath = doc.get(Values.PATH);
+        if (facetDimensions.contains(Values.REPONAME)) {
+            repoFacetLanguages = this.getRepoFacetResults(searcher, facetsCollector);
+        }
 
-            if (filepath != null) {
-                // This line is occasionally useful for debugging ranking, but not useful enough to have as log info
-                //System.out.println("doc=" + hits[i].doc + " score=" + hits[i].score);
+        if (facetDimensions.contains(Values.CODEOWNER)) {
+            repoFacetOwner = this.getOwnerFacetResults(searcher, facetsCollector);
+        }
 
-                List<String> code = new ArrayList<>();
-                try {
-                    // This should probably be limited by however deep we are meant to look into the file
-                    // or the value we use here whichever is less
-                    code = Helpers.readFileLinesGuessEncoding(filepath, Helpers.tryParseInt(Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH));
-                }
-                catch(Exception ex) {
-                    LOGGER.warning("Indexed file appears to binary or missing: " + filepath);
-                }
+        SearchResult searchResult = new SearchResult(numTotalHits, page, query.toString(), codeResults, pages, codeFacetLanguages, repoFacetLanguages, repoFacetOwner);
+        searchResult.setCursor(cursor);
+
+        return searchResult;
+    }
+
+    /**
+     * Converts a single hit into a result including the lines of the file if readCode is true. Returns null if the
+     * document has no path or its stored fields cannot be read.
+     */
+    public CodeResult getCodeResult(IndexSearcher searcher, ScoreDoc scoreDoc, boolean readCode) {
+        Document doc;
+
+        try {
+            doc = searcher.doc(scoreDoc.doc);
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ERROR - caught a " + ex.getClass() + " in CodeSearcher getCodeResult\n with message: " + ex.getMessage());
+            return null;
+        }
 
-                CodeResult cr = new CodeResult(code, null);
-                cr.setCodePath(doc.get(Values.FILELOCATIONFILENAME));
-                cr.setFileName(doc.get(Values.FILENAME));
-                cr.setLanguageName(doc.get(Values.LANGUAGENAME));
-                cr.setMd5hash(doc.get(Values.MD5HASH));
-                cr.setCodeLines(doc.get(Values.CODELINES));
-                cr.setDocumentId(hits[i].doc);
-                cr.setRepoLocation(doc.get(Values.REPOLOCATION));
-                cr.setRepoName(doc.get(Values.REPONAME));
-                cr.setCodeOwner(doc.get(Values.CODEOWNER));
-                cr.setCodeId(doc.get(Values.CODEID));
-
-                codeResults.add(cr);
-            } else {
-                LOGGER.warning((i + 1) + ". " + "No path for this document");
+        String filepath = doc.get(Values.PATH);
+
+        if (filepath == null) {
+            LOGGER.warning("No path for document " + scoreDoc.doc);
+            return null;
+        }
+
+        // This line is occasionally useful for debugging ranking, but not useful enough to have as log info
+        //System.out.println("doc=" + scoreDoc.doc + " score=" + scoreDoc.score);
+
+        CodeResult cr = new CodeResult(readCode ? this.getCodeLines(doc, filepath) : new ArrayList<>(), null);
+        cr.setCodePath(doc.get(Values.FILELOCATIONFILENAME));
+        cr.setFileName(doc.get(Values.FILENAME));
+        cr.setLanguageName(doc.get(Values.LANGUAGENAME));
+        cr.setMd5hash(doc.get(Values.MD5HASH));
+        cr.setCodeLines(doc.get(Values.CODELINES));
+        cr.setDocumentId(scoreDoc.doc);
+        cr.setRepoLocation(doc.get(Values.REPOLOCATION));
+        cr.setRepoName(doc.get(Values.REPONAME));
+        cr.setCodeOwner(doc.get(Values.CODEOWNER));
+        cr.setCodeId(doc.get(Values.CODEID));
+
+        return cr;
+    }
+
+    /**
+     * Returns the lines of the file for a result. In index snippet mode documents indexed with line offsets get a
+     * list which only reads the lines the matcher asks for, otherwise or if the file has changed since it was
+     * indexed the whole file is read.
+     */
+    public List<String> getCodeLines(Document doc, String filepath) {
+        if (Values.SNIPPET_MODE_INDEX.equals(this.SNIPPETMODE)) {
+            BytesRef bytesRef = doc.getBinaryValue(Values.LINEOFFSETS);
+
+            if (bytesRef != null) {
+                LineOffsets lineOffsets = LineOffsets.decode(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+
+                if (lineOffsets != null) {
+                    List<String> code = lineOffsets.getLines(filepath, this.MAXFILELINEDEPTH);
+
+                    if (code != null) {
+                        return code;
+                    }
+                }
             }
         }
 
-        List<CodeFacetLanguage> codeFacetLanguages = this.getLanguageFacetResults(searcher, reader, query);
-        List<CodeFacetRepo> repoFacetLanguages = this.getRepoFacetResults(searcher, reader, query);
-        List<CodeFacetOwner> repoFacetOwner= this.getOwnerFacetResults(searcher, reader, query);
+        List<String> code = new ArrayList<>();
+        try {
+            code = Helpers.readFileLinesGuessEncoding(filepath, this.MAXFILELINEDEPTH);
+        }
+        catch(Exception ex) {
+            LOGGER.warning("Indexed file appears to binary or missing: " + filepath);
+        }
 
-        return new SearchResult(numTotalHits, page, query.toString(), codeResults, pages, codeFacetLanguages, repoFacetLanguages, repoFacetOwner);
+        return code;
     }
 
     public List<Integer> calculatePages(int numTotalHits, int noPages) {
@@ -311,17 +663,44 @@ public class CodeSearcher implements ICodeSearcher {
     }
 
     /**
-     * Returns the matching language facets for a given query
+     * Returns the matching language facets for the hits gathered by the collector
      */
-    private List<CodeFacetLanguage> getLanguageFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
+    private List<CodeFacetLanguage> getLanguageFacetResults(IndexSearcher searcher, FacetsCollector facetsCollector) {
+        return this.getFacetResults(searcher, facetsCollector, Values.LANGUAGENAME).stream()
+                .map(lv -> new CodeFacetLanguage(lv.label, lv.value.intValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the matching repository facets for the hits gathered by the collector
+     */
+    private List<CodeFacetRepo> getRepoFacetResults(IndexSearcher searcher, FacetsCollector facetsCollector) {
+        return this.getFacetResults(searcher, facetsCollector, Values.REPONAME).stream()
+                .map(lv -> new CodeFacetRepo(lv.label, lv.value.intValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the matching owner facets for the hits gathered by the collector
+     */
+    private List<CodeFacetOwner> getOwnerFacetResults(IndexSearcher searcher, FacetsCollector facetsCollector) {
+        return this.getFacetResults(searcher, facetsCollector, Values.CODEOWNER).stream()
+                .map(lv -> new CodeFacetOwner(lv.label, lv.value.intValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Counts the top 200 values of a facet dimension over hits which have already been collected. Each dimension
+     * is indexed into its own doc values field so the field name and dimension are the same. The facet state is
+     * shared with every other search using the same searcher.
+     */
+    private List<LabelAndValue> getFacetResults(IndexSearcher searcher, FacetsCollector facetsCollector, String dimension) {
+        List<LabelAndValue> labelAndValues = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.LANGUAGENAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.LANGUAGENAME);
+            SortedSetDocValuesReaderState state = this.sharedIndexWriter.getFacetState(searcher, dimension);
+            Facets facets = new SortedSetDocValuesFacetCounts(state, facetsCollector);
+            FacetResult result = facets.getTopChildren(200, dimension);
 
             if (result != null) {
                 int stepThru = result.childCount > 200 ? 200 : result.childCount;
@@ -330,7 +709,7 @@ public class CodeSearcher implements ICodeSearcher {
                     LabelAndValue lv = result.labelValues[i];
 
                     if (lv != null && lv.value != null) {
-                        codeFacetLanguages.add(new CodeFacetLanguage(lv.label, lv.value.intValue()));
+                        labelAndValues.add(lv);
                     }
                 }
             }
@@ -340,72 +719,91 @@ public class CodeSearcher implements ICodeSearcher {
         catch(Exception ex) {
         }
 
-        return codeFacetLanguages;
+        return labelAndValues;
     }
 
     /**
-     * Returns the matching repository facets for a given query
+     * Collects just the document ids of every hit in index order
      */
-    private List<CodeFacetRepo> getRepoFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetRepo> codeFacetRepo = new ArrayList<>();
-
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.REPONAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.REPONAME);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
+    private static class DocIdCollector extends SimpleCollector {
+        private int[] docIds = new int[64];
+        private int count = 0;
+        private int docBase = 0;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            this.docBase = context.docBase;
+        }
 
-                    if (lv != null && lv.value != null) {
-                        codeFacetRepo.add(new CodeFacetRepo(lv.label, lv.value.intValue()));
-                    }
-                }
+        @Override
+        public void collect(int doc) throws IOException {
+            if (this.count == this.docIds.length) {
+                this.docIds = Arrays.copyOf(this.docIds, this.count * 2);
             }
+
+            this.docIds[this.count++] = this.docBase + doc;
         }
-        catch(IOException ex) {
-        }
-        catch(Exception ex) {
+
+        @Override
+        public boolean needsScores() {
+            return false;
         }
 
-        return codeFacetRepo;
+        public int[] getDocIds() {
+            return Arrays.copyOf(this.docIds, this.count);
+        }
     }
 
     /**
-     * Returns the matching owner facets for a given query
+     * Converts each hit into a result and hands it straight to the consumer keeping nothing. Once the consumer
+     * returns false every remaining segment is skipped.
      */
-    private List<CodeFacetOwner> getOwnerFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetOwner> codeFacetRepo = new ArrayList<>();
+    private class ExportCollector extends SimpleCollector {
+        private final IndexSearcher searcher;
+        private final boolean readCode;
+        private final Predicate<CodeResult> consumer;
+        private int docBase = 0;
+        private int count = 0;
+        private boolean stopped = false;
+
+        ExportCollector(IndexSearcher searcher, boolean readCode, Predicate<CodeResult> consumer) {
+            this.searcher = searcher;
+            this.readCode = readCode;
+            this.consumer = consumer;
+        }
 
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.CODEOWNER);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.CODEOWNER);
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            if (this.stopped) {
+                throw new CollectionTerminatedException();
+            }
 
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
+            this.docBase = context.docBase;
+        }
 
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
+        @Override
+        public void collect(int doc) throws IOException {
+            CodeResult codeResult = getCodeResult(this.searcher, new ScoreDoc(this.docBase + doc, 0), this.readCode);
 
-                    if (lv != null && lv.value != null) {
-                        codeFacetRepo.add(new CodeFacetOwner(lv.label, lv.value.intValue()));
-                    }
-                }
+            if (codeResult == null) {
+                return;
+            }
+
+            this.count++;
+
+            if (!this.consumer.test(codeResult)) {
+                this.stopped = true;
+                throw new CollectionTerminatedException();
             }
         }
-        catch(IOException ex) {
-        }
-        catch(Exception ex) {
+
+        @Override
+        public boolean needsScores() {
+            return false;
         }
 
-        return codeFacetRepo;
+        public int getCount() {
+            return this.count;
+        }
     }
 }
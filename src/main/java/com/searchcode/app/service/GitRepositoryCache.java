@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.util.Helpers;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps git repositories open between uses so that blaming a file, fetching a revision or pulling does not open
+ * the repository and load its pack indexes again every time.
+ *
+ * Every acquire must be matched by a release. A repository is closed once nothing holds it and it has been idle
+ * for longer than the idle time, checked whenever a repository is acquired or released. It is closed as soon as it
+ * is released if the idle time is zero or it has been invalidated, which must be done before its directory is
+ * deleted or cloned again.
+ *
+ * The pack windows and delta bases read through the repositories are held by JGit in a cache shared by all of
+ * them. windowCacheConfig sizes it from a memory budget.
+ */
+public class GitRepositoryCache {
+
+    private final long idleMillis;
+    private final Map<String, CacheEntry> cache = new HashMap<>();
+    private final Map<Repository, CacheEntry> open = new IdentityHashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public GitRepositoryCache(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Returns the open repository for the .git directory opening it if required. It must be given back through
+     * release and not closed by the caller.
+     */
+    public synchronized Repository acquire(File gitDir) throws IOException {
+        long now = System.currentTimeMillis();
+        this.evictIdle(now);
+
+        String key = this.getKey(gitDir);
+        CacheEntry entry = this.cache.get(key);
+
+        if (entry != null) {
+            this.hits++;
+        }
+        else {
+            this.misses++;
+            entry = new CacheEntry(key, new FileRepository(gitDir));
+            this.cache.put(key, entry);
+            this.open.put(entry.repository, entry);
+        }
+
+        entry.references++;
+        entry.lastUsed = now;
+        return entry.repository;
+    }
+
+    /**
+     * Gives back a repository from acquire. Anything which did not come from the cache is closed.
+     */
+    public synchronized void release(Repository repository) {
+        if (repository == null) {
+            return;
+        }
+
+        CacheEntry entry = this.open.get(repository);
+        if (entry == null) {
+            Helpers.closeQuietly(repository);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        entry.references = Math.max(0, entry.references - 1);
+        entry.lastUsed = now;
+
+        if (entry.references == 0 && (this.idleMillis <= 0 || this.cache.get(entry.key) != entry)) {
+            this.close(entry);
+        }
+
+        this.evictIdle(now);
+    }
+
+    /**
+     * Stops handing out the repository for the .git directory. It is closed now if nothing holds it, otherwise
+     * when the last holder releases it.
+     */
+    public synchronized void invalidate(File gitDir) {
+        CacheEntry entry = this.cache.remove(this.getKey(gitDir));
+
+        if (entry != null && entry.references == 0) {
+            this.close(entry);
+        }
+    }
+
+    /**
+     * Closes every repository which nothing holds and has been idle for longer than the idle time
+     */
+    public synchronized void evictIdle() {
+        this.evictIdle(System.currentTimeMillis());
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Ratio of acquires which found the repository already open, each of which reused its loaded pack indexes
+     */
+    public synchronized double getHitRatio() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double) this.hits / total;
+    }
+
+    public synchronized int getOpen() {
+        return this.open.size();
+    }
+
+    public synchronized int getInUse() {
+        int inUse = 0;
+        for (CacheEntry entry : this.open.values()) {
+            if (entry.references != 0) {
+                inUse++;
+            }
+        }
+        return inUse;
+    }
+
+    /**
+     * Splits the memory budget in megabytes between the pack windows, which get three quarters, and the delta base
+     * cache. The window size is rounded down to a power of two of at least 4KB as JGit requires.
+     */
+    public static WindowCacheConfig windowCacheConfig(long memoryMegabytes, int windowKilobytes) {
+        int windowSize = Integer.highestOneBit(Math.min(Math.max(4, windowKilobytes), 65536) * WindowCacheConfig.KB);
+        long budget = Math.max(1, memoryMegabytes) * WindowCacheConfig.MB;
+
+        WindowCacheConfig windowCacheConfig = new WindowCacheConfig();
+        windowCacheConfig.setPackedGitWindowSize(windowSize);
+        windowCacheConfig.setPackedGitLimit(Math.max(windowSize, budget / 4 * 3));
+        windowCacheConfig.setDeltaBaseCacheLimit((int) Math.min(Integer.MAX_VALUE, budget / 4));
+
+        return windowCacheConfig;
+    }
+
+    private void evictIdle(long now) {
+        if (this.idleMillis <= 0) {
+            return;
+        }
+
+        List<CacheEntry> idle = new ArrayList<>();
+        for (CacheEntry entry : this.cache.values()) {
+            if (entry.references == 0 && now - entry.lastUsed > this.idleMillis) {
+                idle.add(entry);
+            }
+        }
+
+        for (CacheEntry entry : idle) {
+            this.close(entry);
+            this.evictions++;
+        }
+    }
+
+    private void close(CacheEntry entry) {
+        if (this.cache.get(entry.key) == entry) {
+            this.cache.remove(entry.key);
+        }
+        this.open.remove(entry.repository);
+        Helpers.closeQuietly(entry.repository);
+    }
+
+    private String getKey(File gitDir) {
+        return gitDir.toPath().toAbsolutePath().normalize().toString();
+    }
+
+    private class CacheEntry {
+        private final String key;
+        private final Repository repository;
+        private int references = 0;
+        private long lastUsed = 0;
+
+        private CacheEntry(String key, Repository repository) {
+            this.key = key;
+            this.repository = repository;
+        }
+    }
+}
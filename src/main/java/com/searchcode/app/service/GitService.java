@@ -9,7 +9,6 @@ package com.searchcode.app.service;
 
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
-import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
@@ -28,12 +27,11 @@ public class GitService {
      * file so you MAY end up running into serious memory issues, and should be aware of this
      */
     public String fetchFileRevision(String repoLocation, String revision, String filePath) throws MissingObjectException, IncorrectObjectTypeException, IOException {
-        Repository localRepository = new FileRepository(new File(repoLocation));
-
-        ObjectId id = localRepository.resolve(revision);
+        Repository localRepository = Singleton.getGitRepositoryCache().acquire(new File(repoLocation));
         ObjectReader reader = localRepository.newObjectReader();
 
         try {
+            ObjectId id = localRepository.resolve(revision);
             RevWalk walk = new RevWalk(reader);
             RevCommit commit = walk.parseCommit(id);
             RevTree tree = commit.getTree();
@@ -47,6 +45,7 @@ public class GitService {
             }
         } finally {
             reader.close();
+            Singleton.getGitRepositoryCache().release(localRepository);
         }
     }
 }
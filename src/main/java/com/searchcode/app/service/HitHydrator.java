@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs the per hit work of a search, loading stored fields, reading the file and matching lines, on a bounded pool
+ * of workers so the hits on a page are hydrated concurrently rather than one after another on the request thread.
+ * Results always come back in the order the items were supplied which keeps the ranking intact.
+ *
+ * Each item has a timeout after which the fallback is used for it instead. When the queue is full the work is
+ * run on the calling thread so a busy server slows down rather than failing searches.
+ */
+public class HitHydrator {
+
+    private final ThreadPoolExecutor executor;
+    private final int workers;
+    private final int queueDepth;
+    private final long timeoutMillis;
+
+    private final AtomicLong tasks = new AtomicLong(0);
+    private final AtomicLong timeouts = new AtomicLong(0);
+    private final AtomicLong callerRuns = new AtomicLong(0);
+    private final AtomicLong failures = new AtomicLong(0);
+
+    /**
+     * A worker count of zero or less runs everything on the calling thread
+     */
+    public HitHydrator(int workers, int queueDepth, long timeoutMillis) {
+        this.workers = workers;
+        this.queueDepth = queueDepth;
+        this.timeoutMillis = timeoutMillis;
+
+        if (workers > 0) {
+            this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueDepth)), new HydratorThreadFactory());
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Applies the task to every item concurrently returning the results in the same order as the items. If the task
+     * throws or does not finish within the timeout the fallback is applied to the item on the calling thread.
+     */
+    public <T, R> List<R> hydrate(List<T> items, Function<T, R> task, Function<T, R> fallback) {
+        List<R> results = new ArrayList<>(items.size());
+
+        if (this.executor == null || items.size() <= 1) {
+            for (T item : items) {
+                results.add(this.runOnCaller(item, task, fallback));
+            }
+
+            return results;
+        }
+
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            FutureTask<R> future = new FutureTask<>(() -> task.apply(item));
+
+            try {
+                this.executor.execute(future);
+                this.tasks.incrementAndGet();
+            }
+            catch (RejectedExecutionException ex) {
+                // Queue is full so do the work here which also slows the caller down
+                this.callerRuns.incrementAndGet();
+                future.run();
+            }
+
+            futures.add(future);
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            Future<R> future = futures.get(i);
+
+            try {
+                results.add(future.get(this.timeoutMillis, TimeUnit.MILLISECONDS));
+            }
+            catch (TimeoutException ex) {
+                this.timeouts.incrementAndGet();
+                future.cancel(true);
+                Singleton.getLogger().warning("HitHydrator timed out after " + this.timeoutMillis + "ms hydrating " + items.get(i));
+                results.add(fallback.apply(items.get(i)));
+            }
+            catch (ExecutionException ex) {
+                this.failures.incrementAndGet();
+                Singleton.getLogger().warning("ERROR - caught a " + ex.getCause().getClass() + " in HitHydrator\n with message: " + ex.getCause().getMessage());
+                results.add(fallback.apply(items.get(i)));
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                results.add(fallback.apply(items.get(i)));
+            }
+        }
+
+        return results;
+    }
+
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    public int getActiveCount() {
+        return this.executor == null ? 0 : this.executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return this.executor == null ? 0 : this.executor.getQueue().size();
+    }
+
+    public long getTasks() {
+        return this.tasks.get();
+    }
+
+    public long getTimeouts() {
+        return this.timeouts.get();
+    }
+
+    public long getCallerRuns() {
+        return this.callerRuns.get();
+    }
+
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    private <T, R> R runOnCaller(T item, Function<T, R> task, Function<T, R> fallback) {
+        try {
+            return task.apply(item);
+        }
+        catch (RuntimeException ex) {
+            this.failures.incrementAndGet();
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in HitHydrator\n with message: " + ex.getMessage());
+            return fallback.apply(item);
+        }
+    }
+
+    private static class HydratorThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "searchcode-hydrator-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
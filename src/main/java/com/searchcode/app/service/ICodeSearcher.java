@@ -5,16 +5,23 @@ import com.searchcode.app.dto.SearchResult;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 public interface ICodeSearcher {
     int getTotalNumberDocumentsIndexed();
     SearchResult search(String queryString, int page);
+    SearchResult search(String queryString, int page, List<String> facetDimensions);
+    SearchResult search(String queryString, Map<String, String[]> filters, int page, List<String> facetDimensions);
+    SearchResult searchAfter(String queryString, Map<String, String[]> filters, String cursor, List<String> facetDimensions);
     CodeResult getByCodeId(String codeId);
     List<String> getRepoDocuments(String repoName, int page);
 
     SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page) throws IOException;
+    SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page, List<String> facetDimensions) throws IOException;
+    SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page, ScoreDoc after, List<String> facetDimensions) throws IOException;
     List<Integer> calculatePages(int numTotalHits, int noPages);
 }
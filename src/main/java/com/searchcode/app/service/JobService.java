@@ -274,6 +274,32 @@ public class JobService implements IJobService {
         }
     }
 
+    /**
+     * Starts a background job which backfills the owners of documents indexed with a pending owner
+     */
+    public void startOwnerEnrichmentJob() {
+        try {
+            Scheduler scheduler = Singleton.getScheduler();
+
+            JobDetail job = newJob(OwnerEnrichmentJob.class)
+                    .withIdentity("ownerenrichmentjob")
+                    .build();
+
+            SimpleTrigger trigger = newTrigger()
+                    .withIdentity("ownerenrichmentjob")
+                    .withSchedule(simpleSchedule()
+                                    .withIntervalInSeconds(this.INDEXTIME)
+                                    .repeatForever()
+                    )
+                    .build();
+
+            scheduler.scheduleJob(job, trigger);
+            scheduler.start();
+        } catch (SchedulerException ex) {
+            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+    }
+
     /**
      * Starts all of the above jobs as per their unique requirements
      * TODO fix so this can only run once
@@ -286,6 +312,7 @@ public class JobService implements IJobService {
             startEnqueueJob();
             startDeleteJob();
             startSpellingJob();
+            startOwnerEnrichmentJob();
             startIndexerJob();
         } catch (SchedulerException ex) {
             Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
@@ -346,6 +373,9 @@ public class JobService implements IJobService {
         String repoLocation = Properties.getProperties().getProperty(Values.REPOSITORYLOCATION, Values.DEFAULTREPOSITORYLOCATION);
         String indexLocation = Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION);
 
+        // The shared writers hold the index open so they need to be closed before it can be removed
+        Singleton.closeIndexWriters();
+
         while (attempt < 3) {
             try {
                 attempt++;
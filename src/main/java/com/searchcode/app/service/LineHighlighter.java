@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Surrounds the terms of a query found in a line with <strong> tags escaping everything else as HTML. Every term is
+ * found in a single scan of the line and overlapping or touching spans are merged before anything is written, so a
+ * term found inside or next to another never produces nested or broken tags.
+ *
+ * Terms ending in * (ignoring any closing brackets) highlight from where they are found to the end of the space
+ * separated token they are in. The operators AND OR and NOT are never highlighted.
+ *
+ * Built once per query. Holds a reusable buffer so an instance must not be shared between threads.
+ */
+public class LineHighlighter {
+
+    private static final String STARTTAG = "<strong>";
+    private static final String ENDTAG = "</strong>";
+
+    private final MultiTermMatcher matcher;
+    private final boolean[] wildcard;
+    private final boolean highlightAllTokens;
+
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private final StringBuilderWriter writer = new StringBuilderWriter(this.stringBuilder);
+    private int[] spanEnds = new int[256]; // Furthest span end starting at each offset plus one, zero for none
+    private int[] spanStarts = new int[16]; // Merged spans found in the last line
+    private int[] spanStops = new int[16];
+
+    public LineHighlighter(List<String> matchTerms) {
+        Map<String, Boolean> patterns = new LinkedHashMap<>();
+        boolean allTokens = false;
+
+        for (String term : matchTerms) {
+            if ("AND".equals(term) || "OR".equals(term) || "NOT".equals(term)) {
+                continue;
+            }
+
+            String lowerTerm = term.toLowerCase();
+            String withoutBracket = lowerTerm.replace(")", "");
+            boolean isWildcard = withoutBracket.endsWith("*");
+            String pattern = isWildcard ? withoutBracket.replace("*", "") : lowerTerm;
+
+            if (pattern.isEmpty()) {
+                allTokens |= isWildcard;
+                continue;
+            }
+
+            patterns.merge(pattern, isWildcard, (a, b) -> a || b);
+        }
+
+        List<String> patternList = new ArrayList<>(patterns.keySet());
+        this.matcher = MultiTermMatcher.forPatterns(patternList);
+        this.wildcard = new boolean[patternList.size()];
+        for (int i = 0; i < patternList.size(); i++) {
+            this.wildcard[i] = patterns.get(patternList.get(i));
+        }
+        this.highlightAllTokens = allTokens;
+    }
+
+    /**
+     * Returns the line as escaped HTML with every term highlighted
+     */
+    public String highlight(String line) {
+        int spans = this.findSpans(line);
+
+        this.stringBuilder.setLength(0);
+        int written = 0;
+
+        for (int i = 0; i < spans; i++) {
+            this.escape(line, written, this.spanStarts[i]);
+            this.stringBuilder.append(STARTTAG);
+            this.escape(line, this.spanStarts[i], this.spanStops[i]);
+            this.stringBuilder.append(ENDTAG);
+            written = this.spanStops[i];
+        }
+
+        this.escape(line, written, line.length());
+        return this.stringBuilder.toString();
+    }
+
+    /**
+     * Returns the start and end offset of every highlighted span in the line as pairs, the end being exclusive.
+     * Offsets are in chars of the line as supplied so clients can highlight it themselves.
+     */
+    public int[][] getMatchOffsets(String line) {
+        int spans = this.findSpans(line);
+        int[][] offsets = new int[spans][];
+
+        for (int i = 0; i < spans; i++) {
+            offsets[i] = new int[] { this.spanStarts[i], this.spanStops[i] };
+        }
+
+        return offsets;
+    }
+
+    /**
+     * Finds every span in the line merging any which overlap or touch into spanStarts and spanStops returning
+     * how many there are
+     */
+    private int findSpans(String line) {
+        int length = line.length();
+
+        if (this.spanEnds.length < length + 1) {
+            this.spanEnds = new int[Math.max(length + 1, this.spanEnds.length * 2)];
+        }
+        else {
+            Arrays.fill(this.spanEnds, 0, length + 1, 0);
+        }
+
+        if (this.highlightAllTokens) {
+            for (int start = 0; start < length; start++) {
+                if (line.charAt(start) != ' ' && (start == 0 || line.charAt(start - 1) == ' ')) {
+                    this.addSpan(start, this.tokenEnd(line, start));
+                }
+            }
+        }
+
+        this.matcher.forEachMatch(line, (pattern, end) -> {
+            int start = end - this.matcher.getPatternLength(pattern);
+            this.addSpan(start, this.wildcard[pattern] ? this.tokenEnd(line, start) : end);
+        });
+
+        int spans = 0;
+
+        // Sweep the spans merging any which overlap or touch
+        for (int start = 0; start < length; start++) {
+            if (this.spanEnds[start] == 0) {
+                continue;
+            }
+
+            int end = this.spanEnds[start] - 1;
+            for (int i = start + 1; i <= end && i < length; i++) {
+                if (this.spanEnds[i] - 1 > end) {
+                    end = this.spanEnds[i] - 1;
+                }
+            }
+
+            if (spans == this.spanStarts.length) {
+                this.spanStarts = Arrays.copyOf(this.spanStarts, spans * 2);
+                this.spanStops = Arrays.copyOf(this.spanStops, spans * 2);
+            }
+
+            this.spanStarts[spans] = start;
+            this.spanStops[spans] = end;
+            spans++;
+
+            start = end - 1;
+        }
+
+        return spans;
+    }
+
+    private void addSpan(int start, int end) {
+        if (end > start && end + 1 > this.spanEnds[start]) {
+            this.spanEnds[start] = end + 1;
+        }
+    }
+
+    private int tokenEnd(String line, int start) {
+        int end = line.indexOf(' ', start);
+        return end == -1 ? line.length() : end;
+    }
+
+    /**
+     * Appends the range escaped the same way as StringEscapeUtils.escapeHtml4 without copying it first
+     */
+    private void escape(String line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+
+            switch (c) {
+                case '&':
+                    this.stringBuilder.append("&amp;");
+                    break;
+                case '<':
+                    this.stringBuilder.append("&lt;");
+                    break;
+                case '>':
+                    this.stringBuilder.append("&gt;");
+                    break;
+                case '"':
+                    this.stringBuilder.append("&quot;");
+                    break;
+                default:
+                    if (c < 128) {
+                        this.stringBuilder.append(c);
+                    }
+                    else {
+                        i += this.escapeOther(line, i) - 1;
+                    }
+            }
+        }
+    }
+
+    /**
+     * Non ASCII characters are left to the escapeHtml4 translator which knows the named entities. Its lookups are all
+     * single characters so it never reads past the one asked for. Returns how many chars were consumed.
+     */
+    private int escapeOther(String line, int index) {
+        try {
+            int consumed = StringEscapeUtils.ESCAPE_HTML4.translate(line, index, this.writer);
+
+            if (consumed != 0) {
+                return consumed;
+            }
+        }
+        catch (IOException ex) {
+            // StringBuilderWriter does not throw
+        }
+
+        this.stringBuilder.append(line.charAt(index));
+        return 1;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton over the terms of a query used to count how many terms appear in a line in a single pass
+ * over its characters. Counts are the same as lowercasing the line, collapsing each run of whitespace into a single
+ * space and then checking contains for every term with any * removed, but without allocating for each line.
+ *
+ * Built once per query and immutable afterwards so it can be shared between threads.
+ */
+public class MultiTermMatcher {
+
+    // Only safe to lowercase ASCII one char at a time if the default locale agrees with String.toLowerCase
+    private static final boolean ASCIILOWERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("abcdefghijklmnopqrstuvwxyz");
+
+    private final int[] asciiSymbols = new int[128];
+    private final Map<Character, Integer> otherSymbols = new HashMap<>();
+    private final int symbolCount;
+
+    private final int[] transitions; // Full DFA, state * symbolCount + symbol
+    private final int[][] outputs; // Patterns which end at each state including those reached by failure links
+    private final int[] weights; // How many terms each distinct pattern stands for
+    private final int[] lengths;
+    private final int emptyWeight; // Terms which are empty once * is removed match every line
+
+    public MultiTermMatcher(List<String> matchTerms) {
+        this(toPatterns(matchTerms), countEmpty(matchTerms));
+    }
+
+    /**
+     * Builds a matcher for the patterns exactly as supplied for use with forEachMatch. Patterns should be lowercase
+     * and not empty.
+     */
+    public static MultiTermMatcher forPatterns(Collection<String> patterns) {
+        Map<String, Integer> weighted = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            weighted.merge(pattern, 1, Integer::sum);
+        }
+
+        return new MultiTermMatcher(weighted, 0);
+    }
+
+    private MultiTermMatcher(Map<String, Integer> patterns, int emptyWeight) {
+        this.emptyWeight = emptyWeight;
+        this.weights = new int[patterns.size()];
+        this.lengths = new int[patterns.size()];
+
+        // Symbol zero is every character which does not appear in a pattern
+        int symbols = 1;
+        for (String pattern : patterns.keySet()) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+
+                if (c < 128) {
+                    if (this.asciiSymbols[c] == 0) {
+                        this.asciiSymbols[c] = symbols++;
+                    }
+                }
+                else if (!this.otherSymbols.containsKey(c)) {
+                    this.otherSymbols.put(c, symbols++);
+                }
+            }
+        }
+        this.symbolCount = symbols;
+
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new int[this.symbolCount]);
+        ends.add(new ArrayList<>());
+
+        int patternId = 0;
+        for (Map.Entry<String, Integer> pattern : patterns.entrySet()) {
+            int state = 0;
+
+            for (int i = 0; i < pattern.getKey().length(); i++) {
+                int symbol = this.symbol(pattern.getKey().charAt(i));
+
+                if (trie.get(state)[symbol] == 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(new int[this.symbolCount]);
+                    ends.add(new ArrayList<>());
+                }
+
+                state = trie.get(state)[symbol];
+            }
+
+            ends.get(state).add(patternId);
+            this.weights[patternId] = pattern.getValue();
+            this.lengths[patternId] = pattern.getKey().length();
+            patternId++;
+        }
+
+        // Breadth first fill in failure transitions turning the trie into a DFA
+        int states = trie.size();
+        this.transitions = new int[states * this.symbolCount];
+        this.outputs = new int[states][];
+        int[] fail = new int[states];
+
+        for (int state = 0; state < states; state++) {
+            System.arraycopy(trie.get(state), 0, this.transitions, state * this.symbolCount, this.symbolCount);
+        }
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        this.outputs[0] = new int[0];
+
+        for (int symbol = 0; symbol < this.symbolCount; symbol++) {
+            int next = this.transitions[symbol];
+            if (next != 0) {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            this.outputs[state] = this.merge(ends.get(state), this.outputs[fail[state]]);
+
+            for (int symbol = 0; symbol < this.symbolCount; symbol++) {
+                int next = this.transitions[state * this.symbolCount + symbol];
+
+                if (next != 0) {
+                    fail[next] = this.transitions[fail[state] * this.symbolCount + symbol];
+                    queue.add(next);
+                }
+                else {
+                    this.transitions[state * this.symbolCount + symbol] = this.transitions[fail[state] * this.symbolCount + symbol];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of terms found in the line
+     */
+    public int countMatches(String line) {
+        if (this.weights.length == 0) {
+            return this.emptyWeight;
+        }
+
+        if (!ASCIILOWERCASE || !isAscii(line)) {
+            // Lowercasing outside of ASCII can change the length of the string so leave it to String
+            return this.scan(line.toLowerCase());
+        }
+
+        return this.scan(line);
+    }
+
+    /**
+     * Calls the consumer for every occurrence of every pattern in the line with the pattern, in the order supplied
+     * to forPatterns, and the offset just after where it ends. Unlike countMatches whitespace is left as is and each
+     * char is lowercased on its own so offsets always line up with the line.
+     */
+    public void forEachMatch(CharSequence line, MatchConsumer consumer) {
+        int state = 0;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + 32);
+            }
+            else if (c >= 128) {
+                c = Character.toLowerCase(c);
+            }
+
+            state = this.transitions[state * this.symbolCount + this.symbol(c)];
+
+            for (int pattern : this.outputs[state]) {
+                consumer.accept(pattern, i + 1);
+            }
+        }
+    }
+
+    public int getPatternLength(int pattern) {
+        return this.lengths[pattern];
+    }
+
+    public interface MatchConsumer {
+        void accept(int pattern, int end);
+    }
+
+    private static Map<String, Integer> toPatterns(List<String> matchTerms) {
+        Map<String, Integer> patterns = new LinkedHashMap<>();
+
+        for (String matchTerm : matchTerms) {
+            String pattern = matchTerm.replace("*", "");
+
+            if (!pattern.isEmpty()) {
+                patterns.merge(pattern, 1, Integer::sum);
+            }
+        }
+
+        return patterns;
+    }
+
+    private static int countEmpty(List<String> matchTerms) {
+        int empty = 0;
+
+        for (String matchTerm : matchTerms) {
+            if (matchTerm.replace("*", "").isEmpty()) {
+                empty++;
+            }
+        }
+
+        return empty;
+    }
+
+    private int scan(String line) {
+        boolean overflow = this.weights.length > 64;
+        long seen = 0;
+        boolean[] seenOverflow = overflow ? new boolean[this.weights.length] : null;
+        int found = 0;
+
+        int state = 0;
+        boolean lastWhitespace = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (isWhitespace(c)) {
+                if (lastWhitespace) {
+                    continue;
+                }
+
+                lastWhitespace = true;
+                c = ' ';
+            }
+            else {
+                lastWhitespace = false;
+
+                if (c >= 'A' && c <= 'Z') {
+                    c = (char) (c + 32);
+                }
+            }
+
+            state = this.transitions[state * this.symbolCount + this.symbol(c)];
+
+            for (int pattern : this.outputs[state]) {
+                if (overflow) {
+                    if (!seenOverflow[pattern]) {
+                        seenOverflow[pattern] = true;
+                        found += this.weights[pattern];
+                    }
+                }
+                else if ((seen & (1L << pattern)) == 0) {
+                    seen |= 1L << pattern;
+                    found += this.weights[pattern];
+                }
+            }
+        }
+
+        return found + this.emptyWeight;
+    }
+
+    private int symbol(char c) {
+        if (c < 128) {
+            return this.asciiSymbols[c];
+        }
+
+        Integer symbol = this.otherSymbols.get(c);
+        return symbol == null ? 0 : symbol;
+    }
+
+    private int[] merge(List<Integer> ends, int[] inherited) {
+        int[] merged = Arrays.copyOf(inherited, inherited.length + ends.size());
+
+        for (int i = 0; i < ends.size(); i++) {
+            merged[inherited.length + i] = ends.get(i);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Same characters as \s in a Java regular expression
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAscii(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 128) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.jobs.repository.IndexBaseRepoJob;
+import com.searchcode.app.util.FileContent;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the documents which were indexed with a pending owner so that they are searchable before their owners are
+ * known, and backfills the owners in batches afterwards.
+ *
+ * Working out owners is the slowest part of indexing, so in this mode a new repository can be searched once its
+ * files are read rather than once every file has been blamed. Each batch re-reads its files, works out their owners
+ * through the job which indexed them, and indexes them again with the owner. A file whose contents changed since it
+ * was queued is skipped as the index run which saw the change has queued it again.
+ *
+ * The documents go through the same queue as the first index so they can never be overwritten by the pending
+ * version still waiting in it.
+ */
+public class OwnerEnricher {
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final Map<String, Long> pendingByRepo = new ConcurrentHashMap<>();
+
+    private final AtomicLong queued = new AtomicLong(0);
+    private final AtomicLong enriched = new AtomicLong(0);
+    private final AtomicLong skipped = new AtomicLong(0);
+    private final AtomicLong batches = new AtomicLong(0);
+
+    public void add(Pending pending) {
+        this.pendingByRepo.merge(pending.document.getRepoName(), 1L, Long::sum);
+        this.queue.add(pending);
+        this.queued.incrementAndGet();
+    }
+
+    /**
+     * Works out the owners for up to batchSize pending documents and hands them on to be indexed, returning how
+     * many were enriched
+     */
+    public int enrichBatch(int batchSize) {
+        // Group by the job and repository which queued them so each can work out its owners together
+        Map<String, List<Pending>> groups = new LinkedHashMap<>();
+        Pending pending;
+
+        for (int i = 0; i < batchSize && (pending = this.queue.poll()) != null; i++) {
+            this.pendingByRepo.computeIfPresent(pending.document.getRepoName(), (x, count) -> count <= 1 ? null : count - 1);
+            String key = System.identityHashCode(pending.job) + "/" + pending.document.getRepoName();
+            groups.computeIfAbsent(key, x -> new ArrayList<>()).add(pending);
+        }
+
+        if (groups.isEmpty()) {
+            return 0;
+        }
+
+        this.batches.incrementAndGet();
+        int count = 0;
+
+        for (List<Pending> group : groups.values()) {
+            List<Pending> current = new ArrayList<>();
+            List<FileContent> fileContents = new ArrayList<>();
+
+            for (Pending item : group) {
+                FileContent fileContent = this.read(item);
+                if (fileContent == null) {
+                    this.skipped.incrementAndGet();
+                    continue;
+                }
+                current.add(item);
+                fileContents.add(fileContent);
+            }
+
+            if (current.isEmpty()) {
+                continue;
+            }
+
+            Pending first = current.get(0);
+            List<List<String>> codeLines = new ArrayList<>();
+            List<String> blamePaths = new ArrayList<>();
+            for (int i = 0; i < current.size(); i++) {
+                codeLines.add(fileContents.get(i).getLines());
+                blamePaths.add(current.get(i).blamePath);
+            }
+
+            List<String> codeOwners;
+            try {
+                codeOwners = first.job.getCodeOwners(codeLines, blamePaths, first.document.getRepoName(), first.repoLocations, first.fileRepoLocations, Singleton.getSearchCodeLib());
+            }
+            catch (RuntimeException ex) {
+                Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in OwnerEnricher enrichBatch for " + first.document.getRepoName() + "\n with message: " + ex.getMessage());
+                this.skipped.addAndGet(current.size());
+                continue;
+            }
+
+            for (int i = 0; i < current.size(); i++) {
+                Pending item = current.get(i);
+                CodeIndexDocument document = item.document;
+                List<String> lines = fileContents.get(i).getLines();
+
+                CodeIndexDocument codeIndexDocument = new CodeIndexDocument(document.getRepoLocationRepoNameLocationFilename(), document.getRepoName(), document.getFileName(), document.getFileLocation(), document.getFileLocationFilename(), document.getMd5hash(), document.getLanguageName(), lines.size(), StringUtils.join(lines, " "), document.getRepoRemoteLocation(), codeOwners.get(i));
+                codeIndexDocument.setLineOffsets(fileContents.get(i).getLineOffsets());
+
+                if (item.lowMemory) {
+                    try {
+                        CodeIndexer.indexDocument(codeIndexDocument);
+                    } catch (IOException ex) {
+                        Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in OwnerEnricher enrichBatch for " + document.getRepoLocationRepoNameLocationFilename() + "\n with message: " + ex.getMessage());
+                        this.skipped.incrementAndGet();
+                        continue;
+                    }
+                } else {
+                    Singleton.incrementCodeIndexLinesCount(lines.size());
+                    Singleton.getCodeIndexQueue().add(codeIndexDocument);
+                }
+
+                this.enriched.incrementAndGet();
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Drops everything pending for the repository, such as when it is deleted
+     */
+    public void remove(String repoName) {
+        int before = this.queue.size();
+        this.queue.removeIf(x -> x.document.getRepoName().equals(repoName));
+        this.pendingByRepo.remove(repoName);
+        this.skipped.addAndGet(Math.max(0, before - this.queue.size()));
+    }
+
+    public int getPending() {
+        return this.queue.size();
+    }
+
+    /**
+     * How many documents from the repository are waiting
+     */
+    public long getPending(String repoName) {
+        return this.pendingByRepo.getOrDefault(repoName, 0L);
+    }
+
+    public long getQueued() {
+        return this.queued.get();
+    }
+
+    public long getEnriched() {
+        return this.enriched.get();
+    }
+
+    public long getSkipped() {
+        return this.skipped.get();
+    }
+
+    public long getBatches() {
+        return this.batches.get();
+    }
+
+    /**
+     * Percentage of everything queued which has been dealt with
+     */
+    public double getProgress() {
+        long queued = this.getQueued();
+        return queued == 0 ? 100 : (queued - this.getPending()) * 100.0 / queued;
+    }
+
+    /**
+     * Reads the file again returning null if it cannot be read or is no longer what was indexed
+     */
+    private FileContent read(Pending pending) {
+        try {
+            FileContent fileContent = FileContent.read(pending.document.getRepoLocationRepoNameLocationFilename(), pending.maxLines, Singleton.getPreReadFilter().getReadLimit());
+            if (!fileContent.getMd5Hash().equals(pending.document.getMd5hash())) {
+                return null;
+            }
+            return fileContent;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * A document indexed with a pending owner. Only what is needed to index it again is kept, not its contents.
+     */
+    public static class Pending {
+        private final IndexBaseRepoJob job;
+        private final CodeIndexDocument document;
+        private final String blamePath;
+        private final String repoLocations;
+        private final String fileRepoLocations;
+        private final int maxLines;
+        private final boolean lowMemory;
+
+        public Pending(IndexBaseRepoJob job, CodeIndexDocument codeIndexDocument, String blamePath, String repoLocations, String fileRepoLocations, int maxLines, boolean lowMemory) {
+            this.job = job;
+            this.document = new CodeIndexDocument(codeIndexDocument.getRepoLocationRepoNameLocationFilename(), codeIndexDocument.getRepoName(), codeIndexDocument.getFileName(), codeIndexDocument.getFileLocation(), codeIndexDocument.getFileLocationFilename(), codeIndexDocument.getMd5hash(), codeIndexDocument.getLanguageName(), codeIndexDocument.getCodeLines(), null, codeIndexDocument.getRepoRemoteLocation(), Values.PENDINGCODEOWNER);
+            this.blamePath = blamePath;
+            this.repoLocations = repoLocations;
+            this.fileRepoLocations = fileRepoLocations;
+            this.maxLines = maxLines;
+            this.lowMemory = lowMemory;
+        }
+
+        public CodeIndexDocument getDocument() {
+            return this.document;
+        }
+
+        public String getBlamePath() {
+            return this.blamePath;
+        }
+    }
+}
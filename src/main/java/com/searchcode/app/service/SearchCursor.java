@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last result returned for a search so the next page can be collected with searchAfter which only
+ * needs to hold a single page of documents regardless of how deep into the results the caller is. Passed to callers
+ * as an opaque URL safe string.
+ *
+ * Document ids are only stable for a single reader so the version of the reader the search ran against is carried
+ * along. A cursor is only used to search after while the index is unchanged, once anything has been indexed or
+ * deleted the page it was for is collected by offset instead which costs the same as asking for that page.
+ */
+public class SearchCursor {
+
+    private final long version;
+    private final int page;
+    private final int doc;
+    private final float score;
+
+    public SearchCursor(long version, int page, int doc, float score) {
+        this.version = version;
+        this.page = page;
+        this.doc = doc;
+        this.score = score;
+    }
+
+    /**
+     * Returns the cursor for the next page after the supplied hit
+     */
+    public static SearchCursor after(long version, int page, ScoreDoc scoreDoc) {
+        return new SearchCursor(version, page + 1, scoreDoc.doc, scoreDoc.score);
+    }
+
+    /**
+     * Parses a cursor previously returned by encode returning null if it is missing or not valid
+     */
+    public static SearchCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] split = decoded.split(":");
+
+            if (split.length != 4) {
+                return null;
+            }
+
+            SearchCursor searchCursor = new SearchCursor(Long.parseLong(split[0]), Integer.parseInt(split[1]), Integer.parseInt(split[2]), Float.intBitsToFloat(Integer.parseInt(split[3])));
+
+            if (searchCursor.page < 0 || searchCursor.doc < 0) {
+                return null;
+            }
+
+            return searchCursor;
+        }
+        catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        String cursor = this.version + ":" + this.page + ":" + this.doc + ":" + Float.floatToIntBits(this.score);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ScoreDoc getScoreDoc() {
+        return new ScoreDoc(this.doc, this.score);
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public int getPage() {
+        return this.page;
+    }
+}
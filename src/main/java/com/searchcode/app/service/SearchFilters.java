@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import org.apache.lucene.facet.DrillDownQuery;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns the repository, language, owner and other facet selections into non scoring filter clauses. Rather than
+ * appending text to the query and parsing it again the filters match the drill down terms that FacetsConfig indexes
+ * alongside every facet value, which means values are matched exactly and cannot change the meaning of the query.
+ *
+ * Each dimension becomes its own clause so a search which shares a filter with a previous one can reuse the
+ * per segment bitset from the query cache, which the caching policy here makes sure happens for filter clauses.
+ */
+public class SearchFilters {
+
+    private static final char DRILL_DOWN_DELIMITER = '\u001F'; // Same as FacetsConfig which keeps it package private
+
+    /**
+     * Returns the query with a filter clause added for each dimension that has values. Values within a
+     * dimension are OR'd together and dimensions are AND'd. Keys are facet dimensions EG Values.REPONAME.
+     */
+    public static Query addFilters(Query query, Map<String, String[]> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return query;
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(query, BooleanClause.Occur.MUST);
+        boolean filtered = false;
+
+        // Sorted so the same selection always produces an equal query and so the same cache entry
+        for (Map.Entry<String, String[]> filter : new TreeMap<>(filters).entrySet()) {
+            Query dimensionFilter = getDimensionFilter(filter.getKey(), filter.getValue());
+
+            if (dimensionFilter != null) {
+                builder.add(dimensionFilter, BooleanClause.Occur.FILTER);
+                filtered = true;
+            }
+        }
+
+        return filtered ? builder.build() : query;
+    }
+
+    /**
+     * Returns a query matching any of the values for the dimension or null if there are no values
+     */
+    public static Query getDimensionFilter(String dimension, String[] values) {
+        if (values == null || values.length == 0) {
+            return null;
+        }
+
+        String[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String value : sorted) {
+            builder.add(new TermQuery(DrillDownQuery.term(dimension, dimension, value)), BooleanClause.Occur.SHOULD);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Caching policy which always caches filter clauses on drill down terms and leaves everything else to the
+     * default policy. Drill down terms are the dimension name followed by the facet delimiter and the value.
+     */
+    public static class FilterCachingPolicy implements QueryCachingPolicy {
+        private final QueryCachingPolicy defaultPolicy = new UsageTrackingQueryCachingPolicy();
+
+        @Override
+        public void onUse(Query query) {
+            this.defaultPolicy.onUse(query);
+        }
+
+        @Override
+        public boolean shouldCache(Query query, LeafReaderContext context) throws IOException {
+            if (isFilter(query)) {
+                return true;
+            }
+
+            return this.defaultPolicy.shouldCache(query, context);
+        }
+
+        private boolean isFilter(Query query) {
+            if (query instanceof TermQuery) {
+                Term term = ((TermQuery) query).getTerm();
+                return term.text().startsWith(term.field() + DRILL_DOWN_DELIMITER);
+            }
+
+            if (query instanceof BooleanQuery) {
+                BooleanQuery booleanQuery = (BooleanQuery) query;
+
+                if (booleanQuery.clauses().isEmpty()) {
+                    return false;
+                }
+
+                for (BooleanClause clause : booleanQuery.clauses()) {
+                    if (clause.getOccur() != BooleanClause.Occur.SHOULD || !isFilter(clause.getQuery())) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
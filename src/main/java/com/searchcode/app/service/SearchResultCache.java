@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import com.google.gson.Gson;
+import com.searchcode.app.dto.SearchResult;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of fully formatted search results bounded by an estimate of how many bytes the results take.
+ * Every entry belongs to the index generation it was searched against and the whole cache is dropped as soon
+ * as a lookup or store sees a newer generation, so a commit or refresh invalidates it without any extra work.
+ *
+ * Results returned from the cache are shared and must not be modified by the caller.
+ */
+public class SearchResultCache {
+
+    private final long maxBytes;
+    private final Gson gson = new Gson();
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long generation = -1;
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public SearchResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Builds the key for a search. The query has its whitespace normalised and each filter is sorted as the order
+     * filters are supplied in does not change the result.
+     */
+    public String getKey(String type, String query, int page, String[]... filters) {
+        StringBuilder key = new StringBuilder();
+        key.append(type).append('\u0000').append(page).append('\u0000');
+        key.append(StringUtils.normalizeSpace(query));
+
+        for (String[] filter : filters) {
+            String[] sorted = filter == null ? new String[0] : filter.clone();
+            Arrays.sort(sorted);
+            key.append('\u0000').append(StringUtils.join(sorted, '\u0001'));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Returns the cached result for the key if there is one for the supplied index generation otherwise null
+     */
+    public synchronized SearchResult get(long generation, String key) {
+        if (this.maxBytes <= 0) {
+            return null;
+        }
+
+        this.checkGeneration(generation);
+        CacheEntry entry = this.cache.get(key);
+
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        return entry.searchResult;
+    }
+
+    /**
+     * Stores a result evicting the least recently used results until the cache fits in its byte budget. Results
+     * larger than the whole budget are not stored. The size is worked out before taking the lock as it serialises
+     * the whole result.
+     */
+    public void put(long generation, String key, SearchResult searchResult) {
+        if (this.maxBytes <= 0 || searchResult == null) {
+            return;
+        }
+
+        long size = this.estimateBytes(key, searchResult);
+
+        if (size > this.maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            this.checkGeneration(generation);
+
+            if (generation != this.generation) {
+                return; // Searched against an older reader than the cache has already seen
+            }
+
+            CacheEntry previous = this.cache.put(key, new CacheEntry(searchResult, size));
+
+            if (previous != null) {
+                this.bytes -= previous.bytes;
+            }
+
+            this.bytes += size;
+
+            Iterator<Map.Entry<String, CacheEntry>> iterator = this.cache.entrySet().iterator();
+            while (this.bytes > this.maxBytes && iterator.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = iterator.next();
+                this.bytes -= eldest.getValue().bytes;
+                iterator.remove();
+                this.evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.cache.clear();
+        this.bytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double) this.hits / total;
+    }
+
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return this.invalidations;
+    }
+
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    public synchronized int getSize() {
+        return this.cache.size();
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    private void checkGeneration(long generation) {
+        if (generation > this.generation) {
+            if (!this.cache.isEmpty()) {
+                this.invalidations++;
+            }
+
+            this.clear();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Rough size of the result on the heap based on its serialised length as two bytes per character
+     */
+    private long estimateBytes(String key, SearchResult searchResult) {
+        return (key.length() + this.gson.toJson(searchResult).length()) * 2L;
+    }
+
+    private class CacheEntry {
+        public final SearchResult searchResult;
+        public final long bytes;
+
+        public CacheEntry(SearchResult searchResult, long bytes) {
+            this.searchResult = searchResult;
+            this.bytes = bytes;
+        }
+    }
+}
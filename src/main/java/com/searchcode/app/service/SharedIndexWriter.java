@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.util.CodeAnalyzer;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds a single IndexWriter and DirectoryTaxonomyWriter open for an index location for the life of the process.
+ * Opening a writer per batch means acquiring the write lock, flushing a tiny segment and fsyncing every time, so
+ * instead the writers are shared (both are thread safe) and commits happen according to the commit policy which
+ * is every N documents, every T seconds or whenever the indexer runs out of work.
+ *
+ * Searches are served from near real time readers opened from the same writer through a SearcherManager. Searchers
+ * are reference counted so must always be released, and are refreshed after each commit and by the indexer job
+ * every refresh interval. The generation is incremented each time a refresh opens a new reader so that anything
+ * caching search results can key on it.
+ *
+ * Facet counting needs a SortedSetDocValuesReaderState per dimension which maps every segment's ordinals into global
+ * ones. Building it walks every unique value in every segment so it is built once per searcher and shared by every
+ * search using that searcher. Any dimension which has been asked for is built again when a refresh opens a new reader
+ * so that the cost is paid by the refresh rather than the first search after it.
+ *
+ * Every searcher uses a caching policy which always caches the filter clauses from SearchFilters so repeated
+ * filters become per segment bitsets held in the default query cache.
+ */
+public class SharedIndexWriter {
+
+    private final String indexLocation;
+    private final String facetLocation;
+    private final int commitDocuments;
+    private final long commitMillis;
+    private final boolean commitOnIdle;
+    private final long refreshMillis;
+
+    private IndexWriter indexWriter = null;
+    private DirectoryTaxonomyWriter taxonomyWriter = null;
+    private volatile SearcherManager searcherManager = null;
+
+    private final AtomicInteger uncommittedChanges = new AtomicInteger(0);
+    private final AtomicLong commitCount = new AtomicLong(0);
+    private final AtomicLong flushCount = new AtomicLong(0);
+    private final AtomicLong documentCount = new AtomicLong(0);
+    private final AtomicLong generation = new AtomicLong(0);
+    private final AtomicLong facetStateBuildCount = new AtomicLong(0);
+    private final AtomicLong facetStateBuildMillis = new AtomicLong(0);
+    private volatile long lastFacetStateBuildMillis = 0;
+    private final Set<String> facetDimensions = ConcurrentHashMap.newKeySet();
+    private final QueryCachingPolicy filterCachingPolicy = new SearchFilters.FilterCachingPolicy();
+    private volatile long lastCommit = System.currentTimeMillis();
+    private volatile long lastRefresh = System.currentTimeMillis();
+
+    public SharedIndexWriter(String indexLocation, String facetLocation, int commitDocuments, int commitSeconds, boolean commitOnIdle) {
+        this(indexLocation, facetLocation, commitDocuments, commitSeconds, commitOnIdle, 1);
+    }
+
+    public SharedIndexWriter(String indexLocation, String facetLocation, int commitDocuments, int commitSeconds, boolean commitOnIdle, int refreshSeconds) {
+        this.indexLocation = indexLocation;
+        this.facetLocation = facetLocation;
+        this.commitDocuments = commitDocuments;
+        this.commitMillis = commitSeconds * 1000L;
+        this.commitOnIdle = commitOnIdle;
+        this.refreshMillis = refreshSeconds * 1000L;
+    }
+
+    /**
+     * Returns the shared index writer opening it if this is the first call or if it was previously closed
+     */
+    public synchronized IndexWriter getIndexWriter() throws IOException {
+        if (this.indexWriter == null) {
+            IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new CodeAnalyzer());
+            indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+
+            this.indexWriter = new IndexWriter(FSDirectory.open(Paths.get(this.indexLocation)), indexWriterConfig) {
+                @Override
+                protected void doAfterFlush() throws IOException {
+                    flushCount.incrementAndGet();
+                }
+            };
+            this.lastCommit = System.currentTimeMillis();
+        }
+
+        return this.indexWriter;
+    }
+
+    /**
+     * Returns the shared taxonomy writer opening it if this is the first call or if it was previously closed
+     */
+    public synchronized TaxonomyWriter getTaxonomyWriter() throws IOException {
+        if (this.taxonomyWriter == null) {
+            this.taxonomyWriter = new DirectoryTaxonomyWriter(FSDirectory.open(Paths.get(this.facetLocation)));
+        }
+
+        return this.taxonomyWriter;
+    }
+
+    /**
+     * Returns a warm searcher over the index. Every searcher acquired must be passed to releaseSearcher once
+     * finished with, ideally in a finally block.
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        return this.getSearcherManager().acquire();
+    }
+
+    /**
+     * Releases a searcher obtained through acquireSearcher. Safe to call with null. Decrements the reader directly
+     * rather than through the manager so that searchers acquired before a close can still be released.
+     */
+    public void releaseSearcher(IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
+
+        try {
+            searcher.getIndexReader().decRef();
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " releaseSearcher\n with message: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the facet state for a dimension for the reader behind the searcher. Built on first use and then shared
+     * by every search against the same searcher.
+     */
+    public SortedSetDocValuesReaderState getFacetState(IndexSearcher searcher, String dimension) throws IOException {
+        this.facetDimensions.add(dimension);
+
+        if (searcher instanceof FacetStateSearcher) {
+            return ((FacetStateSearcher) searcher).getFacetState(dimension);
+        }
+
+        return this.buildFacetState(searcher.getIndexReader(), dimension);
+    }
+
+    /**
+     * Refreshes the searchers if the refresh interval has passed so that changes which have not yet been committed
+     * become visible. Does not block if another thread is already refreshing.
+     */
+    public boolean maybeRefresh() throws IOException {
+        if (this.searcherManager == null || System.currentTimeMillis() - this.lastRefresh < this.refreshMillis) {
+            return false;
+        }
+
+        return this.refresh();
+    }
+
+    /**
+     * Refreshes the searchers right now if they have been opened
+     */
+    public boolean refresh() throws IOException {
+        SearcherManager manager = this.searcherManager;
+
+        if (manager == null) {
+            return false;
+        }
+
+        this.lastRefresh = System.currentTimeMillis();
+        return manager.maybeRefresh();
+    }
+
+    /**
+     * Records that documents have been added, updated or deleted so the commit policy can be applied
+     */
+    public void changed(int count) {
+        this.uncommittedChanges.addAndGet(count);
+        this.documentCount.addAndGet(count);
+    }
+
+    /**
+     * Commits if the commit policy says it is time to. Idle should be true when the caller has no more
+     * work queued which allows changes to become visible as soon as the indexer catches up.
+     */
+    public synchronized boolean maybeCommit(boolean idle) throws IOException {
+        int pending = this.uncommittedChanges.get();
+
+        if (pending == 0) {
+            return false;
+        }
+
+        boolean commit = pending >= this.commitDocuments ||
+                         System.currentTimeMillis() - this.lastCommit >= this.commitMillis ||
+                         (idle && this.commitOnIdle);
+
+        if (commit) {
+            this.commit();
+        }
+
+        return commit;
+    }
+
+    /**
+     * Commits the taxonomy then the index so that any facet ordinals the index refers to always exist
+     */
+    public synchronized void commit() throws IOException {
+        if (this.indexWriter == null && this.taxonomyWriter == null) {
+            return;
+        }
+
+        if (this.taxonomyWriter != null) {
+            this.taxonomyWriter.commit();
+        }
+
+        if (this.indexWriter != null) {
+            this.indexWriter.commit();
+        }
+
+        this.uncommittedChanges.set(0);
+        this.lastCommit = System.currentTimeMillis();
+        this.commitCount.incrementAndGet();
+
+        this.refresh();
+    }
+
+    /**
+     * Commits anything outstanding and closes the writers. They will be reopened on next use.
+     */
+    public synchronized void close() {
+        try {
+            this.commit();
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " close commit\n with message: " + ex.getMessage());
+        }
+
+        try {
+            if (this.searcherManager != null) {
+                this.searcherManager.close();
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " close searcher manager\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.searcherManager = null;
+        }
+
+        try {
+            if (this.indexWriter != null) {
+                this.indexWriter.close();
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " close index writer\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.indexWriter = null;
+        }
+
+        try {
+            if (this.taxonomyWriter != null) {
+                this.taxonomyWriter.close();
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " close taxonomy writer\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.taxonomyWriter = null;
+        }
+    }
+
+    private SearcherManager getSearcherManager() throws IOException {
+        SearcherManager manager = this.searcherManager;
+
+        if (manager == null) {
+            synchronized (this) {
+                if (this.searcherManager == null) {
+                    this.searcherManager = new SearcherManager(this.getIndexWriter(), true, new SearcherFactory() {
+                        @Override
+                        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                            FacetStateSearcher searcher = new FacetStateSearcher(reader);
+                            searcher.setQueryCachingPolicy(filterCachingPolicy);
+                            searcher.warm(facetDimensions);
+                            return searcher;
+                        }
+                    });
+                    this.searcherManager.addListener(new ReferenceManager.RefreshListener() {
+                        @Override
+                        public void beforeRefresh() {}
+
+                        @Override
+                        public void afterRefresh(boolean didRefresh) {
+                            if (didRefresh) {
+                                generation.incrementAndGet();
+                            }
+                        }
+                    });
+                    this.generation.incrementAndGet();
+                    this.lastRefresh = System.currentTimeMillis();
+                }
+
+                manager = this.searcherManager;
+            }
+        }
+
+        return manager;
+    }
+
+    private SortedSetDocValuesReaderState buildFacetState(IndexReader reader, String dimension) throws IOException {
+        long start = System.currentTimeMillis();
+        SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, dimension);
+        long took = System.currentTimeMillis() - start;
+
+        this.facetStateBuildCount.incrementAndGet();
+        this.facetStateBuildMillis.addAndGet(took);
+        this.lastFacetStateBuildMillis = took;
+
+        return state;
+    }
+
+    /**
+     * Searcher which holds the facet states for its reader so they live exactly as long as the reader does
+     */
+    private class FacetStateSearcher extends IndexSearcher {
+        private final Map<String, SortedSetDocValuesReaderState> facetStates = new ConcurrentHashMap<>();
+
+        public FacetStateSearcher(IndexReader reader) {
+            super(reader);
+        }
+
+        public SortedSetDocValuesReaderState getFacetState(String dimension) throws IOException {
+            SortedSetDocValuesReaderState state = this.facetStates.get(dimension);
+
+            if (state == null) {
+                synchronized (this) {
+                    state = this.facetStates.get(dimension);
+
+                    if (state == null) {
+                        state = buildFacetState(this.getIndexReader(), dimension);
+                        this.facetStates.put(dimension, state);
+                    }
+                }
+            }
+
+            return state;
+        }
+
+        public void warm(Set<String> dimensions) {
+            for (String dimension : dimensions) {
+                try {
+                    this.getFacetState(dimension);
+                }
+                catch (IOException | IllegalArgumentException ex) {
+                    // Dimension may not be in the index yet such as when every document using it was deleted
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a number which changes every time the searchable view of the index changes
+     */
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    public long getFacetStateBuildCount() {
+        return this.facetStateBuildCount.get();
+    }
+
+    public long getFacetStateBuildMillis() {
+        return this.facetStateBuildMillis.get();
+    }
+
+    public long getLastFacetStateBuildMillis() {
+        return this.lastFacetStateBuildMillis;
+    }
+
+    public String getIndexLocation() {
+        return this.indexLocation;
+    }
+
+    public long getCommitCount() {
+        return this.commitCount.get();
+    }
+
+    public long getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    public long getDocumentCount() {
+        return this.documentCount.get();
+    }
+
+    public int getUncommittedChanges() {
+        return this.uncommittedChanges.get();
+    }
+}
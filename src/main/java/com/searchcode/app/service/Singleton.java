@@ -12,8 +12,10 @@ package com.searchcode.app.service;
 
 import com.searchcode.app.config.IDatabaseConfig;
 import com.searchcode.app.config.SQLiteDatabaseConfig;
+import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Api;
 import com.searchcode.app.dao.Data;
+import com.searchcode.app.dao.OwnerCache;
 import com.searchcode.app.dao.Repo;
 import com.searchcode.app.dto.CodeIndexDocument;
 import com.searchcode.app.model.ApiResult;
@@ -44,6 +46,7 @@ public final class Singleton {
     private static int codeIndexLinesCount = 0; // Used to store how many lines we have ready to index for throttling
 
     private static SearchcodeLib searchcodeLib = null;
+    private static ClassifierRegistry classifierRegistry = null;
     private static AbstractMap<String, String> dataCache = null;
     private static AbstractMap<String, ApiResult> apiCache = null;
     private static AbstractMap<String, RepoResult> repoCache = null;
@@ -58,6 +61,15 @@ public final class Singleton {
     private static StatsService statsService = null;
     private static JobService jobService = null;
     private static IDatabaseConfig databaseConfig = null;
+    private static SharedIndexWriter codeIndexWriter = null;
+    private static SharedIndexWriter timeIndexWriter = null;
+    private static boolean indexWriterShutdownHook = false;
+    private static SearchResultCache searchResultCache = null;
+    private static HitHydrator hitHydrator = null;
+    private static PreReadFilter preReadFilter = null;
+    private static OwnerCache ownerCache = null;
+    private static OwnerEnricher ownerEnricher = null;
+    private static GitRepositoryCache gitRepositoryCache = null;
 
     private static boolean backgroundJobsEnabled = true; // Controls if all background queue jobs should run or not
     private static boolean pauseBackgroundJobs = false; // Controls if all jobs should pause
@@ -185,6 +197,97 @@ public final class Singleton {
         return genericCache;
     }
 
+    /**
+     * Returns the long lived writer for the main code index which also provides the shared searchers
+     */
+    public static synchronized SharedIndexWriter getCodeIndexWriter() {
+        if (codeIndexWriter == null) {
+            codeIndexWriter = createSharedIndexWriter(
+                    Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION),
+                    Properties.getProperties().getProperty(Values.FACETSLOCATION, Values.DEFAULTFACETSLOCATION));
+        }
+
+        return codeIndexWriter;
+    }
+
+    /**
+     * Returns the cache of formatted search results which is invalidated whenever the code index generation changes
+     */
+    public static synchronized SearchResultCache getSearchResultCache() {
+        if (searchResultCache == null) {
+            long maxBytes = Helpers.tryParseLong(Properties.getProperties().getProperty(Values.RESULT_CACHE_BYTES, Values.DEFAULT_RESULT_CACHE_BYTES), Values.DEFAULT_RESULT_CACHE_BYTES);
+            searchResultCache = new SearchResultCache(maxBytes);
+        }
+
+        return searchResultCache;
+    }
+
+    /**
+     * Returns the bounded pool used to hydrate search hits concurrently
+     */
+    public static synchronized HitHydrator getHitHydrator() {
+        if (hitHydrator == null) {
+            int workers = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.HYDRATION_WORKERS, Values.DEFAULT_HYDRATION_WORKERS), Values.DEFAULT_HYDRATION_WORKERS);
+            int queueDepth = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.HYDRATION_QUEUE_DEPTH, Values.DEFAULT_HYDRATION_QUEUE_DEPTH), Values.DEFAULT_HYDRATION_QUEUE_DEPTH);
+            long timeoutMillis = Helpers.tryParseLong(Properties.getProperties().getProperty(Values.HYDRATION_TIMEOUT_MILLIS, Values.DEFAULT_HYDRATION_TIMEOUT_MILLIS), Values.DEFAULT_HYDRATION_TIMEOUT_MILLIS);
+            hitHydrator = new HitHydrator(workers, queueDepth, timeoutMillis);
+        }
+
+        return hitHydrator;
+    }
+
+    /**
+     * Returns the filter used to reject files before the indexer reads them
+     */
+    public static synchronized PreReadFilter getPreReadFilter() {
+        if (preReadFilter == null) {
+            long maxBytes = Helpers.tryParseLong(Properties.getProperties().getProperty(Values.MAX_FILE_BYTES, Values.DEFAULT_MAX_FILE_BYTES), Values.DEFAULT_MAX_FILE_BYTES);
+            int sampleBytes = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.FILE_SAMPLE_BYTES, Values.DEFAULT_FILE_SAMPLE_BYTES), Values.DEFAULT_FILE_SAMPLE_BYTES);
+            preReadFilter = new PreReadFilter(maxBytes, sampleBytes);
+        }
+
+        return preReadFilter;
+    }
+
+    /**
+     * Returns the long lived writer for the time/history index
+     */
+    public static synchronized SharedIndexWriter getTimeIndexWriter() {
+        if (timeIndexWriter == null) {
+            timeIndexWriter = createSharedIndexWriter(
+                    Properties.getProperties().getProperty(Values.TIMEINDEXLOCATION, Values.DEFAULTTIMEINDEXLOCATION),
+                    Properties.getProperties().getProperty(Values.TIMEINDEXFACETLOCATION, Values.DEFAULTTIMEINDEXFACETLOCATION));
+        }
+
+        return timeIndexWriter;
+    }
+
+    /**
+     * Commits and closes any open index writers. Used on shutdown and before the index is removed from disk.
+     */
+    public static synchronized void closeIndexWriters() {
+        if (codeIndexWriter != null) {
+            codeIndexWriter.close();
+        }
+
+        if (timeIndexWriter != null) {
+            timeIndexWriter.close();
+        }
+    }
+
+    private static SharedIndexWriter createSharedIndexWriter(String indexLocation, String facetLocation) {
+        if (!indexWriterShutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Singleton::closeIndexWriters));
+            indexWriterShutdownHook = true;
+        }
+
+        return new SharedIndexWriter(indexLocation, facetLocation,
+                Helpers.tryParseInt(Properties.getProperties().getProperty(Values.INDEX_COMMIT_DOCUMENTS, Values.DEFAULT_INDEX_COMMIT_DOCUMENTS), Values.DEFAULT_INDEX_COMMIT_DOCUMENTS),
+                Helpers.tryParseInt(Properties.getProperties().getProperty(Values.INDEX_COMMIT_SECONDS, Values.DEFAULT_INDEX_COMMIT_SECONDS), Values.DEFAULT_INDEX_COMMIT_SECONDS),
+                Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_COMMIT_IDLE, Values.DEFAULT_INDEX_COMMIT_IDLE)),
+                Helpers.tryParseInt(Properties.getProperties().getProperty(Values.INDEX_REFRESH_SECONDS, Values.DEFAULT_INDEX_REFRESH_SECONDS), Values.DEFAULT_INDEX_REFRESH_SECONDS));
+    }
+
     public static synchronized Scheduler getScheduler() {
 
         if (scheduler == null) {
@@ -215,6 +318,14 @@ public final class Singleton {
         return searchcodeLib;
     }
 
+    public static synchronized ClassifierRegistry getClassifierRegistry() {
+        if (classifierRegistry == null) {
+            classifierRegistry = new ClassifierRegistry();
+        }
+
+        return classifierRegistry;
+    }
+
     public static synchronized TimeSearchRouteService getTimeSearchRouteService() {
         if (timeSearchRouteService == null) {
             timeSearchRouteService = new TimeSearchRouteService();
@@ -274,6 +385,55 @@ public final class Singleton {
         Singleton.data = data;
     }
 
+    public static synchronized OwnerCache getOwnerCache() {
+        if (ownerCache == null) {
+            int maxEntries = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.OWNER_CACHE_MAX_ENTRIES, Values.DEFAULT_OWNER_CACHE_MAX_ENTRIES), Values.DEFAULT_OWNER_CACHE_MAX_ENTRIES);
+            ownerCache = new OwnerCache(Singleton.getDatabaseConfig(), maxEntries);
+        }
+
+        return ownerCache;
+    }
+
+    public static void setOwnerCache(OwnerCache ownerCache) {
+        Singleton.ownerCache = ownerCache;
+    }
+
+    /**
+     * Returns the queue of documents indexed with a pending owner
+     */
+    public static synchronized OwnerEnricher getOwnerEnricher() {
+        if (ownerEnricher == null) {
+            ownerEnricher = new OwnerEnricher();
+        }
+
+        return ownerEnricher;
+    }
+
+    /**
+     * Returns the cache of open git repositories, sizing the JGit pack cache shared by them from the memory
+     * budget the first time. A budget of 0 leaves the JGit defaults.
+     */
+    public static synchronized GitRepositoryCache getGitRepositoryCache() {
+        if (gitRepositoryCache == null) {
+            long memoryMegabytes = Helpers.tryParseLong(Properties.getProperties().getProperty(Values.GIT_CACHE_MEMORY_MB, Values.DEFAULT_GIT_CACHE_MEMORY_MB), Values.DEFAULT_GIT_CACHE_MEMORY_MB);
+            int windowKilobytes = Helpers.tryParseInt(Properties.getProperties().getProperty(Values.GIT_CACHE_WINDOW_KB, Values.DEFAULT_GIT_CACHE_WINDOW_KB), Values.DEFAULT_GIT_CACHE_WINDOW_KB);
+
+            if (memoryMegabytes > 0) {
+                try {
+                    GitRepositoryCache.windowCacheConfig(memoryMegabytes, windowKilobytes).install();
+                }
+                catch (IllegalArgumentException ex) {
+                    Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in Singleton getGitRepositoryCache\n with message: " + ex.getMessage());
+                }
+            }
+
+            long idleSeconds = Helpers.tryParseLong(Properties.getProperties().getProperty(Values.GIT_REPOSITORY_IDLE_SECONDS, Values.DEFAULT_GIT_REPOSITORY_IDLE_SECONDS), Values.DEFAULT_GIT_REPOSITORY_IDLE_SECONDS);
+            gitRepositoryCache = new GitRepositoryCache(idleSeconds * 1000);
+        }
+
+        return gitRepositoryCache;
+    }
+
     public static synchronized Api getApi() {
         if (api == null) {
             api = new Api(Singleton.getDatabaseConfig());
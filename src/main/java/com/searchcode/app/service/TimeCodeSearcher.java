@@ -20,17 +20,14 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -38,7 +35,11 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Does all of the queries which happen against the Lucene index, including search queries and working out
@@ -46,29 +47,37 @@ import java.util.List;
  */
 public class TimeCodeSearcher {
 
-    public String INDEXPATH = Properties.getProperties().getProperty(Values.TIMEINDEXLOCATION, Values.DEFAULTTIMEINDEXLOCATION);
     public String CODEFIELD = Values.CONTENTS;
     public int PAGELIMIT = 20;
 
+    /**
+     * Every facet dimension which can be counted for a search, used when the caller does not ask for specific ones
+     */
+    public static final List<String> FACETDIMENSIONS = Collections.unmodifiableList(Arrays.asList(Values.LANGUAGENAME, Values.REPONAME, Values.CODEOWNER, Values.DATEYEARMONTHDAY, Values.DATEYEARMONTH, Values.DATEYEAR, Values.REVISION, Values.DELETED));
+
     private static final LoggerWrapper LOGGER = Singleton.getLogger();
 
     private StatsService statsService = new StatsService();
     private GitService gitService = new GitService();
+    private SharedIndexWriter sharedIndexWriter = Singleton.getTimeIndexWriter();
 
     /**
      * Returns the total number of documents that are present in the index at this time
      */
     public int getTotalNumberDocumentsIndexed() {
         int numDocs = 0;
-        try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
+        IndexSearcher searcher = null;
 
-            numDocs = reader.numDocs();
-            reader.close();
+        try {
+            searcher = this.sharedIndexWriter.acquireSearcher();
+            numDocs = searcher.getIndexReader().numDocs();
         }
         catch(Exception ex) {
             LOGGER.info(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return numDocs;
     }
@@ -77,26 +86,45 @@ public class TimeCodeSearcher {
      * Given a query and what page of results we are on return the matching results for that search
      */
     public SearchResult search(String queryString, int page) {
+        return this.search(queryString, page, FACETDIMENSIONS);
+    }
+
+    /**
+     * Given a query and what page of results we are on return the matching results for that search counting only
+     * the facet dimensions asked for. Dimensions not asked for are returned as empty lists.
+     */
+    public SearchResult search(String queryString, int page, List<String> facetDimensions) {
+        return this.search(queryString, new HashMap<>(), page, facetDimensions);
+    }
+
+    /**
+     * Given a query, filters keyed by facet dimension and what page of results we are on return the matching
+     * results for that search. Filters are applied as non scoring clauses rather than being added to the query text.
+     */
+    public SearchResult search(String queryString, Map<String, String[]> filters, int page, List<String> facetDimensions) {
         SearchResult searchResult = new SearchResult();
         statsService.incrementSearchCount();
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
+            IndexReader reader = searcher.getIndexReader();
 
             Analyzer analyzer = new CodeAnalyzer();
 
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
-            Query query = parser.parse(queryString);
+            Query query = SearchFilters.addFilters(parser.parse(queryString), filters);
             LOGGER.info("Searching for: " + query.toString(CODEFIELD));
 
-            searchResult = this.doPagingSearch(reader, searcher, query, page);
-            reader.close();
+            searchResult = this.doPagingSearch(reader, searcher, query, page, facetDimensions);
         }
         catch(Exception ex) {
             LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return searchResult;
     }
@@ -112,10 +140,10 @@ public class TimeCodeSearcher {
      */
     public CodeResult getByRepoFileName(String repo, String fileName) {
         CodeResult codeResult = null;
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
@@ -150,13 +178,13 @@ public class TimeCodeSearcher {
                 codeResult.setRepoLocation(doc.get(Values.REPOLOCATION));
                 codeResult.setCodeOwner(doc.get(Values.CODEOWNER));
             }
-
-            reader.close();
-
         }
         catch(Exception ex) {
             LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return codeResult;
     }
@@ -169,10 +197,11 @@ public class TimeCodeSearcher {
      */
     public CodeResult getById(int documentId) {
         CodeResult codeResult = null;
+        IndexSearcher searcher = null;
 
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            Document doc = reader.document(documentId);
+            searcher = this.sharedIndexWriter.acquireSearcher();
+            Document doc = searcher.getIndexReader().document(documentId);
 
             String filepath = doc.get(Values.PATH);
 
@@ -194,21 +223,23 @@ public class TimeCodeSearcher {
             codeResult.setRepoName(doc.get(Values.REPONAME));
             codeResult.setRepoLocation(doc.get(Values.REPOLOCATION));
             codeResult.setCodeOwner(doc.get(Values.CODEOWNER));
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return codeResult;
     }
 
     public List<String> getRepoDocuments(String repoName) {
         List<String> fileLocations = new ArrayList<>();
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher = this.sharedIndexWriter.acquireSearcher();
 
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
@@ -221,22 +252,51 @@ public class TimeCodeSearcher {
                 Document doc = searcher.doc(hits[i].doc);
                 fileLocations.add(doc.get(Values.FILELOCATIONFILENAME));
             }
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
 
         return fileLocations;
     }
 
+    /**
+     * The deepest page which can be asked for without the number of documents to collect overflowing. Anything
+     * deeper is past every hit in any case.
+     */
+    public int getMaxPage() {
+        return Integer.MAX_VALUE / this.PAGELIMIT - 1;
+    }
+
     /**
      * Only really used internally but does the heavy lifting of actually converting the index document on disk to the
      * format used internally including reading the file from disk.
      */
     public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page) throws IOException {
-        TopDocs results = searcher.search(query, 20 * this.PAGELIMIT); // 20 pages worth of documents
+        return this.doPagingSearch(reader, searcher, query, page, FACETDIMENSIONS);
+    }
+
+    /**
+     * Collects the top documents and the hits for every requested facet dimension in a single pass over the index
+     * so that adding facets does not mean running the query again for each of them.
+     */
+    public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page, List<String> facetDimensions) throws IOException {
+        FacetsCollector facetsCollector = null;
+        TopDocs results;
+
+        page = Math.min(Math.max(0, page), this.getMaxPage());
+
+        if (facetDimensions.isEmpty()) {
+            results = searcher.search(query, this.PAGELIMIT * (page + 1));
+        }
+        else {
+            facetsCollector = new FacetsCollector();
+            results = FacetsCollector.search(searcher, query, this.PAGELIMIT * (page + 1), facetsCollector);
+        }
+
         ScoreDoc[] hits = results.scoreDocs;
 
         int numTotalHits = results.totalHits;
@@ -244,10 +304,6 @@ public class TimeCodeSearcher {
         int end = Math.min(numTotalHits, (this.PAGELIMIT * (page + 1)));
         int noPages = numTotalHits / this.PAGELIMIT;
 
-        if (noPages > 20) {
-            noPages = 20;
-        }
-
         List<Integer> pages = new ArrayList<>();
         for(int i=0; i< noPages; i++) {
             pages.add(i);
@@ -296,283 +352,78 @@ public class TimeCodeSearcher {
             }
         }
 
-        List<CodeFacetLanguage> codeFacetLanguages = this.getLanguageFacetResults(searcher, reader, query);
-        List<CodeFacetRepo> repoFacetLanguages = this.getRepoFacetResults(searcher, reader, query);
-        List<CodeFacetOwner> repoFacetOwner= this.getOwnerFacetResults(searcher, reader, query);
-        List<CodeFacetYearMonthDay> repoFacetYearMonthDay = this.getYearMonthDayFacetResults(searcher, reader, query);
-        List<CodeFacetYearMonth> repoFacetYearMonth = this.getYearMonthFacetResults(searcher, reader, query);
-        List<CodeFacetYear> repoFacetYear = this.getYearFacetResults(searcher, reader, query);
-        List<CodeFacetRevision> repoFacetRevision = this.getRevisionFacetResults(searcher, reader, query);
-        List<CodeFacetDeleted> repoFacetDeleted = this.getDeletedFacetResults(searcher, reader, query);
-
-        SearchResult searchResult = new SearchResult(numTotalHits, page, query.toString(), codeResults, pages, codeFacetLanguages, repoFacetLanguages, repoFacetOwner);
-
-        searchResult.setRepoFacetYearMonthDay(repoFacetYearMonthDay);
-        searchResult.setRepoFacetYearMonth(repoFacetYearMonth);
-        searchResult.setRepoFacetYear(repoFacetYear);
-        searchResult.setRepoFacetRevision(repoFacetRevision);
-        searchResult.setRepoFacetDeleted(repoFacetDeleted);
-
-        return searchResult;
-    }
-
-    /**
-     * Returns the matching revision facets for a given query
-     */
-    private List<CodeFacetDeleted> getDeletedFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetDeleted> deletedFacets = new ArrayList<>();
-
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DELETED);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.DELETED);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
+        List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
+        List<CodeFacetRepo> repoFacetLanguages = new ArrayList<>();
+        List<CodeFacetOwner> repoFacetOwner = new ArrayList<>();
+        List<CodeFacetYearMonthDay> repoFacetYearMonthDay = new ArrayList<>();
+        List<CodeFacetYearMonth> repoFacetYearMonth = new ArrayList<>();
+        List<CodeFacetYear> repoFacetYear = new ArrayList<>();
+        List<CodeFacetRevision> repoFacetRevision = new ArrayList<>();
+        List<CodeFacetDeleted> repoFacetDeleted = new ArrayList<>();
 
-                    if (lv != null && lv.value != null) {
-                        deletedFacets.add(new CodeFacetDeleted(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
-        }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        if (facetDimensions.contains(Values.LANGUAGENAME)) {
+            codeFacetLanguages = this.getFacetResults(searcher, facetsCollector, Values.LANGUAGENAME).stream()
+                    .map(lv -> new CodeFacetLanguage(lv.label, lv.value.intValue())).collect(Collectors.toList());
         }
 
-        return deletedFacets;
-    }
-
-    /**
-     * Returns the matching revision facets for a given query
-     */
-    private List<CodeFacetRevision> getRevisionFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetRevision> revisionFacets = new ArrayList<>();
-
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.REVISION);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.REVISION);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
-
-                    if (lv != null && lv.value != null) {
-                        revisionFacets.add(new CodeFacetRevision(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
-        }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        if (facetDimensions.contains(Values.REPONAME)) {
+            repoFacetLanguages = this.getFacetResults(searcher, facetsCollector, Values.REPONAME).stream()
+                    .map(lv -> new CodeFacetRepo(lv.label, lv.value.intValue())).collect(Collectors.toList());
         }
 
-        return revisionFacets;
-    }
-
-    /**
-     * Returns the matching yearmonth facets for a given query
-     */
-    private List<CodeFacetYear> getYearFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetYear> codeFacetYear = new ArrayList<>();
-
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DATEYEAR);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.DATEYEAR);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
-
-                    if (lv != null && lv.value != null) {
-                        codeFacetYear.add(new CodeFacetYear(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
-        }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        if (facetDimensions.contains(Values.CODEOWNER)) {
+            repoFacetOwner = this.getFacetResults(searcher, facetsCollector, Values.CODEOWNER).stream()
+                    .map(lv -> new CodeFacetOwner(lv.label, lv.value.intValue())).collect(Collectors.toList());
         }
 
-        return codeFacetYear;
-    }
-
-    /**
-     * Returns the matching yearmonth facets for a given query
-     */
-    private List<CodeFacetYearMonth> getYearMonthFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetYearMonth> codeFacetYearMonth = new ArrayList<>();
-
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DATEYEARMONTH);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.DATEYEARMONTH);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
-
-                    if (lv != null && lv.value != null) {
-                        codeFacetYearMonth.add(new CodeFacetYearMonth(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
+        if (facetDimensions.contains(Values.DATEYEARMONTHDAY)) {
+            repoFacetYearMonthDay = this.getFacetResults(searcher, facetsCollector, Values.DATEYEARMONTHDAY).stream()
+                    .map(lv -> new CodeFacetYearMonthDay(lv.label, lv.value.intValue())).collect(Collectors.toList());
         }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-
-        return codeFacetYearMonth;
-    }
-
-    /**
-     * Returns the matching yearmonthday facets for a given query
-     */
-    private List<CodeFacetYearMonthDay> getYearMonthDayFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetYearMonthDay> codeFacetYearMonthDay = new ArrayList<>();
 
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DATEYEARMONTHDAY);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.DATEYEARMONTHDAY);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
-
-                    if (lv != null && lv.value != null) {
-                        codeFacetYearMonthDay.add(new CodeFacetYearMonthDay(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
+        if (facetDimensions.contains(Values.DATEYEARMONTH)) {
+            repoFacetYearMonth = this.getFacetResults(searcher, facetsCollector, Values.DATEYEARMONTH).stream()
+                    .map(lv -> new CodeFacetYearMonth(lv.label, lv.value.intValue())).collect(Collectors.toList());
         }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-
-        return codeFacetYearMonthDay;
-    }
 
-    /**
-     * Returns the matching language facets for a given query
-     */
-    private List<CodeFacetLanguage> getLanguageFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
-
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.LANGUAGENAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.LANGUAGENAME);
-
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
-
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
-
-                    if (lv != null && lv.value != null) {
-                        codeFacetLanguages.add(new CodeFacetLanguage(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
+        if (facetDimensions.contains(Values.DATEYEAR)) {
+            repoFacetYear = this.getFacetResults(searcher, facetsCollector, Values.DATEYEAR).stream()
+                    .map(lv -> new CodeFacetYear(lv.label, lv.value.intValue())).collect(Collectors.toList());
         }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-
-        return codeFacetLanguages;
-    }
-
-    /**
-     * Returns the matching repository facets for a given query
-     */
-    private List<CodeFacetRepo> getRepoFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetRepo> codeFacetRepo = new ArrayList<>();
 
-        try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.REPONAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.REPONAME);
+        if (facetDimensions.contains(Values.REVISION)) {
+            repoFacetRevision = this.getFacetResults(searcher, facetsCollector, Values.REVISION).stream()
+                    .map(lv -> new CodeFacetRevision(lv.label, lv.value.intValue())).collect(Collectors.toList());
+        }
 
-            if (result != null) {
-                int stepThru = result.childCount > 200 ? 200 : result.childCount;
+        if (facetDimensions.contains(Values.DELETED)) {
+            repoFacetDeleted = this.getFacetResults(searcher, facetsCollector, Values.DELETED).stream()
+                    .map(lv -> new CodeFacetDeleted(lv.label, lv.value.intValue())).collect(Collectors.toList());
+        }
 
-                for (int i = 0; i < stepThru; i++) {
-                    LabelAndValue lv = result.labelValues[i];
+        SearchResult searchResult = new SearchResult(numTotalHits, page, query.toString(), codeResults, pages, codeFacetLanguages, repoFacetLanguages, repoFacetOwner);
 
-                    if (lv != null && lv.value != null) {
-                        codeFacetRepo.add(new CodeFacetRepo(lv.label, lv.value.intValue()));
-                    }
-                }
-            }
-        }
-        catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
-        catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
-        }
+        searchResult.setRepoFacetYearMonthDay(repoFacetYearMonthDay);
+        searchResult.setRepoFacetYearMonth(repoFacetYearMonth);
+        searchResult.setRepoFacetYear(repoFacetYear);
+        searchResult.setRepoFacetRevision(repoFacetRevision);
+        searchResult.setRepoFacetDeleted(repoFacetDeleted);
 
-        return codeFacetRepo;
+        return searchResult;
     }
 
     /**
-     * Returns the matching owner facets for a given query
+     * Counts the top 200 values of a facet dimension over hits which have already been collected. Each dimension
+     * is indexed into its own doc values field so the field name and dimension are the same. The facet state is
+     * shared with every other search using the same searcher.
      */
-    private List<CodeFacetOwner> getOwnerFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
-        List<CodeFacetOwner> codeFacetRepo = new ArrayList<>();
+    private List<LabelAndValue> getFacetResults(IndexSearcher searcher, FacetsCollector facetsCollector, String dimension) {
+        List<LabelAndValue> labelAndValues = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.CODEOWNER);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
-            Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-            FacetResult result = facets.getTopChildren(200, Values.CODEOWNER);
+            SortedSetDocValuesReaderState state = this.sharedIndexWriter.getFacetState(searcher, dimension);
+            Facets facets = new SortedSetDocValuesFacetCounts(state, facetsCollector);
+            FacetResult result = facets.getTopChildren(200, dimension);
 
             if (result != null) {
                 int stepThru = result.childCount > 200 ? 200 : result.childCount;
@@ -581,18 +432,16 @@ public class TimeCodeSearcher {
                     LabelAndValue lv = result.labelValues[i];
 
                     if (lv != null && lv.value != null) {
-                        codeFacetRepo.add(new CodeFacetOwner(lv.label, lv.value.intValue()));
+                        labelAndValues.add(lv);
                     }
                 }
             }
         }
         catch(IOException ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
         catch(Exception ex) {
-            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
 
-        return codeFacetRepo;
+        return labelAndValues;
     }
 }
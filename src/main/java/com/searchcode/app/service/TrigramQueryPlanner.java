@@ -0,0 +1,552 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.util.TrigramAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns a literal or a regular expression into a query over the trigram field which matches every document that
+ * could contain it. The query only narrows down candidates, they still need to be checked against the content.
+ *
+ * Regular expressions are walked tracking for each part either the exact set of strings it can match, while that
+ * set stays small, or a query which any match must satisfy. Sets are combined through concatenation and
+ * alternation and turned into an AND of trigrams for each string OR'd together once they grow too large or meet
+ * something like .* which could match anything. Anything not understood matches every document so the plan is
+ * never wrong, only less selective.
+ */
+public class TrigramQueryPlanner {
+
+    private static final int MAXEXACT = 64; // Most strings tracked for one part before falling back to trigrams
+    private static final int MAXCLASS = 16; // Largest character class expanded into its characters
+    private static final int MAXTRIGRAMS = 32; // Most trigrams required for a single string
+
+    private final String regex;
+    private int pos = 0;
+    private boolean unsupported = false;
+
+    private TrigramQueryPlanner(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Returns a query matching every document which contains the literal ignoring case
+     */
+    public static Query planLiteral(String literal) {
+        Query query = exactQuery(Collections.singleton(lowerCase(literal)));
+        return query == null ? new MatchAllDocsQuery() : new ConstantScoreQuery(query);
+    }
+
+    /**
+     * Returns a query matching every document which could contain a match for the regular expression. Should only
+     * be called with expressions which compile.
+     */
+    public static Query planRegex(String regex) {
+        TrigramQueryPlanner planner = new TrigramQueryPlanner(regex);
+        Info info = planner.parseAlternation();
+
+        if (planner.unsupported || planner.pos != regex.length()) {
+            return new MatchAllDocsQuery();
+        }
+
+        Query query = info.toQuery();
+        return query == null ? new MatchAllDocsQuery() : new ConstantScoreQuery(query);
+    }
+
+    /**
+     * Returns the distinct trigrams of the string the same way TrigramAnalyzer produces them
+     */
+    public static Set<String> trigrams(String value) {
+        String lower = lowerCase(value);
+        Set<String> trigrams = new LinkedHashSet<>();
+        int[] codePoints = lower.codePoints().toArray();
+
+        for (int i = 0; i + TrigramAnalyzer.GRAMSIZE <= codePoints.length; i++) {
+            trigrams.add(new String(codePoints, i, TrigramAnalyzer.GRAMSIZE));
+        }
+
+        return trigrams;
+    }
+
+    private Info parseAlternation() {
+        Info info = this.parseConcat();
+
+        while (this.pos < this.regex.length() && this.regex.charAt(this.pos) == '|') {
+            this.pos++;
+            info = alternate(info, this.parseConcat());
+        }
+
+        return info;
+    }
+
+    /**
+     * Builds up runs of parts with exact strings. When a run cannot be extended, because the next part could match
+     * anything or there would be too many strings, what the run requires is kept and a new run starts.
+     */
+    private Info parseConcat() {
+        Info run = Info.emptyString();
+        Query required = null;
+
+        while (this.pos < this.regex.length() && this.regex.charAt(this.pos) != '|' && this.regex.charAt(this.pos) != ')') {
+            Info next = this.parseRepeat();
+
+            if (run.exact != null && next.exact != null && run.exact.size() * next.exact.size() <= MAXEXACT) {
+                run = concat(run, next);
+            }
+            else {
+                required = and(required, run.toQuery());
+                run = next;
+            }
+        }
+
+        return required == null ? run : new Info(null, and(required, run.toQuery()));
+    }
+
+    private Info parseRepeat() {
+        Info info = this.parseAtom();
+
+        while (this.pos < this.regex.length()) {
+            char c = this.regex.charAt(this.pos);
+
+            if (c == '*') {
+                this.pos++;
+                info = Info.any();
+            }
+            else if (c == '+') {
+                this.pos++;
+                info = Info.atLeastOnce(info);
+            }
+            else if (c == '?') {
+                this.pos++;
+                info = Info.optional(info);
+            }
+            else if (c == '{') {
+                int close = this.regex.indexOf('}', this.pos);
+                if (close == -1) {
+                    this.unsupported = true;
+                    return Info.any();
+                }
+
+                String[] bounds = this.regex.substring(this.pos + 1, close).split(",", -1);
+                this.pos = close + 1;
+                int min = bounds[0].isEmpty() ? 0 : Integer.parseInt(bounds[0].trim());
+
+                if (min > 0) {
+                    info = Info.atLeastOnce(info);
+                }
+                else if (bounds.length == 2 && "1".equals(bounds[1].trim())) {
+                    info = Info.optional(info);
+                }
+                else {
+                    info = Info.any();
+                }
+            }
+            else {
+                break;
+            }
+
+            // Lazy and possessive quantifiers match the same strings
+            if (this.pos < this.regex.length() && (this.regex.charAt(this.pos) == '?' || this.regex.charAt(this.pos) == '+')) {
+                this.pos++;
+            }
+        }
+
+        return info;
+    }
+
+    private Info parseAtom() {
+        char c = this.regex.charAt(this.pos);
+
+        switch (c) {
+            case '(':
+                return this.parseGroup();
+            case '[':
+                return this.parseClass();
+            case '.':
+                this.pos++;
+                return Info.any();
+            case '^':
+            case '$':
+                this.pos++;
+                return Info.emptyString();
+            case '\\':
+                return this.parseEscape();
+            default:
+                int codePoint = this.regex.codePointAt(this.pos);
+                this.pos += Character.charCount(codePoint);
+                return Info.literal(new String(Character.toChars(codePoint)));
+        }
+    }
+
+    private Info parseGroup() {
+        this.pos++; // (
+        boolean lookaround = false;
+
+        if (this.regex.startsWith("?", this.pos)) {
+            if (this.regex.startsWith("?:", this.pos) || this.regex.startsWith("?>", this.pos)) {
+                this.pos += 2;
+            }
+            else if (this.regex.startsWith("?=", this.pos) || this.regex.startsWith("?!", this.pos)) {
+                this.pos += 2;
+                lookaround = true;
+            }
+            else if (this.regex.startsWith("?<=", this.pos) || this.regex.startsWith("?<!", this.pos)) {
+                this.pos += 3;
+                lookaround = true;
+            }
+            else if (this.regex.startsWith("?<", this.pos)) {
+                this.pos = this.regex.indexOf('>', this.pos) + 1;
+            }
+            else {
+                // Inline flags such as (?i) or (?s:...). Case never matters as trigrams are lowercase but comments
+                // mode changes what every other character means.
+                int end = this.pos + 1;
+                while (end < this.regex.length() && this.regex.charAt(end) != ')' && this.regex.charAt(end) != ':') {
+                    end++;
+                }
+
+                String flags = this.regex.substring(this.pos + 1, end);
+                int minus = flags.indexOf('-');
+                if ((minus == -1 ? flags : flags.substring(0, minus)).contains("x")) {
+                    this.unsupported = true;
+                }
+
+                this.pos = end + 1;
+                if (end < this.regex.length() && this.regex.charAt(end) == ')') {
+                    return Info.emptyString();
+                }
+            }
+        }
+
+        Info info = this.parseAlternation();
+
+        if (this.pos < this.regex.length() && this.regex.charAt(this.pos) == ')') {
+            this.pos++;
+        }
+        else {
+            this.unsupported = true;
+        }
+
+        // Lookarounds match without consuming anything
+        return lookaround ? Info.emptyString() : info;
+    }
+
+    private Info parseClass() {
+        this.pos++; // [
+        Set<String> chars = new LinkedHashSet<>();
+        boolean simple = true;
+        int depth = 1;
+        int previous = -1;
+
+        if (this.pos < this.regex.length() && this.regex.charAt(this.pos) == '^') {
+            simple = false;
+            this.pos++;
+        }
+
+        while (this.pos < this.regex.length() && depth > 0) {
+            char c = this.regex.charAt(this.pos);
+
+            if (c == '[') {
+                simple = false;
+                depth++;
+                this.pos++;
+            }
+            else if (c == ']') {
+                depth--;
+                this.pos++;
+            }
+            else if (c == '&' && this.regex.startsWith("&&", this.pos)) {
+                simple = false;
+                this.pos += 2;
+            }
+            else if (c == '\\') {
+                Info escaped = this.parseEscape();
+                if (escaped.exact != null && escaped.exact.size() == 1 && escaped.exact.iterator().next().codePointCount(0, escaped.exact.iterator().next().length()) == 1) {
+                    previous = escaped.exact.iterator().next().codePointAt(0);
+                    chars.add(lowerCase(escaped.exact.iterator().next()));
+                }
+                else {
+                    simple = false;
+                    previous = -1;
+                }
+            }
+            else if (c == '-' && previous != -1 && this.pos + 1 < this.regex.length() && this.regex.charAt(this.pos + 1) != ']') {
+                this.pos++;
+                int end;
+                if (this.regex.charAt(this.pos) == '\\') {
+                    Info escaped = this.parseEscape();
+                    if (escaped.exact == null || escaped.exact.size() != 1 || escaped.exact.iterator().next().isEmpty()) {
+                        simple = false;
+                        continue;
+                    }
+                    end = escaped.exact.iterator().next().codePointAt(0);
+                }
+                else {
+                    end = this.regex.codePointAt(this.pos);
+                    this.pos += Character.charCount(end);
+                }
+
+                if (end - previous > MAXCLASS) {
+                    simple = false;
+                }
+                else {
+                    for (int codePoint = previous + 1; codePoint <= end; codePoint++) {
+                        chars.add(lowerCase(new String(Character.toChars(codePoint))));
+                    }
+                }
+                previous = -1;
+            }
+            else {
+                int codePoint = this.regex.codePointAt(this.pos);
+                this.pos += Character.charCount(codePoint);
+                chars.add(lowerCase(new String(Character.toChars(codePoint))));
+                previous = codePoint;
+            }
+        }
+
+        if (!simple || chars.isEmpty() || chars.size() > MAXCLASS) {
+            return Info.any();
+        }
+
+        return new Info(chars, null);
+    }
+
+    private Info parseEscape() {
+        this.pos++; // backslash
+
+        if (this.pos >= this.regex.length()) {
+            this.unsupported = true;
+            return Info.any();
+        }
+
+        char c = this.regex.charAt(this.pos);
+        this.pos++;
+
+        switch (c) {
+            case 'd': case 'D': case 'w': case 'W': case 's': case 'S':
+            case 'h': case 'H': case 'v': case 'V': case 'R': case 'X':
+                return Info.any();
+            case 'p': case 'P':
+                if (this.pos < this.regex.length() && this.regex.charAt(this.pos) == '{') {
+                    this.pos = this.regex.indexOf('}', this.pos) + 1;
+                }
+                else {
+                    this.pos++;
+                }
+                return Info.any();
+            case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+                return Info.emptyString();
+            case 'Q':
+                int end = this.regex.indexOf("\\E", this.pos);
+                String quoted = this.regex.substring(this.pos, end == -1 ? this.regex.length() : end);
+                this.pos = end == -1 ? this.regex.length() : end + 2;
+                return Info.literal(quoted);
+            case 't':
+                return Info.literal("\t");
+            case 'n':
+                return Info.literal("\n");
+            case 'r':
+                return Info.literal("\r");
+            case 'f':
+                return Info.literal("\f");
+            case 'a':
+                return Info.literal("\u0007");
+            case 'e':
+                return Info.literal("\u001B");
+            case 'x':
+                if (this.pos < this.regex.length() && this.regex.charAt(this.pos) == '{') {
+                    int close = this.regex.indexOf('}', this.pos);
+                    int codePoint = Integer.parseInt(this.regex.substring(this.pos + 1, close), 16);
+                    this.pos = close + 1;
+                    return Info.literal(new String(Character.toChars(codePoint)));
+                }
+                this.pos += 2;
+                return Info.literal(String.valueOf((char) Integer.parseInt(this.regex.substring(this.pos - 2, this.pos), 16)));
+            case 'u':
+                this.pos += 4;
+                return Info.literal(String.valueOf((char) Integer.parseInt(this.regex.substring(this.pos - 4, this.pos), 16)));
+            case '0':
+                int octal = 0;
+                int digits = 0;
+                while (digits < 3 && this.pos < this.regex.length() && this.regex.charAt(this.pos) >= '0' && this.regex.charAt(this.pos) <= '7' && octal * 8 + (this.regex.charAt(this.pos) - '0') <= 0377) {
+                    octal = octal * 8 + (this.regex.charAt(this.pos) - '0');
+                    this.pos++;
+                    digits++;
+                }
+                return Info.literal(String.valueOf((char) octal));
+            case 'c':
+                this.pos++;
+                return Info.literal(String.valueOf((char) (this.regex.charAt(this.pos - 1) ^ 64)));
+            case 'k':
+                this.pos = this.regex.indexOf('>', this.pos) + 1;
+                return Info.any();
+            default:
+                if (c >= '1' && c <= '9') {
+                    // Back reference, skip any further digits
+                    while (this.pos < this.regex.length() && Character.isDigit(this.regex.charAt(this.pos))) {
+                        this.pos++;
+                    }
+                    return Info.any();
+                }
+
+                if (Character.isLetter(c)) {
+                    // An escape this does not know about so do not assume it is a literal
+                    return Info.any();
+                }
+
+                return Info.literal(String.valueOf(c));
+        }
+    }
+
+    private static Info concat(Info left, Info right) {
+        Set<String> exact = new LinkedHashSet<>();
+        for (String leftString : left.exact) {
+            for (String rightString : right.exact) {
+                exact.add(leftString + rightString);
+            }
+        }
+
+        return new Info(exact, and(left.match, right.match));
+    }
+
+    private static Info alternate(Info left, Info right) {
+        if (left.exact != null && right.exact != null && left.match == null && right.match == null && left.exact.size() + right.exact.size() <= MAXEXACT) {
+            Set<String> exact = new LinkedHashSet<>(left.exact);
+            exact.addAll(right.exact);
+            return new Info(exact, null);
+        }
+
+        return new Info(null, or(left.toQuery(), right.toQuery()));
+    }
+
+    /**
+     * Query any string of the set must match, null meaning every document as some string is too short to say
+     */
+    private static Query exactQuery(Set<String> exact) {
+        List<Query> alternatives = new ArrayList<>();
+
+        for (String value : exact) {
+            List<String> trigrams = new ArrayList<>(trigrams(value));
+
+            if (trigrams.isEmpty()) {
+                return null;
+            }
+
+            // Very long strings only need some of their trigrams to narrow things down, spread them out
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            int step = Math.max(1, (trigrams.size() + MAXTRIGRAMS - 1) / MAXTRIGRAMS);
+            for (int i = 0; i < trigrams.size(); i += step) {
+                builder.add(new TermQuery(new Term(Values.TRIGRAMS, trigrams.get(i))), BooleanClause.Occur.FILTER);
+            }
+
+            alternatives.add(builder.build());
+        }
+
+        Query query = null;
+        for (Query alternative : alternatives) {
+            query = query == null ? alternative : or(query, alternative);
+        }
+
+        return query;
+    }
+
+    private static Query and(Query left, Query right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        return new BooleanQuery.Builder()
+                .add(left, BooleanClause.Occur.FILTER)
+                .add(right, BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+    private static Query or(Query left, Query right) {
+        if (left == null || right == null) {
+            return null;
+        }
+
+        return new BooleanQuery.Builder()
+                .add(left, BooleanClause.Occur.SHOULD)
+                .add(right, BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    /**
+     * Lowercases each code point on its own the same way the LowerCaseFilter in TrigramAnalyzer does
+     */
+    private static String lowerCase(String value) {
+        StringBuilder stringBuilder = new StringBuilder(value.length());
+        value.codePoints().forEach(codePoint -> stringBuilder.appendCodePoint(Character.toLowerCase(codePoint)));
+        return stringBuilder.toString();
+    }
+
+    /**
+     * What is known about the strings part of an expression can match. If exact is set every match is one of those
+     * strings, lowercased. Match is a query every document containing a match satisfies, null meaning every document.
+     */
+    private static class Info {
+        final Set<String> exact;
+        final Query match;
+
+        Info(Set<String> exact, Query match) {
+            this.exact = exact;
+            this.match = match;
+        }
+
+        static Info literal(String value) {
+            return new Info(Collections.singleton(lowerCase(value)), null);
+        }
+
+        static Info emptyString() {
+            return new Info(Collections.singleton(""), null);
+        }
+
+        static Info any() {
+            return new Info(null, null);
+        }
+
+        static Info optional(Info info) {
+            if (info.exact != null && info.match == null && info.exact.size() < MAXEXACT) {
+                Set<String> exact = new LinkedHashSet<>(info.exact);
+                exact.add("");
+                return new Info(exact, null);
+            }
+
+            return any();
+        }
+
+        static Info atLeastOnce(Info info) {
+            return new Info(null, info.toQuery());
+        }
+
+        Query toQuery() {
+            return and(this.match, this.exact == null ? null : exactQuery(this.exact));
+        }
+    }
+}
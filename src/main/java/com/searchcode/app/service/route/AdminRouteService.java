@@ -72,6 +72,29 @@ public class AdminRouteService {
         map.put(Values.AND_MATCH, Properties.getProperties().getProperty(Values.AND_MATCH, Values.DEFAULT_AND_MATCH));
         map.put(Values.LOG_INDEXED, Properties.getProperties().getProperty(Values.LOG_INDEXED, Values.DEFAULT_LOG_INDEXED));
         map.put(Values.TRASH_LOCATION, Properties.getProperties().getProperty(Values.TRASH_LOCATION, Values.DEFAULT_TRASH_LOCATION));
+        map.put(Values.INDEX_COMMIT_DOCUMENTS, Properties.getProperties().getProperty(Values.INDEX_COMMIT_DOCUMENTS, Values.DEFAULT_INDEX_COMMIT_DOCUMENTS));
+        map.put(Values.INDEX_COMMIT_SECONDS, Properties.getProperties().getProperty(Values.INDEX_COMMIT_SECONDS, Values.DEFAULT_INDEX_COMMIT_SECONDS));
+        map.put(Values.INDEX_COMMIT_IDLE, Properties.getProperties().getProperty(Values.INDEX_COMMIT_IDLE, Values.DEFAULT_INDEX_COMMIT_IDLE));
+        map.put(Values.INDEX_REFRESH_SECONDS, Properties.getProperties().getProperty(Values.INDEX_REFRESH_SECONDS, Values.DEFAULT_INDEX_REFRESH_SECONDS));
+        map.put(Values.RESULT_CACHE_BYTES, Properties.getProperties().getProperty(Values.RESULT_CACHE_BYTES, Values.DEFAULT_RESULT_CACHE_BYTES));
+        map.put(Values.SNIPPET_MODE, Properties.getProperties().getProperty(Values.SNIPPET_MODE, Values.DEFAULT_SNIPPET_MODE));
+        map.put(Values.HYDRATION_WORKERS, Properties.getProperties().getProperty(Values.HYDRATION_WORKERS, Values.DEFAULT_HYDRATION_WORKERS));
+        map.put(Values.HYDRATION_QUEUE_DEPTH, Properties.getProperties().getProperty(Values.HYDRATION_QUEUE_DEPTH, Values.DEFAULT_HYDRATION_QUEUE_DEPTH));
+        map.put(Values.HYDRATION_TIMEOUT_MILLIS, Properties.getProperties().getProperty(Values.HYDRATION_TIMEOUT_MILLIS, Values.DEFAULT_HYDRATION_TIMEOUT_MILLIS));
+        map.put(Values.TRIGRAM_INDEX, Properties.getProperties().getProperty(Values.TRIGRAM_INDEX, Values.DEFAULT_TRIGRAM_INDEX));
+        map.put(Values.GREP_MAX_CANDIDATES, Properties.getProperties().getProperty(Values.GREP_MAX_CANDIDATES, Values.DEFAULT_GREP_MAX_CANDIDATES));
+        map.put(Values.MAX_FILE_BYTES, Properties.getProperties().getProperty(Values.MAX_FILE_BYTES, Values.DEFAULT_MAX_FILE_BYTES));
+        map.put(Values.FILE_SAMPLE_BYTES, Properties.getProperties().getProperty(Values.FILE_SAMPLE_BYTES, Values.DEFAULT_FILE_SAMPLE_BYTES));
+        map.put(Values.INDEX_PARSER_THREADS, Properties.getProperties().getProperty(Values.INDEX_PARSER_THREADS, Values.DEFAULT_INDEX_PARSER_THREADS));
+        map.put(Values.INDEX_OWNER_THREADS, Properties.getProperties().getProperty(Values.INDEX_OWNER_THREADS, Values.DEFAULT_INDEX_OWNER_THREADS));
+        map.put(Values.INDEX_PIPELINE_QUEUE_DEPTH, Properties.getProperties().getProperty(Values.INDEX_PIPELINE_QUEUE_DEPTH, Values.DEFAULT_INDEX_PIPELINE_QUEUE_DEPTH));
+        map.put(Values.OWNER_HISTORY_DEPTH, Properties.getProperties().getProperty(Values.OWNER_HISTORY_DEPTH, Values.DEFAULT_OWNER_HISTORY_DEPTH));
+        map.put(Values.OWNER_CACHE_MAX_ENTRIES, Properties.getProperties().getProperty(Values.OWNER_CACHE_MAX_ENTRIES, Values.DEFAULT_OWNER_CACHE_MAX_ENTRIES));
+        map.put(Values.OWNER_ENRICHMENT, Properties.getProperties().getProperty(Values.OWNER_ENRICHMENT, Values.DEFAULT_OWNER_ENRICHMENT));
+        map.put(Values.OWNER_ENRICHMENT_BATCH_SIZE, Properties.getProperties().getProperty(Values.OWNER_ENRICHMENT_BATCH_SIZE, Values.DEFAULT_OWNER_ENRICHMENT_BATCH_SIZE));
+        map.put(Values.GIT_REPOSITORY_IDLE_SECONDS, Properties.getProperties().getProperty(Values.GIT_REPOSITORY_IDLE_SECONDS, Values.DEFAULT_GIT_REPOSITORY_IDLE_SECONDS));
+        map.put(Values.GIT_CACHE_MEMORY_MB, Properties.getProperties().getProperty(Values.GIT_CACHE_MEMORY_MB, Values.DEFAULT_GIT_CACHE_MEMORY_MB));
+        map.put(Values.GIT_CACHE_WINDOW_KB, Properties.getProperties().getProperty(Values.GIT_CACHE_WINDOW_KB, Values.DEFAULT_GIT_CACHE_WINDOW_KB));
 
 
         map.put("repoCount", repo.getRepoCount());
@@ -89,6 +112,44 @@ public class AdminRouteService {
         map.put("logoImage", CommonRouteService.getLogo());
         map.put("isCommunity", App.ISCOMMUNITY);
         map.put("spellingCount", Singleton.getSpellingCorrector().getWordCount());
+        map.put("indexCommits", Singleton.getCodeIndexWriter().getCommitCount());
+        map.put("indexFlushes", Singleton.getCodeIndexWriter().getFlushCount());
+        map.put("indexUncommitted", Singleton.getCodeIndexWriter().getUncommittedChanges());
+        map.put("indexGeneration", Singleton.getCodeIndexWriter().getGeneration());
+        map.put("facetStateBuilds", Singleton.getCodeIndexWriter().getFacetStateBuildCount());
+        map.put("facetStateBuildMillis", Singleton.getCodeIndexWriter().getFacetStateBuildMillis());
+        map.put("facetStateLastBuildMillis", Singleton.getCodeIndexWriter().getLastFacetStateBuildMillis());
+        map.put("resultCacheHitRatio", String.format("%.2f", Singleton.getSearchResultCache().getHitRatio() * 100));
+        map.put("resultCacheHits", Singleton.getSearchResultCache().getHits());
+        map.put("resultCacheMisses", Singleton.getSearchResultCache().getMisses());
+        map.put("resultCacheSize", Singleton.getSearchResultCache().getSize());
+        map.put("resultCacheBytes", Singleton.getSearchResultCache().getBytes());
+        map.put("resultCacheEvictions", Singleton.getSearchResultCache().getEvictions());
+        map.put("resultCacheInvalidations", Singleton.getSearchResultCache().getInvalidations());
+        map.put("hydrationActive", Singleton.getHitHydrator().getActiveCount());
+        map.put("hydrationQueueSize", Singleton.getHitHydrator().getQueueSize());
+        map.put("hydrationTasks", Singleton.getHitHydrator().getTasks());
+        map.put("hydrationCallerRuns", Singleton.getHitHydrator().getCallerRuns());
+        map.put("hydrationTimeouts", Singleton.getHitHydrator().getTimeouts());
+        map.put("hydrationFailures", Singleton.getHitHydrator().getFailures());
+        map.put("preReadChecked", Singleton.getPreReadFilter().getChecked());
+        map.put("preReadSampled", Singleton.getPreReadFilter().getSampled());
+        map.put("preReadRejected", Singleton.getPreReadFilter().getRejected());
+        map.put("preReadBytesSkipped", Singleton.getPreReadFilter().getBytesSkipped());
+        map.put("ownerCacheHitRatio", String.format("%.2f", Singleton.getOwnerCache().getHitRatio() * 100));
+        map.put("ownerCacheHits", Singleton.getOwnerCache().getHits());
+        map.put("ownerCacheMisses", Singleton.getOwnerCache().getMisses());
+        map.put("ownerCacheEvictions", Singleton.getOwnerCache().getEvictions());
+        map.put("ownerEnrichmentProgress", String.format("%.2f", Singleton.getOwnerEnricher().getProgress()));
+        map.put("ownerEnrichmentPending", Singleton.getOwnerEnricher().getPending());
+        map.put("ownerEnrichmentEnriched", Singleton.getOwnerEnricher().getEnriched());
+        map.put("ownerEnrichmentSkipped", Singleton.getOwnerEnricher().getSkipped());
+        map.put("gitRepositoryCacheHitRatio", String.format("%.2f", Singleton.getGitRepositoryCache().getHitRatio() * 100));
+        map.put("gitRepositoryCacheHits", Singleton.getGitRepositoryCache().getHits());
+        map.put("gitRepositoryCacheMisses", Singleton.getGitRepositoryCache().getMisses());
+        map.put("gitRepositoryCacheEvictions", Singleton.getGitRepositoryCache().getEvictions());
+        map.put("gitRepositoryCacheOpen", Singleton.getGitRepositoryCache().getOpen());
+        map.put("gitRepositoryCacheInUse", Singleton.getGitRepositoryCache().getInUse());
 
         map.put("index_paused", Singleton.getPauseBackgroundJobs() ? "paused" : "running");
 
@@ -23,13 +23,13 @@ import com.searchcode.app.dto.*;
 import com.searchcode.app.model.RepoResult;
 import com.searchcode.app.service.CodeMatcher;
 import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.SearchResultCache;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.service.route.CommonRouteService;
 import com.searchcode.app.util.*;
 import com.searchcode.app.util.Properties;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
@@ -62,7 +62,7 @@ public class CodeRouteService {
             if (request.queryParams().contains("p")) {
                 try {
                     page = Integer.parseInt(request.queryParams("p"));
-                    page = page > 19 ? 19 : page;
+                    page = Math.min(Math.max(0, page), this.codeSearcher.getMaxPage());
                 }
                 catch (NumberFormatException ex) {
                     page = 0;
@@ -283,7 +283,7 @@ public class CodeRouteService {
             if (request.queryParams().contains("p")) {
                 try {
                     page = Integer.parseInt(request.queryParams("p"));
-                    page = page > 19 ? 19 : page;
+                    page = Math.min(Math.max(0, page), cs.getMaxPage());
                 }
                 catch (NumberFormatException ex) {
                     page = 0;
@@ -293,9 +293,6 @@ public class CodeRouteService {
             String[] repos = new String[0];
             String[] langs = new String[0];
             String[] owners = new String[0];
-            String reposFilter = Values.EMPTYSTRING;
-            String langsFilter = Values.EMPTYSTRING;
-            String ownersFilter = Values.EMPTYSTRING;
             String reposQueryString = Values.EMPTYSTRING;
             String langsQueryString = Values.EMPTYSTRING;
             String ownsQueryString = Values.EMPTYSTRING;
@@ -305,12 +302,6 @@ public class CodeRouteService {
                 repos = request.queryParamsValues("repo");
 
                 if (repos.length != 0) {
-                    List<String> reposList = Arrays.asList(repos).stream()
-                            .map((s) -> "reponame:" + QueryParser.escape(s))
-                            .collect(Collectors.toList());
-
-                    reposFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-
                     List<String> reposQueryList = Arrays.asList(repos).stream()
                             .map((s) -> "&repo=" + URLEncoder.encode(s))
                             .collect(Collectors.toList());
@@ -323,12 +314,6 @@ public class CodeRouteService {
                 langs = request.queryParamsValues("lan");
 
                 if (langs.length != 0) {
-                    List<String> langsList = Arrays.asList(langs).stream()
-                            .map((s) -> "languagename:" + QueryParser.escape(s))
-                            .collect(Collectors.toList());
-
-                    langsFilter = " && (" + StringUtils.join(langsList, " || ") + ")";
-
                     List<String> langsQueryList = Arrays.asList(langs).stream()
                             .map((s) -> "&lan=" + URLEncoder.encode(s))
                             .collect(Collectors.toList());
@@ -341,12 +326,6 @@ public class CodeRouteService {
                 owners = request.queryParamsValues("own");
 
                 if (owners.length != 0) {
-                    List<String> ownersList = Arrays.asList(owners).stream()
-                            .map((s) -> "codeowner:" + QueryParser.escape(s))
-                            .collect(Collectors.toList());
-
-                    ownersFilter = " && (" + StringUtils.join(ownersList, " || ") + ")";
-
                     List<String> ownsQueryList = Arrays.asList(owners).stream()
                             .map((s) -> "&own=" + URLEncoder.encode(s))
                             .collect(Collectors.toList());
@@ -355,28 +334,51 @@ public class CodeRouteService {
                 }
             }
 
-            // split the query escape it and and it together
-            String cleanQueryString = scl.formatQueryString(query);
+            // Generation is read before searching so a result can never be stored against a newer index than it saw
+            SearchResultCache searchResultCache = Singleton.getSearchResultCache();
+            long generation = Singleton.getCodeIndexWriter().getGeneration();
+            String cacheKey = searchResultCache.getKey("html", query, page, repos, langs, owners);
+            SearchResult searchResult = searchResultCache.get(generation, cacheKey);
 
-            SearchResult searchResult = cs.search(cleanQueryString + reposFilter + langsFilter + ownersFilter, page);
-            searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
+            if (searchResult != null) {
+                Singleton.getStatsService().incrementSearchCount();
+            }
+            else {
+                // split the query escape it and and it together
+                String cleanQueryString = scl.formatQueryString(query);
+
+                Map<String, String[]> filters = new HashMap<>();
+                filters.put(Values.REPONAME, repos);
+                filters.put(Values.LANGUAGENAME, langs);
+                filters.put(Values.CODEOWNER, owners);
+
+                searchResult = cs.search(cleanQueryString, filters, page, CodeSearcher.FACETDIMENSIONS);
+                searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
+
+                for(CodeFacetRepo f: searchResult.getRepoFacetResults()) {
+                    if (Arrays.asList(repos).contains(f.getRepoName())) {
+                        f.setSelected(true);
+                    }
+                }
 
-            for(CodeFacetRepo f: searchResult.getRepoFacetResults()) {
-                if (Arrays.asList(repos).contains(f.getRepoName())) {
-                    f.setSelected(true);
+                for(CodeFacetLanguage f: searchResult.getLanguageFacetResults()) {
+                    if (Arrays.asList(langs).contains(f.getLanguageName())) {
+                        f.setSelected(true);
+                    }
                 }
-            }
 
-            for(CodeFacetLanguage f: searchResult.getLanguageFacetResults()) {
-                if (Arrays.asList(langs).contains(f.getLanguageName())) {
-                    f.setSelected(true);
+                for(CodeFacetOwner f: searchResult.getOwnerFacetResults()) {
+                    if (Arrays.asList(owners).contains(f.getOwner())) {
+                        f.setSelected(true);
+                    }
                 }
-            }
 
-            for(CodeFacetOwner f: searchResult.getOwnerFacetResults()) {
-                if (Arrays.asList(owners).contains(f.getOwner())) {
-                    f.setSelected(true);
+                // The full file contents are not used by the template so do not hold them in the cache
+                for(CodeResult codeResult: searchResult.getCodeResultList()) {
+                    codeResult.setCode(null);
                 }
+
+                searchResultCache.put(generation, cacheKey, searchResult);
             }
 
             map.put("searchValue", query);
@@ -423,7 +425,7 @@ public class CodeRouteService {
             if (request.queryParams().contains("p")) {
                 try {
                     page = Integer.parseInt(request.queryParams("p"));
-                    page = page > 19 ? 19 : page;
+                    page = Math.min(Math.max(0, page), cs.getMaxPage());
                 }
                 catch(NumberFormatException ex) {
                     page = 0;
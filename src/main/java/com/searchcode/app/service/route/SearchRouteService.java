@@ -10,24 +10,39 @@
 
 package com.searchcode.app.service.route;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import com.searchcode.app.config.Values;
 import com.searchcode.app.dto.CodeResult;
 import com.searchcode.app.dto.SearchResult;
+import com.searchcode.app.dto.api.ApiResponse;
+import com.searchcode.app.service.CodeIndexer;
 import com.searchcode.app.service.CodeMatcher;
 import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.SearchResultCache;
 import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.Helpers;
 import com.searchcode.app.util.SearchcodeLib;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import spark.Request;
 import spark.Response;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 public class SearchRouteService {
 
+    private static final int EXPORTFLUSHRESULTS = 100; // Results written between flushes so clients see progress
+
     public SearchResult CodeSearch(Request request, Response response) {
         CodeSearcher cs = new CodeSearcher();
         CodeMatcher cm = new CodeMatcher(Singleton.getData());
@@ -41,64 +56,48 @@ public class SearchRouteService {
             if (request.queryParams().contains("p")) {
                 try {
                     page = Integer.parseInt(request.queryParams("p"));
-                    page = page > 19 ? 19 : page;
+                    page = Math.min(Math.max(0, page), cs.getMaxPage());
                 }
                 catch(NumberFormatException ex) {
                     page = 0;
                 }
             }
 
-            String[] repos = new String[0];
-            String[] langs = new String[0];
-            String[] owners = new String[0];
-            String reposFilter = Values.EMPTYSTRING;
-            String langsFilter = Values.EMPTYSTRING;
-            String ownersFilter = Values.EMPTYSTRING;
+            Map<String, String[]> filters = this.getFilters(request);
+            String[] repos = filters.get(Values.REPONAME);
+            String[] langs = filters.get(Values.LANGUAGENAME);
+            String[] owners = filters.get(Values.CODEOWNER);
 
+            List<String> facetDimensions = this.getFacetDimensions(request);
 
-            if (request.queryParams().contains("repo")) {
-                repos = request.queryParamsValues("repo");
+            // Raw lines with match offsets instead of HTML for clients which do their own highlighting
+            boolean matchOffsets = request.queryParams().contains("offsets") && Boolean.parseBoolean(request.queryParams("offsets"));
+            cm.MATCHOFFSETS = matchOffsets;
 
-                if (repos.length != 0) {
-                    List<String> reposList = Arrays.asList(repos).stream()
-                            .map((s) -> "reponame:" + QueryParser.escape(s))
-                            .collect(Collectors.toList());
+            // Generation is read before searching so a result can never be stored against a newer index than it saw
+            SearchResultCache searchResultCache = Singleton.getSearchResultCache();
+            long generation = Singleton.getCodeIndexWriter().getGeneration();
+            String cursor = request.queryParams().contains("cursor") ? request.queryParams("cursor") : null;
+            String cacheKey = searchResultCache.getKey(matchOffsets ? "apioffsets" : "api", query, page, repos, langs, owners, facetDimensions.toArray(new String[0]), new String[] { cursor });
 
-                    reposFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-                }
+            SearchResult cachedResult = searchResultCache.get(generation, cacheKey);
+            if (cachedResult != null) {
+                Singleton.getStatsService().incrementSearchCount();
+                return cachedResult;
             }
 
-            if (request.queryParams().contains("lan")) {
-                langs = request.queryParamsValues("lan");
+            // split the query escape it and and it together
+            String cleanQueryString = scl.formatQueryString(query);
 
-                if (langs.length != 0) {
-                    List<String> langsList = Arrays.asList(langs).stream()
-                            .map((s) -> "languagename:" + QueryParser.escape(s))
-                            .collect(Collectors.toList());
+            SearchResult searchResult;
 
-                    langsFilter = " && (" + StringUtils.join(langsList, " || ") + ")";
-                }
+            if (cursor != null) {
+                searchResult = cs.searchAfter(cleanQueryString, filters, cursor, facetDimensions);
             }
-
-            if (request.queryParams().contains("own")) {
-                owners = request.queryParamsValues("own");
-
-                if (owners.length != 0) {
-                    List<String> ownersList = Arrays.asList(owners).stream()
-                            .map((s) -> "codeowner:" + QueryParser.escape(s))
-                            .collect(Collectors.toList());
-
-                    ownersFilter = " && (" + StringUtils.join(ownersList, " || ") + ")";
-                }
+            else {
+                searchResult = cs.search(cleanQueryString, filters, page, facetDimensions);
             }
 
-            // Need to pass in the filters into this query
-            String cacheKey = query + page + reposFilter + langsFilter + ownersFilter;
-
-            // split the query escape it and and it together
-            String cleanQueryString = scl.formatQueryString(query);
-
-            SearchResult searchResult = cs.search(cleanQueryString + reposFilter + langsFilter + ownersFilter, page);
             searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
 
             searchResult.setQuery(query);
@@ -112,9 +111,146 @@ public class SearchRouteService {
                 codeSearchResult.setCode(null);
             }
 
+            searchResultCache.put(generation, cacheKey, searchResult);
+
             return searchResult;
         }
 
         return null;
     }
+
+    /**
+     * Literal substring or with regex=true regular expression search over file contents. Both are case sensitive,
+     * use (?i) in a regular expression to ignore case. Takes the same p, repo, lan and own parameters as CodeSearch.
+     */
+    public Object GrepSearch(Request request, Response response) {
+        if (!request.queryParams().contains("q") || request.queryParams("q").isEmpty()) {
+            return new ApiResponse(false, "q is a required parameter");
+        }
+
+        // Without trigrams nothing is ever a candidate so saying so beats returning no results
+        if (!CodeIndexer.INDEXTRIGRAMS) {
+            return new ApiResponse(false, "grep requires trigram_index=true, repositories indexed before it was enabled must be reindexed");
+        }
+
+        String search = request.queryParams("q");
+        boolean isRegex = request.queryParams().contains("regex") && Boolean.parseBoolean(request.queryParams("regex"));
+        int page = 0;
+
+        if (request.queryParams().contains("p")) {
+            page = Math.max(0, Helpers.tryParseInt(request.queryParams("p"), "0"));
+        }
+
+        try {
+            return new CodeSearcher().grep(search, isRegex, this.getFilters(request), page);
+        }
+        catch (PatternSyntaxException ex) {
+            return new ApiResponse(false, "invalid regular expression " + ex.getDescription());
+        }
+    }
+
+    /**
+     * Streams every result for the query to the client as newline delimited JSON, one result per line, without
+     * paging or building the result set in memory. Pass snippets=true to include the matching lines of each file
+     * as raw text with match offsets. Results are written as they are found so a slow client holds up the search
+     * rather than results piling up, and the search stops as soon as a write fails because the client went away.
+     */
+    public Object CodeExport(Request request, Response response) {
+        if (!request.queryParams().contains("q") || request.queryParams("q").trim().isEmpty()) {
+            response.status(400);
+            return Values.EMPTYSTRING;
+        }
+
+        String query = request.queryParams("q").trim();
+        boolean snippets = request.queryParams().contains("snippets") && Boolean.parseBoolean(request.queryParams("snippets"));
+
+        CodeSearcher cs = new CodeSearcher();
+        CodeMatcher cm = new CodeMatcher(Singleton.getData());
+        cm.MATCHOFFSETS = true;
+        SearchcodeLib scl = Singleton.getSearchcodeLib(Singleton.getData());
+        List<String> matchTerms = cm.splitTerms(query);
+        Gson gson = new Gson();
+
+        HttpServletResponse rawResponse = response.raw();
+        rawResponse.setContentType("application/x-ndjson");
+        rawResponse.setCharacterEncoding("UTF-8");
+
+        Writer writer;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(rawResponse.getOutputStream(), StandardCharsets.UTF_8));
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in SearchRouteService CodeExport\n with message: " + ex.getMessage());
+            return Values.EMPTYSTRING;
+        }
+
+        int[] written = new int[] { 0 };
+        boolean[] cancelled = new boolean[] { false };
+
+        int exported = cs.export(scl.formatQueryString(query), this.getFilters(request), snippets, (codeResult) -> {
+            codeResult.setMatchingResults(snippets ? cm.matchResults(codeResult.getCode(), matchTerms, false) : null);
+            codeResult.setCode(null);
+
+            try {
+                gson.toJson(codeResult, writer);
+                writer.write('\n');
+
+                if (++written[0] % EXPORTFLUSHRESULTS == 0) {
+                    writer.flush();
+                }
+
+                return true;
+            }
+            catch (IOException | JsonIOException ex) {
+                // Gson wraps the failed write so either way the client has gone
+                cancelled[0] = true;
+                return false;
+            }
+        });
+
+        try {
+            writer.flush();
+        }
+        catch (IOException ex) {
+            cancelled[0] = true;
+        }
+
+        if (cancelled[0]) {
+            Singleton.getLogger().info("Export of " + query + " cancelled by the client after " + exported + " results");
+        }
+
+        return Values.EMPTYSTRING;
+    }
+
+    /**
+     * Filters keyed by facet dimension from the repo, lan and own parameters
+     */
+    private Map<String, String[]> getFilters(Request request) {
+        Map<String, String[]> filters = new HashMap<>();
+        filters.put(Values.REPONAME, request.queryParams().contains("repo") ? request.queryParamsValues("repo") : new String[0]);
+        filters.put(Values.LANGUAGENAME, request.queryParams().contains("lan") ? request.queryParamsValues("lan") : new String[0]);
+        filters.put(Values.CODEOWNER, request.queryParams().contains("own") ? request.queryParamsValues("own") : new String[0]);
+        return filters;
+    }
+
+    /**
+     * Works out which facet dimensions to count using the facet parameter which takes the same names as the
+     * filters, EG facet=lan&facet=own. When not supplied every dimension is counted.
+     */
+    private List<String> getFacetDimensions(Request request) {
+        if (!request.queryParams().contains("facet")) {
+            return CodeSearcher.FACETDIMENSIONS;
+        }
+
+        Map<String, String> facetNames = new HashMap<>();
+        facetNames.put("repo", Values.REPONAME);
+        facetNames.put("lan", Values.LANGUAGENAME);
+        facetNames.put("own", Values.CODEOWNER);
+
+        return Arrays.asList(request.queryParamsValues("facet")).stream()
+                .map(facetNames::get)
+                .filter(x -> x != null)
+                .distinct()
+                .collect(Collectors.toList());
+    }
 }
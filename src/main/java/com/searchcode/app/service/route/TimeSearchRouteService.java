@@ -18,13 +18,14 @@ import com.searchcode.app.service.CodeMatcher;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.service.TimeCodeSearcher;
 import com.searchcode.app.util.SearchcodeLib;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import spark.Request;
 import spark.Response;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -50,70 +51,20 @@ public class TimeSearchRouteService {
 
         String query = request.queryParams("q").trim();
 
-        int page = this.getPage(request);
-
-        String[] repos;
-        String[] langs;
-        String[] owners;
-        String[] year;
-        String[] yearmonth;
-        String[] yearmonthday;
-        String[] revisions;
-        String[] deleted;
-
-        String reposFilter = Values.EMPTYSTRING;
-        String langsFilter = Values.EMPTYSTRING;
-        String ownersFilter = Values.EMPTYSTRING;
-        String yearFilter = Values.EMPTYSTRING;
-        String yearMonthFilter = Values.EMPTYSTRING;
-        String yearMonthDayFilter = Values.EMPTYSTRING;
-        String revisionsFilter = Values.EMPTYSTRING;
-        String deletedFilter = Values.EMPTYSTRING;
-
-        if (request.queryParams().contains("repo")) {
-            repos = request.queryParamsValues("repo");
-            reposFilter = getRepos(repos, reposFilter);
-        }
-
-        if (request.queryParams().contains("lan")) {
-            langs = request.queryParamsValues("lan");
-            langsFilter = getLanguages(langs, langsFilter);
-        }
-
-        if (request.queryParams().contains("own")) {
-            owners = request.queryParamsValues("own");
-            ownersFilter = getOwners(owners, ownersFilter);
-        }
-
-        if (request.queryParams().contains("year")) {
-            year = request.queryParamsValues("year");
-            yearFilter = this.getYears(year, yearFilter);
-        }
-
-        if (request.queryParams().contains("ym")) {
-            yearmonth = request.queryParamsValues("ym");
-            yearMonthFilter = this.getYearMonths(yearmonth, yearMonthFilter);
-        }
+        int page = this.getPage(request, cs.getMaxPage());
 
-        if (request.queryParams().contains("ymd")) {
-            yearmonthday = request.queryParamsValues("ymd");
-            yearMonthDayFilter = this.getYearMonthDays(yearmonthday, yearMonthDayFilter);
-        }
-
-        if (request.queryParams().contains("rev")) {
-            revisions = request.queryParamsValues("rev");
-            revisionsFilter = this.getRevisions(revisions, revisionsFilter);
-        }
+        Map<String, String[]> filters = new HashMap<>();
 
-        if (request.queryParams().contains("del")) {
-            deleted = request.queryParamsValues("del");
-            deletedFilter = this.getDeleted(deleted, deletedFilter);
+        for (Map.Entry<String, String> dimensionName : this.getDimensionNames().entrySet()) {
+            if (request.queryParams().contains(dimensionName.getKey())) {
+                filters.put(dimensionName.getValue(), request.queryParamsValues(dimensionName.getKey()));
+            }
         }
 
         // split the query escape it and and it together
         String cleanQueryString = scl.formatQueryString(query);
 
-        SearchResult searchResult = cs.search(cleanQueryString + reposFilter + langsFilter + ownersFilter + yearFilter + yearMonthFilter + yearMonthDayFilter + revisionsFilter + deletedFilter, page);
+        SearchResult searchResult = cs.search(cleanQueryString, filters, page, this.getFacetDimensions(request));
         searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
 
         searchResult.setQuery(query);
@@ -128,13 +79,13 @@ public class TimeSearchRouteService {
         return searchResult;
     }
 
-    private int getPage(Request request) {
+    private int getPage(Request request, int maxPage) {
         int page = 0;
 
         if (request.queryParams().contains("p")) {
             try {
                 page = Integer.parseInt(request.queryParams("p"));
-                page = page > 19 ? 19 : page;
+                page = Math.min(Math.max(0, page), maxPage);
             }
             catch(NumberFormatException ex) {
                 page = 0;
@@ -143,97 +94,41 @@ public class TimeSearchRouteService {
         return page;
     }
 
-    private void getAltQueries(SearchcodeLib scl, String query, SearchResult searchResult) {
-        for(String altQuery: scl.generateAltQueries(query)) {
-            searchResult.addAltQuery(altQuery);
+    /**
+     * Works out which facet dimensions to count using the facet parameter which takes the same names as the
+     * filters, EG facet=year&facet=rev. When not supplied every dimension is counted.
+     */
+    private List<String> getFacetDimensions(Request request) {
+        if (!request.queryParams().contains("facet")) {
+            return TimeCodeSearcher.FACETDIMENSIONS;
         }
-    }
-
-    private String getOwners(String[] owners, String ownersFilter) {
-        if (owners.length != 0) {
-            List<String> ownersList = Arrays.asList(owners).stream()
-                    .map((s) -> Values.CODEOWNER + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
 
-            ownersFilter = " && (" + StringUtils.join(ownersList, " || ") + ")";
-        }
-        return ownersFilter;
-    }
-
-    private String getLanguages(String[] langs, String langsFilter) {
-        if (langs.length != 0) {
-            List<String> langsList = Arrays.asList(langs).stream()
-                    .map((s) -> Values.LANGUAGENAME + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            langsFilter = " && (" + StringUtils.join(langsList, " || ") + ")";
-        }
-        return langsFilter;
+        return Arrays.asList(request.queryParamsValues("facet")).stream()
+                .map(this.getDimensionNames()::get)
+                .filter(x -> x != null)
+                .distinct()
+                .collect(Collectors.toList());
     }
 
-    private String getRepos(String[] repos, String reposFilter) {
-        if (repos.length != 0) {
-            List<String> reposList = Arrays.asList(repos).stream()
-                    .map((s) -> Values.REPONAME + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            reposFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-        }
-        return reposFilter;
-    }
-
-    private String getYearMonthDays(String[] yearmonthday, String yearMonthDayFilter) {
-        if (yearmonthday.length != 0) {
-            List<String> reposList = Arrays.asList(yearmonthday).stream()
-                    .map((s) -> Values.DATEYEARMONTHDAY + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            yearMonthDayFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-        }
-        return yearMonthDayFilter;
-    }
-
-    private String getYearMonths(String[] yearMonth, String yearMonthFilter) {
-        if (yearMonth.length != 0) {
-            List<String> reposList = Arrays.asList(yearMonth).stream()
-                    .map((s) -> Values.DATEYEARMONTH + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            yearMonthFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-        }
-        return yearMonthFilter;
-    }
-
-    private String getYears(String[] year, String yearFilter) {
-        if (year.length != 0) {
-            List<String> reposList = Arrays.asList(year).stream()
-                    .map((s) -> Values.DATEYEAR + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            yearFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-        }
-        return yearFilter;
-    }
-
-    private String getRevisions(String[] revisions, String revisionsFilter) {
-        if (revisions.length != 0) {
-            List<String> reposList = Arrays.asList(revisions).stream()
-                    .map((s) -> Values.REVISION + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            revisionsFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+    private void getAltQueries(SearchcodeLib scl, String query, SearchResult searchResult) {
+        for(String altQuery: scl.generateAltQueries(query)) {
+            searchResult.addAltQuery(altQuery);
         }
-        return revisionsFilter;
     }
 
-    private String getDeleted(String[] deleted, String deletedFilter) {
-        if (deleted.length != 0) {
-            List<String> reposList = Arrays.asList(deleted).stream()
-                    .map((s) -> Values.DELETED + ":" + QueryParser.escape(s))
-                    .collect(Collectors.toList());
-
-            deletedFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
-        }
-        return deletedFilter;
+    /**
+     * Maps the names used by the filter and facet parameters to the facet dimension they refer to
+     */
+    private Map<String, String> getDimensionNames() {
+        Map<String, String> dimensionNames = new LinkedHashMap<>();
+        dimensionNames.put("repo", Values.REPONAME);
+        dimensionNames.put("lan", Values.LANGUAGENAME);
+        dimensionNames.put("own", Values.CODEOWNER);
+        dimensionNames.put("year", Values.DATEYEAR);
+        dimensionNames.put("ym", Values.DATEYEARMONTH);
+        dimensionNames.put("ymd", Values.DATEYEARMONTHDAY);
+        dimensionNames.put("rev", Values.REVISION);
+        dimensionNames.put("del", Values.DELETED);
+        return dimensionNames;
     }
 }
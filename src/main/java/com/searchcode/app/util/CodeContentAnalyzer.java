@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Analyzer for the contents of a file which produces the terms that used to come from copying the contents six
+ * times through SearchcodeLib.codeCleanPipeline, each with more punctuation replaced by spaces, and appending
+ * splitKeywords, findInterestingKeywords and findInterestingCharacters before lowercasing the lot. Here each
+ * whitespace separated token of the raw contents is expanded into all of those variants as it is read.
+ *
+ * Parts of the finest split take consecutive positions and every other variant is stacked on the position of the
+ * token so phrases still match. Each distinct term is only emitted once per token rather than once per copy.
+ */
+public class CodeContentAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        final Tokenizer source = new WhitespaceRunTokenizer();
+        TokenStream result = new CodeVariantFilter(source);
+        result = new LengthFilter(result, 0, 100); // Same limit as CodeAnalyzer
+        return new TokenStreamComponents(source, result);
+    }
+}
+
+/**
+ * Splits on whitespace only like CodeTokenizer but without a limit on token length, as tokens are split up
+ * further by CodeVariantFilter and limiting them first would change the parts it finds
+ */
+final class WhitespaceRunTokenizer extends Tokenizer {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+    private final char[] buffer = new char[4096];
+    private int bufferLength = 0;
+    private int bufferIndex = 0;
+    private int offset = 0;
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        clearAttributes();
+        int start = -1;
+
+        while (true) {
+            if (this.bufferIndex >= this.bufferLength) {
+                this.bufferLength = this.input.read(this.buffer);
+                this.bufferIndex = 0;
+
+                if (this.bufferLength <= 0) {
+                    this.bufferLength = 0;
+                    break;
+                }
+            }
+
+            char c = this.buffer[this.bufferIndex++];
+            this.offset++;
+
+            if (Character.isWhitespace(c)) {
+                if (start != -1) {
+                    break;
+                }
+            }
+            else {
+                if (start == -1) {
+                    start = this.offset - 1;
+                }
+                this.termAtt.append(c);
+            }
+        }
+
+        if (start == -1) {
+            return false;
+        }
+
+        this.offsetAtt.setOffset(correctOffset(start), correctOffset(start + this.termAtt.length()));
+        return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        int finalOffset = correctOffset(this.offset);
+        this.offsetAtt.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        this.bufferLength = 0;
+        this.bufferIndex = 0;
+        this.offset = 0;
+    }
+}
+
+/**
+ * Expands each token into every term the old string pipeline would have produced for it
+ */
+final class CodeVariantFilter extends TokenFilter {
+
+    // Each replacement round of codeCleanPipeline in order, a character is split on from its round onwards
+    private static final String[] ROUNDS = { "<>)([]|=,:", ".", ";{}/", "\"'", "_@#", "-" };
+    private static final int KEEP = ROUNDS.length;
+    private static final byte[] ASCIIROUND = new byte[128];
+
+    static {
+        Arrays.fill(ASCIIROUND, (byte) KEEP);
+        for (int round = ROUNDS.length - 1; round >= 0; round--) {
+            for (char c : ROUNDS[round].toCharArray()) {
+                ASCIIROUND[c] = (byte) round;
+            }
+        }
+    }
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final IdentifierSplitter.TokenSink stackedSink = (source, start, end) -> this.add(source.subSequence(start, end).toString(), false);
+    private final List<String> pending = new ArrayList<>();
+    private final List<Integer> increments = new ArrayList<>();
+    private final Set<String> emitted = new HashSet<>();
+    private int pendingIndex = 0;
+
+    CodeVariantFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (this.pendingIndex >= this.pending.size()) {
+            if (!this.input.incrementToken()) {
+                return false;
+            }
+
+            this.expand(this.termAtt.toString());
+        }
+
+        this.termAtt.setEmpty().append(this.pending.get(this.pendingIndex));
+        this.posIncAtt.setPositionIncrement(this.increments.get(this.pendingIndex));
+        this.pendingIndex++;
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        this.pending.clear();
+        this.increments.clear();
+        this.pendingIndex = 0;
+    }
+
+    private void expand(String token) {
+        this.pending.clear();
+        this.increments.clear();
+        this.emitted.clear();
+        this.pendingIndex = 0;
+
+        // Finest split first as those parts carry the positions
+        this.addParts(token, KEEP - 1, true);
+        for (int round = KEEP - 2; round >= 0; round--) {
+            this.addParts(token, round, false);
+        }
+
+        IdentifierSplitter.split(token, 0, token.length(), this.stackedSink, this.stackedSink, this.stackedSink);
+
+        if (!this.increments.isEmpty()) {
+            this.increments.set(0, Math.max(1, this.increments.get(0)));
+        }
+    }
+
+    /**
+     * Adds the parts left after replacing every character from the rounds up to and including the given one
+     */
+    private void addParts(String token, int round, boolean positioned) {
+        int start = -1;
+
+        for (int i = 0; i <= token.length(); i++) {
+            boolean split = i == token.length() || round(token.charAt(i)) <= round;
+
+            if (split) {
+                if (start != -1) {
+                    this.add(token.substring(start, i), positioned);
+                    start = -1;
+                }
+            }
+            else if (start == -1) {
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Positioned parts always take the next position, anything else is stacked and only added once
+     */
+    private void add(String term, boolean positioned) {
+        String lowerCase = term.toLowerCase();
+
+        if (!this.emitted.add(lowerCase) && !positioned) {
+            return;
+        }
+
+        this.pending.add(lowerCase);
+        this.increments.add(positioned ? 1 : 0);
+    }
+
+    private static int round(char c) {
+        return c < 128 ? ASCIIROUND[c] : KEEP;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.util;
+
+import com.glaforge.i18n.io.CharsetToolkit;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A file read once from disk along with everything the indexer needs to know about it. The charset is guessed, the
+ * leading bytes checked for known binary formats, the hash taken and the lines decoded from the same bytes, and the
+ * counts used by SearchcodeLib.isBinary and isMinified are gathered once so the checks do not walk the lines again.
+ *
+ * Lines are split and decoded the same way as Helpers.readFileLinesGuessEncoding.
+ */
+public final class FileContent {
+
+    private static final int CHARSETSNIFFLENGTH = 4096; // Same as Helpers.guessCharset
+    private static final int BINARYCHECKLINES = 10000; // Same as SearchcodeLib.isBinary
+    private static final int MAXARRAYLENGTH = Integer.MAX_VALUE - 8;
+
+    // Leading bytes of formats which are never worth indexing, kept to signatures long enough not to be text
+    private static final Object[][] MAGICNUMBERS = {
+        { "png", new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' } },
+        { "gif", new byte[] { 'G', 'I', 'F', '8', '7', 'a' } },
+        { "gif", new byte[] { 'G', 'I', 'F', '8', '9', 'a' } },
+        { "jpeg", new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF } },
+        { "pdf", new byte[] { '%', 'P', 'D', 'F', '-' } },
+        { "zip", new byte[] { 'P', 'K', 0x03, 0x04 } },
+        { "gzip", new byte[] { 0x1F, (byte) 0x8B, 0x08 } },
+        { "xz", new byte[] { (byte) 0xFD, '7', 'z', 'X', 'Z', 0x00 } },
+        { "7z", new byte[] { '7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C } },
+        { "rar", new byte[] { 'R', 'a', 'r', '!', 0x1A, 0x07 } },
+        { "elf", new byte[] { 0x7F, 'E', 'L', 'F' } },
+        { "java class", new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE } },
+        { "mach-o", new byte[] { (byte) 0xCF, (byte) 0xFA, (byte) 0xED, (byte) 0xFE } },
+        { "mach-o", new byte[] { (byte) 0xCE, (byte) 0xFA, (byte) 0xED, (byte) 0xFE } },
+        { "ole", new byte[] { (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1 } },
+        { "sqlite", new byte[] { 'S', 'Q', 'L', 'i', 't', 'e', ' ', 'f', 'o', 'r', 'm', 'a', 't', ' ', '3', 0x00 } },
+        { "webassembly", new byte[] { 0x00, 'a', 's', 'm' } },
+    };
+
+    private final Charset charset;
+    private final List<String> lines;
+    private final String md5Hash;
+    private final long length;
+    private final String magicNumber;
+    private final int asciiCount;
+    private final int nonAsciiCount;
+    private final long minifiedLength;
+    private final LineOffsets lineOffsets;
+    private final boolean truncated;
+
+    private FileContent(Charset charset, List<String> lines, String md5Hash, long length, String magicNumber, int asciiCount, int nonAsciiCount, long minifiedLength, LineOffsets lineOffsets, boolean truncated) {
+        this.charset = charset;
+        this.lines = lines;
+        this.md5Hash = md5Hash;
+        this.length = length;
+        this.magicNumber = magicNumber;
+        this.asciiCount = asciiCount;
+        this.nonAsciiCount = nonAsciiCount;
+        this.minifiedLength = minifiedLength;
+        this.lineOffsets = lineOffsets;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Reads the file into memory once and decodes up to maxLines lines from it
+     */
+    public static FileContent read(String filePath, int maxLines) throws IOException {
+        return read(filePath, maxLines, MAXARRAYLENGTH);
+    }
+
+    /**
+     * Same as read but never holds more than maxBytes of the file. Anything past that is left unread and the
+     * content is marked as truncated, with the hash and lines covering only the bytes which were read.
+     */
+    public static FileContent read(String filePath, int maxLines, long maxBytes) throws IOException {
+        Path path = Paths.get(filePath);
+        int limit = (int) Math.max(0, Math.min(maxBytes, MAXARRAYLENGTH));
+        byte[] bytes = new byte[(int) Math.min(Files.size(path), limit)];
+        int length = 0;
+        boolean truncated = false;
+
+        try (InputStream stream = Files.newInputStream(path)) {
+            while (true) {
+                if (length == bytes.length) {
+                    if (length == limit) {
+                        truncated = stream.read() != -1;
+                        break;
+                    }
+
+                    // The file grew since its size was checked
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(limit, Math.max(length * 2L, 8192)));
+                }
+
+                int read = stream.read(bytes, length, bytes.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+        }
+
+        return fromBytes(bytes, length, maxLines, truncated);
+    }
+
+    public static FileContent fromBytes(byte[] bytes, int length, int maxLines) {
+        return fromBytes(bytes, length, maxLines, false);
+    }
+
+    private static FileContent fromBytes(byte[] bytes, int length, int maxLines, boolean truncated) {
+        // CharsetToolkit always looks at a full buffer, padded with zeros for short files
+        byte[] sniff = new byte[CHARSETSNIFFLENGTH];
+        System.arraycopy(bytes, 0, sniff, 0, Math.min(length, CHARSETSNIFFLENGTH));
+        CharsetToolkit charsetToolkit = new CharsetToolkit(sniff);
+        charsetToolkit.setDefaultCharset(StandardCharsets.UTF_8);
+        Charset charset = charsetToolkit.guessEncoding();
+
+        String md5Hash = DigestUtils.md5Hex(length == bytes.length ? bytes : Arrays.copyOf(bytes, length));
+
+        // Decode in chunks so only as much of the file as the line limit needs is decoded
+        CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer input = ByteBuffer.wrap(bytes, 0, length);
+        CharBuffer output = CharBuffer.allocate(8192);
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        boolean skipLineFeed = false;
+        boolean decoded = false;
+        boolean flushed = false;
+        boolean full = false;
+        int asciiCount = 0;
+        int nonAsciiCount = 0;
+        long minifiedLength = 0;
+
+        while (!full) {
+            if (!decoded) {
+                decoded = decoder.decode(input, output, true).isUnderflow();
+            }
+            if (decoded && !flushed) {
+                flushed = decoder.flush(output).isUnderflow();
+            }
+
+            output.flip();
+            char[] chars = output.array();
+            int position = output.position();
+            int limit = output.limit();
+
+            while (position < limit && !full) {
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (chars[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+
+                int lineEnd = position;
+                while (lineEnd < limit && chars[lineEnd] != '\n' && chars[lineEnd] != '\r') {
+                    lineEnd++;
+                }
+                line.append(chars, position, lineEnd - position);
+
+                if (lineEnd == limit) {
+                    position = limit;
+                    break;
+                }
+
+                skipLineFeed = chars[lineEnd] == '\r';
+                lines.add(line.toString());
+                line.setLength(0);
+                position = lineEnd + 1;
+                full = maxLines > 0 && lines.size() >= maxLines;
+            }
+
+            output.position(position);
+            output.compact();
+
+            if (flushed && output.position() == 0) {
+                break;
+            }
+        }
+
+        // Same as BufferedReader.readLine returning what is left after the last line ending
+        if (!full && line.length() != 0) {
+            lines.add(line.toString());
+        }
+
+        for (int i = 0; i < lines.size(); i++) {
+            String decodedLine = lines.get(i);
+
+            if (i < BINARYCHECKLINES) {
+                int ascii = countAscii(decodedLine);
+                asciiCount += ascii;
+                nonAsciiCount += decodedLine.length() - ascii;
+            }
+
+            minifiedLength += minifiedLength(decodedLine);
+        }
+
+        return new FileContent(charset, Collections.unmodifiableList(lines), md5Hash, length, findMagicNumber(bytes, length), asciiCount, nonAsciiCount, minifiedLength, LineOffsets.build(bytes, length, charset, maxLines), truncated);
+    }
+
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    public List<String> getLines() {
+        return this.lines;
+    }
+
+    public String getMd5Hash() {
+        return this.md5Hash;
+    }
+
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * The name of the binary format the file starts with or null if it does not look like one
+     */
+    public String getMagicNumber() {
+        return this.magicNumber;
+    }
+
+    /**
+     * Characters at or below 128 in the first 10000 lines, the same as SearchcodeLib.isBinary counts
+     */
+    public int getAsciiCount() {
+        return this.asciiCount;
+    }
+
+    public int getNonAsciiCount() {
+        return this.nonAsciiCount;
+    }
+
+    /**
+     * Average length of the lines once trimmed and with spaces removed, the same as SearchcodeLib.isMinified
+     */
+    public double getAverageMinifiedLineLength() {
+        return this.lines.isEmpty() ? 0 : (double) this.minifiedLength / this.lines.size();
+    }
+
+    /**
+     * Offsets built from the same bytes or null if the charset is not supported by LineOffsets
+     */
+    public LineOffsets getLineOffsets() {
+        return this.lineOffsets;
+    }
+
+    /**
+     * True if the file was longer than the byte limit it was read with
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    private static int countAscii(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) <= 128) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Length of line.trim().replace(" ", "") without building either string
+     */
+    private static int minifiedLength(String line) {
+        int start = 0;
+        int end = line.length();
+
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) != ' ') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String findMagicNumber(byte[] bytes, int length) {
+        for (Object[] magicNumber: MAGICNUMBERS) {
+            byte[] signature = (byte[]) magicNumber[1];
+
+            if (length >= signature.length) {
+                boolean matches = true;
+                for (int i = 0; i < signature.length && matches; i++) {
+                    matches = bytes[i] == signature[i];
+                }
+
+                if (matches) {
+                    return (String) magicNumber[0];
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -73,6 +73,22 @@ public class Helpers {
         return result;
     }
 
+    /**
+     * Same as tryParseInt but for values which may not fit in an int such as sizes in bytes
+     */
+    public static long tryParseLong(String toParse, String defaultValue) {
+        long result;
+
+        try {
+            result = Long.parseLong(toParse);
+        }
+        catch(NumberFormatException ex){
+            result = Long.parseLong(defaultValue);
+        }
+
+        return result;
+    }
+
     /**
      * Reads a certain amount of lines deep into a file to save on memory
      */
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.util;
+
+/**
+ * Walks content once and reports the extra keywords searchcode indexes for code to a sink without copying the
+ * content or using regular expressions. Each sink receives the source and the range of the part so callers
+ * decide whether to allocate.
+ *
+ * - camelCase parts, alphanumeric runs of 7 or more characters without two uppercase characters in a row split
+ *   before each uppercase character, so RegexIndexer gives Regex and Indexer
+ * - interesting keywords, versions with words at the front such as linux2.7.4 or i386, the same as
+ *   [a-z]+(\d+\.)?(\d+\.)?(\*|\d+)
+ * - interesting characters, every character other than [a-zA-Z0-9_] on its own
+ */
+public final class IdentifierSplitter {
+
+    public interface TokenSink {
+        void accept(CharSequence source, int start, int end);
+    }
+
+    private static final byte OTHER = 0;
+    private static final byte LOWER = 1;
+    private static final byte UPPER = 2;
+    private static final byte DIGIT = 3;
+    private static final byte UNDERSCORE = 4;
+    private static final byte[] ASCIICLASS = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ASCIICLASS[c] = LOWER;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            ASCIICLASS[c] = UPPER;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            ASCIICLASS[c] = DIGIT;
+        }
+        ASCIICLASS['_'] = UNDERSCORE;
+    }
+
+    private static final int MINCAMELCASELENGTH = 7;
+
+    // States of the interesting keyword matcher, named for what was last read
+    private static final int NONE = 0;
+    private static final int LETTERS = 1;
+    private static final int DIGITS1 = 2;
+    private static final int DOT1 = 3;
+    private static final int DIGITS2 = 4;
+    private static final int DOT2 = 5;
+    private static final int DIGITS3 = 6;
+
+    private IdentifierSplitter() {}
+
+    /**
+     * Reports every part found between start and end to the matching sink, any of which may be null to skip it
+     */
+    public static void split(CharSequence content, int start, int end, TokenSink camelCaseParts, TokenSink interestingKeywords, TokenSink interestingCharacters) {
+        int runStart = -1;
+        boolean runUpperPair = false;
+        boolean runInnerUpper = false;
+
+        int keywordState = NONE;
+        int keywordStart = 0;
+        int keywordBacktrack = 0;
+
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? content.charAt(i) : ' '; // Trailing space ends any run or match in progress
+            byte charClass = classOf(c);
+
+            // camelCase, decided at the end of each alphanumeric run
+            if (charClass == LOWER || charClass == UPPER || charClass == DIGIT) {
+                if (runStart == -1) {
+                    runStart = i;
+                    runUpperPair = false;
+                    runInnerUpper = false;
+                }
+                else if (charClass == UPPER) {
+                    runInnerUpper = true;
+                    runUpperPair |= classOf(content.charAt(i - 1)) == UPPER;
+                }
+            }
+            else if (runStart != -1) {
+                if (camelCaseParts != null && i - runStart >= MINCAMELCASELENGTH && runInnerUpper && !runUpperPair) {
+                    int partStart = runStart;
+                    for (int j = runStart + 1; j < i; j++) {
+                        if (classOf(content.charAt(j)) == UPPER) {
+                            camelCaseParts.accept(content, partStart, j);
+                            partStart = j;
+                        }
+                    }
+                    camelCaseParts.accept(content, partStart, i);
+                }
+                runStart = -1;
+            }
+
+            // Interesting keywords, where a character which ends a match or fails one may still start the next
+            if (interestingKeywords != null) {
+                int emitEnd = -1;
+
+                switch (keywordState) {
+                    case LETTERS:
+                        if (charClass == DIGIT) {
+                            keywordState = DIGITS1;
+                        }
+                        else if (c == '*') {
+                            emitEnd = i + 1;
+                        }
+                        else if (charClass != LOWER) {
+                            keywordState = NONE;
+                        }
+                        break;
+                    case DIGITS1:
+                        if (c == '.') {
+                            keywordState = DOT1;
+                            keywordBacktrack = i;
+                        }
+                        else if (charClass != DIGIT) {
+                            emitEnd = i;
+                        }
+                        break;
+                    case DOT1:
+                        if (charClass == DIGIT) {
+                            keywordState = DIGITS2;
+                        }
+                        else {
+                            emitEnd = c == '*' ? i + 1 : keywordBacktrack;
+                        }
+                        break;
+                    case DIGITS2:
+                        if (c == '.') {
+                            keywordState = DOT2;
+                            keywordBacktrack = i;
+                        }
+                        else if (charClass != DIGIT) {
+                            emitEnd = i;
+                        }
+                        break;
+                    case DOT2:
+                        if (charClass == DIGIT) {
+                            keywordState = DIGITS3;
+                        }
+                        else {
+                            emitEnd = c == '*' ? i + 1 : keywordBacktrack;
+                        }
+                        break;
+                    case DIGITS3:
+                        if (charClass != DIGIT) {
+                            emitEnd = i;
+                        }
+                        break;
+                }
+
+                if (emitEnd != -1) {
+                    interestingKeywords.accept(content, keywordStart, emitEnd);
+                    keywordState = NONE;
+                }
+
+                if (keywordState == NONE && charClass == LOWER) {
+                    keywordState = LETTERS;
+                    keywordStart = i;
+                }
+            }
+
+            // Interesting characters, keeping surrogate pairs together
+            if (interestingCharacters != null && i < end && charClass == OTHER && !(Character.isLowSurrogate(c) && i > start && Character.isHighSurrogate(content.charAt(i - 1)))) {
+                int charEnd = i + 1;
+                if (Character.isHighSurrogate(c) && charEnd < end && Character.isLowSurrogate(content.charAt(charEnd))) {
+                    charEnd++;
+                }
+                interestingCharacters.accept(content, i, charEnd);
+            }
+        }
+    }
+
+    private static byte classOf(char c) {
+        return c < 128 ? ASCIICLASS[c] : OTHER;
+    }
+}
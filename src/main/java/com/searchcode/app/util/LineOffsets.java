@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.util;
+
+import com.searchcode.app.service.Singleton;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact sidecar holding the byte offset where each line of a file starts along with the charset the file was
+ * read with. Stored in the index next to the document so that search results can read just the lines the matcher
+ * looks at rather than reading and decoding the whole file into a list of lines.
+ *
+ * Lines are split the same way as BufferedReader.readLine so the lines returned are identical to those returned by
+ * Helpers.readFileLinesGuessEncoding for the same file. Only charsets where carriage return and line feed are single
+ * bytes are supported, for anything else such as UTF-16 no offsets are built and callers read the file as before.
+ */
+public class LineOffsets {
+
+    private static final int VERSION = 1;
+    private static final int BLOCKLINES = 256;
+    private static final int BLOCKBYTES = 65536;
+
+    private final String charset;
+    private final long fileLength;
+    private final long[] offsets; // Start of every line followed by the end of the last line
+
+    public LineOffsets(String charset, long fileLength, long[] offsets) {
+        this.charset = charset;
+        this.fileLength = fileLength;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Scans the file for line endings recording where each of the first maxLines lines starts. Returns null if the
+     * file cannot be read or its charset does not use single byte line endings.
+     */
+    public static LineOffsets build(String filePath, int maxLines) {
+        File file = new File(filePath);
+
+        try {
+            Charset charset = Helpers.guessCharset(file);
+
+            if (!isSupported(charset)) {
+                return null;
+            }
+
+            Builder builder = new Builder(maxLines);
+
+            try (InputStream inputStream = new FileInputStream(file)) {
+                byte[] buffer = new byte[8192];
+                int read;
+
+                while (!builder.isFull() && (read = inputStream.read(buffer)) != -1) {
+                    builder.scan(buffer, read);
+                }
+            }
+
+            return builder.build(charset, file.length());
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in LineOffsets build for " + filePath + "\n with message: " + ex.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Same as build for a file which has already been read into memory with the given charset
+     */
+    public static LineOffsets build(byte[] bytes, int length, Charset charset, int maxLines) {
+        if (!isSupported(charset)) {
+            return null;
+        }
+
+        Builder builder = new Builder(maxLines);
+        builder.scan(bytes, length);
+        return builder.build(charset, length);
+    }
+
+    /**
+     * Reads offsets previously written by encode returning null if they are not in a format this version understands
+     */
+    public static LineOffsets decode(byte[] bytes, int offset, int length) {
+        try {
+            ByteArrayDataInput input = new ByteArrayDataInput(bytes, offset, length);
+
+            if (input.readVInt() != VERSION) {
+                return null;
+            }
+
+            String charset = input.readString();
+            long fileLength = input.readVLong();
+            long[] offsets = new long[input.readVInt() + 1];
+
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] = offsets[i - 1] + input.readVLong();
+            }
+
+            return new LineOffsets(charset, fileLength, offsets);
+        }
+        catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the offsets as variable length deltas which for most source files is one or two bytes per line
+     */
+    public byte[] encode() {
+        byte[] charsetBytes = this.charset.getBytes(Charset.forName("UTF-8"));
+        byte[] buffer = new byte[5 + 5 + charsetBytes.length + 9 + 5 + (this.offsets.length * 9)];
+        ByteArrayDataOutput output = new ByteArrayDataOutput(buffer);
+
+        try {
+            output.writeVInt(VERSION);
+            output.writeString(this.charset);
+            output.writeVLong(this.fileLength);
+            output.writeVInt(this.getLineCount());
+
+            for (int i = 1; i < this.offsets.length; i++) {
+                output.writeVLong(this.offsets[i] - this.offsets[i - 1]);
+            }
+        }
+        catch (IOException ex) {
+            // ByteArrayDataOutput does not throw
+        }
+
+        return Arrays.copyOf(buffer, output.getPosition());
+    }
+
+    /**
+     * Returns a list over the first maxLines lines of the file which reads and decodes lines only when they are
+     * asked for. Returns null if the file is missing or has changed size since the offsets were built.
+     */
+    public List<String> getLines(String filePath, int maxLines) {
+        File file = new File(filePath);
+
+        if (!file.isFile() || file.length() != this.fileLength || !Charset.isSupported(this.charset)) {
+            return null;
+        }
+
+        return new FileLines(filePath, Charset.forName(this.charset), Math.min(maxLines, this.getLineCount()));
+    }
+
+    public int getLineCount() {
+        return this.offsets.length - 1;
+    }
+
+    public long getLineStart(int line) {
+        return this.offsets[line];
+    }
+
+    public String getCharset() {
+        return this.charset;
+    }
+
+    public long getFileLength() {
+        return this.fileLength;
+    }
+
+    private static boolean isSupported(Charset charset) {
+        return Arrays.equals("\r\n".getBytes(charset), new byte[] { '\r', '\n' });
+    }
+
+    /**
+     * Records where lines start as bytes are fed to it, splitting on \n, \r and \r\n like BufferedReader.readLine
+     */
+    private static class Builder {
+        private final int maxLines;
+        private long[] offsets = new long[64];
+        private int lines = 0;
+        private long position = 0;
+        private boolean lineStarted = false;
+        private boolean lastCarriageReturn = false;
+
+        Builder(int maxLines) {
+            this.maxLines = maxLines;
+        }
+
+        boolean isFull() {
+            return this.lines >= this.maxLines;
+        }
+
+        void scan(byte[] buffer, int read) {
+            for (int i = 0; i < read && this.lines < this.maxLines; i++) {
+                byte current = buffer[i];
+                this.position++;
+
+                if (this.lastCarriageReturn && current == '\n') {
+                    // Second half of a \r\n which already ended the line
+                    this.offsets[this.lines] = this.position;
+                    this.lastCarriageReturn = false;
+                    continue;
+                }
+
+                this.lastCarriageReturn = false;
+
+                if (!this.lineStarted) {
+                    if (this.lines + 1 >= this.offsets.length) {
+                        this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+                    }
+
+                    this.offsets[this.lines] = this.position - 1;
+                    this.lineStarted = true;
+                }
+
+                if (current == '\n' || current == '\r') {
+                    this.lines++;
+                    this.offsets[this.lines] = this.position;
+                    this.lineStarted = false;
+                    this.lastCarriageReturn = current == '\r';
+                }
+            }
+        }
+
+        LineOffsets build(Charset charset, long fileLength) {
+            if (this.lineStarted) {
+                this.lines++;
+                this.offsets[this.lines] = this.position;
+                this.lineStarted = false;
+            }
+
+            return new LineOffsets(charset.name(), fileLength, Arrays.copyOf(this.offsets, this.lines + 1));
+        }
+    }
+
+    /**
+     * Lines of the file read in small blocks around the line asked for. Only the most recent block is held so
+     * memory stays bounded however large the file is. Not thread safe.
+     */
+    private class FileLines extends AbstractList<String> {
+        private final String filePath;
+        private final Charset charset;
+        private final int size;
+
+        private String[] block = new String[0];
+        private int blockStart = 0;
+
+        FileLines(String filePath, Charset charset, int size) {
+            this.filePath = filePath;
+            this.charset = charset;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+
+            if (index < this.blockStart || index >= this.blockStart + this.block.length) {
+                // Start one line early so the line before a match is normally already loaded
+                this.readBlock(Math.max(0, index - 1), index);
+            }
+
+            return this.block[index - this.blockStart];
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        private void readBlock(int start, int required) {
+            int end = required + 1;
+            while (end < this.size && end - start < BLOCKLINES && offsets[end + 1] - offsets[start] <= BLOCKBYTES) {
+                end++;
+            }
+
+            String[] lines = new String[end - start];
+
+            try (FileChannel channel = FileChannel.open(Paths.get(this.filePath), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[end] - offsets[start]));
+
+                while (buffer.hasRemaining() && channel.read(buffer, offsets[start] + buffer.position()) != -1) {
+                    // Keep reading until the block is full or the file ends
+                }
+
+                byte[] bytes = buffer.array();
+                for (int i = start; i < end; i++) {
+                    int lineStart = (int) (offsets[i] - offsets[start]);
+                    int lineEnd = (int) Math.min(offsets[i + 1] - offsets[start], buffer.position());
+
+                    if (lineEnd > lineStart && bytes[lineEnd - 1] == '\n') {
+                        lineEnd--;
+                    }
+                    if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                        lineEnd--;
+                    }
+
+                    lines[i - start] = lineEnd > lineStart ? new String(bytes, lineStart, lineEnd - lineStart, this.charset) : "";
+                }
+            }
+            catch (IOException ex) {
+                Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in LineOffsets reading " + this.filePath + "\n with message: " + ex.getMessage());
+                Arrays.fill(lines, "");
+            }
+
+            this.block = lines;
+            this.blockStart = start;
+        }
+    }
+}
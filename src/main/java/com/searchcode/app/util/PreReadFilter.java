@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.util;
+
+import com.searchcode.app.dto.BinaryFinding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which files are not worth reading before the indexer reads them. The line limit only stops lines being
+ * kept, so without this a 200 MB generated file on a single line is read and decoded in full before isMinified or
+ * isBinary get to reject it.
+ *
+ * Files are rejected in order of how cheap the check is
+ * - larger than the byte limit, using the size from the directory listing
+ * - excluded by the user set extension blacklist
+ * - for files larger than the sample, a binary or minified verdict on the first sample bytes
+ *
+ * The byte limit is also what the indexer should read the file with so a file which grows after being checked
+ * is never held in memory past it.
+ */
+public class PreReadFilter {
+
+    private final long maxBytes;
+    private final int sampleBytes;
+
+    private final AtomicLong checked = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong sampled = new AtomicLong(0);
+    private final AtomicLong bytesSkipped = new AtomicLong(0);
+
+    /**
+     * A max bytes of zero or less disables the size check and a sample bytes of zero or less disables sampling
+     */
+    public PreReadFilter(long maxBytes, int sampleBytes) {
+        this.maxBytes = maxBytes;
+        this.sampleBytes = sampleBytes;
+    }
+
+    /**
+     * Returns the reason the file should not be read or null if it should be read
+     */
+    public String getRejectReason(String filePath, String fileName, long size, SearchcodeLib searchcodeLib) {
+        this.checked.incrementAndGet();
+
+        if (this.maxBytes > 0 && size > this.maxBytes) {
+            return this.reject("larger than max_file_bytes", size);
+        }
+
+        if (searchcodeLib.isExcludedByExtension(fileName)) {
+            return this.reject("appears in extension blacklist", size);
+        }
+
+        if (this.sampleBytes > 0 && size > this.sampleBytes) {
+            this.sampled.incrementAndGet();
+            byte[] sample = new byte[this.sampleBytes];
+            int length = 0;
+
+            try (InputStream stream = Files.newInputStream(Paths.get(filePath))) {
+                int read;
+                while (length < sample.length && (read = stream.read(sample, length, sample.length - length)) != -1) {
+                    length += read;
+                }
+            } catch (IOException ex) {
+                // Leave it to the full read to report
+                return null;
+            }
+
+            // Only judge complete lines, unless there is no line break at all in which case the whole sample is one line
+            int sampleLength = length;
+            while (sampleLength > 0 && sample[sampleLength - 1] != '\n') {
+                sampleLength--;
+            }
+            if (sampleLength == 0) {
+                sampleLength = length;
+            }
+
+            FileContent fileContent = FileContent.fromBytes(sample, sampleLength, 0);
+
+            BinaryFinding binaryFinding = searchcodeLib.isBinary(fileContent, fileName);
+            if (binaryFinding.isBinary()) {
+                return this.reject(binaryFinding.getReason(), size - length);
+            }
+
+            if (searchcodeLib.isMinified(fileContent, fileName)) {
+                return this.reject("appears to be minified", size - length);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Called when a file turned out to be larger than the byte limit once read, as it grew after being checked
+     */
+    public void rejectedAfterRead() {
+        this.reject(null, 0);
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * The most bytes of a file the indexer should read
+     */
+    public long getReadLimit() {
+        return this.maxBytes > 0 ? this.maxBytes : Long.MAX_VALUE;
+    }
+
+    public int getSampleBytes() {
+        return this.sampleBytes;
+    }
+
+    public long getChecked() {
+        return this.checked.get();
+    }
+
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    public long getSampled() {
+        return this.sampled.get();
+    }
+
+    /**
+     * Bytes of rejected files which were never read
+     */
+    public long getBytesSkipped() {
+        return this.bytesSkipped.get();
+    }
+
+    private String reject(String reason, long bytesSkipped) {
+        this.rejected.incrementAndGet();
+        this.bytesSkipped.addAndGet(Math.max(0, bytesSkipped));
+        return reason;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.6
+ */
+
+package com.searchcode.app.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+
+/**
+ * Splits content into every overlapping run of three characters, whitespace and punctuation included, lowercased.
+ * Used for the trigram field which lets any substring or regular expression be narrowed down to candidate
+ * documents, see TrigramQueryPlanner which must produce terms the same way.
+ */
+public class TrigramAnalyzer extends Analyzer {
+
+    public static final int GRAMSIZE = 3;
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        final Tokenizer source = new NGramTokenizer(GRAMSIZE, GRAMSIZE);
+        TokenStream result = new LowerCaseFilter(source);
+        return new TokenStreamComponents(source, result);
+    }
+}
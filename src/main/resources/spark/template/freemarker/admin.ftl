@@ -74,6 +74,106 @@
         <td><b>Index Status</b></td>
         <td id="pause-index-status">${index_paused}</td>
     </tr>
+    <tr>
+        <td><b>Index Commits</b></td>
+        <td>${indexCommits}</td>
+    </tr>
+    <tr>
+        <td><b>Index Segments Flushed</b></td>
+        <td>${indexFlushes}</td>
+    </tr>
+    <tr>
+        <td><b>Uncommitted Index Changes</b></td>
+        <td>${indexUncommitted}</td>
+    </tr>
+    <tr>
+        <td><b>Index Searcher Generation</b></td>
+        <td>${indexGeneration}</td>
+    </tr>
+    <tr>
+        <td><b>Facet State Builds</b></td>
+        <td>${facetStateBuilds}</td>
+    </tr>
+    <tr>
+        <td><b>Facet State Build Time Total (ms)</b></td>
+        <td>${facetStateBuildMillis}</td>
+    </tr>
+    <tr>
+        <td><b>Facet State Build Time Last (ms)</b></td>
+        <td>${facetStateLastBuildMillis}</td>
+    </tr>
+    <tr>
+        <td><b>Result Cache Hit Ratio (%)</b></td>
+        <td>${resultCacheHitRatio}</td>
+    </tr>
+    <tr>
+        <td><b>Result Cache Hits / Misses</b></td>
+        <td>${resultCacheHits} / ${resultCacheMisses}</td>
+    </tr>
+    <tr>
+        <td><b>Result Cache Entries</b></td>
+        <td>${resultCacheSize}</td>
+    </tr>
+    <tr>
+        <td><b>Result Cache Size (bytes)</b></td>
+        <td>${resultCacheBytes}</td>
+    </tr>
+    <tr>
+        <td><b>Result Cache Evictions</b></td>
+        <td>${resultCacheEvictions}</td>
+    </tr>
+    <tr>
+        <td><b>Result Cache Invalidations</b></td>
+        <td>${resultCacheInvalidations}</td>
+    </tr>
+    <tr>
+        <td><b>Hydration Workers Active / Queued</b></td>
+        <td>${hydrationActive} / ${hydrationQueueSize}</td>
+    </tr>
+    <tr>
+        <td><b>Hydration Tasks / Run On Caller</b></td>
+        <td>${hydrationTasks} / ${hydrationCallerRuns}</td>
+    </tr>
+    <tr>
+        <td><b>Hydration Timeouts / Failures</b></td>
+        <td>${hydrationTimeouts} / ${hydrationFailures}</td>
+    </tr>
+    <tr>
+        <td><b>Files Checked / Sampled Before Read</b></td>
+        <td>${preReadChecked} / ${preReadSampled}</td>
+    </tr>
+    <tr>
+        <td><b>Files Rejected Before Read / Bytes Skipped</b></td>
+        <td>${preReadRejected} / ${preReadBytesSkipped}</td>
+    </tr>
+    <tr>
+        <td><b>Owner Cache Hit Ratio</b></td>
+        <td>${ownerCacheHitRatio}%</td>
+    </tr>
+    <tr>
+        <td><b>Owner Cache Hits / Misses / Evictions</b></td>
+        <td>${ownerCacheHits} / ${ownerCacheMisses} / ${ownerCacheEvictions}</td>
+    </tr>
+    <tr>
+        <td><b>Owner Enrichment Progress</b></td>
+        <td>${ownerEnrichmentProgress}%</td>
+    </tr>
+    <tr>
+        <td><b>Owner Enrichment Pending / Enriched / Skipped</b></td>
+        <td>${ownerEnrichmentPending} / ${ownerEnrichmentEnriched} / ${ownerEnrichmentSkipped}</td>
+    </tr>
+    <tr>
+        <td><b>Git Repository Cache Hit Ratio</b></td>
+        <td>${gitRepositoryCacheHitRatio}%</td>
+    </tr>
+    <tr>
+        <td><b>Git Repository Cache Hits / Misses / Evictions</b></td>
+        <td>${gitRepositoryCacheHits} / ${gitRepositoryCacheMisses} / ${gitRepositoryCacheEvictions}</td>
+    </tr>
+    <tr>
+        <td><b>Git Repository Cache Open / In Use</b></td>
+        <td>${gitRepositoryCacheOpen} / ${gitRepositoryCacheInUse}</td>
+    </tr>
 
 
     <tr>
@@ -196,6 +296,98 @@
         <td><b>log_indexed</b></td>
         <td>${log_indexed}</td>
     </tr>
+    <tr>
+        <td><b>index_commit_documents</b></td>
+        <td>${index_commit_documents}</td>
+    </tr>
+    <tr>
+        <td><b>index_commit_seconds</b></td>
+        <td>${index_commit_seconds}</td>
+    </tr>
+    <tr>
+        <td><b>index_commit_idle</b></td>
+        <td>${index_commit_idle}</td>
+    </tr>
+    <tr>
+        <td><b>index_refresh_seconds</b></td>
+        <td>${index_refresh_seconds}</td>
+    </tr>
+    <tr>
+        <td><b>result_cache_bytes</b></td>
+        <td>${result_cache_bytes}</td>
+    </tr>
+    <tr>
+        <td><b>snippet_mode</b></td>
+        <td>${snippet_mode}</td>
+    </tr>
+    <tr>
+        <td><b>hydration_workers</b></td>
+        <td>${hydration_workers}</td>
+    </tr>
+    <tr>
+        <td><b>hydration_queue_depth</b></td>
+        <td>${hydration_queue_depth}</td>
+    </tr>
+    <tr>
+        <td><b>hydration_timeout_millis</b></td>
+        <td>${hydration_timeout_millis}</td>
+    </tr>
+    <tr>
+        <td><b>trigram_index</b></td>
+        <td>${trigram_index}</td>
+    </tr>
+    <tr>
+        <td><b>grep_max_candidates</b></td>
+        <td>${grep_max_candidates}</td>
+    </tr>
+    <tr>
+        <td><b>max_file_bytes</b></td>
+        <td>${max_file_bytes}</td>
+    </tr>
+    <tr>
+        <td><b>file_sample_bytes</b></td>
+        <td>${file_sample_bytes}</td>
+    </tr>
+    <tr>
+        <td><b>index_parser_threads</b></td>
+        <td>${index_parser_threads}</td>
+    </tr>
+    <tr>
+        <td><b>index_owner_threads</b></td>
+        <td>${index_owner_threads}</td>
+    </tr>
+    <tr>
+        <td><b>index_pipeline_queue_depth</b></td>
+        <td>${index_pipeline_queue_depth}</td>
+    </tr>
+    <tr>
+        <td><b>owner_history_depth</b></td>
+        <td>${owner_history_depth}</td>
+    </tr>
+    <tr>
+        <td><b>owner_cache_max_entries</b></td>
+        <td>${owner_cache_max_entries}</td>
+    </tr>
+    <tr>
+        <td><b>owner_enrichment</b></td>
+        <td>${owner_enrichment}</td>
+    </tr>
+    <tr>
+        <td><b>owner_enrichment_batch_size</b></td>
+        <td>${owner_enrichment_batch_size}</td>
+    </tr>
+    <tr>
+        <td><b>git_repository_idle_seconds</b></td>
+        <td>${git_repository_idle_seconds}</td>
+    </tr>
+    <tr>
+        <td><b>git_cache_memory_mb</b></td>
+        <td>${git_cache_memory_mb}</td>
+    </tr>
+    <tr>
+        <td><b>git_cache_window_kb</b></td>
+        <td>${git_cache_window_kb}</td>
+    </tr>
 
     <tr>
         <td>&nbsp;</td>
@@ -529,6 +529,20 @@ String myHmac = HmacUtils.hmacSha512Hex(MYPRIVATEKEY, PARAMSTOHMAC);</textarea>
         <!--<p>
 
         <h4>Code Search API</h4>
+        <p>When there are more results the response includes a cursor. Pass it back as cursor to get the next page
+        collecting only that page no matter how deep it is. A cursor only holds while the index is unchanged, once
+        anything has been indexed or deleted the page it was for is returned as if it had been asked for with p,
+        which costs more the deeper the page is.</p>
+        <p>Pass offsets=true to get each line as is without HTML escaping or highlighting. Matching lines then include
+        matchOffsets, pairs of start and end character offsets for each match with the end exclusive.</p>
+        <p>Every result for a query can be fetched from /api/codesearch/export/ which takes the same q, repo, lan and own
+        parameters. Results are streamed as newline delimited JSON, one result per line, without paging. Pass
+        snippets=true to include the matching lines of each result with their matchOffsets.</p>
+        <p>Exact substrings and regular expressions can be found using /api/codesearch/grep/ with the same parameters
+        and regex=true for a regular expression. Matching is case sensitive, use (?i) to ignore case, and each result
+        includes its matching lines with their matchOffsets. It needs trigram_index=true, which is off by default as it
+        grows the index, and only files indexed while it was enabled are found so repositories indexed before turning it
+        on must be reindexed before results are complete. Otherwise an unsuccessful response is returned.</p>
         <pre><code>{
     "totalHits": 1,
     "page": 0,
@@ -566,6 +580,7 @@ String myHmac = HmacUtils.hmacSha512Hex(MYPRIVATEKEY, PARAMSTOHMAC);</textarea>
         "codeOwner": "Bob Secret"
     }],
     "pages": [0, 1],
+    "cursor": "MTI6MTo0MToxMDY1MzUzMjE2",
     "languageFacetResults": [{
         "languageName": "Python",
         "count": 5,
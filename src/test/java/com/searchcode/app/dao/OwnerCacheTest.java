@@ -0,0 +1,157 @@
+package com.searchcode.app.dao;
+
+import com.searchcode.app.dto.CodeOwner;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class OwnerCacheTest extends TestCase {
+
+    private File file;
+
+    public void setUp() throws IOException, ClassNotFoundException {
+        Class.forName("org.sqlite.JDBC");
+        this.file = File.createTempFile("OwnerCacheTest", ".sqlite");
+    }
+
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    public void testSaveAndGet() {
+        OwnerCache ownerCache = this.ownerCache(100);
+
+        OwnerCache.Entries entries = ownerCache.getEntries("repo");
+        assertThat(entries.getOwners("src/A.java", "abc")).isNull();
+        entries.saveOwners("src/A.java", "abc", "head1", Arrays.asList(new CodeOwner("alice", 10, 1400000000), new CodeOwner("bob", 2, 1400001000)));
+
+        // Nothing is written until the entries are saved
+        assertThat(ownerCache.getEntries("repo").size()).isEqualTo(0);
+        ownerCache.save(entries);
+
+        entries = ownerCache.getEntries("repo");
+        List<CodeOwner> codeOwners = entries.getOwners("src/A.java", "abc");
+
+        assertThat(codeOwners).hasSize(2);
+        assertThat(codeOwners.get(0).getName()).isEqualTo("alice");
+        assertThat(codeOwners.get(0).getNoLines()).isEqualTo(10);
+        assertThat(codeOwners.get(1).getMostRecentUnixCommitTimestamp()).isEqualTo(1400001000);
+
+        // A changed file has a new blob id and the same blob in another repository is not shared
+        assertThat(entries.getOwners("src/A.java", "def")).isNull();
+        assertThat(ownerCache.getEntries("other").getOwners("src/A.java", "abc")).isNull();
+
+        assertThat(ownerCache.getHits()).isEqualTo(1);
+        assertThat(ownerCache.getMisses()).isEqualTo(3);
+        assertThat(ownerCache.getHitRatio()).isEqualTo(0.25);
+    }
+
+    public void testSaveManyFromManyThreads() throws InterruptedException {
+        OwnerCache ownerCache = this.ownerCache(10000);
+        List<CodeOwner> codeOwners = Arrays.asList(new CodeOwner("alice", 1, 1400000000));
+        OwnerCache.Entries entries = ownerCache.getEntries("repo");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    entries.saveOwners("File" + thread + "_" + j + ".java", "blob" + j, "head1", codeOwners);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        ownerCache.save(entries);
+        assertThat(ownerCache.getEntries("repo").getBlobIds()).hasSize(2000).containsEntry("File3_499.java", "blob499");
+
+        // Saving again writes nothing more
+        ownerCache.save(entries);
+        assertThat(ownerCache.getEntries("repo").size()).isEqualTo(2000);
+    }
+
+    public void testGetBlobIdsAndDeleteRepo() {
+        OwnerCache ownerCache = this.ownerCache(100);
+        List<CodeOwner> codeOwners = Arrays.asList(new CodeOwner("alice", 1, 1400000000));
+
+        OwnerCache.Entries entries = ownerCache.getEntries("repo");
+        entries.saveOwners("A.java", "abc", "head1", codeOwners);
+        entries.saveOwners("B.java", "def", "head1", codeOwners);
+        ownerCache.save(entries);
+
+        entries = ownerCache.getEntries("other");
+        entries.saveOwners("C.java", "ghi", "head1", codeOwners);
+        ownerCache.save(entries);
+
+        assertThat(ownerCache.getEntries("repo").getBlobIds()).hasSize(2).containsEntry("A.java", "abc").containsEntry("B.java", "def");
+
+        ownerCache.deleteRepo("repo");
+        assertThat(ownerCache.getEntries("repo").getBlobIds()).isEmpty();
+        assertThat(ownerCache.getEntries("other").getBlobIds()).hasSize(1);
+    }
+
+    public void testChangedFileReplacesEntry() {
+        OwnerCache ownerCache = this.ownerCache(100);
+        List<CodeOwner> codeOwners = Arrays.asList(new CodeOwner("alice", 1, 1400000000));
+
+        for (int i = 0; i < 10; i++) {
+            OwnerCache.Entries entries = ownerCache.getEntries("repo");
+            entries.saveOwners("A.java", "blob" + i, "head" + i, codeOwners);
+            ownerCache.save(entries);
+        }
+
+        OwnerCache.Entries entries = ownerCache.getEntries("repo");
+        assertThat(entries.getBlobIds()).hasSize(1).containsEntry("A.java", "blob9");
+        assertThat(entries.getOwners("A.java", "blob9")).hasSize(1);
+        assertThat(entries.getOwners("A.java", "blob0")).isNull();
+
+        ownerCache.evict();
+        assertThat(ownerCache.getEvictions()).isEqualTo(0);
+    }
+
+    public void testBounded() {
+        OwnerCache ownerCache = this.ownerCache(5);
+        List<CodeOwner> codeOwners = Arrays.asList(new CodeOwner("alice", 1, 1400000000));
+
+        OwnerCache.Entries entries = ownerCache.getEntries("repo");
+        for (int i = 0; i < 12; i++) {
+            entries.saveOwners("File" + i + ".java", "blob" + i, "head1", codeOwners);
+        }
+        ownerCache.save(entries);
+        ownerCache.evict();
+
+        assertThat(ownerCache.getEntries("repo").getBlobIds()).hasSize(5);
+        assertThat(ownerCache.getEvictions()).isEqualTo(7);
+    }
+
+    public void testDisabled() {
+        OwnerCache ownerCache = this.ownerCache(0);
+
+        OwnerCache.Entries entries = ownerCache.getEntries("repo");
+        entries.saveOwners("A.java", "abc", "head1", Arrays.asList(new CodeOwner("alice", 1, 1400000000)));
+        ownerCache.save(entries);
+
+        entries = ownerCache.getEntries("repo");
+        assertThat(entries.getOwners("A.java", "abc")).isNull();
+        assertThat(entries.getBlobIds()).isEmpty();
+    }
+
+    private OwnerCache ownerCache(int maxEntries) {
+        OwnerCache ownerCache = new OwnerCache(() -> DriverManager.getConnection("jdbc:sqlite:" + this.file.toString()), maxEntries);
+        ownerCache.createTableIfMissing();
+        ownerCache.createTableIfMissing();
+        return ownerCache;
+    }
+}
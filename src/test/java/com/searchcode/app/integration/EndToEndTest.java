@@ -9,6 +9,7 @@ import com.searchcode.app.jobs.repository.IndexGitRepoJob;
 import com.searchcode.app.jobs.repository.IndexSvnRepoJob;
 import com.searchcode.app.service.CodeIndexer;
 import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.Singleton;
 import com.searchcode.app.util.Properties;
 import junit.framework.TestCase;
 import org.apache.commons.io.FileUtils;
@@ -40,9 +41,10 @@ public class EndToEndTest extends TestCase{
         assertThat(codeResult2.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile2");
         assertThat(codeResult3.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile3");
 
-        // Delete a single file
-        String codeId = searchResult.getCodeResultList().get(0).getCodeId();
+        // Delete a single file, picked by name as results with equal scores come back in the order they were indexed
+        String codeId = searchResult.getCodeResultList().stream().filter(x -> x.getFileName().equals("EndToEndTestFile1.php")).findFirst().get().getCodeId();
         CodeIndexer.deleteByCodeId(codeId);
+        Singleton.getCodeIndexWriter().maybeCommit(true); // Deletes are committed by the idle indexer
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(2);
 
@@ -55,6 +57,7 @@ public class EndToEndTest extends TestCase{
         File toDelete = new File(directoryWithFiles.toString() + "/EndToEndTestFile2.py");
         toDelete.delete();
         indexFileRepoJob.indexDocsByPath(Paths.get(directoryWithFiles.toString()), "ENDTOENDTEST", "", directoryWithFiles.toString(), true);
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile", 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(2);
 
@@ -65,6 +68,7 @@ public class EndToEndTest extends TestCase{
 
         // Delete everything
         CodeIndexer.deleteByReponame("ENDTOENDTEST");
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(0);
     }
@@ -90,9 +94,10 @@ public class EndToEndTest extends TestCase{
         assertThat(codeResult2.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile2");
         assertThat(codeResult3.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile3");
 
-        // Delete a single file
-        String codeId = searchResult.getCodeResultList().get(0).getCodeId();
+        // Delete a single file, picked by name as results with equal scores come back in the order they were indexed
+        String codeId = searchResult.getCodeResultList().stream().filter(x -> x.getFileName().equals("EndToEndTestFile1.php")).findFirst().get().getCodeId();
         CodeIndexer.deleteByCodeId(codeId);
+        Singleton.getCodeIndexWriter().maybeCommit(true); // Deletes are committed by the idle indexer
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(2);
 
@@ -100,6 +105,7 @@ public class EndToEndTest extends TestCase{
         File toDelete = new File(directoryWithFiles.toString() + "/EndToEndTestFile2.py");
         toDelete.delete();
         indexGitRepoJob.indexDocsByPath(Paths.get(directoryWithFiles.toString()), "ENDTOENDTEST", "", directoryWithFiles.toString(), true);
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile", 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(2);
 
@@ -109,6 +115,7 @@ public class EndToEndTest extends TestCase{
         assertThat(codeResult2.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile3");
 
         CodeIndexer.deleteByReponame("ENDTOENDTEST");
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(0);
     }
@@ -130,9 +137,10 @@ public class EndToEndTest extends TestCase{
         assertThat(codeResult2.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile2");
         assertThat(codeResult3.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile3");
 
-        // Delete a single file
-        String codeId = searchResult.getCodeResultList().get(0).getCodeId();
+        // Delete a single file, picked by name as results with equal scores come back in the order they were indexed
+        String codeId = searchResult.getCodeResultList().stream().filter(x -> x.getFileName().equals("EndToEndTestFile1.php")).findFirst().get().getCodeId();
         CodeIndexer.deleteByCodeId(codeId);
+        Singleton.getCodeIndexWriter().maybeCommit(true); // Deletes are committed by the idle indexer
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(2);
 
@@ -140,6 +148,7 @@ public class EndToEndTest extends TestCase{
         File toDelete = new File(directoryWithFiles.toString() + "/EndToEndTestFile2.py");
         toDelete.delete();
         indexSvnRepoJob.indexDocsByPath(Paths.get(directoryWithFiles.toString()), "ENDTOENDTEST", "", directoryWithFiles.toString(), true);
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile", 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(2);
 
@@ -149,6 +158,7 @@ public class EndToEndTest extends TestCase{
         assertThat(codeResult2.getCode().get(0)).isEqualTo("EndToEndTestFile EndToEndTestFile3");
 
         CodeIndexer.deleteByReponame("ENDTOENDTEST");
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(0);
     }
@@ -181,6 +191,7 @@ public class EndToEndTest extends TestCase{
         String repoGitLocation = tempPath.toString() + "/" + "EndToEndGitTest";
         Path docDir = Paths.get(repoGitLocation);
         indexGitRepoJob.indexDocsByDelta(docDir, "EndToEndGitTest", tempPath.toString(), "", repositoryChanged);
+        Singleton.getCodeIndexWriter().maybeCommit(true);
 
         searchResult = cs.search("endtoendtestfile", 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(4);
@@ -194,11 +205,13 @@ public class EndToEndTest extends TestCase{
         repoGitLocation = tempPath.toString() + "/" + "EndToEndGitTest";
         docDir = Paths.get(repoGitLocation);
         indexGitRepoJob.indexDocsByDelta(docDir, "EndToEndGitTest", tempPath.toString(), "", repositoryChanged);
+        Singleton.getCodeIndexWriter().maybeCommit(true);
 
         searchResult = cs.search("endtoendtestfile", 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(3);
 
         CodeIndexer.deleteByReponame("EndToEndGitTest");
+        Singleton.getCodeIndexWriter().maybeCommit(true);
         searchResult = cs.search("endtoendtestfile".toLowerCase(), 0);
         assertThat(searchResult.getCodeResultList().size()).isEqualTo(0);
     }
@@ -0,0 +1,145 @@
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.jobs.repository.IndexPipeline;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class IndexPipelineTest extends TestCase {
+
+    public void testEveryItemPassesThrough() {
+        List<Integer> owned = Collections.synchronizedList(new ArrayList<>());
+        IndexPipeline<Integer, Integer> pipeline = new IndexPipeline<>("test", 3, 2, 5, x -> x % 2 == 0 ? x * 10 : null, owned::add, () -> false);
+
+        pipeline.start();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(pipeline.submit(i)).isTrue();
+        }
+        pipeline.finish();
+
+        assertThat(owned).hasSize(500);
+        assertThat(owned.stream().mapToInt(Integer::intValue).sum()).isEqualTo(2495000);
+        assertThat(pipeline.getWalkStage().getItems()).isEqualTo(1000);
+        assertThat(pipeline.getParseStage().getItems()).isEqualTo(1000);
+        assertThat(pipeline.getOwnerStage().getItems()).isEqualTo(500);
+        assertThat(pipeline.getSummary()).contains("walk 1000", "parse 1000", "owner 500");
+    }
+
+    public void testQueuesAreBounded() {
+        AtomicInteger inFlight = new AtomicInteger(0);
+        AtomicInteger maxInFlight = new AtomicInteger(0);
+
+        IndexPipeline<Integer, Integer> pipeline = new IndexPipeline<>("test", 1, 1, 2, x -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return x;
+        }, x -> {
+            this.sleep(2);
+            inFlight.decrementAndGet();
+        }, () -> false);
+
+        pipeline.start();
+        for (int i = 0; i < 100; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.finish();
+
+        // Owner queue of two, one item with the owner and one parsed item waiting to be put
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(4);
+        assertThat(pipeline.getOwnerStage().getItems()).isEqualTo(100);
+    }
+
+    public void testStopsWhenTold() {
+        AtomicInteger parsed = new AtomicInteger(0);
+        IndexPipeline<Integer, Integer> pipeline = new IndexPipeline<>("test", 2, 2, 10, x -> {
+            parsed.incrementAndGet();
+            return x;
+        }, x -> {}, () -> parsed.get() >= 50);
+
+        pipeline.start();
+        int submitted = 0;
+        while (submitted < 100000 && pipeline.submit(submitted)) {
+            submitted++;
+        }
+        pipeline.finish();
+
+        assertThat(pipeline.isStopped()).isTrue();
+        assertThat(submitted).isLessThan(100000);
+        assertThat(pipeline.getParseStage().getItems()).isLessThan(submitted);
+    }
+
+    public void testFailuresDoNotStopThePipeline() {
+        List<Integer> owned = Collections.synchronizedList(new ArrayList<>());
+        IndexPipeline<Integer, Integer> pipeline = new IndexPipeline<>("test", 2, 2, 10, x -> {
+            if (x % 10 == 0) {
+                throw new IllegalStateException("parse failure");
+            }
+            return x;
+        }, x -> {
+            if (x % 10 == 1) {
+                throw new IllegalStateException("owner failure");
+            }
+            owned.add(x);
+        }, () -> false);
+
+        pipeline.start();
+        for (int i = 0; i < 100; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.finish();
+
+        assertThat(owned).hasSize(80);
+    }
+
+    public void testFinishesWithManyThreads() {
+        // Threads exiting quickly on the stop marker used to leave a later thread waiting for one forever
+        for (int i = 0; i < 200; i++) {
+            IndexPipeline<Integer, Integer> pipeline = new IndexPipeline<>("test", 8, 8, 1, x -> x, x -> {}, () -> false);
+            pipeline.start();
+            pipeline.submit(i);
+            pipeline.finish();
+
+            assertThat(pipeline.getOwnerStage().getItems()).isEqualTo(1);
+        }
+    }
+
+    /**
+     * Not a strict benchmark but compares the stages run one after another against the pipeline for work which
+     * mostly waits, as reading files and running blame do
+     */
+    public void testThroughput() {
+        int items = 200;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < items; i++) {
+            this.sleep(1);
+            this.sleep(2);
+        }
+        long serialMillis = (System.nanoTime() - start) / 1000000;
+
+        IndexPipeline<Integer, Integer> pipeline = new IndexPipeline<>("test", 4, 8, 100, x -> {
+            this.sleep(1);
+            return x;
+        }, x -> this.sleep(2), () -> false);
+
+        pipeline.start();
+        for (int i = 0; i < items; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.finish();
+
+        assertThat(pipeline.getOwnerStage().getElapsedMillis()).isLessThan(serialMillis);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.model.RepoResult;
+import com.searchcode.app.service.CodeIndexer;
+import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.Singleton;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class OwnerEnrichmentJobTest extends TestCase {
+
+    public void tearDown() throws IOException {
+        Singleton.getOwnerEnricher().remove("ownerrequeuegit");
+        Singleton.getOwnerEnricher().remove("ownerrequeuegone");
+        Singleton.getRepo().deleteRepoByName("ownerrequeuegit");
+        CodeIndexer.deleteByReponame("ownerrequeuegit");
+        CodeIndexer.deleteByReponame("ownerrequeuegone");
+        Singleton.getCodeIndexWriter().maybeCommit(true);
+    }
+
+    public void testRequeuePendingFromIndex() throws IOException {
+        Singleton.getRepo().saveRepo(new RepoResult(-1, "ownerrequeuegit", "git", "url", "", "", "source", "master"));
+
+        CodeIndexer.indexDocument(this.document("ownerrequeuegit", "Pending.java", Values.PENDINGCODEOWNER));
+        CodeIndexer.indexDocument(this.document("ownerrequeuegit", "Owned.java", "alice"));
+        CodeIndexer.indexDocument(this.document("ownerrequeuegit", "Named.java", "pending person"));
+        CodeIndexer.indexDocument(this.document("ownerrequeuegone", "Gone.java", Values.PENDINGCODEOWNER));
+
+        assertThat(new CodeSearcher().getPendingOwnerDocuments()).extracting(CodeIndexDocument::getFileName).contains("Pending.java", "Gone.java").doesNotContain("Owned.java", "Named.java");
+
+        // The repository for the second was deleted so there is nothing to backfill it with
+        new OwnerEnrichmentJob().requeuePending();
+        assertThat(Singleton.getOwnerEnricher().getPending("ownerrequeuegit")).isEqualTo(1);
+        assertThat(Singleton.getOwnerEnricher().getPending("ownerrequeuegone")).isEqualTo(0);
+    }
+
+    private CodeIndexDocument document(String repoName, String fileName, String codeOwner) {
+        return new CodeIndexDocument("./repo/" + repoName + "/" + fileName, repoName, fileName, fileName, repoName + "/" + fileName, "md5" + fileName, "Java", 1, "ownerrequeue contents", "url", codeOwner);
+    }
+}
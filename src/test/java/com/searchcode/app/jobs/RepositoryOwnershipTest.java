@@ -0,0 +1,237 @@
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.dto.CodeOwner;
+import com.searchcode.app.jobs.repository.IndexGitRepoJob;
+import com.searchcode.app.jobs.repository.RepositoryOwnership;
+import com.searchcode.app.service.OwnerEnricher;
+import com.searchcode.app.service.Singleton;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class RepositoryOwnershipTest extends TestCase {
+
+    private File directory;
+    private Git git;
+    private int time = 0;
+
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("RepositoryOwnershipTest").toFile();
+        this.git = Git.init().setDirectory(new File(this.directory, "repo")).call();
+    }
+
+    public void tearDown() throws IOException {
+        this.git.close();
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    public void testMatchesBlame() throws Exception {
+        this.write("A.java", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+        this.write("B.txt", "one", "two", "three", "four");
+        this.commit("alice");
+
+        this.write("A.java", "1", "2", "bob3", "bob4", "5", "6", "7", "8", "9", "10", "bob11");
+        this.commit("bob");
+
+        this.git.checkout().setCreateBranch(true).setName("feature").call();
+        this.write("A.java", "1", "2", "bob3", "bob4", "5", "6", "7", "carol8", "9", "10", "bob11");
+        this.write("C.java", "c1", "c2", "c3");
+        this.commit("carol");
+
+        this.git.checkout().setName("master").call();
+        this.write("A.java", "alice1", "2", "bob3", "bob4", "5", "6", "7", "8", "9", "10", "bob11");
+        this.commit("alice");
+
+        this.git.merge().include(this.git.getRepository().resolve("feature")).setCommit(false).call();
+        this.commit("dave");
+
+        this.git.rm().addFilepattern("B.txt").call();
+        this.write("docs/B.txt", "one", "two", "dave3", "four");
+        this.commit("dave");
+
+        this.write("A.java", "alice1", "2", "bob3", "5", "6", "7", "carol8", "9", "10", "bob11");
+        this.commit("bob");
+
+        RepositoryOwnership ownership = RepositoryOwnership.build(this.git.getRepository(), 0, 0);
+
+        for (String path : Arrays.asList("A.java", "C.java", "docs/B.txt")) {
+            assertThat(this.lines(ownership.getOwners(path))).as(path).isEqualTo(this.blame(path));
+        }
+
+        assertThat(this.lines(ownership.getOwners("A.java"))).containsEntry("alice", 7).containsEntry("bob", 2).containsEntry("carol", 1);
+        assertThat(this.lines(ownership.getOwners("docs/B.txt"))).containsEntry("alice", 3).containsEntry("dave", 1);
+        assertThat(ownership.getOwners("B.txt")).isNull();
+        assertThat(ownership.getFileCount()).isEqualTo(3);
+    }
+
+    public void testHistoryDepthAndLineLimit() throws Exception {
+        this.write("A.java", "1", "2", "3", "4");
+        this.commit("alice");
+        this.write("A.java", "1", "bob2", "3", "4");
+        this.commit("bob");
+        this.write("A.java", "1", "bob2", "carol3", "4");
+        this.commit("carol");
+
+        // Stops after the head so the commit before it is left with everything not yet attributed
+        RepositoryOwnership ownership = RepositoryOwnership.build(this.git.getRepository(), 1, 0);
+        assertThat(this.lines(ownership.getOwners("A.java"))).containsEntry("carol", 1).containsEntry("bob", 3).doesNotContainKey("alice");
+        assertThat(ownership.getCommitsWalked()).isEqualTo(1);
+
+        ownership = RepositoryOwnership.build(this.git.getRepository(), 0, 2);
+        assertThat(this.lines(ownership.getOwners("A.java"))).containsEntry("alice", 1).containsEntry("bob", 1).doesNotContainKey("carol");
+
+        List<CodeOwner> owners = RepositoryOwnership.build(this.git.getRepository(), 0, 0).getOwners("A.java");
+        for (CodeOwner owner : owners) {
+            if (owner.getName().equals("carol")) {
+                assertThat(owner.getMostRecentUnixCommitTimestamp()).isEqualTo(1400000000 + 3000);
+            }
+        }
+    }
+
+    public void testOnlyWalksForIncludedFiles() throws Exception {
+        this.write("A.java", "1", "2");
+        this.write("B.java", "1", "2");
+        this.commit("alice");
+        this.write("B.java", "1", "bob2");
+        this.commit("bob");
+
+        RepositoryOwnership ownership = RepositoryOwnership.build(this.git.getRepository(), 0, 0, (path, blobId) -> path.equals("B.java"));
+        assertThat(ownership.getOwners("A.java")).isNull();
+        assertThat(ownership.getBlobId("A.java")).isNotNull();
+        assertThat(this.lines(ownership.getOwners("B.java"))).containsEntry("alice", 1).containsEntry("bob", 1);
+
+        // Everything already known so there is nothing to walk for
+        ownership = RepositoryOwnership.build(this.git.getRepository(), 0, 0, (path, blobId) -> false);
+        assertThat(ownership.getCommitsWalked()).isEqualTo(0);
+        assertThat(ownership.getFileCount()).isEqualTo(0);
+        assertThat(ownership.getBlobId("B.java").name()).isEqualTo(this.git.getRepository().resolve("HEAD:B.java").name());
+    }
+
+    public void testEnrichmentOwnershipFollowsHead() throws Exception {
+        this.write("A.java", "1", "2", "3");
+        this.write("B.java", "1", "2", "3");
+        this.commit("alice");
+
+        // Something still waiting for the repository so the ownership is kept between batches
+        CodeIndexDocument waiting = new CodeIndexDocument("waiting", "repo", "C.java", "", "C.java", "md5", "Java", 1, "", "", Values.PENDINGCODEOWNER);
+        Singleton.getOwnerEnricher().add(new OwnerEnricher.Pending(new IndexGitRepoJob(), waiting, "C.java", "", "", 1, false));
+
+        IndexGitRepoJob indexGitRepoJob = new IndexGitRepoJob();
+        List<List<String>> codeLines = Arrays.asList(Arrays.asList("1", "2", "3"));
+
+        try {
+            assertThat(indexGitRepoJob.getCodeOwners(codeLines, Arrays.asList("A.java"), "repo", this.directory.toString(), this.directory.toString(), Singleton.getSearchCodeLib())).containsExactly("alice");
+
+            this.write("B.java", "bob1", "bob2", "3");
+            this.commit("bob");
+
+            assertThat(indexGitRepoJob.getCodeOwners(codeLines, Arrays.asList("B.java"), "repo", this.directory.toString(), this.directory.toString(), Singleton.getSearchCodeLib())).containsExactly("bob");
+        }
+        finally {
+            Singleton.getOwnerEnricher().remove("repo");
+        }
+    }
+
+    public void testEmptyRepository() throws IOException {
+        RepositoryOwnership ownership = RepositoryOwnership.build(this.git.getRepository(), 0, 0);
+        assertThat(ownership.getFileCount()).isEqualTo(0);
+        assertThat(ownership.getHead()).isNull();
+    }
+
+    /**
+     * Not a strict benchmark but compares blaming every file on its own, as indexing did, against one walk
+     */
+    public void testFasterThanBlamePerFile() throws Exception {
+        String[] authors = { "alice", "bob", "carol", "dave" };
+        List<List<String>> files = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            List<String> lines = new ArrayList<>();
+            for (int j = 0; j < 50; j++) {
+                lines.add("file " + i + " line " + j);
+            }
+            files.add(lines);
+            this.write("src/File" + i + ".java", lines.toArray(new String[0]));
+        }
+        this.commit("alice");
+
+        for (int c = 0; c < 60; c++) {
+            for (int i = c % 5; i < files.size(); i += 5) {
+                files.get(i).set((c * 7) % 50, "commit " + c + " changed file " + i);
+                this.write("src/File" + i + ".java", files.get(i).toArray(new String[0]));
+            }
+            this.commit(authors[c % authors.length]);
+        }
+
+        IndexGitRepoJob indexGitRepoJob = new IndexGitRepoJob();
+
+        long start = System.nanoTime();
+        Map<String, Map<String, Integer>> perFile = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            String path = "src/File" + i + ".java";
+            perFile.put(path, this.lines(indexGitRepoJob.getBlameInfo(50, "repo", this.directory.toString(), path)));
+        }
+        long perFileMillis = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        RepositoryOwnership ownership = RepositoryOwnership.build(this.git.getRepository(), 0, 0);
+        long walkMillis = (System.nanoTime() - start) / 1000000;
+
+        for (Map.Entry<String, Map<String, Integer>> entry : perFile.entrySet()) {
+            assertThat(this.lines(ownership.getOwners(entry.getKey()))).as(entry.getKey()).isEqualTo(entry.getValue());
+        }
+        assertThat(walkMillis).isLessThan(perFileMillis);
+    }
+
+    private void write(String path, String... lines) throws IOException {
+        File file = new File(this.git.getRepository().getWorkTree(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RevCommit commit(String author) throws Exception {
+        this.time += 1000;
+        PersonIdent personIdent = new PersonIdent(author, author + "@example.com", new Date((1400000000L + this.time) * 1000), TimeZone.getTimeZone("UTC"));
+
+        this.git.add().addFilepattern(".").call();
+        return this.git.commit().setAuthor(personIdent).setCommitter(personIdent).setMessage("commit by " + author).call();
+    }
+
+    private Map<String, Integer> blame(String path) throws Exception {
+        BlameResult blameResult = this.git.blame().setFilePath(path).call();
+        Map<String, Integer> lines = new HashMap<>();
+
+        for (int i = 0; i < blameResult.getResultContents().size(); i++) {
+            lines.merge(blameResult.getSourceAuthor(i).getName(), 1, Integer::sum);
+        }
+
+        return lines;
+    }
+
+    private Map<String, Integer> lines(List<CodeOwner> owners) {
+        Map<String, Integer> lines = new HashMap<>();
+        for (CodeOwner owner : owners) {
+            lines.put(owner.getName(), owner.getNoLines());
+        }
+        return lines;
+    }
+}
@@ -88,9 +88,12 @@ public class CodeIndexerTest extends TestCase {
     }
 
     public void testShouldBackOffWhenLoadZero() {
+        Data dataMock = Mockito.mock(Data.class);
         StatsService statsServiceMock = Mockito.mock(StatsService.class);
         when(statsServiceMock.getLoadAverage()).thenReturn("0.0");
+        when(dataMock.getDataByName(Values.BACKOFFVALUE, Values.DEFAULTBACKOFFVALUE)).thenReturn("1");
         Singleton.setStatsService(statsServiceMock);
+        Singleton.setData(dataMock);
 
         assertThat(CodeIndexer.shouldBackOff()).isFalse();
     }
@@ -98,18 +98,17 @@ public class CodeMatcherTest extends TestCase {
         assertEquals("expect(<strong>data).to_be_empty()</strong>", result);
     }
 
-    // TODO this is a case that should work but currently does not, need to investigate
-//    public void testHighlightLineMultipleMatches() {
-//        CodeMatcher cm = new CodeMatcher();
-//        List<String> matchTerms = new ArrayList<>();
-//        matchTerms.add("create");
-//        matchTerms.add("my");
-//        matchTerms.add("own");
-//        matchTerms.add("storage");
-//
-//        String result = cm.highlightLine("create_my_own_storage", matchTerms);
-//        assertEquals("<strong>create</strong>_<strong>my</strong>_<strong>own</strong>_<strong>storage</strong>", result);
-//    }
+    public void testHighlightLineMultipleMatches() {
+        CodeMatcher cm = new CodeMatcher();
+        List<String> matchTerms = new ArrayList<>();
+        matchTerms.add("create");
+        matchTerms.add("my");
+        matchTerms.add("own");
+        matchTerms.add("storage");
+
+        String result = cm.highlightLine("create_my_own_storage", matchTerms);
+        assertEquals("<strong>create</strong>_<strong>my</strong>_<strong>own</strong>_<strong>storage</strong>", result);
+    }
 
     public void testHighlightLineExtended() {
         CodeMatcher cm = new CodeMatcher();
@@ -311,6 +310,30 @@ public class CodeMatcherTest extends TestCase {
         assertEquals("<strong>this</strong> is some <strong>code</strong>", result.get(0).getLine());
     }
 
+    public void testFindMatchingLinesMatchOffsets() {
+        CodeMatcher cm = new CodeMatcher();
+        cm.MATCHOFFSETS = true;
+        List<String> matchTerms = new ArrayList<String>();
+        matchTerms.add("code");
+        matchTerms.add("this");
+
+        List<String> code = new ArrayList<>();
+        code.add("this <is> some code");
+        code.add("nothing & here");
+
+        List<CodeMatchResult> result = cm.findMatchingLines(code, matchTerms, true);
+
+        assertEquals(2, result.size());
+        assertEquals("this <is> some code", result.get(0).getLine());
+        assertEquals(2, result.get(0).getMatchOffsets().length);
+        assertEquals(0, result.get(0).getMatchOffsets()[0][0]);
+        assertEquals(4, result.get(0).getMatchOffsets()[0][1]);
+        assertEquals(15, result.get(0).getMatchOffsets()[1][0]);
+        assertEquals(19, result.get(0).getMatchOffsets()[1][1]);
+        assertEquals("nothing & here", result.get(1).getLine());
+        assertNull(result.get(1).getMatchOffsets());
+    }
+
     public void testFindMatchingLines2() {
         CodeMatcher cm = new CodeMatcher();
         List<String> matchTerms = new ArrayList<String>();
@@ -408,4 +431,111 @@ public class CodeMatcherTest extends TestCase {
         assertTrue(strings.contains("search*"));
         assertTrue(strings.contains("s*"));
     }
-}
\ No newline at end of file
+
+    public void testMatchResultsSameAsPrevious() {
+        Random random = new Random(7);
+        String[] words = { "foo", "bar", "baz", "qux", "other", "words", "here", "" };
+
+        for (int run = 0; run < 500; run++) {
+            CodeMatcher cm = new CodeMatcher();
+            cm.MATCHLINES = 1 + random.nextInt(20);
+
+            List<String> code = new ArrayList<>();
+            int lines = random.nextInt(60);
+            for (int i = 0; i < lines; i++) {
+                StringBuilder line = new StringBuilder();
+                for (int j = random.nextInt(5); j > 0; j--) {
+                    line.append(words[random.nextInt(words.length)]).append(" ");
+                }
+                code.add(line.toString());
+            }
+
+            List<String> terms = cm.splitTerms(words[random.nextInt(4)] + " " + words[random.nextInt(4)]);
+
+            List<CodeMatchResult> expected = this.previousMatchResults(cm, code, terms);
+            List<CodeMatchResult> actual = cm.matchResults(code, terms, true);
+
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getLine(), actual.get(i).getLine());
+                assertEquals(expected.get(i).getLineNumber(), actual.get(i).getLineNumber());
+                assertEquals(expected.get(i).getLineMatches(), actual.get(i).getLineMatches());
+                assertEquals(expected.get(i).isMatching(), actual.get(i).isMatching());
+                assertEquals(expected.get(i).isAddBreak(), actual.get(i).isAddBreak());
+            }
+        }
+    }
+
+    public void testMatchResultsManyMatchingLinesPerformance() {
+        CodeMatcher cm = new CodeMatcher();
+        cm.MATCHLINES = 50000;
+        cm.MAXLINEDEPTH = 50000;
+
+        List<String> code = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            code.add(i % 3 == 0 ? "nothing" : "this is some code");
+        }
+
+        Instant start = Instant.now();
+        List<CodeMatchResult> result = cm.matchResults(code, cm.splitTerms("code"), false);
+
+        assertEquals(50000, result.size());
+        assertTrue(Duration.between(start, Instant.now()).getSeconds() <= 5);
+    }
+
+    /**
+     * How matchResults used to select lines which scanned the whole list for every lookup
+     */
+    private List<CodeMatchResult> previousMatchResults(CodeMatcher cm, List<String> code, List<String> matchTerms) {
+        List<CodeMatchResult> resultLines = cm.findMatchingLines(code, matchTerms, true);
+        List<CodeMatchResult> newResultLines = new ArrayList<>();
+
+        resultLines.sort((p1, p2) -> new Integer(p2.getLineMatches()).compareTo(p1.getLineMatches()));
+
+        for(int i = 0; i < resultLines.size(); i++) {
+            CodeMatchResult match = resultLines.get(i);
+            match.setLineNumber(match.getLineNumber() + 1);
+
+            if (this.getByLineNumber(newResultLines, match.getLineNumber()) == null) {
+                newResultLines.add(match);
+            }
+
+            CodeMatchResult resultBefore = this.getByLineNumber(resultLines, match.getLineNumber() - 1);
+            CodeMatchResult resultAfter  = this.getByLineNumber(resultLines, match.getLineNumber() + 1);
+
+            if (resultBefore != null && this.getByLineNumber(newResultLines, match.getLineNumber() - 1) == null) {
+                newResultLines.add(resultBefore);
+            }
+            if (resultAfter != null && this.getByLineNumber(newResultLines, match.getLineNumber() + 1) == null) {
+                newResultLines.add(resultAfter);
+            }
+
+            if (newResultLines.size() >= cm.MATCHLINES) {
+                break;
+            }
+        }
+
+        newResultLines.sort((p1, p2) -> new Integer(p1.getLineNumber()).compareTo(p2.getLineNumber()));
+
+        if (!newResultLines.isEmpty()) {
+            newResultLines.get(0).addBreak = false;
+            return newResultLines;
+        }
+
+        return null;
+    }
+
+    private CodeMatchResult getByLineNumber(List<CodeMatchResult> lst, int value) {
+        for(CodeMatchResult s: lst){
+            if (s.getLineNumber() == value) {
+                return s;
+            }
+        }
+        return null;
+    }
+}
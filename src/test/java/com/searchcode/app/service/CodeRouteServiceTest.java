@@ -5,6 +5,7 @@ import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Data;
 import com.searchcode.app.dto.CodeMatchResult;
 import com.searchcode.app.dto.CodeResult;
+import com.searchcode.app.dto.SearchResult;
 import com.searchcode.app.service.route.CodeRouteService;
 import junit.framework.TestCase;
 import org.mockito.Mockito;
@@ -120,6 +121,29 @@ public class CodeRouteServiceTest extends TestCase {
         assertThat(viewName).isEqualTo("searchresults.ftl");
     }
 
+    public void testHtmlVeryLargePage() {
+        CodeRouteService codeRouteService = new CodeRouteService();
+
+        Request request = Mockito.mock(Request.class);
+
+        Set<String> hashSet = new HashSet<>();
+        hashSet.add("q");
+        hashSet.add("p");
+        when(request.queryParams()).thenReturn(hashSet);
+        when(request.queryParams("q")).thenReturn("test");
+        when(request.queryParams("p")).thenReturn("107374182");
+
+        ModelAndView modelAndView = codeRouteService.html(request, null);
+
+        Map<String, Object> model = (Map<String, Object>)modelAndView.getModel();
+        SearchResult searchResult = (SearchResult)model.get("searchResult");
+
+        // Clamped to the deepest page which can be collected rather than overflowing and failing the search
+        assertThat(searchResult.getPage()).isEqualTo(Integer.MAX_VALUE / 20 - 1);
+        assertThat(searchResult.getCodeResultList()).isEmpty();
+        assertThat(modelAndView.getViewName()).isEqualTo("searchresults.ftl");
+    }
+
     public void testGetCodeNoParams() {
         CodeRouteService codeRouteService = new CodeRouteService();
         Request request = Mockito.mock(Request.class);
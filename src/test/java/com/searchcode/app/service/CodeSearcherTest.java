@@ -1,12 +1,25 @@
 package com.searchcode.app.service;
 
+import com.searchcode.app.config.Values;
 import com.searchcode.app.dto.CodeIndexDocument;
 import com.searchcode.app.dto.CodeResult;
 import com.searchcode.app.dto.ProjectStats;
+import com.searchcode.app.dto.SearchResult;
 import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
@@ -54,4 +67,194 @@ public class CodeSearcherTest extends TestCase {
         assertThat(projectStats.getRepoFacetOwner().get(0).getOwner()).isEqualTo("/");
         assertThat(projectStats.getRepoFacetOwner().get(0).getCount()).isEqualTo(1);
     }
+
+    public void testSearchCountsOnlyRequestedFacets() throws IOException {
+        CodeIndexDocument codeIndexDocument = new CodeIndexDocument("/", "testSearchFacetDimensions", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/");
+        CodeIndexer.indexDocument(codeIndexDocument);
+        CodeSearcher cs = new CodeSearcher();
+
+        SearchResult searchResult = cs.search("reponame:testSearchFacetDimensions", 0);
+        assertThat(searchResult.getLanguageFacetResults()).hasSize(1);
+        assertThat(searchResult.getOwnerFacetResults()).hasSize(1);
+
+        searchResult = cs.search("reponame:testSearchFacetDimensions", 0, Arrays.asList(Values.LANGUAGENAME));
+        assertThat(searchResult.getTotalHits()).isEqualTo(1);
+        assertThat(searchResult.getLanguageFacetResults().get(0).getLanguageName()).isEqualTo("Java");
+        assertThat(searchResult.getRepoFacetResults()).isEmpty();
+        assertThat(searchResult.getOwnerFacetResults()).isEmpty();
+
+        searchResult = cs.search("reponame:testSearchFacetDimensions", 0, new ArrayList<>());
+        assertThat(searchResult.getTotalHits()).isEqualTo(1);
+        assertThat(searchResult.getLanguageFacetResults()).isEmpty();
+    }
+
+    public void testSearchAfterWalksEveryResult() throws IOException {
+        Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 45; i++) {
+            queue.add(new CodeIndexDocument("/testSearchAfterCursor/" + i, "testSearchAfterCursor", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        }
+        CodeIndexer.indexDocuments(queue);
+        CodeSearcher cs = new CodeSearcher();
+
+        Set<Integer> seen = new HashSet<>();
+        SearchResult searchResult = cs.search("reponame:testSearchAfterCursor", 0);
+        int pages = 1;
+
+        while (true) {
+            for (CodeResult codeResult : searchResult.getCodeResultList()) {
+                assertThat(seen.add(codeResult.getDocumentId())).isTrue();
+            }
+
+            if (searchResult.getCursor() == null) {
+                break;
+            }
+
+            searchResult = cs.searchAfter("reponame:testSearchAfterCursor", new HashMap<>(), searchResult.getCursor(), new ArrayList<>());
+            assertThat(searchResult.getPage()).isEqualTo(pages);
+            pages++;
+        }
+
+        assertThat(seen).hasSize(45);
+        assertThat(pages).isEqualTo(3);
+        assertThat(cs.search("reponame:testSearchAfterCursor", 2).getCodeResultList()).hasSize(5);
+    }
+
+    public void testSearchAfterInvalidCursorReturnsFirstPage() {
+        CodeSearcher cs = new CodeSearcher();
+        SearchResult searchResult = cs.searchAfter("reponame:testSearchAfterCursor", new HashMap<>(), "not a cursor", new ArrayList<>());
+
+        assertThat(searchResult.getPage()).isEqualTo(0);
+    }
+
+    public void testSearchAfterStaleCursorUsesPageOffset() throws IOException {
+        Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 45; i++) {
+            queue.add(new CodeIndexDocument("/testSearchAfterStaleCursor/" + i, "testSearchAfterStaleCursor", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        }
+        CodeIndexer.indexDocuments(queue);
+        CodeSearcher cs = new CodeSearcher();
+
+        // Anything indexed after the cursor was handed out gives a new reader whose document ids it cannot trust
+        String stale = cs.search("reponame:testSearchAfterStaleCursor", 0).getCursor();
+        queue.add(new CodeIndexDocument("/testSearchAfterStaleCursorOther/0", "testSearchAfterStaleCursorOther", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        CodeIndexer.indexDocuments(queue);
+
+        SearchResult expected = cs.search("reponame:testSearchAfterStaleCursor", 1);
+        List<Integer> expectedIds = new ArrayList<>();
+        for (CodeResult codeResult : expected.getCodeResultList()) {
+            expectedIds.add(codeResult.getDocumentId());
+        }
+        assertThat(expectedIds).hasSize(20);
+        assertThat(SearchCursor.decode(expected.getCursor()).getVersion()).isNotEqualTo(SearchCursor.decode(stale).getVersion());
+
+        // Neither cursor can be trusted to point at the right document so both give the page by offset
+        String outside = new SearchCursor(SearchCursor.decode(expected.getCursor()).getVersion(), 1, Integer.MAX_VALUE - 1, 1.0f).encode();
+
+        for (String cursor : Arrays.asList(stale, outside)) {
+            SearchResult searchResult = cs.searchAfter("reponame:testSearchAfterStaleCursor", new HashMap<>(), cursor, new ArrayList<>());
+            List<Integer> ids = new ArrayList<>();
+            for (CodeResult codeResult : searchResult.getCodeResultList()) {
+                ids.add(codeResult.getDocumentId());
+            }
+
+            assertThat(searchResult.getPage()).isEqualTo(1);
+            assertThat(ids).isEqualTo(expectedIds);
+        }
+    }
+
+    public void testSearchVeryLargePage() throws IOException {
+        Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
+        queue.add(new CodeIndexDocument("/testSearchVeryLargePage/1", "testSearchVeryLargePage", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        CodeIndexer.indexDocuments(queue);
+        CodeSearcher cs = new CodeSearcher();
+
+        for (int page : new int[] { 107374182, Integer.MAX_VALUE }) {
+            SearchResult searchResult = cs.search("reponame:testSearchVeryLargePage", page);
+
+            assertThat(searchResult.getPage()).isEqualTo(cs.getMaxPage());
+            assertThat(searchResult.getTotalHits()).isEqualTo(1);
+            assertThat(searchResult.getCodeResultList()).isEmpty();
+            assertThat(searchResult.getCursor()).isNull();
+        }
+
+        assertThat(cs.grep("testSearchVeryLargePage", false, new HashMap<>(), Integer.MAX_VALUE).getCodeResultList()).isEmpty();
+    }
+
+    public void testExportWalksEveryResult() throws IOException {
+        Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 45; i++) {
+            queue.add(new CodeIndexDocument("/testExport/" + i, "testExport", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        }
+        CodeIndexer.indexDocuments(queue);
+        CodeSearcher cs = new CodeSearcher();
+
+        Set<Integer> seen = new HashSet<>();
+        int exported = cs.export("reponame:testExport", new HashMap<>(), false, (codeResult) -> {
+            assertThat(codeResult.getRepoName()).isEqualTo("testExport");
+            return seen.add(codeResult.getDocumentId());
+        });
+
+        assertThat(exported).isEqualTo(45);
+        assertThat(seen).hasSize(45);
+    }
+
+    public void testExportStopsWhenConsumerDoes() throws IOException {
+        Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 10; i++) {
+            queue.add(new CodeIndexDocument("/testExportStops/" + i, "testExportStops", "/", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        }
+        CodeIndexer.indexDocuments(queue);
+        CodeSearcher cs = new CodeSearcher();
+
+        List<CodeResult> received = new ArrayList<>();
+        int exported = cs.export("reponame:testExportStops", new HashMap<>(), false, (codeResult) -> {
+            received.add(codeResult);
+            return received.size() < 3;
+        });
+
+        assertThat(exported).isEqualTo(3);
+        assertThat(received).hasSize(3);
+    }
+
+    public void testGrepVerifiesCandidates() throws IOException {
+        File directory = Files.createTempDirectory("testGrep").toFile();
+        boolean indexTrigrams = CodeIndexer.INDEXTRIGRAMS;
+        CodeIndexer.INDEXTRIGRAMS = true;
+
+        try {
+            String[] contents = { "$this->getFoo($bar);", "$this->getFoo ($bar);", "logParseError(line);", "log the error" };
+            Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
+
+            for (int i = 0; i < contents.length; i++) {
+                File file = new File(directory, "file" + i + ".php");
+                Files.write(file.toPath(), Arrays.asList("<?php", contents[i]));
+                queue.add(new CodeIndexDocument(file.getAbsolutePath(), "testGrep", file.getName(), "/", "/", "md5hash", "PHP", 2, "<?php\n" + contents[i], "/", "/"));
+            }
+            CodeIndexer.indexDocuments(queue);
+            CodeSearcher cs = new CodeSearcher();
+
+            Map<String, String[]> filters = new HashMap<>();
+            filters.put(Values.REPONAME, new String[] { "testGrep" });
+
+            SearchResult searchResult = cs.grep("->getFoo(", false, filters, 0);
+            assertThat(searchResult.getTotalHits()).isEqualTo(1);
+            assertThat(searchResult.getCodeResultList().get(0).getFileName()).isEqualTo("file0.php");
+            assertThat(searchResult.getCodeResultList().get(0).getMatchingResults().get(0).getLineNumber()).isEqualTo(2);
+            assertThat(searchResult.getCodeResultList().get(0).getMatchingResults().get(0).getMatchOffsets()[0]).containsExactly(5, 14);
+
+            searchResult = cs.grep("log\\w+Error", true, filters, 0);
+            assertThat(searchResult.getTotalHits()).isEqualTo(1);
+            assertThat(searchResult.getCodeResultList().get(0).getFileName()).isEqualTo("file2.php");
+
+            searchResult = cs.grep("(?i)getfoo", true, filters, 0);
+            assertThat(searchResult.getTotalHits()).isEqualTo(2);
+
+            searchResult = cs.grep("->getfoo(", false, filters, 0);
+            assertThat(searchResult.getTotalHits()).isEqualTo(0);
+        }
+        finally {
+            CodeIndexer.INDEXTRIGRAMS = indexTrigrams;
+            FileUtils.deleteDirectory(directory);
+        }
+    }
 }
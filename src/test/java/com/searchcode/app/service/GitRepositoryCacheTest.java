@@ -0,0 +1,135 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class GitRepositoryCacheTest extends TestCase {
+
+    private File directory;
+    private File gitDir;
+
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("GitRepositoryCacheTest").toFile();
+        Git git = Git.init().setDirectory(new File(this.directory, "repo")).call();
+        Files.write(new File(this.directory, "repo/A.java").toPath(), "class A {}\n".getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("first").call();
+        git.close();
+
+        this.gitDir = new File(this.directory, "repo/.git");
+    }
+
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    public void testReusesOpenRepository() throws IOException {
+        GitRepositoryCache gitRepositoryCache = new GitRepositoryCache(60000);
+
+        Repository first = gitRepositoryCache.acquire(this.gitDir);
+        Repository second = gitRepositoryCache.acquire(new File(this.directory, "repo/./.git"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(gitRepositoryCache.getHits()).isEqualTo(1);
+        assertThat(gitRepositoryCache.getMisses()).isEqualTo(1);
+        assertThat(gitRepositoryCache.getHitRatio()).isEqualTo(0.5);
+        assertThat(gitRepositoryCache.getInUse()).isEqualTo(1);
+
+        gitRepositoryCache.release(first);
+        gitRepositoryCache.release(second);
+
+        // Nothing holds it but it stays open until idle
+        assertThat(gitRepositoryCache.getInUse()).isEqualTo(0);
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(1);
+        assertThat(gitRepositoryCache.acquire(this.gitDir)).isSameAs(first);
+        assertThat(first.resolve("HEAD")).isNotNull();
+    }
+
+    public void testEvictsIdle() throws Exception {
+        GitRepositoryCache gitRepositoryCache = new GitRepositoryCache(1);
+
+        Repository held = gitRepositoryCache.acquire(this.gitDir);
+        Thread.sleep(10);
+        gitRepositoryCache.evictIdle();
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(1);
+
+        gitRepositoryCache.release(held);
+        Thread.sleep(10);
+        gitRepositoryCache.evictIdle();
+
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(0);
+        assertThat(gitRepositoryCache.getEvictions()).isEqualTo(1);
+        assertThat(gitRepositoryCache.acquire(this.gitDir)).isNotSameAs(held);
+    }
+
+    public void testZeroIdleClosesOnRelease() throws IOException {
+        GitRepositoryCache gitRepositoryCache = new GitRepositoryCache(0);
+
+        Repository first = gitRepositoryCache.acquire(this.gitDir);
+        assertThat(gitRepositoryCache.acquire(this.gitDir)).isSameAs(first);
+        gitRepositoryCache.release(first);
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(1);
+        gitRepositoryCache.release(first);
+
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(0);
+        assertThat(gitRepositoryCache.getEvictions()).isEqualTo(0);
+    }
+
+    public void testInvalidateWhileHeld() throws IOException {
+        GitRepositoryCache gitRepositoryCache = new GitRepositoryCache(60000);
+
+        Repository held = gitRepositoryCache.acquire(this.gitDir);
+        gitRepositoryCache.invalidate(this.gitDir);
+
+        // The holder keeps its repository while anything new gets a fresh one
+        Repository fresh = gitRepositoryCache.acquire(this.gitDir);
+        assertThat(fresh).isNotSameAs(held);
+        assertThat(held.resolve("HEAD")).isNotNull();
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(2);
+
+        gitRepositoryCache.release(held);
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(1);
+
+        gitRepositoryCache.release(fresh);
+        gitRepositoryCache.invalidate(this.gitDir);
+        assertThat(gitRepositoryCache.getOpen()).isEqualTo(0);
+        gitRepositoryCache.release(null);
+    }
+
+    public void testWindowCacheConfig() {
+        WindowCacheConfig windowCacheConfig = GitRepositoryCache.windowCacheConfig(64, 8);
+        assertThat(windowCacheConfig.getPackedGitWindowSize()).isEqualTo(8 * WindowCacheConfig.KB);
+        assertThat(windowCacheConfig.getPackedGitLimit()).isEqualTo(48L * WindowCacheConfig.MB);
+        assertThat(windowCacheConfig.getDeltaBaseCacheLimit()).isEqualTo(16 * WindowCacheConfig.MB);
+
+        // Rounded to a power of two JGit accepts and never larger than the limit
+        windowCacheConfig = GitRepositoryCache.windowCacheConfig(1, 3000);
+        assertThat(windowCacheConfig.getPackedGitWindowSize()).isEqualTo(2048 * WindowCacheConfig.KB);
+        assertThat(windowCacheConfig.getPackedGitLimit()).isEqualTo(2048L * WindowCacheConfig.KB);
+        assertThat(GitRepositoryCache.windowCacheConfig(0, 1).getPackedGitWindowSize()).isEqualTo(4 * WindowCacheConfig.KB);
+
+        windowCacheConfig.install();
+        GitRepositoryCache.windowCacheConfig(64, 8).install();
+    }
+
+    public void testFetchFileRevisionUsesCache() throws IOException {
+        long hits = Singleton.getGitRepositoryCache().getHits();
+        GitService gitService = new GitService();
+
+        assertThat(gitService.fetchFileRevision(this.gitDir.toString(), "HEAD", "A.java")).isEqualTo("class A {}\n");
+        assertThat(gitService.fetchFileRevision(this.gitDir.toString(), "HEAD", "A.java")).isEqualTo("class A {}\n");
+        assertThat(Singleton.getGitRepositoryCache().getHits()).isGreaterThan(hits);
+
+        Singleton.getGitRepositoryCache().invalidate(this.gitDir);
+    }
+}
@@ -0,0 +1,115 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class HitHydratorTest extends TestCase {
+
+    public void testResultsKeepOrder() {
+        HitHydrator hitHydrator = new HitHydrator(4, 10, 5000);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(i);
+        }
+
+        // Earlier items take longer so they finish last
+        List<String> results = hitHydrator.hydrate(items, (item) -> {
+            sleep(20 - item);
+            return "result" + item;
+        }, (item) -> "fallback");
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(results.get(i)).isEqualTo("result" + i);
+        }
+
+        hitHydrator.shutdown();
+    }
+
+    public void testRunsConcurrently() throws InterruptedException {
+        HitHydrator hitHydrator = new HitHydrator(4, 10, 5000);
+        CountDownLatch latch = new CountDownLatch(4);
+
+        // Would time out if each item had to wait for the one before it
+        List<Boolean> results = hitHydrator.hydrate(Arrays.asList(1, 2, 3, 4), (item) -> {
+            latch.countDown();
+            try {
+                return latch.await(2, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                return false;
+            }
+        }, (item) -> false);
+
+        assertThat(results).containsExactly(true, true, true, true);
+        hitHydrator.shutdown();
+    }
+
+    public void testTimeoutUsesFallback() {
+        HitHydrator hitHydrator = new HitHydrator(2, 10, 100);
+
+        List<String> results = hitHydrator.hydrate(Arrays.asList(1, 2), (item) -> {
+            if (item == 1) {
+                sleep(2000);
+            }
+            return "result" + item;
+        }, (item) -> "fallback" + item);
+
+        assertThat(results).containsExactly("fallback1", "result2");
+        assertThat(hitHydrator.getTimeouts()).isEqualTo(1);
+        hitHydrator.shutdown();
+    }
+
+    public void testExceptionUsesFallback() {
+        HitHydrator hitHydrator = new HitHydrator(2, 10, 5000);
+
+        List<String> results = hitHydrator.hydrate(Arrays.asList(1, 2), (item) -> {
+            if (item == 2) {
+                throw new IllegalStateException("broken");
+            }
+            return "result" + item;
+        }, (item) -> "fallback" + item);
+
+        assertThat(results).containsExactly("result1", "fallback2");
+        assertThat(hitHydrator.getFailures()).isEqualTo(1);
+        hitHydrator.shutdown();
+    }
+
+    public void testFullQueueRunsOnCaller() {
+        HitHydrator hitHydrator = new HitHydrator(1, 1, 5000);
+
+        List<String> results = hitHydrator.hydrate(Arrays.asList(1, 2, 3, 4), (item) -> {
+            sleep(50);
+            return "result" + item;
+        }, (item) -> "fallback");
+
+        assertThat(results).containsExactly("result1", "result2", "result3", "result4");
+        assertThat(hitHydrator.getCallerRuns()).isGreaterThan(0);
+        hitHydrator.shutdown();
+    }
+
+    public void testNoWorkersRunsOnCaller() {
+        HitHydrator hitHydrator = new HitHydrator(0, 0, 5000);
+        String caller = Thread.currentThread().getName();
+
+        List<String> results = hitHydrator.hydrate(Arrays.asList(1, 2, 3), (item) -> Thread.currentThread().getName(), (item) -> "fallback");
+
+        assertThat(results).containsExactly(caller, caller, caller);
+        assertThat(hitHydrator.getTasks()).isEqualTo(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
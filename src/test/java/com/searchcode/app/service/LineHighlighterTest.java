@@ -0,0 +1,95 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class LineHighlighterTest extends TestCase {
+
+    public void testNoTermsOnlyEscapes() {
+        LineHighlighter lineHighlighter = new LineHighlighter(new ArrayList<>());
+        Random random = new Random(3);
+
+        for (int i = 0; i < 1000; i++) {
+            String line = RandomStringUtils.random(random.nextInt(100), 0, 0, false, false, null, random);
+            assertThat(lineHighlighter.highlight(line)).isEqualTo(StringEscapeUtils.escapeHtml4(line));
+        }
+    }
+
+    public void testOverlappingSpansMerge() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("foo", "oob", "bar"));
+
+        assertThat(lineHighlighter.highlight("a foobar b")).isEqualTo("a <strong>foobar</strong> b");
+        assertThat(lineHighlighter.highlight("foo oob")).isEqualTo("<strong>foo</strong> <strong>oob</strong>");
+    }
+
+    public void testMatchesBeforeLongestTerm() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("storage", "my"));
+
+        assertThat(lineHighlighter.highlight("my_storage")).isEqualTo("<strong>my</strong>_<strong>storage</strong>");
+    }
+
+    public void testEveryOccurrenceHighlighted() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("ab"));
+
+        assertThat(lineHighlighter.highlight("abxab<ab>")).isEqualTo("<strong>ab</strong>x<strong>ab</strong>&lt;<strong>ab</strong>&gt;");
+    }
+
+    public void testWildcardOnlyToEndOfToken() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("na*"));
+
+        assertThat(lineHighlighter.highlight("a name&value  banana")).isEqualTo("a <strong>name&amp;value</strong>  ba<strong>nana</strong>");
+    }
+
+    public void testStarHighlightsEveryToken() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("*"));
+
+        assertThat(lineHighlighter.highlight("one  two")).isEqualTo("<strong>one</strong>  <strong>two</strong>");
+    }
+
+    public void testMatchOffsetsSameSpansAsHighlight() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("foo", "oob", "ba*", "<"));
+
+        int[][] offsets = lineHighlighter.getMatchOffsets("x<foobar y bat z");
+        assertThat(offsets.length).isEqualTo(2);
+        assertThat(offsets[0]).containsExactly(1, 8);
+        assertThat(offsets[1]).containsExactly(11, 14);
+        assertThat(lineHighlighter.highlight("x<foobar y bat z")).isEqualTo("x<strong>&lt;foobar</strong> y <strong>bat</strong> z");
+        assertThat(lineHighlighter.getMatchOffsets("nothing")).isEmpty();
+    }
+
+    public void testReusedForManyLines() {
+        LineHighlighter lineHighlighter = new LineHighlighter(Arrays.asList("code"));
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longLine.append("some code ");
+        }
+
+        assertThat(lineHighlighter.highlight(longLine.toString())).contains("<strong>code</strong>");
+        assertThat(lineHighlighter.highlight("code")).isEqualTo("<strong>code</strong>");
+        assertThat(lineHighlighter.highlight("")).isEqualTo("");
+    }
+
+    /**
+     * A highlighter is built once per result and reused for every line, so it must not carry anything over
+     */
+    public void testHighlightReused() {
+        List<String> terms = new CodeMatcher().splitTerms("List<String> matchTerms highlight* code");
+        String line = "    public List<String> highlightLine(String line, List<String> matchTerms) { return code; } // <b>";
+
+        LineHighlighter lineHighlighter = new LineHighlighter(terms);
+        String expected = lineHighlighter.highlight(line);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(lineHighlighter.highlight(line)).isEqualTo(expected);
+        }
+        assertThat(expected).contains("<strong>highlightLine(String</strong>");
+    }
+}
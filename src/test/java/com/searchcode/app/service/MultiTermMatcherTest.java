@@ -0,0 +1,127 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class MultiTermMatcherTest extends TestCase {
+
+    public void testCountsEachTermOnce() {
+        MultiTermMatcher matcher = new MultiTermMatcher(Arrays.asList("code", "this", "is"));
+
+        assertThat(matcher.countMatches("this is some code")).isEqualTo(3);
+        assertThat(matcher.countMatches("THIS IS SOME CODE code code")).isEqualTo(3);
+        assertThat(matcher.countMatches("nothing to see")).isEqualTo(0);
+        assertThat(matcher.countMatches("")).isEqualTo(0);
+    }
+
+    public void testOverlappingTerms() {
+        MultiTermMatcher matcher = new MultiTermMatcher(Arrays.asList("she", "he", "hers", "his"));
+
+        assertThat(matcher.countMatches("ushers")).isEqualTo(3);
+        assertThat(matcher.countMatches("ahishers")).isEqualTo(4);
+    }
+
+    public void testWildcardsAndWhitespace() {
+        MultiTermMatcher matcher = new MultiTermMatcher(Arrays.asList("foo*", "foo", "a b", "*"));
+
+        // foo* and foo are both counted as they are separate terms and * matches everything
+        assertThat(matcher.countMatches("foobar")).isEqualTo(3);
+        assertThat(matcher.countMatches("a\t \n b")).isEqualTo(2);
+        assertThat(matcher.countMatches("ab")).isEqualTo(1);
+    }
+
+    public void testOperatorsNeverMatch() {
+        MultiTermMatcher matcher = new MultiTermMatcher(Arrays.asList("AND", "and"));
+
+        assertThat(matcher.countMatches("this AND that")).isEqualTo(1);
+    }
+
+    public void testSameAsContains() {
+        Random random = new Random(42);
+        String alphabet = "abcAB C\t.*()<>-_üİ";
+        CodeMatcher codeMatcher = new CodeMatcher();
+
+        for (int run = 0; run < 200; run++) {
+            List<String> terms = codeMatcher.splitTerms(this.randomString(random, alphabet, 1 + random.nextInt(20)));
+            MultiTermMatcher matcher = new MultiTermMatcher(terms);
+
+            for (int line = 0; line < 50; line++) {
+                String code = this.randomString(random, alphabet, random.nextInt(40));
+                assertThat(matcher.countMatches(code)).as(terms + " " + code).isEqualTo(this.countWithContains(code, terms));
+            }
+        }
+    }
+
+    public void testManyTerms() {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            terms.add("term" + i);
+        }
+        MultiTermMatcher matcher = new MultiTermMatcher(terms);
+
+        // term1 also matches inside term10 to term19 and so on
+        assertThat(matcher.countMatches("term10 term99")).isEqualTo(this.countWithContains("term10 term99", terms));
+    }
+
+    /**
+     * Compares the automaton with the contains approach it replaced over a 10,000 line file
+     */
+    public void testSameAsContainsLargeFile() {
+        List<String> terms = new CodeMatcher().splitTerms("List<String> matchTerms findMatchingLines code.get()");
+        List<String> code = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            code.add(this.randomString(random, "abcdefghijklmnopqrstuvwxyz ABCDEFG\t(){}<>.;=", 80));
+        }
+        code.set(9999, "List<String> code = findMatchingLines(code.get(i), matchTerms);");
+
+        assertThat(this.runAutomaton(code, terms)).isEqualTo(this.runContains(code, terms));
+    }
+
+    private int runContains(List<String> code, List<String> terms) {
+        int total = 0;
+        for (String line : code) {
+            total += this.countWithContains(line, terms);
+        }
+        return total;
+    }
+
+    private int runAutomaton(List<String> code, List<String> terms) {
+        MultiTermMatcher matcher = new MultiTermMatcher(terms);
+        int total = 0;
+        for (String line : code) {
+            total += matcher.countMatches(line);
+        }
+        return total;
+    }
+
+    /**
+     * How CodeMatcher.findMatchingLines used to count terms in a line
+     */
+    private int countWithContains(String line, List<String> terms) {
+        String matchRes = line.toLowerCase().replaceAll("\\s+", " ");
+        int matching = 0;
+
+        for (String matchTerm : terms) {
+            if (matchRes.contains(matchTerm.replace("*", ""))) {
+                matching++;
+            }
+        }
+
+        return matching;
+    }
+
+    private String randomString(Random random, String alphabet, int length) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return stringBuilder.toString();
+    }
+}
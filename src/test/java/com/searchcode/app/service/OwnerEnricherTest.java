@@ -0,0 +1,106 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.jobs.repository.IndexBaseRepoJob;
+import com.searchcode.app.util.FileContent;
+import com.searchcode.app.util.SearchcodeLib;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class OwnerEnricherTest extends TestCase {
+
+    private List<File> files = new ArrayList<>();
+
+    private IndexBaseRepoJob job = new IndexBaseRepoJob() {
+        @Override
+        public String getCodeOwner(List<String> codeLines, String newString, String repoName, String fileRepoLocations, SearchcodeLib scl) {
+            return "owner of " + newString + " " + codeLines.size();
+        }
+    };
+
+    public void tearDown() {
+        for (File file : this.files) {
+            Singleton.getCodeIndexQueue().removeIf(x -> x.getRepoLocationRepoNameLocationFilename().equals(file.toString()));
+            file.delete();
+        }
+    }
+
+    public void testEnrichesIntoIndexQueue() throws IOException {
+        OwnerEnricher ownerEnricher = new OwnerEnricher();
+        File file = this.file("line one\nline two\n");
+
+        ownerEnricher.add(this.pending(file, "src/One.java"));
+        assertThat(ownerEnricher.getPending()).isEqualTo(1);
+        assertThat(ownerEnricher.getProgress()).isEqualTo(0);
+
+        assertThat(ownerEnricher.enrichBatch(10)).isEqualTo(1);
+
+        CodeIndexDocument enriched = Singleton.getCodeIndexQueue().stream().filter(x -> x.getRepoLocationRepoNameLocationFilename().equals(file.toString())).findFirst().get();
+        assertThat(enriched.getCodeOwner()).isEqualTo("owner of src/One.java 2");
+        assertThat(enriched.getContents()).isEqualTo("line one line two");
+        assertThat(enriched.getRepoName()).isEqualTo("enrichrepo");
+
+        assertThat(ownerEnricher.getPending()).isEqualTo(0);
+        assertThat(ownerEnricher.getEnriched()).isEqualTo(1);
+        assertThat(ownerEnricher.getProgress()).isEqualTo(100);
+    }
+
+    public void testSkipsChangedAndMissingFiles() throws IOException {
+        OwnerEnricher ownerEnricher = new OwnerEnricher();
+        File changed = this.file("before\n");
+        File missing = this.file("gone\n");
+
+        ownerEnricher.add(this.pending(changed, "Changed.java"));
+        ownerEnricher.add(this.pending(missing, "Missing.java"));
+        Files.write(changed.toPath(), "after\n".getBytes(StandardCharsets.UTF_8));
+        missing.delete();
+
+        assertThat(ownerEnricher.enrichBatch(10)).isEqualTo(0);
+        assertThat(ownerEnricher.getSkipped()).isEqualTo(2);
+        assertThat(ownerEnricher.getPending()).isEqualTo(0);
+    }
+
+    public void testBatchesAndRemove() throws IOException {
+        OwnerEnricher ownerEnricher = new OwnerEnricher();
+        for (int i = 0; i < 5; i++) {
+            ownerEnricher.add(this.pending(this.file("file " + i + "\n"), "File" + i + ".java"));
+        }
+
+        assertThat(ownerEnricher.getPending("enrichrepo")).isEqualTo(5);
+        assertThat(ownerEnricher.enrichBatch(2)).isEqualTo(2);
+        assertThat(ownerEnricher.getPending()).isEqualTo(3);
+        assertThat(ownerEnricher.getPending("enrichrepo")).isEqualTo(3);
+        assertThat(ownerEnricher.getPending("otherrepo")).isEqualTo(0);
+        assertThat(ownerEnricher.getBatches()).isEqualTo(1);
+
+        ownerEnricher.remove("enrichrepo");
+        assertThat(ownerEnricher.getPending()).isEqualTo(0);
+        assertThat(ownerEnricher.getPending("enrichrepo")).isEqualTo(0);
+        assertThat(ownerEnricher.enrichBatch(2)).isEqualTo(0);
+    }
+
+    private File file(String contents) throws IOException {
+        File file = File.createTempFile("OwnerEnricherTest", ".java");
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        this.files.add(file);
+        return file;
+    }
+
+    private OwnerEnricher.Pending pending(File file, String blamePath) throws IOException {
+        FileContent fileContent = FileContent.read(file.toString(), 1000);
+        CodeIndexDocument codeIndexDocument = new CodeIndexDocument(file.toString(), "enrichrepo", file.getName(), file.getParent(), blamePath, fileContent.getMd5Hash(), "Java", fileContent.getLines().size(), String.join(" ", fileContent.getLines()), "", Values.PENDINGCODEOWNER);
+
+        OwnerEnricher.Pending pending = new OwnerEnricher.Pending(this.job, codeIndexDocument, blamePath, file.getParent(), file.getParent(), 1000, false);
+        assertThat(pending.getDocument().getContents()).isNull();
+        return pending;
+    }
+}
@@ -0,0 +1,33 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+import org.apache.lucene.search.ScoreDoc;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class SearchCursorTest extends TestCase {
+
+    public void testEncodeDecode() {
+        String cursor = SearchCursor.after(12, 3, new ScoreDoc(41, 1.25f)).encode();
+        SearchCursor searchCursor = SearchCursor.decode(cursor);
+
+        assertThat(searchCursor.getVersion()).isEqualTo(12);
+        assertThat(searchCursor.getPage()).isEqualTo(4);
+        assertThat(searchCursor.getScoreDoc().doc).isEqualTo(41);
+        assertThat(searchCursor.getScoreDoc().score).isEqualTo(1.25f);
+    }
+
+    public void testEncodeIsUrlSafe() {
+        String cursor = new SearchCursor(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Float.NaN).encode();
+
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+    }
+
+    public void testDecodeInvalid() {
+        assertThat(SearchCursor.decode(null)).isNull();
+        assertThat(SearchCursor.decode("")).isNull();
+        assertThat(SearchCursor.decode("not a cursor")).isNull();
+        assertThat(SearchCursor.decode("MTox")).isNull();
+        assertThat(SearchCursor.decode(new SearchCursor(1, -1, 1, 1).encode())).isNull();
+    }
+}
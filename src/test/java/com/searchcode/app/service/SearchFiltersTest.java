@@ -0,0 +1,132 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class SearchFiltersTest extends TestCase {
+
+    private SharedIndexWriter sharedIndexWriter;
+
+    public void setUp() throws Exception {
+        File baseDir = new File(System.getProperty("java.io.tmpdir"), "SearchFiltersTest");
+        FileUtils.deleteDirectory(baseDir);
+        this.sharedIndexWriter = new SharedIndexWriter(new File(baseDir, "index").toString(), new File(baseDir, "facet").toString(), 100, 600, true);
+
+        this.addDocument("searchcode", "Java", "Ben Boyter");
+        this.addDocument("searchcode", "Python", "Ben");
+        this.addDocument("other repo", "Java", "Ben Boyter");
+        this.sharedIndexWriter.commit();
+    }
+
+    public void tearDown() throws Exception {
+        this.sharedIndexWriter.close();
+    }
+
+    public void testNoFiltersReturnsQuery() {
+        Query query = new MatchAllDocsQuery();
+
+        assertThat(SearchFilters.addFilters(query, null)).isSameAs(query);
+        assertThat(SearchFilters.addFilters(query, new HashMap<>())).isSameAs(query);
+
+        Map<String, String[]> filters = new HashMap<>();
+        filters.put(Values.REPONAME, new String[0]);
+        assertThat(SearchFilters.addFilters(query, filters)).isSameAs(query);
+    }
+
+    public void testFiltersMatchExactValues() throws IOException {
+        Map<String, String[]> filters = new HashMap<>();
+        filters.put(Values.REPONAME, new String[] { "other repo" });
+        assertThat(this.count(filters)).isEqualTo(1);
+
+        filters.put(Values.REPONAME, new String[] { "other" });
+        assertThat(this.count(filters)).isEqualTo(0);
+
+        filters.put(Values.REPONAME, new String[] { "searchcode", "other repo" });
+        assertThat(this.count(filters)).isEqualTo(3);
+
+        filters.put(Values.LANGUAGENAME, new String[] { "Java" });
+        assertThat(this.count(filters)).isEqualTo(2);
+
+        filters.put(Values.CODEOWNER, new String[] { "Ben" });
+        assertThat(this.count(filters)).isEqualTo(0);
+    }
+
+    public void testFilterValuesAreNotParsed() throws IOException {
+        Map<String, String[]> filters = new HashMap<>();
+        filters.put(Values.REPONAME, new String[] { "searchcode) || (reponame:other" });
+
+        assertThat(this.count(filters)).isEqualTo(0);
+    }
+
+    public void testSameFiltersProduceEqualQueries() {
+        Map<String, String[]> filters = new HashMap<>();
+        filters.put(Values.REPONAME, new String[] { "b", "a" });
+        filters.put(Values.LANGUAGENAME, new String[] { "Java" });
+
+        Map<String, String[]> reordered = new HashMap<>();
+        reordered.put(Values.LANGUAGENAME, new String[] { "Java" });
+        reordered.put(Values.REPONAME, new String[] { "a", "b" });
+
+        assertThat(SearchFilters.addFilters(new MatchAllDocsQuery(), filters)).isEqualTo(SearchFilters.addFilters(new MatchAllDocsQuery(), reordered));
+    }
+
+    public void testCachingPolicyAlwaysCachesFilters() throws IOException {
+        SearchFilters.FilterCachingPolicy policy = new SearchFilters.FilterCachingPolicy();
+        IndexSearcher searcher = this.sharedIndexWriter.acquireSearcher();
+
+        try {
+            Query filter = SearchFilters.getDimensionFilter(Values.REPONAME, new String[] { "searchcode" });
+            assertThat(policy.shouldCache(filter, searcher.getIndexReader().leaves().get(0))).isTrue();
+            assertThat(policy.shouldCache(filter.rewrite(searcher.getIndexReader()), searcher.getIndexReader().leaves().get(0))).isTrue();
+            assertThat(policy.shouldCache(new TermQuery(new Term(Values.REPONAME, "searchcode")), searcher.getIndexReader().leaves().get(0))).isFalse();
+        }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
+    }
+
+    private int count(Map<String, String[]> filters) throws IOException {
+        IndexSearcher searcher = this.sharedIndexWriter.acquireSearcher();
+
+        try {
+            return searcher.count(SearchFilters.addFilters(new MatchAllDocsQuery(), filters));
+        }
+        finally {
+            this.sharedIndexWriter.releaseSearcher(searcher);
+        }
+    }
+
+    private void addDocument(String repoName, String languageName, String codeOwner) throws IOException {
+        FacetsConfig facetsConfig = new FacetsConfig();
+        facetsConfig.setIndexFieldName(Values.REPONAME, Values.REPONAME);
+        facetsConfig.setIndexFieldName(Values.LANGUAGENAME, Values.LANGUAGENAME);
+        facetsConfig.setIndexFieldName(Values.CODEOWNER, Values.CODEOWNER);
+
+        Document document = new Document();
+        document.add(new SortedSetDocValuesFacetField(Values.REPONAME, repoName));
+        document.add(new SortedSetDocValuesFacetField(Values.LANGUAGENAME, languageName));
+        document.add(new SortedSetDocValuesFacetField(Values.CODEOWNER, codeOwner));
+        document.add(new TextField(Values.REPONAME, repoName, Field.Store.YES));
+
+        this.sharedIndexWriter.getIndexWriter().addDocument(facetsConfig.build(this.sharedIndexWriter.getTaxonomyWriter(), document));
+        this.sharedIndexWriter.changed(1);
+    }
+}
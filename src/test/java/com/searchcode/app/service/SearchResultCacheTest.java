@@ -0,0 +1,78 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.dto.SearchResult;
+import junit.framework.TestCase;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class SearchResultCacheTest extends TestCase {
+
+    public void testGetMissThenHit() {
+        SearchResultCache cache = new SearchResultCache(1024 * 1024);
+        SearchResult searchResult = new SearchResult();
+
+        assertThat(cache.get(1, "key")).isNull();
+        cache.put(1, "key", searchResult);
+
+        assertThat(cache.get(1, "key")).isSameAs(searchResult);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHitRatio()).isEqualTo(0.5);
+        assertThat(cache.getBytes()).isGreaterThan(0);
+    }
+
+    public void testNewGenerationInvalidates() {
+        SearchResultCache cache = new SearchResultCache(1024 * 1024);
+        cache.put(1, "key", new SearchResult());
+
+        assertThat(cache.get(2, "key")).isNull();
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getBytes()).isEqualTo(0);
+        assertThat(cache.getInvalidations()).isEqualTo(1);
+    }
+
+    public void testOlderGenerationNotStored() {
+        SearchResultCache cache = new SearchResultCache(1024 * 1024);
+        cache.get(2, "key");
+        cache.put(1, "key", new SearchResult());
+
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    public void testEvictsLeastRecentlyUsedWhenOverBytes() {
+        SearchResultCache probe = new SearchResultCache(1024 * 1024);
+        probe.put(1, "key0", new SearchResult());
+        long entryBytes = probe.getBytes();
+
+        SearchResultCache cache = new SearchResultCache(entryBytes * 2);
+        cache.put(1, "key0", new SearchResult());
+        cache.put(1, "key1", new SearchResult());
+        cache.get(1, "key0");
+        cache.put(1, "key2", new SearchResult());
+
+        assertThat(cache.getSize()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.get(1, "key1")).isNull();
+        assertThat(cache.get(1, "key0")).isNotNull();
+        assertThat(cache.getBytes()).isLessThanOrEqualTo(entryBytes * 2);
+    }
+
+    public void testDisabledWhenNoBytes() {
+        SearchResultCache cache = new SearchResultCache(0);
+        cache.put(1, "key", new SearchResult());
+
+        assertThat(cache.get(1, "key")).isNull();
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    public void testGetKeyNormalisesQueryAndFilterOrder() {
+        SearchResultCache cache = new SearchResultCache(1024);
+
+        String key = cache.getKey("api", "  hello   world ", 0, new String[] { "b", "a" }, new String[0]);
+
+        assertThat(key).isEqualTo(cache.getKey("api", "hello world", 0, new String[] { "a", "b" }, null));
+        assertThat(key).isNotEqualTo(cache.getKey("api", "hello world", 1, new String[] { "a", "b" }, null));
+        assertThat(key).isNotEqualTo(cache.getKey("html", "hello world", 0, new String[] { "a", "b" }, null));
+        assertThat(key).isNotEqualTo(cache.getKey("api", "hello world", 0, new String[0], new String[] { "a", "b" }));
+    }
+}
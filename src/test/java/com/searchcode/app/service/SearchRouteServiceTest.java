@@ -0,0 +1,42 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.dto.SearchResult;
+import com.searchcode.app.dto.api.ApiResponse;
+import com.searchcode.app.service.route.SearchRouteService;
+import junit.framework.TestCase;
+import org.mockito.Mockito;
+import spark.Request;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.Mockito.when;
+
+public class SearchRouteServiceTest extends TestCase {
+
+    public void testGrepSearchNeedsTrigrams() {
+        SearchRouteService searchRouteService = new SearchRouteService();
+        boolean indexTrigrams = CodeIndexer.INDEXTRIGRAMS;
+
+        Request request = Mockito.mock(Request.class);
+        Set<String> hashSet = new HashSet<>();
+        hashSet.add("q");
+        when(request.queryParams()).thenReturn(hashSet);
+        when(request.queryParams("q")).thenReturn("testGrepSearchNeedsTrigrams");
+
+        try {
+            CodeIndexer.INDEXTRIGRAMS = false;
+            Object result = searchRouteService.GrepSearch(request, null);
+            assertThat(result).isInstanceOf(ApiResponse.class);
+            assertThat(((ApiResponse) result).isSucessful()).isFalse();
+            assertThat(((ApiResponse) result).getMessage()).contains("trigram_index");
+
+            CodeIndexer.INDEXTRIGRAMS = true;
+            assertThat(searchRouteService.GrepSearch(request, null)).isInstanceOf(SearchResult.class);
+        }
+        finally {
+            CodeIndexer.INDEXTRIGRAMS = indexTrigrams;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class SharedIndexWriterTest extends TestCase {
+
+    private File indexDir;
+    private File facetDir;
+
+    public void setUp() throws Exception {
+        File baseDir = new File(System.getProperty("java.io.tmpdir"), "SharedIndexWriterTest");
+        FileUtils.deleteDirectory(baseDir);
+        this.indexDir = new File(baseDir, "index");
+        this.facetDir = new File(baseDir, "facet");
+    }
+
+    public void testMaybeCommitNoChangesDoesNotCommit() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, true);
+
+        assertThat(sharedIndexWriter.maybeCommit(true)).isFalse();
+        assertThat(sharedIndexWriter.getCommitCount()).isEqualTo(0);
+        sharedIndexWriter.close();
+    }
+
+    public void testMaybeCommitOnIdle() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, true);
+        this.addDocument(sharedIndexWriter, "1");
+
+        assertThat(sharedIndexWriter.maybeCommit(false)).isFalse();
+        assertThat(sharedIndexWriter.maybeCommit(true)).isTrue();
+        assertThat(sharedIndexWriter.getCommitCount()).isEqualTo(1);
+        assertThat(sharedIndexWriter.getUncommittedChanges()).isEqualTo(0);
+        sharedIndexWriter.close();
+    }
+
+    public void testMaybeCommitIdleDisabled() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, false);
+        this.addDocument(sharedIndexWriter, "1");
+
+        assertThat(sharedIndexWriter.maybeCommit(true)).isFalse();
+        assertThat(sharedIndexWriter.getUncommittedChanges()).isEqualTo(1);
+        sharedIndexWriter.close();
+        assertThat(sharedIndexWriter.getCommitCount()).isEqualTo(1);
+    }
+
+    public void testMaybeCommitDocumentCount() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 2, 600, false);
+        this.addDocument(sharedIndexWriter, "1");
+        assertThat(sharedIndexWriter.maybeCommit(false)).isFalse();
+
+        this.addDocument(sharedIndexWriter, "2");
+        assertThat(sharedIndexWriter.maybeCommit(false)).isTrue();
+        assertThat(sharedIndexWriter.getFlushCount()).isGreaterThan(0);
+        sharedIndexWriter.close();
+    }
+
+    public void testCloseThenReopen() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, true);
+        this.addDocument(sharedIndexWriter, "1");
+        sharedIndexWriter.close();
+
+        this.addDocument(sharedIndexWriter, "2");
+        sharedIndexWriter.commit();
+        assertThat(sharedIndexWriter.getIndexWriter().numDocs()).isEqualTo(2);
+        sharedIndexWriter.close();
+    }
+
+    public void testSearcherSeesCommittedDocumentsAndGenerationChanges() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, true);
+
+        IndexSearcher searcher = sharedIndexWriter.acquireSearcher();
+        assertThat(searcher.getIndexReader().numDocs()).isEqualTo(0);
+        sharedIndexWriter.releaseSearcher(searcher);
+        long generation = sharedIndexWriter.getGeneration();
+
+        this.addDocument(sharedIndexWriter, "1");
+        sharedIndexWriter.maybeCommit(true);
+
+        searcher = sharedIndexWriter.acquireSearcher();
+        assertThat(searcher.getIndexReader().numDocs()).isEqualTo(1);
+        sharedIndexWriter.releaseSearcher(searcher);
+        assertThat(sharedIndexWriter.getGeneration()).isGreaterThan(generation);
+        sharedIndexWriter.close();
+    }
+
+    public void testRefreshSeesUncommittedDocuments() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, false, 0);
+
+        IndexSearcher searcher = sharedIndexWriter.acquireSearcher();
+        sharedIndexWriter.releaseSearcher(searcher);
+
+        this.addDocument(sharedIndexWriter, "1");
+        assertThat(sharedIndexWriter.maybeRefresh()).isTrue();
+
+        searcher = sharedIndexWriter.acquireSearcher();
+        assertThat(searcher.getIndexReader().numDocs()).isEqualTo(1);
+        assertThat(sharedIndexWriter.getCommitCount()).isEqualTo(0);
+        sharedIndexWriter.releaseSearcher(searcher);
+        sharedIndexWriter.close();
+    }
+
+    public void testFacetStateSharedPerSearcherAndWarmedOnRefresh() throws IOException {
+        SharedIndexWriter sharedIndexWriter = new SharedIndexWriter(this.indexDir.toString(), this.facetDir.toString(), 100, 600, true);
+        this.addFacetDocument(sharedIndexWriter, "Java");
+        sharedIndexWriter.commit();
+
+        IndexSearcher searcher = sharedIndexWriter.acquireSearcher();
+        SortedSetDocValuesReaderState state = sharedIndexWriter.getFacetState(searcher, Values.LANGUAGENAME);
+        assertThat(sharedIndexWriter.getFacetState(searcher, Values.LANGUAGENAME)).isSameAs(state);
+        assertThat(sharedIndexWriter.getFacetStateBuildCount()).isEqualTo(1);
+        sharedIndexWriter.releaseSearcher(searcher);
+
+        this.addFacetDocument(sharedIndexWriter, "Python");
+        sharedIndexWriter.commit();
+        assertThat(sharedIndexWriter.getFacetStateBuildCount()).isEqualTo(2);
+
+        searcher = sharedIndexWriter.acquireSearcher();
+        SortedSetDocValuesReaderState warmed = sharedIndexWriter.getFacetState(searcher, Values.LANGUAGENAME);
+        assertThat(warmed).isNotSameAs(state);
+        assertThat(warmed.getSize()).isEqualTo(2);
+        assertThat(sharedIndexWriter.getFacetStateBuildCount()).isEqualTo(2);
+        sharedIndexWriter.releaseSearcher(searcher);
+        sharedIndexWriter.close();
+    }
+
+    private void addFacetDocument(SharedIndexWriter sharedIndexWriter, String languageName) throws IOException {
+        FacetsConfig facetsConfig = new FacetsConfig();
+        facetsConfig.setIndexFieldName(Values.LANGUAGENAME, Values.LANGUAGENAME);
+
+        Document document = new Document();
+        document.add(new SortedSetDocValuesFacetField(Values.LANGUAGENAME, languageName));
+        sharedIndexWriter.getIndexWriter().addDocument(facetsConfig.build(sharedIndexWriter.getTaxonomyWriter(), document));
+        sharedIndexWriter.changed(1);
+    }
+
+    private void addDocument(SharedIndexWriter sharedIndexWriter, String id) throws IOException {
+        Document document = new Document();
+        document.add(new StringField("id", id, Field.Store.YES));
+        sharedIndexWriter.getIndexWriter().addDocument(document);
+        sharedIndexWriter.changed(1);
+    }
+}
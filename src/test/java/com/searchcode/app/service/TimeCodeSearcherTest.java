@@ -22,6 +22,17 @@ public class TimeCodeSearcherTest extends TestCase {
 
     public void testTest() {}
 
+    public void testSearchVeryLargePage() {
+        TimeCodeSearcher cs = new TimeCodeSearcher();
+
+        for (int page : new int[] { 107374182, Integer.MAX_VALUE }) {
+            SearchResult searchResult = cs.search("this", page);
+
+            assertThat(searchResult.getPage()).isEqualTo(cs.getMaxPage());
+            assertThat(searchResult.getCodeResultList()).isEmpty();
+        }
+    }
+
 
 //    public void testTimeIndexIndexCreationAndSearch() {
 //        try {
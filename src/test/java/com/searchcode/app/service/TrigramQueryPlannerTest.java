@@ -0,0 +1,148 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class TrigramQueryPlannerTest extends TestCase {
+
+    public void testTrigrams() {
+        assertThat(TrigramQueryPlanner.trigrams("->getFoo(")).containsExactly("->g", ">ge", "get", "etf", "tfo", "foo", "oo(");
+        assertThat(TrigramQueryPlanner.trigrams("ab")).isEmpty();
+        assertThat(TrigramQueryPlanner.trigrams("aaaa")).containsExactly("aaa");
+    }
+
+    public void testLiteralRequiresEveryTrigram() {
+        Query query = TrigramQueryPlanner.planLiteral("->getFoo(");
+
+        assertThat(this.matches(query, "$this->getFoo();")).isTrue();
+        assertThat(this.matches(query, "$this->GETFOO();")).isTrue();
+        assertThat(this.matches(query, "$this->getBar();")).isFalse();
+    }
+
+    public void testShortLiteralMatchesEverything() {
+        assertThat(TrigramQueryPlanner.planLiteral("ab")).isInstanceOf(MatchAllDocsQuery.class);
+    }
+
+    public void testRegexPlans() {
+        Query query = TrigramQueryPlanner.planRegex("log\\w+Error");
+        assertThat(this.matches(query, "logParseError")).isTrue();
+        assertThat(this.matches(query, "log only")).isFalse();
+        assertThat(this.matches(query, "only Error")).isFalse();
+
+        query = TrigramQueryPlanner.planRegex("(foo|bar)baz");
+        assertThat(this.matches(query, "barbaz")).isTrue();
+        assertThat(this.matches(query, "bar baz")).isFalse();
+
+        query = TrigramQueryPlanner.planRegex("colou?r");
+        assertThat(this.matches(query, "color")).isTrue();
+        assertThat(this.matches(query, "colour")).isTrue();
+        assertThat(this.matches(query, "colr")).isFalse();
+
+        query = TrigramQueryPlanner.planRegex("get[A-C]ar");
+        assertThat(this.matches(query, "getBar")).isTrue();
+        assertThat(this.matches(query, "getDar")).isFalse();
+    }
+
+    public void testUnknownMatchesEverything() {
+        assertThat(TrigramQueryPlanner.planRegex(".*")).isInstanceOf(MatchAllDocsQuery.class);
+        assertThat(TrigramQueryPlanner.planRegex("a|b")).isInstanceOf(MatchAllDocsQuery.class);
+        assertThat(TrigramQueryPlanner.planRegex("(?x) f o o")).isInstanceOf(MatchAllDocsQuery.class);
+    }
+
+    /**
+     * The plan may let through documents which do not match but must never reject one that does
+     */
+    public void testNeverRejectsMatch() {
+        Random random = new Random(7);
+        String alphabet = "abcAB_(). ";
+        String[] pieces = { "a", "b", "c", "ab", "abc", "A", "\\w", "\\s", ".", "[ab]", "[a-c]", "[^a]", "\\(", "\\.", "_", "\\bab", "(?i)" };
+        String[] quantifiers = { "", "", "", "*", "+", "?", "{2}", "{0,1}", "*?" };
+
+        for (int run = 0; run < 2000; run++) {
+            StringBuilder regex = new StringBuilder();
+            int parts = 1 + random.nextInt(6);
+            for (int i = 0; i < parts; i++) {
+                if (i > 0 && random.nextInt(6) == 0) {
+                    regex.append('|');
+                }
+                boolean group = random.nextInt(5) == 0;
+                if (group) {
+                    regex.append(random.nextBoolean() ? "(" : "(?:");
+                }
+                String piece = pieces[random.nextInt(pieces.length)];
+                regex.append(piece);
+                if (group) {
+                    regex.append(')');
+                }
+                if (!piece.startsWith("(?") && !piece.startsWith("\\b")) {
+                    regex.append(quantifiers[random.nextInt(quantifiers.length)]);
+                }
+            }
+
+            Pattern pattern = Pattern.compile(regex.toString());
+            Query query = TrigramQueryPlanner.planRegex(regex.toString());
+
+            for (int line = 0; line < 20; line++) {
+                StringBuilder text = new StringBuilder();
+                int length = random.nextInt(12);
+                for (int i = 0; i < length; i++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+
+                if (pattern.matcher(text).find()) {
+                    assertThat(this.matches(query, text.toString())).as(regex + " " + text).isTrue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the plan against the trigrams of a single document
+     */
+    private boolean matches(Query query, String content) {
+        return this.evaluate(query, TrigramQueryPlanner.trigrams(content));
+    }
+
+    private boolean evaluate(Query query, Set<String> trigrams) {
+        if (query instanceof MatchAllDocsQuery) {
+            return true;
+        }
+
+        if (query instanceof ConstantScoreQuery) {
+            return this.evaluate(((ConstantScoreQuery) query).getQuery(), trigrams);
+        }
+
+        if (query instanceof TermQuery) {
+            return trigrams.contains(((TermQuery) query).getTerm().text());
+        }
+
+        BooleanQuery booleanQuery = (BooleanQuery) query;
+        boolean anyShould = false;
+        boolean hasShould = false;
+
+        for (BooleanClause clause : booleanQuery.clauses()) {
+            boolean result = this.evaluate(clause.getQuery(), trigrams);
+
+            if (clause.getOccur() == BooleanClause.Occur.SHOULD) {
+                hasShould = true;
+                anyShould |= result;
+            }
+            else if (!result) {
+                return false;
+            }
+        }
+
+        return !hasShould || anyShould;
+    }
+}
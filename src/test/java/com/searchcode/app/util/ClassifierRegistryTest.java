@@ -0,0 +1,162 @@
+package com.searchcode.app.util;
+
+import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.SearchcodeLib.Classifier;
+import junit.framework.TestCase;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class ClassifierRegistryTest extends TestCase {
+
+    public void testSharedRegistry() {
+        assertThat(new SearchcodeLib().classifier).isSameAs(new SearchcodeLib().classifier);
+        assertThat(Singleton.getClassifierRegistry().getClassifiers()).isNotEmpty();
+    }
+
+    public void testKnownExtensionSameAsScan() {
+        ClassifierRegistry registry = Singleton.getClassifierRegistry();
+        List<String> fileNames = new ArrayList<>(Arrays.asList("readme", "archive.tar.gz", "image.png", "makefile", ".gitignore", "a.b.c", "trailing."));
+
+        for (Classifier classifier: registry.getClassifiers()) {
+            for (String extension: classifier.extensions) {
+                fileNames.add("file." + extension);
+                fileNames.add("file." + extension + ".orig");
+                fileNames.add("file" + extension);
+            }
+        }
+
+        for (String fileName: fileNames) {
+            assertThat(registry.isKnownExtension(fileName)).as(fileName).isEqualTo(this.scanKnownExtension(registry, fileName));
+        }
+    }
+
+    public void testKeywordCountsSameAsCountMatches() {
+        Random random = new Random(13);
+        Classifier first = new Classifier("First", "x", "aa,abc,bc,c,aa,return");
+        Classifier second = new Classifier("Second", "x", "bca,a,turn,");
+        Classifier third = new Classifier("Third", "x", "cab,abcab");
+        ClassifierRegistry registry = new ClassifierRegistry(Arrays.asList(first, second, third));
+        ClassifierRegistry.KeywordMatcher keywordMatcher = new ClassifierRegistry.KeywordMatcher(new Classifier[] { first, second, third });
+        String alphabet = "abcAB retun\u4f60";
+
+        for (int run = 0; run < 3000; run++) {
+            List<String> codeLines = new ArrayList<>();
+            int lines = random.nextInt(4);
+            for (int line = 0; line < lines; line++) {
+                StringBuilder text = new StringBuilder();
+                int length = random.nextInt(15);
+                for (int i = 0; i < length; i++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                codeLines.add(text.toString());
+            }
+
+            int[] expected = new int[3];
+            for (String line: codeLines) {
+                for (int candidate = 0; candidate < 3; candidate++) {
+                    for (String keyword: new Classifier[] { first, second, third }[candidate].keywords) {
+                        expected[candidate] += StringUtils.countMatches(line, keyword);
+                    }
+                }
+            }
+
+            assertThat(keywordMatcher.count(codeLines)).as(codeLines.toString()).isEqualTo(expected);
+            assertThat(registry.guessLanguage("x", codeLines)).as(codeLines.toString()).isEqualTo(this.countMatchesGuess(registry, "x", codeLines));
+        }
+    }
+
+    public void testAmbiguousExtensions() {
+        ClassifierRegistry registry = Singleton.getClassifierRegistry();
+
+        assertThat(registry.guessLanguage("m", Arrays.asList("NSString *value = [[NSString alloc] init];", "[value release];"))).isEqualTo("Objective C");
+        assertThat(registry.guessLanguage("m", Arrays.asList("function output = matrix(input)", "elseif nargin > 2"))).isEqualTo("MATLAB");
+        assertThat(registry.guessLanguage("m", new ArrayList<>())).isEqualTo("Unknown");
+        assertThat(registry.guessLanguage("java", new ArrayList<>())).isEqualTo("Java");
+        assertThat(registry.guessLanguage("shouldnotexist", new ArrayList<>())).isEqualTo("Unknown");
+    }
+
+    /**
+     * Compares counting every keyword of every candidate on each line with StringUtils.countMatches against the
+     * single pass matcher, over the source files of this project read as .c which both C and C++ claim
+     */
+    public void testKeywordCountSameAsCountMatches() throws IOException {
+        List<List<String>> files = Files.walk(Paths.get("./src/main/java/")).filter(x -> x.toString().endsWith(".java")).map(x -> {
+            try {
+                return Files.readAllLines(x, StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                return new ArrayList<String>();
+            }
+        }).collect(Collectors.toList());
+
+        ClassifierRegistry registry = Singleton.getClassifierRegistry();
+
+        for (List<String> file: files) {
+            assertThat(registry.guessLanguage("c", file)).isEqualTo(this.countMatchesGuess(registry, "c", file));
+        }
+    }
+
+    /**
+     * How SearchcodeLib.isBinary used to check for a known extension
+     */
+    private boolean scanKnownExtension(ClassifierRegistry registry, String lowerFileName) {
+        for (Classifier classifier: registry.getClassifiers()) {
+            for (String extension: classifier.extensions) {
+                if (lowerFileName.endsWith("." + extension)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * How SearchcodeLib.languageGuesser used to pick between languages sharing an extension
+     */
+    private String countMatchesGuess(ClassifierRegistry registry, String extension, List<String> codeLines) {
+        Object[] matching = registry.getClassifiers().stream().filter(x -> ArrayUtils.contains(x.extensions, extension)).toArray();
+        if (matching.length == 0) {
+            return "Unknown";
+        }
+
+        if (matching.length == 1) {
+            return ((Classifier)matching[0]).language;
+        }
+
+        String languageGuess = "";
+        int bestKeywords = 0;
+
+        for (Object c: matching) {
+            Classifier classifier = (Classifier)c;
+            int matchingKeywords = 0;
+            for (String line: codeLines) {
+                for (String keyword: classifier.keywords) {
+                    matchingKeywords += StringUtils.countMatches(line, keyword);
+                }
+            }
+
+            if (matchingKeywords > bestKeywords) {
+                bestKeywords = matchingKeywords;
+                languageGuess = classifier.language;
+            }
+        }
+
+        if (languageGuess == null || languageGuess.trim().equals("")) {
+            languageGuess = "Unknown";
+        }
+
+        return languageGuess;
+    }
+}
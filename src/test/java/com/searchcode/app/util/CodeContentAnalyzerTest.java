@@ -0,0 +1,174 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CodeContentAnalyzerTest extends TestCase {
+
+    private static final String[] WORDS = { "getFoo", "RegexIndexer", "isCommunity", "ISCOMMUNITY", "shop_order_log", "URL_REWRITE",
+            "linux2.7.4", "i386", "i++", "$this->getFoo($bar);", "{AB3FBE3A-410C-4FB2-84E0-B2D3434D1995}", "\"_updatedDate\"",
+            "'shop_order_log',", "context.config.URL_REWRITE.iteritems():", "a.b.c", "<String>", "@Override", "#include", "你好",
+            "x=y;", "map[key]", "a|b", "--flag", "foo/bar/baz.java", "ÜberClassName", "😀", "ΣΊΣΥΦΟΣ", "ends_with_" };
+
+    public void testSameTermsAsStringPipeline() throws IOException {
+        Random random = new Random(11);
+
+        for (int run = 0; run < 300; run++) {
+            String contents = this.randomContents(random, 1 + random.nextInt(30));
+            assertThat(this.terms(new CodeContentAnalyzer(), contents)).as(contents).isEqualTo(this.terms(new CodeAnalyzer(), this.stringPipeline(contents)));
+        }
+    }
+
+    public void testPartsAreInPositionOrder() throws IOException {
+        List<String> terms = new ArrayList<>();
+        List<Integer> increments = new ArrayList<>();
+
+        try (TokenStream stream = new CodeContentAnalyzer().tokenStream("contents", "context.config.URL_REWRITE other")) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAtt.toString());
+                increments.add(posIncAtt.getPositionIncrement());
+            }
+            stream.end();
+        }
+
+        // Finest parts take a position each, everything else is stacked
+        assertThat(terms.subList(0, 4)).containsExactly("context", "config", "url", "rewrite");
+        assertThat(increments.subList(0, 4)).containsExactly(1, 1, 1, 1);
+        assertThat(terms).contains("context.config.url_rewrite", "url_rewrite", ".");
+        assertThat(increments.get(terms.indexOf("other"))).isEqualTo(1);
+    }
+
+    public void testPhrasesAcrossParts() throws IOException {
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new CodeAnalyzer()))) {
+            Document doc = new Document();
+            doc.add(new Field("contents", new CodeContentAnalyzer().tokenStream("contents", "return this.getFoo(bar) + baz;"), TextField.TYPE_NOT_STORED));
+            writer.addDocument(doc);
+        }
+
+        IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(directory));
+        assertThat(searcher.count(new PhraseQuery("contents", "this", "getfoo", "bar"))).isEqualTo(1);
+        assertThat(searcher.count(new PhraseQuery("contents", "bar", "+", "baz"))).isEqualTo(1);
+        assertThat(searcher.count(new PhraseQuery("contents", "bar", "getfoo"))).isEqualTo(0);
+    }
+
+    /**
+     * Compares the index size for the string pipeline this replaced and the analyzer over the same synthetic files
+     */
+    public void testIndexSize() throws IOException {
+        Random random = new Random(5);
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            StringBuilder file = new StringBuilder();
+            for (int line = 0; line < 200; line++) {
+                file.append(this.randomContents(random, 8)).append('\n');
+            }
+            files.add(file.toString());
+        }
+
+        assertThat(this.index(files, true)).isLessThan(this.index(files, false));
+    }
+
+    private long index(List<String> files, boolean analyzer) throws IOException {
+        RAMDirectory directory = new RAMDirectory();
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+        CodeContentAnalyzer codeContentAnalyzer = new CodeContentAnalyzer();
+
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new CodeAnalyzer()))) {
+            for (String file : files) {
+                Document doc = new Document();
+
+                if (analyzer) {
+                    doc.add(new Field("contents", codeContentAnalyzer.tokenStream("contents", file), TextField.TYPE_NOT_STORED));
+                }
+                else {
+                    String toIndex = (searchcodeLib.splitKeywords(file) + searchcodeLib.codeCleanPipeline(file) + searchcodeLib.findInterestingKeywords(file) + searchcodeLib.findInterestingCharacters(file)).toLowerCase();
+                    doc.add(new TextField("contents", toIndex, Field.Store.NO));
+                }
+
+                writer.addDocument(doc);
+            }
+
+            writer.forceMerge(1);
+        }
+
+        return directory.ramBytesUsed();
+    }
+
+    /**
+     * How CodeIndexer used to build the contents, with a space between each part as the parts could run into each other
+     */
+    private String stringPipeline(String contents) {
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+        return (searchcodeLib.splitKeywords(contents) + " " + searchcodeLib.codeCleanPipeline(contents) + " " + searchcodeLib.findInterestingKeywords(contents) + " " + searchcodeLib.findInterestingCharacters(contents)).toLowerCase();
+    }
+
+    private Set<String> terms(Analyzer analyzer, String contents) throws IOException {
+        Set<String> terms = new TreeSet<>();
+
+        try (TokenStream stream = analyzer.tokenStream("contents", contents)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            stream.end();
+        }
+
+        return terms;
+    }
+
+    private String randomContents(Random random, int words) {
+        String[] separators = { " ", "  ", "\t", "\n", " (", ") ", ".", "=" };
+        StringBuilder contents = new StringBuilder();
+
+        for (int i = 0; i < words; i++) {
+            if (random.nextInt(4) == 0) {
+                contents.append(RandomWord.next(random));
+            }
+            else {
+                contents.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            contents.append(separators[random.nextInt(separators.length)]);
+        }
+
+        return contents.toString();
+    }
+
+    private static class RandomWord {
+        private static final String ALPHABET = "abcdefgABCDEFG0123456789_.-()[]{}<>;:'\"/@#|=,*+!?$%&~^";
+
+        static String next(Random random) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                word.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            return word.toString();
+        }
+    }
+}
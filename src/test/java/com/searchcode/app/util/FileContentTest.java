@@ -0,0 +1,137 @@
+package com.searchcode.app.util;
+
+import com.searchcode.app.dto.BinaryFinding;
+import junit.framework.TestCase;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class FileContentTest extends TestCase {
+
+    private File file;
+
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("FileContentTest", ".txt");
+    }
+
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    public void testSameAsSeparateReads() throws IOException {
+        String[] contents = {
+                "",
+                "one line",
+                "one line\n",
+                "unix\nline\nendings\n\n",
+                "windows\r\nline\r\nendings",
+                "old mac\rline\rendings\r",
+                "mixed\r\n\r\n\n\rendings\n\r",
+                "unicode \u00fcn\u00efc\u00f6d\u00e9\n\u65e5\u672c\u8a9e\nend",
+                "\ufeffbyte order mark\nsecond",
+        };
+
+        for (String content : contents) {
+            for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16 }) {
+                Files.write(this.file.toPath(), content.getBytes(charset));
+                this.assertSameAsSeparateReads(1000);
+                this.assertSameAsSeparateReads(2);
+            }
+        }
+    }
+
+    public void testLinesAcrossDecodeChunks() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("line \u00e9 number ").append(i).append(i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\r" : "\n");
+        }
+        FileUtils.writeStringToFile(this.file, content.toString(), StandardCharsets.UTF_8);
+
+        this.assertSameAsSeparateReads(10000);
+        this.assertSameAsSeparateReads(1234);
+    }
+
+    public void testMagicNumber() throws IOException {
+        Files.write(this.file.toPath(), new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R' });
+        FileContent fileContent = FileContent.read(this.file.toString(), 1000);
+        assertThat(fileContent.getMagicNumber()).isEqualTo("png");
+
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+        BinaryFinding binaryFinding = searchcodeLib.isBinary(fileContent, "logo.java");
+        assertThat(binaryFinding.isBinary()).isTrue();
+        assertThat(binaryFinding.getReason()).contains("png");
+
+        Files.write(this.file.toPath(), "PK is not a zip".getBytes(StandardCharsets.UTF_8));
+        assertThat(FileContent.read(this.file.toString(), 1000).getMagicNumber()).isNull();
+    }
+
+    public void testChecksSameAsLines() throws IOException {
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+        String[] contents = {
+                "",
+                "public class Test {}\n",
+                "\u4f60\u597d\u4f60\u597d\u4f60\u597d\n\u4f60\u597d",
+                "\u4f60\u597d ab\n",
+                "var a=1;var b=2;var c=3;var d=4;var e=5;var f=6;var g=7;var h=8;var i=9;var j=10;var k=11;var l=12;var m=13;var n=14;var o=15;var p=16;var q=17;var r=18;var s=19;var t=20;var u=21;var v=22;var w=23;var x=24;var y=25;var z=26;\n",
+        };
+
+        for (String content : contents) {
+            FileUtils.writeStringToFile(this.file, content, StandardCharsets.UTF_8);
+            FileContent fileContent = FileContent.read(this.file.toString(), 1000);
+            List<String> codeLines = Helpers.readFileLinesGuessEncoding(this.file.toString(), 1000);
+
+            for (String fileName : Arrays.asList("file.js", "file.min.js", "file.unknownextension", "file")) {
+                BinaryFinding expected = searchcodeLib.isBinary(codeLines, fileName);
+                BinaryFinding actual = searchcodeLib.isBinary(fileContent, fileName);
+                assertThat(actual.isBinary()).as(content + " " + fileName).isEqualTo(expected.isBinary());
+                assertThat(actual.getReason()).as(content + " " + fileName).isEqualTo(expected.getReason());
+                assertThat(searchcodeLib.isMinified(fileContent, fileName)).as(content + " " + fileName).isEqualTo(searchcodeLib.isMinified(codeLines, fileName));
+            }
+        }
+    }
+
+    /**
+     * Compares the lines read the way the indexer used to against reading each file once, over the source files of
+     * this project
+     */
+    public void testSingleReadSourceFiles() throws IOException {
+        List<String> files;
+        try (Stream<Path> paths = Files.walk(Paths.get("./src/main/java/"))) {
+            files = paths.filter(x -> x.toString().endsWith(".java")).map(Path::toString).collect(Collectors.toList());
+        }
+
+        for (String file : files) {
+            assertThat(FileContent.read(file, 10000).getLines()).isEqualTo(Helpers.readFileLinesGuessEncoding(file, 10000));
+        }
+    }
+
+    private void assertSameAsSeparateReads(int maxLines) throws IOException {
+        FileContent fileContent = FileContent.read(this.file.toString(), maxLines);
+        String description = new String(Files.readAllBytes(this.file.toPath()), StandardCharsets.ISO_8859_1) + " " + maxLines;
+
+        assertThat(fileContent.getLines()).as(description).isEqualTo(Helpers.readFileLinesGuessEncoding(this.file.toString(), maxLines));
+        assertThat(fileContent.getMd5Hash()).as(description).isEqualTo(DigestUtils.md5Hex(Files.readAllBytes(this.file.toPath())));
+        assertThat(fileContent.getLength()).as(description).isEqualTo(this.file.length());
+
+        LineOffsets expected = LineOffsets.build(this.file.toString(), maxLines);
+        if (expected == null) {
+            assertThat(fileContent.getLineOffsets()).as(description).isNull();
+        }
+        else {
+            assertThat(fileContent.getLineOffsets().encode()).as(description).isEqualTo(expected.encode());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class IdentifierSplitterTest extends TestCase {
+
+    public void testCamelCaseParts() {
+        assertThat(this.parts("RegexIndexer isCommunity ISCOMMUNITY getFoo snake_caseValue")).containsExactly("Regex", "Indexer", "is", "Community", "case", "Value");
+        assertThat(this.parts("getFooBar2Baz")).containsExactly("get", "Foo", "Bar2", "Baz");
+    }
+
+    public void testInterestingKeywords() {
+        String contents = "linux2.7.4.14 i386 a1.2.x b1.x c* d1.2.* e1.* FOO2";
+        List<String> keywords = new ArrayList<>();
+        IdentifierSplitter.split(contents, 0, contents.length(), null, (source, start, end) -> keywords.add(source.subSequence(start, end).toString()), null);
+        assertThat(keywords).containsExactly("linux2.7.4", "i386", "a1.2", "b1", "c*", "d1.2.*", "e1.*");
+    }
+
+    public void testInterestingCharactersKeepsSurrogatePairs() {
+        String contents = "a\ud83d\ude00_b.";
+        List<String> characters = new ArrayList<>();
+        IdentifierSplitter.split(contents, 0, contents.length(), null, null, (source, start, end) -> characters.add(source.subSequence(start, end).toString()));
+        assertThat(characters).containsExactly("\ud83d\ude00", ".");
+    }
+
+    public void testSameAsRegularExpressions() {
+        Random random = new Random(3);
+        String alphabet = "abcxyzABCXYZ0123456789_.*-( \n";
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+
+        for (int run = 0; run < 5000; run++) {
+            StringBuilder contents = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                contents.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            String content = contents.toString();
+            assertThat(searchcodeLib.splitKeywords(content)).as(content).isEqualTo(this.regexSplitKeywords(content));
+            assertThat(searchcodeLib.findInterestingKeywords(content)).as(content).isEqualTo(this.regexInterestingKeywords(content));
+            assertThat(searchcodeLib.findInterestingCharacters(content)).as(content).isEqualTo(this.regexInterestingCharacters(content));
+        }
+    }
+
+    /**
+     * Compares the regular expressions this replaced against the splitter over the source files of this project
+     */
+    public void testSourceFiles() throws IOException {
+        List<String> files;
+        try (Stream<Path> paths = Files.walk(Paths.get("./src/main/java/"))) {
+            files = paths.filter(x -> x.toString().endsWith(".java")).map(x -> {
+                try {
+                    return new String(Files.readAllBytes(x), StandardCharsets.UTF_8);
+                } catch (IOException ex) {
+                    return "";
+                }
+            }).collect(Collectors.toList());
+        }
+
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+
+        for (String file : files) {
+            assertThat(searchcodeLib.splitKeywords(file)).isEqualTo(this.regexSplitKeywords(file));
+            assertThat(searchcodeLib.findInterestingKeywords(file)).isEqualTo(this.regexInterestingKeywords(file));
+        }
+    }
+
+    private List<String> parts(String contents) {
+        List<String> parts = new ArrayList<>();
+        IdentifierSplitter.split(contents, 0, contents.length(), (source, start, end) -> parts.add(source.subSequence(start, end).toString()), null, null);
+        return parts;
+    }
+
+    /**
+     * How SearchcodeLib.splitKeywords used to work without the length limit
+     */
+    private String regexSplitKeywords(String contents) {
+        StringBuilder indexContents = new StringBuilder();
+
+        for (String splitContents: contents.replaceAll("[^a-zA-Z0-9]", " ").split(" ")) {
+            if (splitContents.length() >= 7 && !Pattern.compile("[A-Z]{2,}").matcher(splitContents).find()) {
+                String[] splitStrings = splitContents.split("(?=\\p{Upper})");
+
+                if (splitStrings.length > 1) {
+                    indexContents.append(" ");
+                    indexContents.append(StringUtils.join(splitStrings, " "));
+                }
+            }
+        }
+
+        return indexContents.toString();
+    }
+
+    private String regexInterestingKeywords(String contents) {
+        StringBuilder indexContents = new StringBuilder();
+        Matcher m = Pattern.compile("[a-z]+(\\d+\\.)?(\\d+\\.)?(\\*|\\d+)").matcher(contents);
+
+        while (m.find()) {
+            indexContents.append(" ");
+            indexContents.append(m.group());
+        }
+
+        return indexContents.toString();
+    }
+
+    private String regexInterestingCharacters(String contents) {
+        StringBuilder indexContents = new StringBuilder();
+        for (char c: contents.replaceAll("\\w", "").toCharArray()) {
+            indexContents.append(c).append(" ");
+        }
+
+        return indexContents.toString();
+    }
+}
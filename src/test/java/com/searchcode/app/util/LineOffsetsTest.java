@@ -0,0 +1,100 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class LineOffsetsTest extends TestCase {
+
+    private File file;
+
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("LineOffsetsTest", ".txt");
+    }
+
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    public void testLinesMatchReadFileLines() throws IOException {
+        String[] contents = {
+                "",
+                "one line",
+                "one line\n",
+                "unix\nline\nendings\n\n",
+                "windows\r\nline\r\nendings",
+                "old mac\rline\rendings\r",
+                "mixed\r\n\r\n\n\rendings\n\r",
+                "\n\nleading empty lines",
+                "unicode ünïcödé\n日本語\nend",
+        };
+
+        for (String content : contents) {
+            FileUtils.writeStringToFile(this.file, content, StandardCharsets.UTF_8);
+            this.assertSameLines(1000);
+            this.assertSameLines(2);
+        }
+    }
+
+    public void testLinesAcrossManyBlocks() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("line number ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        FileUtils.writeStringToFile(this.file, content.toString(), StandardCharsets.UTF_8);
+
+        this.assertSameLines(10000);
+        this.assertSameLines(1000);
+
+        // Random access backwards as the matcher does for lines before a match
+        List<String> expected = Helpers.readFileLinesGuessEncoding(this.file.toString(), 10000);
+        List<String> lines = LineOffsets.build(this.file.toString(), 10000).getLines(this.file.toString(), 10000);
+        for (int i = lines.size() - 1; i >= 0; i -= 97) {
+            assertThat(lines.get(i)).isEqualTo(expected.get(i));
+        }
+    }
+
+    public void testEncodeDecode() throws IOException {
+        FileUtils.writeStringToFile(this.file, "some\nlines\r\nhere", StandardCharsets.UTF_8);
+        LineOffsets lineOffsets = LineOffsets.build(this.file.toString(), 1000);
+        byte[] encoded = lineOffsets.encode();
+
+        LineOffsets decoded = LineOffsets.decode(encoded, 0, encoded.length);
+
+        assertThat(decoded.getLineCount()).isEqualTo(3);
+        assertThat(decoded.getCharset()).isEqualTo(lineOffsets.getCharset());
+        assertThat(decoded.getFileLength()).isEqualTo(this.file.length());
+        for (int i = 0; i <= decoded.getLineCount(); i++) {
+            assertThat(decoded.getLineStart(i)).isEqualTo(lineOffsets.getLineStart(i));
+        }
+
+        assertThat(LineOffsets.decode(new byte[] { 99 }, 0, 1)).isNull();
+        assertThat(LineOffsets.decode(new byte[0], 0, 0)).isNull();
+    }
+
+    public void testChangedFileReturnsNull() throws IOException {
+        FileUtils.writeStringToFile(this.file, "some\nlines", StandardCharsets.UTF_8);
+        LineOffsets lineOffsets = LineOffsets.build(this.file.toString(), 1000);
+
+        FileUtils.writeStringToFile(this.file, "some\nother lines", StandardCharsets.UTF_8);
+        assertThat(lineOffsets.getLines(this.file.toString(), 1000)).isNull();
+
+        this.file.delete();
+        assertThat(lineOffsets.getLines(this.file.toString(), 1000)).isNull();
+        assertThat(LineOffsets.build(this.file.toString(), 1000)).isNull();
+    }
+
+    private void assertSameLines(int maxLines) throws IOException {
+        List<String> expected = Helpers.readFileLinesGuessEncoding(this.file.toString(), maxLines);
+        List<String> lines = LineOffsets.build(this.file.toString(), maxLines).getLines(this.file.toString(), maxLines);
+
+        assertThat(new ArrayList<>(lines)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,85 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class PreReadFilterTest extends TestCase {
+
+    private File file;
+
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("PreReadFilterTest", ".txt");
+    }
+
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    public void testRejectsBySizeWithoutReading() {
+        PreReadFilter preReadFilter = new PreReadFilter(1000, 100);
+
+        assertThat(preReadFilter.getRejectReason("/does/not/exist.java", "exist.java", 1001, new SearchcodeLib())).isEqualTo("larger than max_file_bytes");
+        assertThat(preReadFilter.getRejectReason("/does/not/exist.java", "exist.java", 50, new SearchcodeLib())).isNull();
+        assertThat(preReadFilter.getRejected()).isEqualTo(1);
+        assertThat(preReadFilter.getBytesSkipped()).isEqualTo(1001);
+        assertThat(preReadFilter.getChecked()).isEqualTo(2);
+    }
+
+    public void testRejectsByExtensionUnlessWhiteListed() {
+        PreReadFilter preReadFilter = new PreReadFilter(0, 0);
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+        searchcodeLib.BLACKLIST = new String[] { "png" };
+        searchcodeLib.WHITELIST = new String[] {};
+
+        assertThat(preReadFilter.getRejectReason("/does/not/exist.png", "logo.PNG", 10, searchcodeLib)).isEqualTo("appears in extension blacklist");
+
+        searchcodeLib.WHITELIST = new String[] { "png" };
+        assertThat(preReadFilter.getRejectReason("/does/not/exist.png", "logo.PNG", 10, searchcodeLib)).isNull();
+    }
+
+    public void testRejectsBySampledPrefix() throws IOException {
+        PreReadFilter preReadFilter = new PreReadFilter(0, 4096);
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+
+        // A single generated line far longer than the sample
+        Files.write(this.file.toPath(), ("var x=" + StringUtils.repeat("a+b;", 10000)).getBytes(StandardCharsets.UTF_8));
+        assertThat(preReadFilter.getRejectReason(this.file.toString(), "bundle.js", this.file.length(), searchcodeLib)).isEqualTo("appears to be minified");
+        assertThat(preReadFilter.getBytesSkipped()).isEqualTo(this.file.length() - 4096);
+
+        // Starts with the magic number of a known binary format
+        byte[] png = new byte[10000];
+        System.arraycopy(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' }, 0, png, 0, 8);
+        Files.write(this.file.toPath(), png);
+        assertThat(preReadFilter.getRejectReason(this.file.toString(), "image.dat", this.file.length(), searchcodeLib)).contains("png");
+
+        // Ordinary code longer than the sample is left for the full read
+        Files.write(this.file.toPath(), StringUtils.repeat("    public int getValue() { return this.value; }\n", 1000).getBytes(StandardCharsets.UTF_8));
+        assertThat(preReadFilter.getRejectReason(this.file.toString(), "Value.java", this.file.length(), searchcodeLib)).isNull();
+
+        assertThat(preReadFilter.getSampled()).isEqualTo(3);
+        assertThat(preReadFilter.getRejected()).isEqualTo(2);
+    }
+
+    public void testReadLimitTruncates() throws IOException {
+        Files.write(this.file.toPath(), StringUtils.repeat("line\n", 1000).getBytes(StandardCharsets.UTF_8));
+
+        FileContent fileContent = FileContent.read(this.file.toString(), 10000, 100);
+        assertThat(fileContent.isTruncated()).isTrue();
+        assertThat(fileContent.getLength()).isEqualTo(100);
+        assertThat(fileContent.getLines()).hasSize(20);
+
+        fileContent = FileContent.read(this.file.toString(), 10000, new PreReadFilter(0, 0).getReadLimit());
+        assertThat(fileContent.isTruncated()).isFalse();
+        assertThat(fileContent.getLines()).hasSize(1000);
+
+        fileContent = FileContent.read(this.file.toString(), 10000, this.file.length());
+        assertThat(fileContent.isTruncated()).isFalse();
+    }
+}